@@ -0,0 +1,24 @@
+package com.knowledge.common.controller;
+
+import com.knowledge.common.service.EmailOutboxService;
+import com.knowledge.common.service.EmailOutboxService.QueueStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/mail/outbox")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class MailOutboxController {
+
+    private final EmailOutboxService mailOutbox;
+
+    /**
+     * Pending and in-flight emails, usage of the sending quotas and when the queue is projected to be sent
+     */
+    @GetMapping
+    public ResponseEntity<QueueStatus> getQueueStatus() {
+        return ResponseEntity.ok(mailOutbox.getQueueStatus());
+    }
+}
@@ -0,0 +1,74 @@
+package com.knowledge.common.controller;
+
+import com.knowledge.common.model.MailRecipient;
+import com.knowledge.common.service.MailRecipientService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/recipients")
+@Slf4j
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class MailRecipientController {
+
+    private final MailRecipientService recipientService;
+
+    /**
+     * List all recipients with their preferences
+     */
+    @GetMapping
+    public ResponseEntity<List<MailRecipient>> getRecipients() {
+        return ResponseEntity.ok(recipientService.findAll());
+    }
+
+    /**
+     * Recipients that would receive the given pipeline's email
+     */
+    @GetMapping("/pipeline/{pipeline}")
+    public ResponseEntity<List<MailRecipient>> getSubscribers(@PathVariable String pipeline) {
+        return ResponseEntity.ok(recipientService.findSubscribers(pipeline));
+    }
+
+    /**
+     * Add a recipient or update an existing one's preferences
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> saveRecipient(@RequestBody MailRecipient recipient) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            MailRecipient saved = recipientService.save(recipient);
+            log.info("👤 Saved recipient {} (pipelines: {}, levels: {})",
+                saved.getEmail(), saved.getSubscribedPipelines(), saved.getLevels());
+
+            response.put("success", true);
+            response.put("recipient", saved);
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    /**
+     * Remove a recipient
+     */
+    @DeleteMapping("/{email}")
+    public ResponseEntity<Map<String, Object>> deleteRecipient(@PathVariable String email) {
+        boolean deleted = recipientService.delete(email);
+        log.info("🗑️ Delete recipient {}: {}", email, deleted ? "removed" : "not found");
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", deleted);
+        response.put("email", email);
+        return deleted ? ResponseEntity.ok(response) : ResponseEntity.status(404).body(response);
+    }
+}
@@ -0,0 +1,66 @@
+package com.knowledge.common.controller;
+
+import com.knowledge.common.model.RenderedEmailSummary;
+import com.knowledge.common.service.RenderedEmailService;
+import com.knowledge.common.service.RenderedEmailService.DeliveryResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/emails")
+@Slf4j
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class RenderedEmailController {
+
+    private final RenderedEmailService renderedEmailService;
+
+    /**
+     * Cached rendered emails of a pipeline, newest first
+     */
+    @GetMapping("/{pipeline}")
+    public ResponseEntity<List<RenderedEmailSummary>> getRenderedEmails(@PathVariable String pipeline) {
+        return ResponseEntity.ok(renderedEmailService.findByPipeline(pipeline));
+    }
+
+    /**
+     * Deliver a cached email again without regenerating it, e.g. /api/emails/learning/day-12/resend.
+     * Recipients that already received the same content are skipped unless force=true.
+     */
+    @PostMapping("/{pipeline}/{emailKey}/resend")
+    public ResponseEntity<Map<String, Object>> resend(@PathVariable String pipeline,
+                                                      @PathVariable String emailKey,
+                                                      @RequestParam(defaultValue = "false") boolean force) {
+        log.info("🔁 Resend requested for {} email {}{}", pipeline, emailKey, force ? " (forced)" : "");
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("pipeline", pipeline);
+        response.put("emailKey", emailKey);
+        try {
+            Optional<DeliveryResult> result = renderedEmailService.resend(pipeline, emailKey, force);
+            if (result.isEmpty()) {
+                response.put("success", false);
+                response.put("message", "No rendered " + pipeline + " email cached for " + emailKey);
+                return ResponseEntity.status(404).body(response);
+            }
+
+            response.put("success", true);
+            response.put("queued", result.get().queued());
+            response.put("skipped", result.get().skipped());
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("❌ Resend of {} email {} failed: {}", pipeline, emailKey, e.getMessage(), e);
+            response.put("success", false);
+            response.put("message", "Resend failed: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+}
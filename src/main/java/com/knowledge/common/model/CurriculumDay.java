@@ -0,0 +1,23 @@
+package com.knowledge.common.model;
+
+/**
+ * A day of a curriculum workbook with the status columns the processing services update
+ */
+public interface CurriculumDay {
+
+    int getDay();
+
+    String getStatus();
+
+    void setStatus(String status);
+
+    String getNotes();
+
+    void setNotes(String notes);
+
+    String getLastProcessed();
+
+    void setLastProcessed(String lastProcessed);
+
+    void setCompletedDate(String completedDate);
+}
@@ -0,0 +1,77 @@
+package com.knowledge.common.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One pipeline output waiting for the daily digest email.
+ *
+ * The HTML is the rendered section body (without page styling); the digest template
+ * supplies the shared styles when the day's entries are combined.
+ */
+@Entity
+@Table(name = "digest_entries", indexes = {
+    @Index(name = "idx_digest_entries_date_delivered", columnList = "digest_date, delivered")
+})
+@Data
+@NoArgsConstructor
+public class DigestEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "digest_date", nullable = false)
+    private LocalDate digestDate;
+
+    @Column(nullable = false, length = 32)
+    private String pipeline; // topic, stock or learning
+
+    @Column(length = 500)
+    private String title;
+
+    @Column(length = 32)
+    private String level; // Topic level used for recipient level filters, null for other pipelines
+
+    @Lob
+    @Column(name = "html_content", nullable = false)
+    private String htmlContent;
+
+    @Column(name = "attachment_name")
+    private String attachmentName;
+
+    @Column(name = "attachment_content_type", length = 100)
+    private String attachmentContentType;
+
+    @Lob
+    @Column(name = "attachment_content")
+    private byte[] attachmentContent;
+
+    @Column(nullable = false)
+    private boolean delivered;
+
+    @Column(name = "delivered_at")
+    private LocalDateTime deliveredAt;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    public DigestEntry(String pipeline, String title, String level, String htmlContent) {
+        this.pipeline = pipeline;
+        this.title = title;
+        this.level = level;
+        this.htmlContent = htmlContent;
+    }
+
+    public boolean hasAttachment() {
+        return attachmentContent != null && attachmentName != null;
+    }
+}
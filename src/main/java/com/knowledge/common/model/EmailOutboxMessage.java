@@ -0,0 +1,84 @@
+package com.knowledge.common.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Fully rendered email waiting in the outbox.
+ *
+ * The message is stored as its serialized MIME form (headers, HTML body and attachments),
+ * so delivery does not depend on templates, generated content or attachment files that
+ * may change or be cleaned up before the send succeeds.
+ */
+@Entity
+@Table(name = "email_outbox", indexes = {
+    @Index(name = "idx_email_outbox_status_next_attempt", columnList = "status, next_attempt_at"),
+    @Index(name = "idx_email_outbox_content_hash", columnList = "content_hash")
+})
+@Data
+@NoArgsConstructor
+public class EmailOutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 32)
+    private String pipeline; // topic, stock or learning
+
+    @Column(length = 1000)
+    private String subject;
+
+    @Column(nullable = false, length = 2000)
+    private String recipients;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash; // Hash of the shared rendered content, see RenderedEmail
+
+    @Lob
+    @Column(name = "mime_content", nullable = false)
+    private byte[] mimeContent;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private OutboxStatus status = OutboxStatus.PENDING;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "throttle_deferrals", nullable = false, columnDefinition = "integer default 0")
+    private int throttleDeferrals; // Sends deferred by throttling replies, which do not count as attempts
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+    }
+
+    public EmailOutboxMessage(String pipeline, String subject, String recipients, byte[] mimeContent) {
+        this.pipeline = pipeline;
+        this.subject = subject;
+        this.recipients = recipients;
+        this.mimeContent = mimeContent;
+        this.status = OutboxStatus.PENDING;
+    }
+}
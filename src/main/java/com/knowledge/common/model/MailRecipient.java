@@ -0,0 +1,76 @@
+package com.knowledge.common.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Email recipient with delivery preferences.
+ *
+ * Subscribed pipelines and levels are comma-separated lists; an empty list means all
+ * pipelines (topic, stock, learning) or all levels (Beginner, Intermediate, Advanced).
+ */
+@Entity
+@Table(name = "mail_recipients")
+@Data
+@NoArgsConstructor
+public class MailRecipient {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true)
+    private String email;
+
+    @Column(length = 255)
+    private String name;
+
+    @Column(name = "subscribed_pipelines", length = 255)
+    private String subscribedPipelines;
+
+    @Column(name = "levels", length = 255)
+    private String levels;
+
+    @Column(nullable = false)
+    private boolean active = true;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    public MailRecipient(String email, String name) {
+        this.email = email;
+        this.name = name;
+        this.active = true;
+    }
+
+    public boolean isSubscribedTo(String pipeline) {
+        return active && matches(subscribedPipelines, pipeline);
+    }
+
+    /**
+     * Content without a level is delivered to everyone
+     */
+    public boolean acceptsLevel(String level) {
+        return level == null || level.isBlank() || matches(levels, level);
+    }
+
+    private static boolean matches(String list, String value) {
+        if (list == null || list.isBlank()) {
+            return true;
+        }
+        for (String entry : list.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.equals("*") || trimmed.equalsIgnoreCase(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,8 @@
+package com.knowledge.common.model;
+
+public enum OutboxStatus {
+    PENDING,    // Waiting for its next delivery attempt
+    SENDING,    // Claimed by a worker
+    SENT,       // Accepted by the SMTP server
+    FAILED      // Gave up after the maximum number of attempts
+}
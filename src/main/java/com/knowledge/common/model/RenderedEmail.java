@@ -0,0 +1,67 @@
+package com.knowledge.common.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Final rendered HTML and subject of one pipeline email (a learning or stock day, a topic overview date).
+ *
+ * The HTML is stored with the recipient's {@code {{GREETING}}} still open, so the cached email can
+ * be delivered again without calling the AI or re-parsing content. Attachments are referenced by
+ * path. The content hash covers subject, body and attachment and identifies the email in the
+ * outbox for duplicate detection.
+ */
+@Entity
+@Table(name = "rendered_emails",
+    uniqueConstraints = @UniqueConstraint(name = "uk_rendered_emails_key", columnNames = {"pipeline", "email_key", "audience"}))
+@Data
+@NoArgsConstructor
+public class RenderedEmail {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 32)
+    private String pipeline; // topic, stock or learning
+
+    @Column(name = "email_key", nullable = false, length = 100)
+    private String emailKey; // e.g. day-12 or 2024-05-01
+
+    @Column(nullable = false, length = 200)
+    private String audience; // Recipient level filter the email was rendered for, * for everyone
+
+    @Column(length = 1000)
+    private String subject;
+
+    @JsonIgnore
+    @Lob
+    @Column(name = "html_content", nullable = false)
+    private String htmlContent;
+
+    @Column(name = "attachment_name")
+    private String attachmentName;
+
+    @Column(name = "attachment_path", length = 1000)
+    private String attachmentPath;
+
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "rendered_at")
+    private LocalDateTime renderedAt;
+
+    public RenderedEmail(String pipeline, String emailKey, String audience) {
+        this.pipeline = pipeline;
+        this.emailKey = emailKey;
+        this.audience = audience;
+    }
+
+    public boolean hasAttachment() {
+        return attachmentPath != null;
+    }
+}
@@ -0,0 +1,10 @@
+package com.knowledge.common.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Listing of a cached rendered email without its HTML body
+ */
+public record RenderedEmailSummary(String emailKey, String audience, String subject, String contentHash,
+                                   LocalDateTime renderedAt, String attachmentName) {
+}
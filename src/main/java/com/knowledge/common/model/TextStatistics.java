@@ -0,0 +1,167 @@
+package com.knowledge.common.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Size and structure statistics of a piece of generated text.
+ *
+ * All values are computed by {@link #of(CharSequence)} in a single pass over the
+ * characters without splitting the text or allocating per-word objects.
+ */
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TextStatistics {
+
+    // Average adult silent reading speed used for reading-time estimates
+    private static final int WORDS_PER_MINUTE = 200;
+
+    // Rough characters-per-token ratio for English text in Gemini/GPT tokenizers
+    private static final int CHARS_PER_TOKEN = 4;
+
+    @Column(name = "word_count")
+    private int wordCount;
+
+    @Column(name = "char_count")
+    private int characterCount;
+
+    @Column(name = "estimated_tokens")
+    private int estimatedTokens;
+
+    @Column(name = "reading_time_seconds")
+    private int readingTimeSeconds;
+
+    @Column(name = "section_count")
+    private int sectionCount;
+
+    /**
+     * Compute statistics for the given text.
+     *
+     * Sections are Markdown headings at the start of a line, HTML heading/section
+     * elements and top-level keys of a JSON object.
+     */
+    public static TextStatistics of(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return new TextStatistics();
+        }
+
+        int length = text.length();
+        int words = 0;
+        int sections = 0;
+
+        boolean inWord = false;
+        boolean lineStart = true;
+
+        // JSON structure tracking (only meaningful once a '{' has been seen)
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        boolean keyCandidate = false;
+
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            boolean whitespace = Character.isWhitespace(c);
+
+            if (whitespace) {
+                inWord = false;
+            } else if (!inWord) {
+                inWord = true;
+                words++;
+            }
+
+            if (depth > 0) {
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (c == '\\') {
+                        escaped = true;
+                    } else if (c == '"') {
+                        inString = false;
+                        keyCandidate = depth == 1;
+                    }
+                    continue;
+                }
+                if (keyCandidate && !whitespace) {
+                    if (c == ':') {
+                        sections++;
+                    }
+                    keyCandidate = false;
+                }
+            }
+
+            switch (c) {
+                case '{', '[' -> depth++;
+                case '}', ']' -> depth = Math.max(0, depth - 1);
+                case '"' -> inString = depth > 0;
+                case '#' -> {
+                    if (lineStart && isMarkdownHeading(text, i)) {
+                        sections++;
+                    }
+                }
+                case '<' -> {
+                    if (isSectionTag(text, i)) {
+                        sections++;
+                    }
+                }
+                default -> { }
+            }
+
+            if (c == '\n') {
+                lineStart = true;
+            } else if (!whitespace) {
+                lineStart = false;
+            }
+        }
+
+        int tokens = (length + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+        int readingSeconds = (words * 60 + WORDS_PER_MINUTE - 1) / WORDS_PER_MINUTE;
+
+        return new TextStatistics(words, length, tokens, readingSeconds, sections);
+    }
+
+    /**
+     * Word count of the text, 0 for null or blank input
+     */
+    public static int countWords(CharSequence text) {
+        return of(text).getWordCount();
+    }
+
+    private static boolean isMarkdownHeading(CharSequence text, int index) {
+        int i = index;
+        while (i < text.length() && text.charAt(i) == '#') {
+            i++;
+        }
+        int level = i - index;
+        return level <= 6 && i < text.length() && (text.charAt(i) == ' ' || text.charAt(i) == '\t');
+    }
+
+    private static boolean isSectionTag(CharSequence text, int index) {
+        if (index + 2 >= text.length()) {
+            return false;
+        }
+        char first = Character.toLowerCase(text.charAt(index + 1));
+        char second = text.charAt(index + 2);
+        if (first == 'h' && second >= '1' && second <= '6') {
+            return index + 3 >= text.length() || !Character.isLetterOrDigit(text.charAt(index + 3));
+        }
+        return first == 's' && regionMatchesIgnoreCase(text, index + 1, "section")
+            && (index + 8 >= text.length() || !Character.isLetterOrDigit(text.charAt(index + 8)));
+    }
+
+    private static boolean regionMatchesIgnoreCase(CharSequence text, int offset, String expected) {
+        if (offset + expected.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (Character.toLowerCase(text.charAt(offset + i)) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,37 @@
+package com.knowledge.common.repository;
+
+import com.knowledge.common.model.CurriculumDay;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Queries of a curriculum table, shared by the learning and stock day repositories
+ */
+@NoRepositoryBean
+public interface CurriculumDayRepository<T extends CurriculumDay> extends JpaRepository<T, Integer> {
+
+    Optional<T> findFirstByStatusOrderByDayAsc(String status);
+
+    List<T> findByStatusOrderByDayAsc(String status, Pageable pageable);
+
+    List<T> findAllByOrderByDayAsc();
+
+    long countByStatus(String status);
+
+    /**
+     * Move the day from one status to another; returns 0 when its status is no longer {@code from}
+     * (another trigger claimed it first)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE #{#entityName} d SET d.status = :to, d.lastProcessed = :now WHERE d.day = :day AND d.status = :from")
+    int transition(@Param("day") int day, @Param("from") String from, @Param("to") String to, @Param("now") String now);
+}
@@ -0,0 +1,36 @@
+package com.knowledge.common.repository;
+
+import com.knowledge.common.model.DigestEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface DigestEntryRepository extends JpaRepository<DigestEntry, Long> {
+
+    List<DigestEntry> findByDigestDateAndDeliveredFalseOrderByIdAsc(LocalDate digestDate);
+
+    boolean existsByDigestDateAndDeliveredTrue(LocalDate digestDate);
+
+    @Query("SELECT DISTINCT e.pipeline FROM DigestEntry e WHERE e.digestDate = :date AND e.delivered = false")
+    List<String> findPendingPipelines(@Param("date") LocalDate date);
+
+    @Query("SELECT DISTINCT e.digestDate FROM DigestEntry e WHERE e.delivered = false AND e.digestDate <= :date " +
+           "ORDER BY e.digestDate ASC")
+    List<LocalDate> findPendingDatesUpTo(@Param("date") LocalDate date);
+
+    /**
+     * Claim an entry for delivery; returns 0 when it was already delivered
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE DigestEntry e SET e.delivered = true, e.deliveredAt = :now WHERE e.id = :id AND e.delivered = false")
+    int markDelivered(@Param("id") Long id, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,57 @@
+package com.knowledge.common.repository;
+
+import com.knowledge.common.model.EmailOutboxMessage;
+import com.knowledge.common.model.OutboxStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutboxMessage, Long> {
+
+    @Query("SELECT m.id FROM EmailOutboxMessage m WHERE m.status = :status AND m.nextAttemptAt <= :now " +
+           "ORDER BY m.nextAttemptAt ASC, m.id ASC")
+    List<Long> findDueIds(@Param("status") OutboxStatus status, @Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Claim a due message; returns 0 when another worker claimed it first
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailOutboxMessage m SET m.status = com.knowledge.common.model.OutboxStatus.SENDING, m.claimedAt = :now " +
+           "WHERE m.id = :id AND m.status = com.knowledge.common.model.OutboxStatus.PENDING")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * Return messages whose worker died mid-send (e.g. a restart) to the queue
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailOutboxMessage m SET m.status = com.knowledge.common.model.OutboxStatus.PENDING, m.claimedAt = NULL " +
+           "WHERE m.status = com.knowledge.common.model.OutboxStatus.SENDING AND m.claimedAt < :cutoff")
+    int releaseStaleClaims(@Param("cutoff") LocalDateTime cutoff);
+
+    long countByStatus(OutboxStatus status);
+
+    long countByStatusAndSentAtAfter(OutboxStatus status, LocalDateTime since);
+
+    /**
+     * Send times since the cutoff, oldest first (seeds the quota windows after a restart)
+     */
+    @Query("SELECT m.sentAt FROM EmailOutboxMessage m WHERE m.status = :status AND m.sentAt > :since ORDER BY m.sentAt ASC")
+    List<LocalDateTime> findSentAtAfter(@Param("status") OutboxStatus status, @Param("since") LocalDateTime since);
+
+    /**
+     * Whether the content was already queued or sent to the recipient (failed messages do not count)
+     */
+    boolean existsByContentHashAndRecipientsIgnoreCaseAndStatusNot(String contentHash, String recipients, OutboxStatus status);
+
+    List<EmailOutboxMessage> findByStatusOrderByCreatedAtDesc(OutboxStatus status, Pageable pageable);
+}
@@ -0,0 +1,16 @@
+package com.knowledge.common.repository;
+
+import com.knowledge.common.model.MailRecipient;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface MailRecipientRepository extends JpaRepository<MailRecipient, Long> {
+
+    Optional<MailRecipient> findByEmailIgnoreCase(String email);
+
+    List<MailRecipient> findByActiveTrueOrderByIdAsc();
+}
@@ -0,0 +1,24 @@
+package com.knowledge.common.repository;
+
+import com.knowledge.common.model.RenderedEmail;
+import com.knowledge.common.model.RenderedEmailSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RenderedEmailRepository extends JpaRepository<RenderedEmail, Long> {
+
+    Optional<RenderedEmail> findByPipelineAndEmailKeyAndAudience(String pipeline, String emailKey, String audience);
+
+    List<RenderedEmail> findByPipelineAndEmailKey(String pipeline, String emailKey);
+
+    @Query("SELECT new com.knowledge.common.model.RenderedEmailSummary(e.emailKey, e.audience, e.subject, " +
+           "e.contentHash, e.renderedAt, e.attachmentName) FROM RenderedEmail e " +
+           "WHERE e.pipeline = :pipeline ORDER BY e.renderedAt DESC")
+    List<RenderedEmailSummary> findSummariesByPipeline(@Param("pipeline") String pipeline);
+}
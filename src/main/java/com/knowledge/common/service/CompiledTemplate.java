@@ -0,0 +1,186 @@
+package com.knowledge.common.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * HTML template split once into literal and {@code {{PLACEHOLDER}}} segments.
+ *
+ * Rendering walks the segments and appends each literal or value to the output, so the
+ * document is written exactly once regardless of the number of placeholders. Values may be
+ * any {@link CharSequence}, a {@link Fragment} that writes itself, or any other object
+ * (rendered with {@code String.valueOf}); null renders as empty. Placeholders without a
+ * value are kept verbatim.
+ */
+public final class CompiledTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    // Size reserved for values whose length is not known up front (fragments)
+    private static final int FRAGMENT_SIZE_HINT = 4096;
+
+    /**
+     * Template value that writes its own content, avoiding an intermediate string
+     */
+    @FunctionalInterface
+    public interface Fragment {
+        void writeTo(Appendable out) throws IOException;
+    }
+
+    private final String name;
+    private final String[] literals;
+    private final String[] placeholders;
+    private final int literalLength;
+    private final long lastModified;
+
+    private CompiledTemplate(String name, String[] literals, String[] placeholders, int literalLength, long lastModified) {
+        this.name = name;
+        this.literals = literals;
+        this.placeholders = placeholders;
+        this.literalLength = literalLength;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Split the source into segments; literals[i] precedes placeholders[i], the last literal ends the document
+     */
+    public static CompiledTemplate compile(String name, String source, long lastModified) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        int literalLength = 0;
+
+        int literalStart = 0;
+        int i = source.indexOf(OPEN);
+        while (i >= 0) {
+            int close = source.indexOf(CLOSE, i + OPEN.length());
+            if (close < 0) {
+                break;
+            }
+            String placeholder = source.substring(i + OPEN.length(), close);
+            if (!isPlaceholderName(placeholder)) {
+                // Not a placeholder (e.g. CSS or literal braces) - keep scanning after the opening braces
+                i = source.indexOf(OPEN, i + 1);
+                continue;
+            }
+
+            String literal = source.substring(literalStart, i);
+            literals.add(literal);
+            literalLength += literal.length();
+            placeholders.add(placeholder);
+
+            literalStart = close + CLOSE.length();
+            i = source.indexOf(OPEN, literalStart);
+        }
+
+        String tail = source.substring(literalStart);
+        literals.add(tail);
+        literalLength += tail.length();
+
+        return new CompiledTemplate(name, literals.toArray(new String[0]), placeholders.toArray(new String[0]),
+            literalLength, lastModified);
+    }
+
+    /**
+     * Render into a new string sized for the literals plus the known value lengths
+     */
+    public String render(Map<String, ?> values) {
+        StringBuilder out = new StringBuilder(estimateLength(values));
+        try {
+            renderTo(values, out);
+        } catch (IOException e) {
+            // StringBuilder does not throw; only a fragment could
+            throw new UncheckedIOException("Failed to render template " + name, e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Render straight into the given output
+     */
+    public void renderTo(Map<String, ?> values, Appendable out) throws IOException {
+        for (int i = 0; i < placeholders.length; i++) {
+            out.append(literals[i]);
+            String placeholder = placeholders[i];
+            if (values.containsKey(placeholder)) {
+                appendValue(values.get(placeholder), out);
+            } else {
+                out.append(OPEN).append(placeholder).append(CLOSE);
+            }
+        }
+        out.append(literals[literals.length - 1]);
+    }
+
+    /**
+     * Expected output length for the given values
+     */
+    public int estimateLength(Map<String, ?> values) {
+        long length = literalLength;
+        for (String placeholder : placeholders) {
+            Object value = values.get(placeholder);
+            if (value instanceof CharSequence text) {
+                length += text.length();
+            } else if (value instanceof Fragment) {
+                length += FRAGMENT_SIZE_HINT;
+            } else if (value != null) {
+                length += 16;
+            } else if (!values.containsKey(placeholder)) {
+                length += placeholder.length() + OPEN.length() + CLOSE.length();
+            }
+        }
+        return (int) Math.min(length, Integer.MAX_VALUE - 8);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Distinct placeholder names in document order
+     */
+    public Set<String> getPlaceholders() {
+        Set<String> names = new LinkedHashSet<>();
+        Collections.addAll(names, placeholders);
+        return names;
+    }
+
+    public int getLiteralLength() {
+        return literalLength;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    private static void appendValue(Object value, Appendable out) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof CharSequence text) {
+            out.append(text);
+        } else if (value instanceof Fragment fragment) {
+            fragment.writeTo(out);
+        } else {
+            out.append(String.valueOf(value));
+        }
+    }
+
+    private static boolean isPlaceholderName(String candidate) {
+        if (candidate.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < candidate.length(); i++) {
+            char c = candidate.charAt(i);
+            if (!(c >= 'A' && c <= 'Z') && !(c >= '0' && c <= '9') && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
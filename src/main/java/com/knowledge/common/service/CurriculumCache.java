@@ -0,0 +1,265 @@
+package com.knowledge.common.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32C;
+
+/**
+ * In-memory copy of a curriculum workbook's rows, indexed by day number and status.
+ *
+ * The workbook is parsed only when it changes: every read compares the file's modification time
+ * and size with the loaded snapshot, and when they differ a CRC32C of the content decides whether
+ * the rows have to be loaded again (a touched but unchanged file is not parsed). Lookups by day,
+ * the first row with a status and the status counts are array or map reads. Changes the owning
+ * service submits are applied to the cached rows with {@link #update}, and {@link #written} takes
+ * the file it writes with them as loaded, so its own writes do not force a reload. Returned rows
+ * are shared and must not be modified by callers.
+ */
+@Slf4j
+public class CurriculumCache<T> {
+
+    /**
+     * Parses all rows of the workbook in sheet order
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+        List<T> load(Path file) throws IOException;
+    }
+
+    private static final int CHECKSUM_BUFFER_SIZE = 64 * 1024;
+
+    private final String name;
+    private final Path file;
+    private final Loader<T> loader;
+    private final ToIntFunction<T> dayOf;
+    private final Function<T, String> statusOf;
+
+    private volatile Snapshot<T> snapshot;
+    private volatile long loads;
+
+    public CurriculumCache(String name, Path file, Loader<T> loader, ToIntFunction<T> dayOf, Function<T, String> statusOf) {
+        this.name = name;
+        this.file = file;
+        this.loader = loader;
+        this.dayOf = dayOf;
+        this.statusOf = statusOf;
+    }
+
+    /**
+     * Loaded rows with the file state they were read from.
+     *
+     * {@code rowByDay[day]} is the row's position plus one (0 for no such day) and
+     * {@code rowsByStatus} holds the ascending row positions per upper-case status.
+     */
+    private record Snapshot<T>(FileTime modified, long size, long checksum, List<T> rows, int[] rowByDay,
+                               Map<String, int[]> rowsByStatus) {
+
+        boolean matches(BasicFileAttributes attributes) {
+            return attributes.lastModifiedTime().equals(modified) && attributes.size() == size;
+        }
+
+        Snapshot<T> restamped(BasicFileAttributes attributes) {
+            return new Snapshot<>(attributes.lastModifiedTime(), attributes.size(), checksum, rows, rowByDay, rowsByStatus);
+        }
+    }
+
+    /**
+     * All rows in sheet order
+     */
+    public List<T> all() {
+        return current().rows();
+    }
+
+    public T byDay(int day) {
+        Snapshot<T> current = current();
+        int[] rowByDay = current.rowByDay();
+        if (day < 0 || day >= rowByDay.length || rowByDay[day] == 0) {
+            return null;
+        }
+        return current.rows().get(rowByDay[day] - 1);
+    }
+
+    /**
+     * First row in sheet order with the status (case-insensitive), null when there is none
+     */
+    public T firstWithStatus(String status) {
+        Snapshot<T> current = current();
+        int[] positions = current.rowsByStatus().get(statusKey(status));
+        return positions == null ? null : current.rows().get(positions[0]);
+    }
+
+    /**
+     * Rows with the status (case-insensitive) in sheet order, at most {@code limit}
+     */
+    public List<T> withStatus(String status, int limit) {
+        Snapshot<T> current = current();
+        int[] positions = current.rowsByStatus().get(statusKey(status));
+        if (positions == null) {
+            return List.of();
+        }
+        List<T> rows = new ArrayList<>(Math.min(limit, positions.length));
+        for (int i = 0; i < positions.length && i < limit; i++) {
+            rows.add(current.rows().get(positions[i]));
+        }
+        return rows;
+    }
+
+    public int count(String status) {
+        int[] positions = current().rowsByStatus().get(statusKey(status));
+        return positions == null ? 0 : positions.length;
+    }
+
+    public int size() {
+        return current().rows().size();
+    }
+
+    /**
+     * Number of times the rows were loaded from the file; changes only when the file's content
+     * did, never for the owner's own writes
+     */
+    public long loads() {
+        return loads;
+    }
+
+    /**
+     * Apply a change the owner has submitted for the workbook to the cached row; reads see it
+     * before it is written
+     */
+    public synchronized void update(int day, Consumer<T> change) {
+        Snapshot<T> current = snapshot;
+        int[] rowByDay = current != null ? current.rowByDay() : new int[0];
+        if (day < 0 || day >= rowByDay.length || rowByDay[day] == 0) {
+            return;
+        }
+        change.accept(current.rows().get(rowByDay[day] - 1));
+        snapshot = index(current.rows(), current.modified(), current.size(), current.checksum());
+    }
+
+    /**
+     * Take the file the owner has just written, with the cached rows' changes, as the loaded state
+     */
+    public synchronized void written() {
+        Snapshot<T> current = snapshot;
+        if (current == null) {
+            return;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            snapshot = new Snapshot<>(attributes.lastModifiedTime(), attributes.size(), checksum(file),
+                current.rows(), current.rowByDay(), current.rowsByStatus());
+        } catch (IOException e) {
+            log.warn("⚠️ Dropping {} curriculum cache after write: {}", name, e.getMessage());
+            snapshot = null;
+        }
+    }
+
+    /**
+     * Force the next read to load the workbook again
+     */
+    public synchronized void invalidate() {
+        snapshot = null;
+    }
+
+    private Snapshot<T> current() {
+        Snapshot<T> current = snapshot;
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            log.error("❌ Error reading {} workbook {}: {}", name, file, e.getMessage());
+            return current != null ? current : empty();
+        }
+        if (current != null && current.matches(attributes)) {
+            return current;
+        }
+        return reload(attributes);
+    }
+
+    private synchronized Snapshot<T> reload(BasicFileAttributes attributes) {
+        Snapshot<T> current = snapshot;
+        try {
+            if (current != null && current.matches(attributes)) {
+                return current;
+            }
+            long checksum = checksum(file);
+            if (current != null && current.checksum() == checksum) {
+                // Touched but not changed
+                snapshot = current.restamped(attributes);
+                return snapshot;
+            }
+
+            long start = System.currentTimeMillis();
+            snapshot = index(loader.load(file), attributes.lastModifiedTime(), attributes.size(), checksum);
+            loads++;
+            log.info("📚 Loaded {} {} row(s) from {} into the curriculum cache in {} ms",
+                snapshot.rows().size(), name, file.getFileName(), System.currentTimeMillis() - start);
+            return snapshot;
+        } catch (NoSuchFileException e) {
+            return empty();
+        } catch (IOException e) {
+            log.error("❌ Error loading {} workbook {}: {}", name, file, e.getMessage(), e);
+            return current != null ? current : empty();
+        }
+    }
+
+    private Snapshot<T> index(List<T> rows, FileTime modified, long size, long checksum) {
+        int maxDay = 0;
+        for (T row : rows) {
+            maxDay = Math.max(maxDay, dayOf.applyAsInt(row));
+        }
+
+        int[] rowByDay = new int[maxDay + 1];
+        Map<String, List<Integer>> positions = new HashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            T row = rows.get(i);
+            int day = dayOf.applyAsInt(row);
+            if (day >= 0 && rowByDay[day] == 0) {
+                rowByDay[day] = i + 1;
+            }
+            positions.computeIfAbsent(statusKey(statusOf.apply(row)), key -> new ArrayList<>()).add(i);
+        }
+
+        Map<String, int[]> rowsByStatus = new HashMap<>();
+        positions.forEach((status, list) -> rowsByStatus.put(status, list.stream().mapToInt(Integer::intValue).toArray()));
+        return new Snapshot<>(modified, size, checksum, Collections.unmodifiableList(rows), rowByDay, rowsByStatus);
+    }
+
+    private Snapshot<T> empty() {
+        return new Snapshot<>(FileTime.fromMillis(0), -1, 0, List.of(), new int[0], Map.of());
+    }
+
+    private static String statusKey(String status) {
+        return status == null ? "" : status.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static long checksum(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKSUM_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+}
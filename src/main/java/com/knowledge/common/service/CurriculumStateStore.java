@@ -0,0 +1,281 @@
+package com.knowledge.common.service;
+
+import com.knowledge.common.model.CurriculumDay;
+import com.knowledge.common.repository.CurriculumDayRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Where a curriculum's day statuses live: the workbook (read through a {@link CurriculumCache}), or
+ * with {@code app.state-store=database} a table that the workbook follows.
+ *
+ * Reads, the OPEN → IN_PROGRESS claim, status updates and the import of the workbook into the
+ * table are handled here for both stores. Status changes always go through the
+ * {@link WorkbookWriteBehind} buffer, so the workbook catches up with either store; the owning
+ * service keeps the workbook I/O and reports each write back with {@link #written}.
+ */
+@Slf4j
+public class CurriculumStateStore<T extends CurriculumDay> {
+
+    /**
+     * Workbook columns of the status fields
+     */
+    public record Columns(int status, int notes, int lastProcessed, int completedDate) {
+    }
+
+    private static final int CLAIM_ATTEMPTS = 5;
+    private static final int MAX_NOTES_LENGTH = 4000;
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final String table;
+    private final boolean database;
+    private final CurriculumCache<T> curriculum;
+    private final WorkbookWriteBehind statusUpdates;
+    private final CurriculumDayRepository<T> repository;
+    private final Columns columns;
+    private final UnaryOperator<T> copy;
+    private final Runnable workbookCheck;
+
+    private long importedLoads = -1;
+
+    /**
+     * @param copy          detached copy of a cached row, for saving to the table
+     * @param workbookCheck creates the workbook when it does not exist yet
+     */
+    public CurriculumStateStore(String table, boolean database, CurriculumCache<T> curriculum,
+                                WorkbookWriteBehind statusUpdates, CurriculumDayRepository<T> repository,
+                                Columns columns, UnaryOperator<T> copy, Runnable workbookCheck) {
+        this.table = table;
+        this.database = database;
+        this.curriculum = curriculum;
+        this.statusUpdates = statusUpdates;
+        this.repository = repository;
+        this.columns = columns;
+        this.copy = copy;
+        this.workbookCheck = workbookCheck;
+    }
+
+    /**
+     * Database store: import the workbook and open the days a restart interrupted
+     */
+    public void open() {
+        if (database) {
+            importIfChanged();
+            releaseInterruptedDays();
+        }
+    }
+
+    public boolean isDatabase() {
+        return database;
+    }
+
+    /**
+     * First day with the status in curriculum order, null when there is none
+     */
+    public T firstWithStatus(String status) {
+        return database ? repository.findFirstByStatusOrderByDayAsc(status).orElse(null) : curriculum.firstWithStatus(status);
+    }
+
+    /**
+     * All days (cached rows in sheet order, or the table in day order)
+     */
+    public List<T> all() {
+        return database ? repository.findAllByOrderByDayAsc() : curriculum.all();
+    }
+
+    /**
+     * Day by number, null when the curriculum has no such day
+     */
+    public T byDay(int day) {
+        return database ? repository.findById(day).orElse(null) : curriculum.byDay(day);
+    }
+
+    /**
+     * The first days with the status in curriculum order
+     */
+    public List<T> withStatus(String status, int limit) {
+        if (database) {
+            return limit > 0 ? repository.findByStatusOrderByDayAsc(status, PageRequest.of(0, limit)) : List.of();
+        }
+        return curriculum.withStatus(status, limit);
+    }
+
+    public int count(String status) {
+        return database ? (int) repository.countByStatus(status) : curriculum.count(status);
+    }
+
+    public int size() {
+        return database ? (int) repository.count() : curriculum.size();
+    }
+
+    /**
+     * Next day for a scheduled or "today" run. With the database store the day is claimed
+     * (OPEN → IN_PROGRESS) with a conditional update, so concurrent triggers never get the same
+     * day; with the workbook store this is the next OPEN day as {@code next} finds it.
+     */
+    public T claimNext(Supplier<T> next) {
+        if (!database) {
+            return next.get();
+        }
+
+        for (int attempt = 0; attempt < CLAIM_ATTEMPTS; attempt++) {
+            T day = next.get();
+            if (day == null) {
+                return null;
+            }
+            String now = LocalDateTime.now().format(DATE_FORMATTER);
+            if (repository.transition(day.getDay(), "OPEN", "IN_PROGRESS", now) == 1) {
+                day.setStatus("IN_PROGRESS");
+                day.setLastProcessed(now);
+                submit(day.getDay(), Map.of(columns.status(), "IN_PROGRESS", columns.lastProcessed(), now));
+                log.info("🔒 Claimed Day {} for processing", day.getDay());
+                return day;
+            }
+            log.info("⏭️ Day {} was claimed by another run, trying the next one", day.getDay());
+        }
+        return null;
+    }
+
+    /**
+     * Submit the status change for the next workbook write; the cached row shows it at once
+     */
+    public void updateStatus(int day, String status, String notes, String completedDate) {
+        log.debug("🔄 Updating Day {} status to: {}", day, status);
+
+        Map<Integer, String> cells = new TreeMap<>();
+        cells.put(columns.status(), status);
+        cells.put(columns.notes(), notes);
+        cells.put(columns.lastProcessed(), LocalDateTime.now().format(DATE_FORMATTER));
+        if (!completedDate.isEmpty()) {
+            cells.put(columns.completedDate(), completedDate);
+        }
+
+        submit(day, cells);
+        if (database) {
+            // Journaled first: a crash before the save is repaired by the import at startup
+            repository.findById(day).ifPresent(row -> {
+                applyCells(row, cells);
+                row.setNotes(truncate(row.getNotes()));
+                repository.save(row);
+            });
+        }
+
+        log.info("💾 Updated Day {} status to: {} ({} pending Excel update(s))", day, status, statusUpdates.size());
+    }
+
+    /**
+     * Database store: copy the workbook's rows into the table when the file changed since the
+     * last import. Days with status changes not yet written to the workbook keep the table's values.
+     */
+    public synchronized void importIfChanged() {
+        if (!database) {
+            return;
+        }
+        workbookCheck.run();
+
+        List<T> rows = curriculum.all();
+        long loads = curriculum.loads();
+        if (loads == importedLoads) {
+            return;
+        }
+
+        List<T> imported = new ArrayList<>(rows.size());
+        for (T row : rows) {
+            if (statusUpdates.pending(String.valueOf(row.getDay())) == null) {
+                imported.add(forImport(row));
+            }
+        }
+        repository.saveAll(imported);
+        importedLoads = loads;
+        log.info("📥 Imported {} of {} day(s) into the {} table", imported.size(), rows.size(), table);
+    }
+
+    /**
+     * Database store: days claimed longer ago than the timeout belong to a run that died without
+     * a restart and are opened again; a zero timeout releases only at startup
+     */
+    public void releaseStaleClaims(Duration timeout) {
+        if (!database || timeout.isZero() || timeout.isNegative()) {
+            return;
+        }
+        String cutoff = LocalDateTime.now().minus(timeout).format(DATE_FORMATTER);
+        for (T day : repository.findByStatusOrderByDayAsc("IN_PROGRESS", Pageable.unpaged())) {
+            String claimed = day.getLastProcessed();
+            // The timestamp format sorts like the time it stands for
+            if (claimed == null || claimed.isEmpty() || claimed.compareTo(cutoff) >= 0) {
+                continue;
+            }
+            String now = LocalDateTime.now().format(DATE_FORMATTER);
+            if (repository.transition(day.getDay(), "IN_PROGRESS", "OPEN", now) == 1) {
+                submit(day.getDay(), Map.of(columns.status(), "OPEN", columns.lastProcessed(), now));
+                log.warn("⚠️ Day {} was IN_PROGRESS since {}, opening it again", day.getDay(), claimed);
+            }
+        }
+    }
+
+    /**
+     * The workbook writer stored these changes: apply them to the cached rows and take the file
+     * as loaded
+     */
+    public void written(Map<String, Map<Integer, String>> changes) {
+        changes.forEach((day, cells) -> curriculum.update(Integer.parseInt(day), row -> applyCells(row, cells)));
+        curriculum.written();
+    }
+
+    private void submit(int day, Map<Integer, String> cells) {
+        statusUpdates.submit(String.valueOf(day), cells);
+        curriculum.update(day, row -> applyCells(row, cells));
+    }
+
+    /**
+     * Database store: days left IN_PROGRESS by a run that did not finish (no run survives a
+     * restart) are opened again
+     */
+    private void releaseInterruptedDays() {
+        for (T day : repository.findByStatusOrderByDayAsc("IN_PROGRESS", Pageable.unpaged())) {
+            log.warn("⚠️ Day {} was left IN_PROGRESS, opening it again", day.getDay());
+            updateStatus(day.getDay(), "OPEN", "Run interrupted by a restart", "");
+        }
+    }
+
+    /**
+     * Detached copy of a cached row for the table, with the status in upper case
+     */
+    private T forImport(T row) {
+        T imported = copy.apply(row);
+        imported.setStatus(row.getStatus() == null ? "" : row.getStatus().trim().toUpperCase(Locale.ROOT));
+        imported.setNotes(truncate(row.getNotes()));
+        return imported;
+    }
+
+    private void applyCells(T row, Map<Integer, String> cells) {
+        cells.forEach((column, value) -> {
+            if (column == columns.status()) {
+                row.setStatus(value);
+            } else if (column == columns.notes()) {
+                row.setNotes(value);
+            } else if (column == columns.lastProcessed()) {
+                row.setLastProcessed(value);
+            } else if (column == columns.completedDate()) {
+                row.setCompletedDate(value);
+            }
+        });
+    }
+
+    private static String truncate(String value) {
+        return value != null && value.length() > MAX_NOTES_LENGTH ? value.substring(0, MAX_NOTES_LENGTH) : value;
+    }
+}
@@ -0,0 +1,248 @@
+package com.knowledge.common.service;
+
+import com.knowledge.common.model.DigestEntry;
+import com.knowledge.common.model.MailRecipient;
+import com.knowledge.common.repository.DigestEntryRepository;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Opt-in daily digest that merges the topic, stock and learning emails into one message.
+ *
+ * With {@code app.mail.digest.enabled=true} the pipelines hand their rendered section HTML to
+ * {@link #collect} instead of sending their own email. The entries are stored in the
+ * {@code digest_entries} table and combined into one message with shared styling as soon as
+ * every pipeline in {@code app.mail.digest.pipelines} has reported for the day, or at the
+ * {@code app.mail.digest.cutoff-cron} cutoff with whatever has arrived. A section that arrives
+ * after today's cutoff or today's digest is sent right away in a digest of its own.
+ */
+@Service
+@Slf4j
+public class DailyDigestService {
+
+    public static final String PIPELINE = "digest";
+
+    private static final String PAGE_TEMPLATE = "daily-digest-email-template.html";
+    private static final String SECTION_TEMPLATE = "daily-digest-section-template.html";
+
+    private static final Map<String, String> SECTION_LABELS = Map.of(
+        "topic", "📋 Topic Overview",
+        "stock", "📈 Stock Knowledge",
+        "learning", "🚀 Learning Path");
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("MMMM dd, yyyy");
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final DigestEntryRepository digestRepository;
+    private final MailRecipientService recipientService;
+    private final RecipientFanOutService fanOut;
+    private final EmailTemplateEngine templateEngine;
+    private final JavaMailSender mailSender;
+
+    private final boolean digestEnabled;
+    private final List<String> pipelines;
+    private final ZoneId zone;
+    private final CronExpression cutoff;
+    private final String fromEmail;
+
+    public DailyDigestService(DigestEntryRepository digestRepository,
+                              MailRecipientService recipientService,
+                              RecipientFanOutService fanOut,
+                              EmailTemplateEngine templateEngine,
+                              JavaMailSender mailSender,
+                              @Value("${app.mail.digest.enabled:false}") boolean digestEnabled,
+                              @Value("${app.mail.digest.pipelines:topic,stock,learning}") List<String> pipelines,
+                              @Value("${app.mail.digest.zone:Asia/Ho_Chi_Minh}") String zone,
+                              @Value("${app.mail.digest.cutoff-cron:0 0 8 * * *}") String cutoffCron,
+                              @Value("${app.mail-from}") String fromEmail) {
+        this.digestRepository = digestRepository;
+        this.recipientService = recipientService;
+        this.fanOut = fanOut;
+        this.templateEngine = templateEngine;
+        this.mailSender = mailSender;
+        this.digestEnabled = digestEnabled;
+        this.pipelines = pipelines.stream().map(String::trim).filter(p -> !p.isEmpty()).toList();
+        this.zone = ZoneId.of(zone);
+        this.cutoff = Scheduled.CRON_DISABLED.equals(cutoffCron) ? null : CronExpression.parse(cutoffCron);
+        this.fromEmail = fromEmail;
+    }
+
+    /**
+     * Whether the pipeline's output goes into the digest instead of its own email
+     */
+    public boolean isEnabledFor(String pipeline) {
+        return digestEnabled && pipelines.contains(pipeline);
+    }
+
+    /**
+     * Store a pipeline's section for today's digest and send the digest once every pipeline has
+     * reported, or at once when today's cutoff or digest has already gone by
+     */
+    @Transactional
+    public void collect(List<DigestEntry> entries) {
+        LocalDate today = LocalDate.now(zone);
+        for (DigestEntry entry : entries) {
+            entry.setDigestDate(today);
+        }
+        digestRepository.saveAll(entries);
+        log.info("🗂️ Collected {} {} section(s) for the {} digest", entries.size(),
+            entries.isEmpty() ? "" : entries.get(0).getPipeline(), today);
+
+        if (cutoffPassed(today) || digestRepository.existsByDigestDateAndDeliveredTrue(today)) {
+            log.info("📬 Today's digest has gone out or its cutoff has passed - sending the late section(s) now");
+            flush(today);
+            return;
+        }
+
+        List<String> reported = digestRepository.findPendingPipelines(today);
+        if (reported.containsAll(pipelines)) {
+            log.info("📬 All digest pipelines {} reported - sending today's digest", pipelines);
+            flush(today);
+        } else {
+            log.info("⏳ Digest waiting for {}", pipelines.stream().filter(p -> !reported.contains(p)).toList());
+        }
+    }
+
+    /**
+     * Send today's digest (and any left over from earlier days) with whatever has arrived
+     */
+    @Scheduled(cron = "${app.mail.digest.cutoff-cron:0 0 8 * * *}", zone = "${app.mail.digest.zone:Asia/Ho_Chi_Minh}")
+    @Transactional
+    public void flushAtCutoff() {
+        if (!digestEnabled) {
+            return;
+        }
+        for (LocalDate date : digestRepository.findPendingDatesUpTo(LocalDate.now(zone))) {
+            log.info("⏰ Digest cutoff reached for {} - sending with the sections collected so far", date);
+            flush(date);
+        }
+    }
+
+    /**
+     * Combine the undelivered entries of the day and queue one digest per recipient
+     *
+     * @return number of digest emails queued
+     */
+    @Transactional
+    public int flush(LocalDate date) {
+        LocalDateTime now = LocalDateTime.now();
+        // Claim the entries so a concurrent flush (cutoff vs. last pipeline) cannot send them twice
+        List<DigestEntry> entries = digestRepository.findByDigestDateAndDeliveredFalseOrderByIdAsc(date).stream()
+            .filter(entry -> digestRepository.markDelivered(entry.getId(), now) == 1)
+            .toList();
+        if (entries.isEmpty()) {
+            return 0;
+        }
+
+        List<MailRecipient> recipients = recipientService.findActive().stream()
+            .filter(recipient -> entries.stream().anyMatch(entry -> accepts(recipient, entry)))
+            .toList();
+
+        Map<String, Object> sharedValues = new HashMap<>();
+        sharedValues.put("DATE", date.format(DATE_FORMATTER));
+        sharedValues.put("TIMESTAMP", LocalDateTime.now().format(TIME_FORMATTER));
+        sharedValues.put("MAIL_FROM", fromEmail);
+
+        int queued = fanOut.deliver(PIPELINE, recipients, recipient -> buildMessage(date, entries, sharedValues, recipient));
+        log.info("✅ Daily digest for {} queued for {} recipient(s) with {} section(s)", date, queued, entries.size());
+        return queued;
+    }
+
+    /**
+     * Whether the first cutoff of the day has gone by
+     */
+    private boolean cutoffPassed(LocalDate today) {
+        if (cutoff == null) {
+            return false;
+        }
+        ZonedDateTime first = cutoff.next(today.atStartOfDay(zone).minusNanos(1));
+        return first != null && first.toLocalDate().equals(today) && !first.isAfter(ZonedDateTime.now(zone));
+    }
+
+    private MimeMessage buildMessage(LocalDate date, List<DigestEntry> entries, Map<String, Object> sharedValues,
+                                     MailRecipient recipient) throws MessagingException {
+        // Group the recipient's entries by pipeline, in the configured pipeline order
+        Map<String, List<DigestEntry>> sections = new LinkedHashMap<>();
+        for (String pipeline : pipelines) {
+            List<DigestEntry> pipelineEntries = entries.stream()
+                .filter(entry -> entry.getPipeline().equals(pipeline) && accepts(recipient, entry))
+                .toList();
+            if (!pipelineEntries.isEmpty()) {
+                sections.put(pipeline, pipelineEntries);
+            }
+        }
+
+        String sectionSummary = sections.keySet().stream()
+            .map(pipeline -> SECTION_LABELS.getOrDefault(pipeline, pipeline))
+            .collect(Collectors.joining(", "));
+
+        Map<String, Object> values = RecipientFanOutService.personalize(sharedValues, recipient);
+        values.put("SECTION_SUMMARY", sectionSummary);
+        values.put("SECTIONS", (CompiledTemplate.Fragment) out -> {
+            for (Map.Entry<String, List<DigestEntry>> section : sections.entrySet()) {
+                templateEngine.render(SECTION_TEMPLATE, sectionValues(section.getKey(), section.getValue()), out);
+            }
+        });
+
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+
+        helper.setFrom(fromEmail);
+        helper.setTo(recipient.getEmail());
+        helper.setSubject("📬 Daily Digest - " + date.format(DATE_FORMATTER));
+        helper.getMimeMultipart().addBodyPart(templateEngine.createHtmlPart(PAGE_TEMPLATE, values));
+
+        for (List<DigestEntry> sectionEntries : sections.values()) {
+            for (DigestEntry entry : sectionEntries) {
+                if (entry.hasAttachment()) {
+                    helper.addAttachment(entry.getAttachmentName(), new ByteArrayResource(entry.getAttachmentContent()),
+                        entry.getAttachmentContentType());
+                }
+            }
+        }
+        return message;
+    }
+
+    private Map<String, Object> sectionValues(String pipeline, List<DigestEntry> entries) {
+        List<String> titles = new ArrayList<>(entries.size());
+        for (DigestEntry entry : entries) {
+            titles.add(entry.getTitle());
+        }
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("PIPELINE", pipeline);
+        values.put("LABEL", SECTION_LABELS.getOrDefault(pipeline, pipeline));
+        values.put("TITLE", String.join(" · ", titles));
+        values.put("BODY", (CompiledTemplate.Fragment) out -> {
+            for (DigestEntry entry : entries) {
+                out.append(entry.getHtmlContent()).append('\n');
+            }
+        });
+        return values;
+    }
+
+    private static boolean accepts(MailRecipient recipient, DigestEntry entry) {
+        return recipient.isSubscribedTo(entry.getPipeline()) && recipient.acceptsLevel(entry.getLevel());
+    }
+}
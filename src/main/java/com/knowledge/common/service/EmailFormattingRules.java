@@ -0,0 +1,69 @@
+package com.knowledge.common.service;
+
+import com.knowledge.common.service.GuardedTextProcessor.RegexRule;
+
+/**
+ * Regex rules shared by the topic, learning and stock emails for formatting AI section text.
+ *
+ * The rules run through {@link GuardedTextProcessor}; {@link MarkdownRenderer} is the linear
+ * fallback for the Markdown rules.
+ */
+public final class EmailFormattingRules {
+
+    public static final RegexRule[] MARKDOWN_RULES = {
+        RegexRule.of("\\*\\*([^*]+)\\*\\*", "<strong>$1</strong>"),  // **bold** to <strong>
+        RegexRule.of("\\*([^*]+)\\*", "<em>$1</em>"),                // *italic* to <em>
+        RegexRule.of("(?m)^#{3}\\s+(.+)$", "<h4>$1</h4>"),          // ### to h4
+        RegexRule.of("(?m)^#{2}\\s+(.+)$", "<h3>$1</h3>"),          // ## to h3
+        RegexRule.of("(?m)^- (.+)$", "<li>$1</li>"),                 // - item to <li>
+        RegexRule.of("(?m)^\\d+\\. (.+)$", "<li>$1</li>"),           // 1. item to <li>
+        RegexRule.of("\\n\\n", "</p>\n<p>"),                         // Double newlines to paragraphs
+        RegexRule.of("\\n", "<br>\n")                                 // Single newlines to breaks
+    };
+
+    public static final RegexRule[] LIST_WRAP_RULES = {
+        RegexRule.of("(<li>.*?</li>)", "<ul>$1</ul>"),
+        RegexRule.of("</ul>\\s*<ul>", "")                            // Merge consecutive ul tags
+    };
+
+    public static final RegexRule[] HTML_CLEANUP_RULES = {
+        RegexRule.of("<p></p>", ""),
+        RegexRule.of("<p>\\s*<h([1-6])>", "<h$1>"),
+        RegexRule.of("</h([1-6])>\\s*</p>", "</h$1>")
+    };
+
+    public static final RegexRule[] JSON_FENCE_RULES = {
+        RegexRule.of("```json\\s*", ""),
+        RegexRule.of("```\\s*$", "")
+    };
+
+    private EmailFormattingRules() {
+    }
+
+    /**
+     * Linear equivalent of {@link #JSON_FENCE_RULES}: drops every {@code ```json} opening fence with
+     * the whitespace after it, and a closing fence at the end of the text
+     */
+    public static String stripJsonFences(String text) {
+        StringBuilder out = new StringBuilder(text.length());
+        int from = 0;
+        int fence;
+        while ((fence = text.indexOf("```json", from)) >= 0) {
+            out.append(text, from, fence);
+            from = fence + 7;
+            while (from < text.length() && GuardedTextProcessor.isRegexWhitespace(text.charAt(from))) {
+                from++;
+            }
+        }
+        out.append(text, from, text.length());
+
+        int end = out.length();
+        while (end > 0 && GuardedTextProcessor.isRegexWhitespace(out.charAt(end - 1))) {
+            end--;
+        }
+        if (end >= 3 && out.lastIndexOf("```", end - 3) == end - 3) {
+            out.setLength(end - 3);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,530 @@
+package com.knowledge.common.service;
+
+import com.knowledge.common.model.EmailOutboxMessage;
+import com.knowledge.common.model.OutboxStatus;
+import com.knowledge.common.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Durable outbox for all outgoing pipeline emails.
+ *
+ * {@link #submit} serializes the fully rendered message into the {@code email_outbox} table
+ * inside the caller's transaction, so the email is recorded together with the status update
+ * that produced it and processing never waits on SMTP. A scheduled dispatcher claims due
+ * messages and hands them to a small worker pool that sends through the
+ * {@link PooledMailTransport}; failed sends are retried with exponential backoff until
+ * {@code app.mail.outbox.max-attempts} is reached.
+ *
+ * Sends are paced by the {@link MailRateLimiter}: each claimed message is scheduled into its
+ * quota slot, and a message the server throttles goes back to the queue for when the pause
+ * ends without using up one of its attempts.
+ */
+@Service
+@Slf4j
+public class EmailOutboxService {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final EmailOutboxRepository outboxRepository;
+    private final PooledMailTransport mailTransport;
+    private final JavaMailSenderImpl mailSender;
+    private final MailRateLimiter rateLimiter;
+
+    private final boolean outboxEnabled;
+    private final int workerThreads;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final int maxThrottleDeferrals;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration claimTimeout;
+    private final Duration pollInterval;
+
+    private final ScheduledExecutorService workers;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Counter messagesQueued;
+    private final Counter messagesSent;
+    private final Counter messagesRetried;
+    private final Counter messagesFailed;
+    private final Counter messagesThrottled;
+
+    public EmailOutboxService(EmailOutboxRepository outboxRepository,
+                              PooledMailTransport mailTransport,
+                              JavaMailSenderImpl mailSender,
+                              MailRateLimiter rateLimiter,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.mail.outbox.enabled:true}") boolean outboxEnabled,
+                              @Value("${app.mail.outbox.worker-threads:2}") int workerThreads,
+                              @Value("${app.mail.outbox.batch-size:20}") int batchSize,
+                              @Value("${app.mail.outbox.max-attempts:8}") int maxAttempts,
+                              @Value("${app.mail.outbox.initial-backoff-seconds:30}") long initialBackoffSeconds,
+                              @Value("${app.mail.outbox.max-backoff-seconds:3600}") long maxBackoffSeconds,
+                              @Value("${app.mail.outbox.claim-timeout-seconds:600}") long claimTimeoutSeconds,
+                              @Value("${app.mail.outbox.poll-interval-ms:5000}") long pollIntervalMillis,
+                              @Value("${app.mail.quota.max-throttle-deferrals:10}") int maxThrottleDeferrals) {
+        this.outboxRepository = outboxRepository;
+        this.mailTransport = mailTransport;
+        this.mailSender = mailSender;
+        this.rateLimiter = rateLimiter;
+        this.outboxEnabled = outboxEnabled;
+        this.workerThreads = Math.max(1, workerThreads);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.maxThrottleDeferrals = Math.max(0, maxThrottleDeferrals);
+        this.initialBackoff = Duration.ofSeconds(Math.max(1, initialBackoffSeconds));
+        this.maxBackoff = Duration.ofSeconds(Math.max(initialBackoffSeconds, maxBackoffSeconds));
+        this.claimTimeout = Duration.ofSeconds(claimTimeoutSeconds);
+        this.pollInterval = Duration.ofMillis(Math.max(1, pollIntervalMillis));
+        this.workers = Executors.newScheduledThreadPool(this.workerThreads, new CustomizableThreadFactory("mail-outbox-"));
+
+        this.messagesQueued = Counter.builder("mail.outbox.queued")
+            .description("Emails written to the outbox")
+            .register(meterRegistry);
+        this.messagesSent = Counter.builder("mail.outbox.sent")
+            .description("Outbox emails accepted by the SMTP server")
+            .register(meterRegistry);
+        this.messagesRetried = Counter.builder("mail.outbox.retried")
+            .description("Outbox send attempts that failed and were rescheduled")
+            .register(meterRegistry);
+        this.messagesFailed = Counter.builder("mail.outbox.failed")
+            .description("Outbox emails abandoned after the maximum number of attempts")
+            .register(meterRegistry);
+        this.messagesThrottled = Counter.builder("mail.outbox.throttled")
+            .description("Outbox sends deferred because the mail server throttled them")
+            .register(meterRegistry);
+        Gauge.builder("mail.outbox.pending", outboxRepository, repository -> repository.countByStatus(OutboxStatus.PENDING))
+            .description("Emails waiting in the outbox")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Fully rendered message ready to be queued
+     */
+    public record PreparedEmail(MimeMessage message, String subject, String recipients, byte[] content) {
+    }
+
+    /**
+     * Queue and quota state; {@code projectedCompletion} is when the last pending message is
+     * expected to go out at the configured quotas
+     */
+    public record QueueStatus(boolean outboxEnabled, long pending, long sending, long sentLastMinute,
+                              long sentLastDay, int perMinuteQuota, int perDayQuota,
+                              LocalDateTime pausedUntil, LocalDateTime projectedCompletion) {
+    }
+
+    /**
+     * Record the message for asynchronous delivery as part of the current transaction.
+     *
+     * With {@code app.mail.outbox.enabled=false} the message is sent immediately instead.
+     */
+    @Transactional
+    public void submit(String pipeline, MimeMessage message) {
+        submitAll(pipeline, List.of(prepare(message)));
+    }
+
+    /**
+     * Render and serialize a message without touching the database, so it can run on any thread
+     */
+    public PreparedEmail prepare(MimeMessage message) {
+        try {
+            byte[] content = null;
+            if (outboxEnabled) {
+                // Render templates and encode attachments now; the stored bytes are sent as-is
+                message.saveChanges();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+                message.writeTo(out);
+                content = out.toByteArray();
+            }
+            return new PreparedEmail(message, message.getSubject(), formatRecipients(message.getAllRecipients()), content);
+        } catch (MessagingException | IOException e) {
+            throw new MailPreparationException("Failed to serialize email for the outbox: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Record prepared messages for asynchronous delivery as part of the current transaction.
+     *
+     * With {@code app.mail.outbox.enabled=false} the messages are sent immediately over one pooled connection.
+     */
+    @Transactional
+    public void submitAll(String pipeline, List<PreparedEmail> emails) {
+        submitAll(pipeline, emails, null);
+    }
+
+    /**
+     * Queue prepared messages tagged with the hash of their shared content, see {@link #isAlreadyDelivered}
+     */
+    @Transactional
+    public void submitAll(String pipeline, List<PreparedEmail> emails, String contentHash) {
+        if (emails.isEmpty()) {
+            return;
+        }
+        if (!outboxEnabled) {
+            mailTransport.send(emails.stream().map(PreparedEmail::message).toList());
+            return;
+        }
+
+        List<EmailOutboxMessage> outboxMessages = emails.stream()
+            .map(email -> new EmailOutboxMessage(pipeline, email.subject(), email.recipients(), email.content()))
+            .toList();
+        outboxMessages.forEach(message -> message.setContentHash(contentHash));
+        outboxRepository.saveAll(outboxMessages);
+        messagesQueued.increment(outboxMessages.size());
+
+        long bytes = outboxMessages.stream().mapToLong(message -> message.getMimeContent().length).sum();
+        String projection = projectionText();
+        if (outboxMessages.size() == 1) {
+            EmailOutboxMessage outboxMessage = outboxMessages.get(0);
+            log.info("📥 Queued {} email '{}' in outbox (#{}, {} bytes){}",
+                pipeline, outboxMessage.getSubject(), outboxMessage.getId(), bytes, projection);
+        } else {
+            log.info("📥 Queued {} {} emails '{}' in outbox ({} bytes){}",
+                outboxMessages.size(), pipeline, outboxMessages.get(0).getSubject(), bytes, projection);
+        }
+    }
+
+    public QueueStatus getQueueStatus() {
+        long pending = outboxRepository.countByStatus(OutboxStatus.PENDING);
+        long sending = outboxRepository.countByStatus(OutboxStatus.SENDING);
+        LocalDateTime now = LocalDateTime.now();
+        return new QueueStatus(outboxEnabled, pending, sending,
+            outboxRepository.countByStatusAndSentAtAfter(OutboxStatus.SENT, now.minusMinutes(1)),
+            outboxRepository.countByStatusAndSentAtAfter(OutboxStatus.SENT, now.minusDays(1)),
+            rateLimiter.getPerMinute(), rateLimiter.getPerDay(),
+            toLocal(rateLimiter.pausedUntil()), toLocal(rateLimiter.projectCompletion(pending + sending)));
+    }
+
+    /**
+     * Whether a message with this content hash is queued or was sent to the recipient.
+     *
+     * Always false with {@code app.mail.outbox.enabled=false}, since direct sends are not recorded.
+     */
+    public boolean isAlreadyDelivered(String contentHash, String recipient) {
+        return outboxEnabled && contentHash != null
+            && outboxRepository.existsByContentHashAndRecipientsIgnoreCaseAndStatusNot(contentHash, recipient, OutboxStatus.FAILED);
+    }
+
+    /**
+     * Hand due messages to the worker pool
+     */
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-interval-ms:5000}")
+    public void dispatchDueMessages() {
+        if (!outboxEnabled) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        int released = outboxRepository.releaseStaleClaims(now.minus(claimTimeout));
+        if (released > 0) {
+            log.warn("⚠️ Returned {} outbox email(s) with expired claims to the queue", released);
+        }
+
+        // Keep at most two messages per worker in flight so claims do not outlive a slow SMTP server
+        int capacity = Math.min(batchSize, workerThreads * 2 - inFlight.get());
+        if (capacity <= 0) {
+            return;
+        }
+
+        List<Long> dueIds = outboxRepository.findDueIds(OutboxStatus.PENDING, now, PageRequest.of(0, capacity));
+        if (dueIds.isEmpty()) {
+            return;
+        }
+
+        // Only claim what the quota allows before the next poll; each send waits for its slot
+        List<Instant> slots = rateLimiter.reserve(dueIds.size(), pollInterval);
+        for (int i = 0; i < slots.size(); i++) {
+            Long id = dueIds.get(i);
+            Instant slot = slots.get(i);
+            if (outboxRepository.claim(id, LocalDateTime.now()) == 1) {
+                inFlight.incrementAndGet();
+                long delay = Math.max(0, slot.toEpochMilli() - System.currentTimeMillis());
+                workers.schedule(() -> deliver(id, slot), delay, TimeUnit.MILLISECONDS);
+            } else {
+                // Claimed elsewhere or no longer pending
+                rateLimiter.release(slot);
+            }
+        }
+    }
+
+    /**
+     * Messages claimed before a shutdown or crash can be retried right away after a restart
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverClaimsAfterRestart() {
+        if (!outboxEnabled) {
+            return;
+        }
+        int released = outboxRepository.releaseStaleClaims(LocalDateTime.now());
+        if (rateLimiter.isLimited()) {
+            rateLimiter.seed(outboxRepository.findSentAtAfter(OutboxStatus.SENT, LocalDateTime.now().minusDays(1)).stream()
+                .map(sentAt -> sentAt.atZone(ZoneId.systemDefault()).toInstant())
+                .toList());
+        }
+        long pending = outboxRepository.countByStatus(OutboxStatus.PENDING);
+        log.info("📮 Email outbox ready: {} pending message(s){}{}", pending,
+            released > 0 ? ", " + released + " recovered from the previous run" : "", projectionText());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("⚠️ Outbox workers still sending at shutdown; their messages will be retried after restart");
+            workers.shutdownNow();
+        }
+    }
+
+    private void deliver(Long id, Instant slot) {
+        try {
+            EmailOutboxMessage outboxMessage = send(id, slot);
+            if (outboxMessage != null) {
+                // The message is out; nothing from here on may send it again
+                rateLimiter.recordSent();
+                markSent(outboxMessage);
+            }
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Send the message in its quota slot; a failure is recorded and rescheduled here, and the
+     * slot is released unless the server accepted the message
+     *
+     * @return the sent message, null when it was not sent
+     */
+    private EmailOutboxMessage send(Long id, Instant slot) {
+        EmailOutboxMessage outboxMessage = null;
+        try {
+            outboxMessage = outboxRepository.findById(id).orElse(null);
+            if (outboxMessage == null) {
+                rateLimiter.release(slot);
+                return null;
+            }
+
+            Instant pausedUntil = rateLimiter.pausedUntil();
+            if (pausedUntil != null) {
+                // Throttled while this message waited for its slot
+                rateLimiter.release(slot);
+                defer(outboxMessage, pausedUntil, outboxMessage.getLastError());
+                return null;
+            }
+
+            outboxMessage.setAttempts(outboxMessage.getAttempts() + 1);
+            mailTransport.send(restore(outboxMessage));
+            return outboxMessage;
+        } catch (Exception e) {
+            if (!acceptedBySomeRecipient(e)) {
+                rateLimiter.release(slot);
+            }
+            if (outboxMessage != null) {
+                recordFailure(outboxMessage, e);
+            } else {
+                log.error("❌ Failed to load outbox email #{}: {}", id, e.getMessage(), e);
+            }
+            return null;
+        }
+    }
+
+    private void markSent(EmailOutboxMessage outboxMessage) {
+        outboxMessage.setStatus(OutboxStatus.SENT);
+        outboxMessage.setSentAt(LocalDateTime.now());
+        outboxMessage.setClaimedAt(null);
+        outboxMessage.setLastError(null);
+        try {
+            outboxRepository.save(outboxMessage);
+        } catch (Exception e) {
+            // Never rescheduled from here: at worst the claim expires and the message goes out again
+            log.error("❌ Sent {} email '{}' (#{}) but could not mark it sent: {}", outboxMessage.getPipeline(),
+                outboxMessage.getSubject(), outboxMessage.getId(), e.getMessage(), e);
+            return;
+        }
+        messagesSent.increment();
+
+        log.info("📬 Sent {} email '{}' from outbox (#{}, attempt {})",
+            outboxMessage.getPipeline(), outboxMessage.getSubject(), outboxMessage.getId(), outboxMessage.getAttempts());
+    }
+
+    private void recordFailure(EmailOutboxMessage outboxMessage, Exception error) {
+        if (MailRateLimiter.isThrottling(error) && outboxMessage.getThrottleDeferrals() < maxThrottleDeferrals) {
+            // Not a problem with the message, so the attempt does not count; past the cap the
+            // reply is treated as an ordinary failure, so the message cannot be deferred forever
+            outboxMessage.setAttempts(outboxMessage.getAttempts() - 1);
+            outboxMessage.setThrottleDeferrals(outboxMessage.getThrottleDeferrals() + 1);
+            messagesThrottled.increment();
+            defer(outboxMessage, rateLimiter.recordThrottled(error.getMessage()), truncate(error.getMessage()));
+            return;
+        }
+
+        outboxMessage.setClaimedAt(null);
+        outboxMessage.setLastError(truncate(error.getMessage()));
+
+        if (outboxMessage.getAttempts() >= maxAttempts) {
+            outboxMessage.setStatus(OutboxStatus.FAILED);
+            messagesFailed.increment();
+            log.error("❌ Giving up on {} email '{}' (#{}) after {} attempts: {}", outboxMessage.getPipeline(),
+                outboxMessage.getSubject(), outboxMessage.getId(), outboxMessage.getAttempts(), error.getMessage());
+        } else {
+            Duration delay = backoff(outboxMessage.getAttempts());
+            outboxMessage.setStatus(OutboxStatus.PENDING);
+            outboxMessage.setNextAttemptAt(LocalDateTime.now().plus(delay));
+            messagesRetried.increment();
+            log.warn("⚠️ Sending {} email '{}' (#{}) failed on attempt {}/{}, retrying in {}s: {}",
+                outboxMessage.getPipeline(), outboxMessage.getSubject(), outboxMessage.getId(),
+                outboxMessage.getAttempts(), maxAttempts, delay.toSeconds(), error.getMessage());
+        }
+
+        try {
+            outboxRepository.save(outboxMessage);
+        } catch (Exception e) {
+            // The claim expires and the message is picked up again
+            log.error("❌ Failed to record outbox failure for #{}: {}", outboxMessage.getId(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Whether the server took the message for some of its recipients before the send failed,
+     * so the send counts against the quota
+     */
+    private static boolean acceptedBySomeRecipient(Throwable error) {
+        for (Throwable current = error; current != null; ) {
+            if (current instanceof MailSendException mailSendException
+                && Arrays.stream(mailSendException.getMessageExceptions()).anyMatch(EmailOutboxService::acceptedBySomeRecipient)) {
+                return true;
+            }
+            if (current instanceof SendFailedException sendFailed && sendFailed.getValidSentAddresses() != null
+                && sendFailed.getValidSentAddresses().length > 0) {
+                return true;
+            }
+            Throwable next = current instanceof MessagingException messagingException
+                ? messagingException.getNextException() : current.getCause();
+            current = next != current ? next : null;
+        }
+        return false;
+    }
+
+    /**
+     * Return the message to the queue until the throttling pause ends
+     */
+    private void defer(EmailOutboxMessage outboxMessage, Instant until, String reason) {
+        outboxMessage.setStatus(OutboxStatus.PENDING);
+        outboxMessage.setClaimedAt(null);
+        outboxMessage.setNextAttemptAt(toLocal(until));
+        outboxMessage.setLastError(reason);
+        try {
+            outboxRepository.save(outboxMessage);
+            log.info("⏸️ Deferred {} email '{}' (#{}) until {}", outboxMessage.getPipeline(),
+                outboxMessage.getSubject(), outboxMessage.getId(), outboxMessage.getNextAttemptAt().format(TIME_FORMATTER));
+        } catch (Exception e) {
+            // The claim expires and the message is picked up again
+            log.error("❌ Failed to defer outbox email #{}: {}", outboxMessage.getId(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Projected completion of the queue for log lines, empty when it is not worth mentioning
+     */
+    private String projectionText() {
+        if (!rateLimiter.isLimited()) {
+            return "";
+        }
+        long queued = outboxRepository.countByStatus(OutboxStatus.PENDING) + outboxRepository.countByStatus(OutboxStatus.SENDING);
+        Instant completion = rateLimiter.projectCompletion(queued);
+        if (queued == 0 || completion.isBefore(Instant.now().plusSeconds(60))) {
+            return "";
+        }
+        return ", queue of " + queued + " projected to finish by " + toLocal(completion).format(TIME_FORMATTER);
+    }
+
+    private static LocalDateTime toLocal(Instant instant) {
+        return instant != null ? LocalDateTime.ofInstant(instant, ZoneId.systemDefault()) : null;
+    }
+
+    /**
+     * Exponential backoff with up to 20% jitter so retries of a batch do not hit the server together
+     */
+    private Duration backoff(int attempts) {
+        long seconds = initialBackoff.toSeconds() << Math.min(attempts - 1, 20);
+        seconds = Math.min(seconds, maxBackoff.toSeconds());
+        long jitter = (long) (seconds * 0.2 * ThreadLocalRandom.current().nextDouble());
+        return Duration.ofSeconds(seconds + jitter);
+    }
+
+    private MimeMessage restore(EmailOutboxMessage outboxMessage) throws MessagingException {
+        try (InputStream in = new ByteArrayInputStream(outboxMessage.getMimeContent())) {
+            return new StoredMimeMessage(mailSender.getSession(), in);
+        } catch (IOException e) {
+            throw new MessagingException("Failed to read stored message", e);
+        }
+    }
+
+    private static String formatRecipients(Address[] recipients) {
+        if (recipients == null) {
+            return "";
+        }
+        return Arrays.stream(recipients).map(Address::toString).collect(Collectors.joining(","));
+    }
+
+    private static String truncate(String message) {
+        if (message == null || message.length() <= MAX_ERROR_LENGTH) {
+            return message;
+        }
+        return message.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    /**
+     * Stored message that is sent exactly as it was serialized. Its headers and parts were saved
+     * before it was stored, so saving again (which the transports do before every send) would only
+     * re-encode the parts and replace the Message-ID that retries must keep.
+     */
+    private static final class StoredMimeMessage extends MimeMessage {
+
+        private StoredMimeMessage(Session session, InputStream in) throws MessagingException {
+            super(session, in);
+        }
+
+        @Override
+        public void saveChanges() {
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.knowledge.common.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeBodyPart;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loads email HTML templates once and renders them from their compiled segments.
+ *
+ * Templates listed in {@code app.email.templates} are compiled at startup, others on first
+ * use. With {@code app.email.template-hot-reload=true} (development) the source is checked
+ * on every render and recompiled when its modification time changes; templates are read
+ * from {@code app.email.template-dir} when set, otherwise from the classpath.
+ *
+ * With {@code app.email.optimize=true} each template is passed through {@link TemplateOptimizer}
+ * before compiling: CSS is inlined where mail clients need it, comments and whitespace are removed,
+ * and the size reduction is logged at startup. The stylesheet keeps all of its rules unless
+ * {@code app.email.optimize.prune-rules=true}, which also drops the rules no static element or
+ * inserted content needs any more.
+ */
+@Service
+@Slf4j
+public class EmailTemplateEngine {
+
+    /**
+     * Classes that the email services add to generated content (HtmlFragmentExtractor, content
+     * formatting, section containers, greeting and digest notes); with rule pruning their rules
+     * must stay in the stylesheet even though no template contains them
+     */
+    private static final Set<String> GENERATED_CLASSES = Set.of(
+        "ai-generated-content", "block", "content-sections-grid", "json-content-section", "section-header",
+        "section-content", "content-separator", "algorithm-block", "coding-block", "reflection-block",
+        "resource-block", "definition-block", "example-block", "warning-block", "tip-block",
+        "email-section", "email-h1", "email-h2", "email-h3", "email-code-block", "email-content-block",
+        "subtitle", "digest-note", "task-list", "problem-section", "problem-title", "container", "header",
+        "daily-overview-container", "algorithm-guidance-container", "theory-explanation-container",
+        "coding-exercises-container", "reflection-prompts-container", "resources-next-container",
+        "introduction-container", "core-concepts-container", "examples-container", "next-steps-container",
+        "common-mistakes-container", "key-takeaways-container", "additional-resources-container");
+
+    private static final Set<String> GENERATED_CLASS_PREFIXES = Set.of("language-", "level-");
+
+    private final Map<String, CompiledTemplate> templates = new ConcurrentHashMap<>();
+    private final Map<String, String> sources = new ConcurrentHashMap<>();
+    private final Map<String, TemplateOptimizer.Report> optimizationReports = new ConcurrentHashMap<>();
+
+    private final List<String> preloadTemplates;
+    private final boolean hotReload;
+    private final String templateDir;
+    private final String transferEncoding;
+    private final boolean optimize;
+    private final boolean pruneRules;
+    private final Set<String> extraDynamicClasses;
+    private final String optimizeOutputDir;
+
+    public EmailTemplateEngine(@Value("${app.email.templates:}") List<String> preloadTemplates,
+                               @Value("${app.email.template-hot-reload:false}") boolean hotReload,
+                               @Value("${app.email.template-dir:}") String templateDir,
+                               @Value("${app.email.transfer-encoding:quoted-printable}") String transferEncoding,
+                               @Value("${app.email.optimize:true}") boolean optimize,
+                               @Value("${app.email.optimize.prune-rules:false}") boolean pruneRules,
+                               @Value("${app.email.optimize.dynamic-classes:}") List<String> extraDynamicClasses,
+                               @Value("${app.email.optimize.output-dir:}") String optimizeOutputDir) {
+        this.preloadTemplates = preloadTemplates;
+        this.hotReload = hotReload;
+        this.templateDir = templateDir;
+        this.transferEncoding = transferEncoding;
+        this.optimize = optimize;
+        this.pruneRules = pruneRules;
+        this.extraDynamicClasses = new HashSet<>();
+        extraDynamicClasses.stream().map(String::trim).filter(c -> !c.isEmpty()).forEach(this.extraDynamicClasses::add);
+        this.optimizeOutputDir = optimizeOutputDir;
+    }
+
+    @PostConstruct
+    void preload() {
+        // Read every source first so each template is optimized knowing the classes the others use
+        for (String name : preloadTemplates) {
+            if (!name.isBlank()) {
+                sources.put(name.trim(), read(name.trim(), resolve(name.trim())));
+            }
+        }
+        for (String name : preloadTemplates) {
+            if (!name.isBlank()) {
+                getTemplate(name.trim());
+            }
+        }
+        log.info("🎨 Email template engine ready: {} template(s) compiled{}", templates.size(),
+            hotReload ? " (hot reload enabled)" : "");
+        if (optimize && !optimizationReports.isEmpty()) {
+            int original = optimizationReports.values().stream().mapToInt(TemplateOptimizer.Report::originalBytes).sum();
+            int optimized = optimizationReports.values().stream().mapToInt(TemplateOptimizer.Report::optimizedBytes).sum();
+            log.info("🗜️ Email templates optimized: {} → {} bytes in total", original, optimized);
+        }
+    }
+
+    /**
+     * Render a template into a new string
+     */
+    public String render(String templateName, Map<String, ?> values) {
+        return getTemplate(templateName).render(values);
+    }
+
+    /**
+     * Render a template straight into the given output
+     */
+    public void render(String templateName, Map<String, ?> values, Appendable out) throws IOException {
+        getTemplate(templateName).renderTo(values, out);
+    }
+
+    /**
+     * HTML body part whose content is rendered straight into the transport's encoding stream.
+     *
+     * The transfer encoding is fixed up front so JavaMail does not read the content to choose one;
+     * the template is rendered only when the message is written.
+     */
+    public MimeBodyPart createHtmlPart(String templateName, Map<String, ?> values) throws MessagingException {
+        return createHtmlPart(getTemplate(templateName), values);
+    }
+
+    /**
+     * Streaming HTML body part for an already compiled template (e.g. a cached rendered email)
+     */
+    public MimeBodyPart createHtmlPart(CompiledTemplate template, Map<String, ?> values) throws MessagingException {
+        TemplateDataSource source = new TemplateDataSource(template, values);
+
+        MimeBodyPart part = new MimeBodyPart();
+        part.setDataHandler(new StreamingDataHandler(source));
+        // setDataHandler clears the content headers, so set them afterwards
+        part.setHeader("Content-Type", source.getContentType());
+        part.setHeader("Content-Transfer-Encoding", transferEncoding);
+
+        log.debug("📄 Streaming HTML part prepared from {} (~{} characters)", template.getName(), source.estimateLength());
+        return part;
+    }
+
+    /**
+     * Compiled template, loading it on first use and reloading it when hot reload detects a change
+     */
+    public CompiledTemplate getTemplate(String templateName) {
+        CompiledTemplate template = templates.get(templateName);
+        if (template != null && (!hotReload || template.getLastModified() == lastModified(resolve(templateName)))) {
+            return template;
+        }
+
+        return templates.compute(templateName, (name, current) -> {
+            Resource resource = resolve(name);
+            long modified = lastModified(resource);
+            if (current != null && current.getLastModified() == modified) {
+                return current;
+            }
+            CompiledTemplate compiled = compile(name, resource, modified);
+            if (current != null) {
+                log.info("🔄 Reloaded email template {} ({} placeholders)", name, compiled.getPlaceholders().size());
+            } else {
+                log.debug("✅ Compiled email template {} ({} literal characters, placeholders {})",
+                    name, compiled.getLiteralLength(), compiled.getPlaceholders());
+            }
+            return compiled;
+        });
+    }
+
+    private CompiledTemplate compile(String name, Resource resource, long modified) {
+        String source = read(name, resource);
+        sources.put(name, source);
+        if (optimize) {
+            source = optimize(name, source);
+        }
+        return CompiledTemplate.compile(name, source, modified);
+    }
+
+    private String optimize(String name, String source) {
+        TemplateOptimizer.Result result = pruneRules
+            ? TemplateOptimizer.optimize(name, source, dynamicClasses(name))
+            : TemplateOptimizer.optimize(name, source);
+        TemplateOptimizer.Report report = result.report();
+        optimizationReports.put(name, report);
+
+        if (!report.equivalent()) {
+            log.warn("⚠️ Optimized {} differs from its source (text, structure or placeholders) - using the source as is", name);
+            return source;
+        }
+        log.info("🗜️ Optimized {}: {} → {} bytes (-{}%), {} rule(s) inlined, {} rule(s) removed", name,
+            report.originalBytes(), report.optimizedBytes(), String.format("%.1f", report.reductionPercent()),
+            report.inlinedRules(), report.removedRules());
+
+        if (optimizeOutputDir != null && !optimizeOutputDir.isBlank()) {
+            try {
+                Path target = Path.of(optimizeOutputDir, name);
+                Files.createDirectories(target.getParent());
+                Files.writeString(target, result.html(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                log.warn("⚠️ Could not write optimized template {}: {}", name, e.getMessage());
+            }
+        }
+        return result.html();
+    }
+
+    /**
+     * Classes that content inserted into this template may carry: those generated by code and
+     * those used by fragment templates (rendered into pages, e.g. topic cards into the digest)
+     */
+    private TemplateOptimizer.ClassVocabulary dynamicClasses(String templateName) {
+        TemplateOptimizer.ClassVocabulary vocabulary = new TemplateOptimizer.ClassVocabulary(
+            new HashSet<>(GENERATED_CLASSES), new HashSet<>(GENERATED_CLASS_PREFIXES));
+        vocabulary.classes().addAll(extraDynamicClasses);
+        for (Map.Entry<String, String> entry : sources.entrySet()) {
+            if (!entry.getKey().equals(templateName) && !TemplateOptimizer.isDocument(entry.getValue())) {
+                vocabulary = vocabulary.merge(TemplateOptimizer.ClassVocabulary.of(entry.getValue()));
+            }
+        }
+        return vocabulary;
+    }
+
+    private String read(String name, Resource resource) {
+        try (InputStream in = resource.getInputStream()) {
+            return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load email template " + name, e);
+        }
+    }
+
+    private Resource resolve(String name) {
+        if (templateDir != null && !templateDir.isBlank()) {
+            FileSystemResource file = new FileSystemResource(templateDir + "/" + name);
+            if (file.exists()) {
+                return file;
+            }
+        }
+        return new ClassPathResource(name);
+    }
+
+    private long lastModified(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            // Resources inside a jar have no usable modification time
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.knowledge.common.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs regex-based text processing on untrusted AI output with bounded cost.
+ *
+ * Every operation gets an input size cap derived from {@code app.ai.max-response-length},
+ * a character-step budget and a wall-clock budget. When a limit trips the operation is
+ * abandoned, the trip is counted in the {@code text.guard.trips} metric and the caller's
+ * degraded (linear-time) fallback is used instead.
+ */
+@Service
+@Slf4j
+public class GuardedTextProcessor {
+
+    private static final String TRIP_METRIC = "text.guard.trips";
+
+    // Check the clock only every N steps to keep charAt cheap
+    private static final int CLOCK_CHECK_INTERVAL = 4096;
+
+    private final MeterRegistry meterRegistry;
+    private final int maxInputLength;
+    private final long stepsPerChar;
+    private final long minSteps;
+    private final long timeBudgetNanos;
+
+    public GuardedTextProcessor(MeterRegistry meterRegistry,
+                                @Value("${app.ai.max-response-length:6000}") int maxResponseLength,
+                                @Value("${app.text-guard.input-length-multiplier:10}") int inputLengthMultiplier,
+                                @Value("${app.text-guard.steps-per-char:200}") long stepsPerChar,
+                                @Value("${app.text-guard.min-steps:1000000}") long minSteps,
+                                @Value("${app.text-guard.time-budget-ms:250}") long timeBudgetMs) {
+        this.meterRegistry = meterRegistry;
+        this.maxInputLength = maxResponseLength * Math.max(1, inputLengthMultiplier);
+        this.stepsPerChar = stepsPerChar;
+        this.minSteps = minSteps;
+        this.timeBudgetNanos = timeBudgetMs * 1_000_000L;
+    }
+
+    /**
+     * Run a guarded processing pipeline over the input.
+     *
+     * @param operation metric/log name of the operation
+     * @param input     text to process
+     * @param work      regex-based processing, which must route its regex calls through the given budget
+     * @param degraded  linear-time fallback used when the input is too large or a budget is exhausted
+     */
+    public String process(String operation, String input, Function<TextBudget, String> work, UnaryOperator<String> degraded) {
+        if (input == null) {
+            return null;
+        }
+
+        if (input.length() > maxInputLength) {
+            recordTrip(operation, "size", input.length());
+            return degraded.apply(input);
+        }
+
+        TextBudget budget = new TextBudget(operation, Math.max(minSteps, input.length() * stepsPerChar),
+            System.nanoTime() + timeBudgetNanos);
+        try {
+            return work.apply(budget);
+        } catch (BudgetExceededException e) {
+            recordTrip(operation, e.reason, input.length());
+            return degraded.apply(input);
+        }
+    }
+
+    /**
+     * Apply the rules in order to the input; on a limit trip the degraded fallback is applied
+     * instead. The fallback must do the same job in linear time; {@link UnaryOperator#identity()}
+     * only suits purely cosmetic passes, whose output nothing downstream depends on.
+     */
+    public String replaceAll(String operation, String input, UnaryOperator<String> degraded, RegexRule... rules) {
+        return process(operation, input, budget -> budget.replaceAll(input, rules), degraded);
+    }
+
+    /**
+     * Characters regex {@code \\s} matches, for linear fallbacks that mirror a rule
+     */
+    public static boolean isRegexWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Maximum input length accepted before the degraded path is taken
+     */
+    public int getMaxInputLength() {
+        return maxInputLength;
+    }
+
+    private void recordTrip(String operation, String reason, int inputLength) {
+        log.warn("⚠️ Text guard tripped for '{}' ({} limit, {} characters) - using degraded fallback",
+            operation, reason, inputLength);
+        Counter.builder(TRIP_METRIC)
+            .description("Text processing operations abandoned because a size, step or time limit was reached")
+            .tag("operation", operation)
+            .tag("reason", reason)
+            .register(meterRegistry)
+            .increment();
+    }
+
+    /**
+     * Precompiled regex replacement
+     */
+    public record RegexRule(Pattern pattern, String replacement) {
+
+        public static RegexRule of(String regex, String replacement) {
+            return new RegexRule(Pattern.compile(regex), replacement);
+        }
+    }
+
+    /**
+     * Step and time budget shared by all regex calls of one guarded operation
+     */
+    public static final class TextBudget {
+
+        private final String operation;
+        private final long deadline;
+        private long stepsLeft;
+        private int untilClockCheck = CLOCK_CHECK_INTERVAL;
+
+        private TextBudget(String operation, long steps, long deadline) {
+            this.operation = operation;
+            this.stepsLeft = steps;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Apply the rules in order, each one reading its input through this budget
+         */
+        public String replaceAll(String input, RegexRule... rules) {
+            String result = input;
+            for (RegexRule rule : rules) {
+                result = replaceAll(result, rule.pattern(), rule.replacement());
+            }
+            return result;
+        }
+
+        public String replaceAll(String input, Pattern pattern, String replacement) {
+            Matcher matcher = pattern.matcher(wrap(input));
+            return matcher.replaceAll(replacement);
+        }
+
+        /**
+         * Wrap text so every character access made by the regex engine is charged to this budget
+         */
+        public CharSequence wrap(String text) {
+            return new BudgetedCharSequence(text, this);
+        }
+
+        private void charge() {
+            if (--stepsLeft < 0) {
+                throw new BudgetExceededException("steps");
+            }
+            if (--untilClockCheck == 0) {
+                untilClockCheck = CLOCK_CHECK_INTERVAL;
+                if (System.nanoTime() > deadline) {
+                    throw new BudgetExceededException("time");
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "TextBudget[" + operation + ", stepsLeft=" + stepsLeft + "]";
+        }
+    }
+
+    private static final class BudgetedCharSequence implements CharSequence {
+
+        private final String text;
+        private final TextBudget budget;
+
+        private BudgetedCharSequence(String text, TextBudget budget) {
+            this.text = text;
+            this.budget = budget;
+        }
+
+        @Override
+        public char charAt(int index) {
+            budget.charge();
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    private static final class BudgetExceededException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String reason;
+
+        private BudgetExceededException(String reason) {
+            super("Text processing budget exceeded: " + reason, null, false, false);
+            this.reason = reason;
+        }
+    }
+}
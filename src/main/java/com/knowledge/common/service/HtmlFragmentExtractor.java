@@ -0,0 +1,325 @@
+package com.knowledge.common.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+
+/**
+ * Single-pass HTML tokenizer that turns an AI-generated HTML document into a fragment
+ * suitable for embedding in an email template.
+ *
+ * It keeps the body (or main) content, drops document chrome such as head, header and
+ * footer, and adds the email CSS classes to sections, headings and code blocks while
+ * writing everything into one output buffer.
+ */
+@Service
+@Slf4j
+public class HtmlFragmentExtractor {
+
+    private static final String WRAPPER_OPEN = "<div class=\"ai-generated-content\">\n";
+    private static final String WRAPPER_CLOSE = "</div>\n";
+
+    // Elements removed together with everything inside them
+    private static final Set<String> DROPPED_ELEMENTS = Set.of("head", "header", "footer", "script");
+
+    // Elements whose tags are removed but whose content is kept
+    private static final Set<String> UNWRAPPED_ELEMENTS = Set.of("html", "body");
+
+    /**
+     * Extract the content fragment and wrap it in the ai-generated-content container
+     */
+    public String extract(String html) {
+        if (html == null) {
+            return WRAPPER_OPEN + WRAPPER_CLOSE;
+        }
+
+        StringBuilder out = new StringBuilder(html.length() + WRAPPER_OPEN.length() + WRAPPER_CLOSE.length() + 256);
+        out.append(WRAPPER_OPEN);
+        int contentStart = out.length();
+
+        boolean bodySeen = false;
+        boolean mainSeen = false;
+        int contentEnd = -1;
+
+        String skipElement = null;
+        int skipDepth = 0;
+
+        int length = html.length();
+        int i = 0;
+        while (i < length) {
+            char c = html.charAt(i);
+
+            if (c != '<' || i + 1 >= length) {
+                if (skipElement == null) {
+                    appendText(out, contentStart, c);
+                }
+                i++;
+                continue;
+            }
+
+            char next = html.charAt(i + 1);
+
+            // Comments are copied verbatim (or skipped inside dropped elements)
+            if (html.startsWith("<!--", i)) {
+                int end = html.indexOf("-->", i + 4);
+                int stop = end < 0 ? length : end + 3;
+                if (skipElement == null) {
+                    out.append(html, i, stop);
+                }
+                i = stop;
+                continue;
+            }
+
+            // <!DOCTYPE ...> and other declarations are dropped
+            if (next == '!' || next == '?') {
+                i = findTagEnd(html, i + 2);
+                continue;
+            }
+
+            boolean closing = next == '/';
+            int nameStart = closing ? i + 2 : i + 1;
+            if (nameStart >= length || !Character.isLetter(html.charAt(nameStart))) {
+                // A literal '<' in text, not a tag
+                if (skipElement == null) {
+                    appendText(out, contentStart, c);
+                }
+                i++;
+                continue;
+            }
+
+            int nameEnd = nameStart;
+            while (nameEnd < length && isTagNameChar(html.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            String name = html.substring(nameStart, nameEnd).toLowerCase();
+            int tagEnd = findTagEnd(html, nameEnd);
+
+            if (skipElement != null) {
+                if (name.equals(skipElement)) {
+                    skipDepth += closing ? -1 : (isSelfClosing(html, tagEnd) ? 0 : 1);
+                    if (skipDepth == 0) {
+                        skipElement = null;
+                    }
+                }
+                i = tagEnd;
+                continue;
+            }
+
+            if (!closing && DROPPED_ELEMENTS.contains(name)) {
+                if (!isSelfClosing(html, tagEnd)) {
+                    skipElement = name;
+                    skipDepth = 1;
+                }
+                i = tagEnd;
+                continue;
+            }
+
+            if (UNWRAPPED_ELEMENTS.contains(name)) {
+                if (name.equals("body")) {
+                    if (!closing) {
+                        // Everything before the body is document chrome
+                        bodySeen = true;
+                        out.setLength(contentStart);
+                        contentEnd = -1;
+                    } else {
+                        contentEnd = out.length();
+                    }
+                }
+                i = tagEnd;
+                continue;
+            }
+
+            if (name.equals("main") && !bodySeen) {
+                if (!closing && !mainSeen) {
+                    mainSeen = true;
+                    out.setLength(contentStart);
+                    i = tagEnd;
+                    continue;
+                }
+                if (closing && mainSeen) {
+                    contentEnd = out.length();
+                }
+            }
+
+            if (closing) {
+                out.append(html, i, tagEnd);
+            } else {
+                appendStartTag(out, html, i, nameEnd, tagEnd, name);
+            }
+            i = tagEnd;
+        }
+
+        if (contentEnd >= 0) {
+            out.setLength(contentEnd);
+        }
+
+        // Trim trailing whitespace of the fragment
+        int end = out.length();
+        while (end > contentStart && Character.isWhitespace(out.charAt(end - 1))) {
+            end--;
+        }
+        out.setLength(end);
+        out.append(WRAPPER_CLOSE);
+
+        log.debug("✅ HTML fragment extracted ({} -> {} characters)", length, out.length());
+        return out.toString();
+    }
+
+    /**
+     * Append a text character, skipping leading whitespace of the fragment
+     */
+    private void appendText(StringBuilder out, int contentStart, char c) {
+        if (out.length() == contentStart && Character.isWhitespace(c)) {
+            return;
+        }
+        out.append(c);
+    }
+
+    /**
+     * Write a start tag, injecting the email CSS class where the template expects one
+     */
+    private void appendStartTag(StringBuilder out, String html, int tagStart, int nameEnd, int tagEnd, String name) {
+        String emailClass = switch (name) {
+            case "section" -> "email-section";
+            case "h1" -> "email-h1";
+            case "h2" -> "email-h2";
+            case "h3" -> "email-h3";
+            case "pre" -> "email-code-block";
+            case "div" -> "email-content-block";
+            default -> null;
+        };
+
+        if (emailClass == null) {
+            out.append(html, tagStart, tagEnd);
+            return;
+        }
+
+        // Locate an existing class="..." attribute inside the tag
+        int[] classValue = findClassValue(html, nameEnd, tagEnd);
+
+        if (name.equals("div")) {
+            // Only content blocks get the extra class
+            if (classValue == null || !hasClassToken(html, classValue[0], classValue[1], "block")) {
+                out.append(html, tagStart, tagEnd);
+                return;
+            }
+        }
+
+        if (classValue != null) {
+            out.append(html, tagStart, classValue[1]);
+            if (classValue[1] > classValue[0]) {
+                out.append(' ');
+            }
+            out.append(emailClass);
+            out.append(html, classValue[1], tagEnd);
+            return;
+        }
+
+        out.append(html, tagStart, nameEnd);
+        out.append(" class=\"").append(emailClass).append('"');
+        out.append(html, nameEnd, tagEnd);
+    }
+
+    /**
+     * Find the [start, end) range of the class attribute value, or null when absent
+     */
+    private int[] findClassValue(String html, int from, int tagEnd) {
+        int i = from;
+        while (i < tagEnd) {
+            char c = html.charAt(i);
+            if (!Character.isLetter(c)) {
+                i++;
+                continue;
+            }
+
+            int attrStart = i;
+            while (i < tagEnd && isTagNameChar(html.charAt(i))) {
+                i++;
+            }
+            boolean isClass = i - attrStart == 5 && html.regionMatches(true, attrStart, "class", 0, 5);
+
+            while (i < tagEnd && Character.isWhitespace(html.charAt(i))) {
+                i++;
+            }
+            if (i >= tagEnd || html.charAt(i) != '=') {
+                continue;
+            }
+            i++;
+            while (i < tagEnd && Character.isWhitespace(html.charAt(i))) {
+                i++;
+            }
+            if (i >= tagEnd) {
+                return null;
+            }
+
+            int valueStart;
+            int valueEnd;
+            char quote = html.charAt(i);
+            if (quote == '"' || quote == '\'') {
+                valueStart = i + 1;
+                valueEnd = html.indexOf(quote, valueStart);
+                if (valueEnd < 0 || valueEnd > tagEnd) {
+                    return null;
+                }
+                i = valueEnd + 1;
+            } else {
+                valueStart = i;
+                while (i < tagEnd && !Character.isWhitespace(html.charAt(i)) && html.charAt(i) != '>' && html.charAt(i) != '/') {
+                    i++;
+                }
+                valueEnd = i;
+            }
+
+            if (isClass) {
+                return new int[]{valueStart, valueEnd};
+            }
+        }
+        return null;
+    }
+
+    private boolean hasClassToken(String html, int start, int end, String token) {
+        int i = start;
+        while (i < end) {
+            while (i < end && Character.isWhitespace(html.charAt(i))) {
+                i++;
+            }
+            int tokenStart = i;
+            while (i < end && !Character.isWhitespace(html.charAt(i))) {
+                i++;
+            }
+            if (i - tokenStart == token.length() && html.regionMatches(tokenStart, token, 0, token.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the index just past the closing '>' of a tag, honouring quoted attribute values
+     */
+    private int findTagEnd(String html, int from) {
+        char quote = 0;
+        for (int i = from; i < html.length(); i++) {
+            char c = html.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i + 1;
+            }
+        }
+        return html.length();
+    }
+
+    private boolean isSelfClosing(String html, int tagEnd) {
+        return tagEnd >= 2 && html.charAt(tagEnd - 1) == '>' && html.charAt(tagEnd - 2) == '/';
+    }
+
+    private boolean isTagNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == ':';
+    }
+}
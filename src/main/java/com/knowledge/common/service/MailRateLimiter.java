@@ -0,0 +1,243 @@
+package com.knowledge.common.service;
+
+import jakarta.mail.MessagingException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Schedules outbox sends within the provider's sending quotas.
+ *
+ * {@code app.mail.quota.per-minute} and {@code app.mail.quota.per-day} are sliding windows
+ * (Gmail counts both that way); sends are spaced evenly across the minute instead of going out
+ * in bursts, and the daily quota caps them. When the server still answers with a throttling
+ * reply (421/450/451/454, 4.7.x, Gmail's 5.4.5 daily limit) all sends pause, starting at
+ * {@code app.mail.quota.throttle-pause-seconds} and doubling up to {@code max-pause-seconds}.
+ * A quota of 0 means no limit.
+ */
+@Service
+@Slf4j
+public class MailRateLimiter {
+
+    private static final long MINUTE_MILLIS = Duration.ofMinutes(1).toMillis();
+    private static final long DAY_MILLIS = Duration.ofDays(1).toMillis();
+
+    // Transient 4xx replies and Gmail's daily sending limit (550-5.4.5); any other 5xx, such as
+    // 552-5.2.2 (recipient over quota) or a size limit, is a permanent failure of the message
+    private static final Pattern THROTTLE_REPLY =
+        Pattern.compile("(?m)^\\s*(421|450|451|454)[ -]|\\b4\\.7\\.\\d{1,3}\\b|\\b5\\.4\\.5\\b");
+
+    private final int perMinute;
+    private final int perDay;
+    private final long spacingMillis;
+    private final Duration throttlePause;
+    private final Duration maxPause;
+
+    // Send times (past and reserved), ascending, covering the longest active window
+    private final List<Long> sendTimes = new ArrayList<>();
+    private long pausedUntil;
+    private int consecutiveThrottles;
+
+    public MailRateLimiter(@Value("${app.mail.quota.per-minute:0}") int perMinute,
+                           @Value("${app.mail.quota.per-day:0}") int perDay,
+                           @Value("${app.mail.quota.throttle-pause-seconds:60}") long throttlePauseSeconds,
+                           @Value("${app.mail.quota.max-pause-seconds:3600}") long maxPauseSeconds) {
+        this.perMinute = Math.max(0, perMinute);
+        this.perDay = Math.max(0, perDay);
+        this.spacingMillis = this.perMinute > 0 ? MINUTE_MILLIS / this.perMinute : 0;
+        this.throttlePause = Duration.ofSeconds(Math.max(1, throttlePauseSeconds));
+        this.maxPause = Duration.ofSeconds(Math.max(throttlePauseSeconds, maxPauseSeconds));
+    }
+
+    public boolean isLimited() {
+        return perMinute > 0 || perDay > 0;
+    }
+
+    public int getPerMinute() {
+        return perMinute;
+    }
+
+    public int getPerDay() {
+        return perDay;
+    }
+
+    /**
+     * Account for messages sent before a restart, so the daily quota is not used twice
+     */
+    public synchronized void seed(List<Instant> sentTimes) {
+        sentTimes.stream().map(Instant::toEpochMilli).forEach(sendTimes::add);
+        sendTimes.sort(null);
+        prune(System.currentTimeMillis());
+        if (!sendTimes.isEmpty()) {
+            log.info("🚦 Mail quota: {} send(s) in the current window (limits {}/min, {}/day)",
+                sendTimes.size(), limitText(perMinute), limitText(perDay));
+        }
+    }
+
+    /**
+     * Reserve send slots within the next {@code horizon}.
+     *
+     * @return the time of each granted slot, at most {@code wanted}; fewer (or none) when the
+     *         quota or a throttling pause leaves no room in the horizon. A slot that ends up
+     *         without a send is given back with {@link #release}.
+     */
+    public synchronized List<Instant> reserve(int wanted, Duration horizon) {
+        long now = System.currentTimeMillis();
+        List<Instant> slots = new ArrayList<>(Math.max(0, wanted));
+        if (!isLimited() && now >= pausedUntil) {
+            for (int i = 0; i < wanted; i++) {
+                slots.add(Instant.ofEpochMilli(now));
+            }
+            return slots;
+        }
+
+        prune(now);
+        long limit = now + horizon.toMillis();
+        long earliest = Math.max(now, pausedUntil);
+        for (int i = 0; i < wanted; i++) {
+            long slot = isLimited() ? nextSlot(sendTimes, earliest) : earliest;
+            if (slot > limit) {
+                break;
+            }
+            if (isLimited()) {
+                sendTimes.add(slot);
+            }
+            slots.add(Instant.ofEpochMilli(slot));
+            earliest = slot;
+        }
+        return slots;
+    }
+
+    /**
+     * Give back a reserved slot whose message the server did not accept (not claimed, deferred
+     * or failed), so it does not count against the quota
+     */
+    public synchronized void release(Instant slot) {
+        if (isLimited()) {
+            sendTimes.remove(Long.valueOf(slot.toEpochMilli()));
+        }
+    }
+
+    /**
+     * Projected time the last of {@code pending} queued messages is sent, given the quotas,
+     * the sends already in the window and any throttling pause
+     */
+    public synchronized Instant projectCompletion(long pending) {
+        long now = System.currentTimeMillis();
+        long earliest = Math.max(now, pausedUntil);
+        if (pending <= 0 || !isLimited()) {
+            return Instant.ofEpochMilli(earliest);
+        }
+
+        prune(now);
+        List<Long> simulated = new ArrayList<>(sendTimes);
+        int keep = Math.max(perMinute, perDay);
+        long slot = earliest;
+        for (long i = 0; i < pending; i++) {
+            slot = nextSlot(simulated, earliest);
+            simulated.add(slot);
+            earliest = slot;
+            if (simulated.size() > 2 * keep) {
+                simulated.subList(0, simulated.size() - keep).clear();
+            }
+        }
+        return Instant.ofEpochMilli(slot);
+    }
+
+    /**
+     * The server throttled a send: pause all sends, longer with every consecutive throttling reply
+     *
+     * @return when sending resumes
+     */
+    public synchronized Instant recordThrottled(String reply) {
+        consecutiveThrottles++;
+        long pauseSeconds = throttlePause.toSeconds() << Math.min(consecutiveThrottles - 1, 20);
+        pauseSeconds = Math.min(pauseSeconds, maxPause.toSeconds());
+        long resumeAt = System.currentTimeMillis() + Duration.ofSeconds(pauseSeconds).toMillis();
+        if (resumeAt > pausedUntil) {
+            pausedUntil = resumeAt;
+            log.warn("🚦 Mail server is throttling ({}), pausing sends for {}s", firstLine(reply), pauseSeconds);
+        }
+        return Instant.ofEpochMilli(pausedUntil);
+    }
+
+    public synchronized void recordSent() {
+        consecutiveThrottles = 0;
+    }
+
+    /**
+     * End of the current throttling pause, null when sending is not paused
+     */
+    public synchronized Instant pausedUntil() {
+        return pausedUntil > System.currentTimeMillis() ? Instant.ofEpochMilli(pausedUntil) : null;
+    }
+
+    /**
+     * Whether the failure is the server asking to slow down rather than a problem with the message
+     */
+    public static boolean isThrottling(Throwable error) {
+        for (Throwable current = error; current != null; current = next(current)) {
+            String message = current.getMessage();
+            if (message == null) {
+                continue;
+            }
+            if (THROTTLE_REPLY.matcher(message).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Earliest time at or after {@code earliest} that keeps both windows within quota and the
+     * minute spacing after the previous send
+     */
+    private long nextSlot(List<Long> times, long earliest) {
+        long slot = earliest;
+        int size = times.size();
+        if (size > 0 && spacingMillis > 0) {
+            slot = Math.max(slot, times.get(size - 1) + spacingMillis);
+        }
+        if (perMinute > 0 && size >= perMinute) {
+            slot = Math.max(slot, times.get(size - perMinute) + MINUTE_MILLIS);
+        }
+        if (perDay > 0 && size >= perDay) {
+            slot = Math.max(slot, times.get(size - perDay) + DAY_MILLIS);
+        }
+        return slot;
+    }
+
+    private void prune(long now) {
+        long window = perDay > 0 ? DAY_MILLIS : MINUTE_MILLIS;
+        int expired = 0;
+        while (expired < sendTimes.size() && sendTimes.get(expired) <= now - window) {
+            expired++;
+        }
+        sendTimes.subList(0, expired).clear();
+    }
+
+    private static Throwable next(Throwable error) {
+        if (error instanceof MessagingException messagingException && messagingException.getNextException() != null) {
+            return messagingException.getNextException();
+        }
+        return error.getCause() != error ? error.getCause() : null;
+    }
+
+    private static String firstLine(String reply) {
+        if (reply == null) {
+            return "no reply text";
+        }
+        int newline = reply.indexOf('\n');
+        return (newline >= 0 ? reply.substring(0, newline) : reply).trim();
+    }
+
+    private static String limitText(int limit) {
+        return limit > 0 ? String.valueOf(limit) : "unlimited";
+    }
+}
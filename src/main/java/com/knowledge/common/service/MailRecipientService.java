@@ -0,0 +1,90 @@
+package com.knowledge.common.service;
+
+import com.knowledge.common.model.MailRecipient;
+import com.knowledge.common.repository.MailRecipientRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Manages email recipients and their pipeline/level preferences.
+ *
+ * When no recipient is registered yet, the addresses in {@code app.mail-to} are imported
+ * as recipients of every pipeline, so existing single-recipient setups keep working.
+ */
+@Service
+@Slf4j
+public class MailRecipientService {
+
+    private final MailRecipientRepository recipientRepository;
+    private final String defaultRecipients;
+
+    public MailRecipientService(MailRecipientRepository recipientRepository,
+                                @Value("${app.mail-to}") String defaultRecipients) {
+        this.recipientRepository = recipientRepository;
+        this.defaultRecipients = defaultRecipients;
+    }
+
+    @PostConstruct
+    void importDefaultRecipients() {
+        if (recipientRepository.count() > 0) {
+            return;
+        }
+        int imported = 0;
+        for (String address : defaultRecipients.split(",")) {
+            if (!address.isBlank()) {
+                recipientRepository.save(new MailRecipient(address.trim(), null));
+                imported++;
+            }
+        }
+        log.info("👥 Imported {} recipient(s) from app.mail-to", imported);
+    }
+
+    /**
+     * Active recipients subscribed to the given pipeline
+     */
+    public List<MailRecipient> findSubscribers(String pipeline) {
+        List<MailRecipient> subscribers = findActive().stream()
+            .filter(recipient -> recipient.isSubscribedTo(pipeline))
+            .toList();
+        log.debug("👥 {} recipient(s) subscribed to {}", subscribers.size(), pipeline);
+        return subscribers;
+    }
+
+    public List<MailRecipient> findActive() {
+        return recipientRepository.findByActiveTrueOrderByIdAsc();
+    }
+
+    public List<MailRecipient> findAll() {
+        return recipientRepository.findAll();
+    }
+
+    /**
+     * Create the recipient, or update the preferences of the one with the same address
+     */
+    @Transactional
+    public MailRecipient save(MailRecipient recipient) {
+        if (recipient.getEmail() == null || recipient.getEmail().isBlank()) {
+            throw new IllegalArgumentException("Recipient email is required");
+        }
+        Optional<MailRecipient> existing = recipientRepository.findByEmailIgnoreCase(recipient.getEmail().trim());
+        MailRecipient target = existing.orElseGet(() -> new MailRecipient(recipient.getEmail().trim(), null));
+        target.setName(recipient.getName());
+        target.setSubscribedPipelines(recipient.getSubscribedPipelines());
+        target.setLevels(recipient.getLevels());
+        target.setActive(recipient.isActive());
+        return recipientRepository.save(target);
+    }
+
+    @Transactional
+    public boolean delete(String email) {
+        Optional<MailRecipient> existing = recipientRepository.findByEmailIgnoreCase(email);
+        existing.ifPresent(recipientRepository::delete);
+        return existing.isPresent();
+    }
+}
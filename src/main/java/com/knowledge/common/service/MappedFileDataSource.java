@@ -0,0 +1,109 @@
+package com.knowledge.common.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Attachment content served from a read-only memory mapping of the file.
+ *
+ * The file is mapped once and every read works on its own view of the mapping, so one instance
+ * can back the attachment of all recipients' messages (also from several threads) without
+ * reading the file again or copying it onto the heap.
+ */
+public class MappedFileDataSource implements StreamingDataSource {
+
+    private final String name;
+    private final String contentType;
+    private final MappedByteBuffer mapping;
+
+    private MappedFileDataSource(String name, String contentType, MappedByteBuffer mapping) {
+        this.name = name;
+        this.contentType = contentType;
+        this.mapping = mapping;
+    }
+
+    public static MappedFileDataSource map(Path file, String contentType) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedFileDataSource(file.getFileName().toString(), contentType, mapping);
+        }
+    }
+
+    /**
+     * Independent read-only view of the content
+     */
+    public ByteBuffer buffer() {
+        return mapping.asReadOnlyBuffer();
+    }
+
+    public int size() {
+        return mapping.capacity();
+    }
+
+    public byte[] toByteArray() {
+        byte[] content = new byte[size()];
+        buffer().get(content);
+        return content;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        // The caller owns the stream: flush, never close
+        WritableByteChannel channel = Channels.newChannel(out);
+        ByteBuffer content = buffer();
+        while (content.hasRemaining()) {
+            channel.write(content);
+        }
+        out.flush();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        ByteBuffer content = buffer();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return content.hasRemaining() ? content.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] target, int offset, int length) {
+                if (!content.hasRemaining()) {
+                    return -1;
+                }
+                int count = Math.min(length, content.remaining());
+                content.get(target, offset, count);
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return content.remaining();
+            }
+        };
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        throw new IOException("Mapped attachment content is read-only");
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,280 @@
+package com.knowledge.common.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Line-oriented Markdown to HTML renderer used for fallback AI content.
+ *
+ * Supports ATX headings, bold/italic/inline code, unordered and ordered lists,
+ * fenced code blocks and paragraphs. The input is scanned once and written straight
+ * into the output builder; no intermediate strings are produced per rule.
+ */
+@Service
+@Slf4j
+public class MarkdownRenderer {
+
+    private enum Block { NONE, PARAGRAPH, UNORDERED_LIST, ORDERED_LIST, CODE }
+
+    /**
+     * Render Markdown into a new HTML string
+     */
+    public String render(String markdown) {
+        if (markdown == null || markdown.isEmpty()) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(markdown.length() + markdown.length() / 4);
+        render(markdown, out);
+        return out.toString();
+    }
+
+    /**
+     * Render Markdown, appending the HTML to the given builder
+     */
+    public void render(String markdown, StringBuilder out) {
+        Block block = Block.NONE;
+        int length = markdown.length();
+        int lineStart = 0;
+
+        while (lineStart <= length) {
+            int lineEnd = markdown.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = length;
+            }
+            int contentEnd = lineEnd;
+            if (contentEnd > lineStart && markdown.charAt(contentEnd - 1) == '\r') {
+                contentEnd--;
+            }
+
+            block = renderLine(markdown, lineStart, contentEnd, block, out);
+
+            if (lineEnd == length) {
+                break;
+            }
+            lineStart = lineEnd + 1;
+        }
+
+        closeBlock(block, out);
+    }
+
+    private Block renderLine(String md, int start, int end, Block block, StringBuilder out) {
+        int indent = skipSpaces(md, start, end);
+
+        // Inside a fenced code block everything is literal until the closing fence
+        if (block == Block.CODE) {
+            if (md.startsWith("```", indent)) {
+                out.append("</code></pre>\n");
+                return Block.NONE;
+            }
+            appendEscaped(md, start, end, out);
+            out.append('\n');
+            return Block.CODE;
+        }
+
+        // Blank line ends paragraphs and lists
+        if (indent == end) {
+            closeBlock(block, out);
+            return Block.NONE;
+        }
+
+        if (md.startsWith("```", indent)) {
+            closeBlock(block, out);
+            int langStart = skipSpaces(md, indent + 3, end);
+            int langEnd = langStart;
+            while (langEnd < end && !Character.isWhitespace(md.charAt(langEnd))) {
+                langEnd++;
+            }
+            out.append("<pre><code");
+            if (langEnd > langStart) {
+                out.append(" class=\"language-");
+                appendEscaped(md, langStart, langEnd, out);
+                out.append('"');
+            }
+            out.append('>');
+            return Block.CODE;
+        }
+
+        int level = headingLevel(md, indent, end);
+        if (level > 0) {
+            closeBlock(block, out);
+            int textStart = skipSpaces(md, indent + level, end);
+            int textEnd = trimTrailingHashes(md, textStart, end);
+            out.append("<h").append(level).append('>');
+            appendInline(md, textStart, textEnd, out);
+            out.append("</h").append(level).append(">\n");
+            return Block.NONE;
+        }
+
+        int itemStart = unorderedItemStart(md, indent, end);
+        if (itemStart > 0) {
+            return appendListItem(md, itemStart, end, block, Block.UNORDERED_LIST, out);
+        }
+        itemStart = orderedItemStart(md, indent, end);
+        if (itemStart > 0) {
+            return appendListItem(md, itemStart, end, block, Block.ORDERED_LIST, out);
+        }
+
+        // Plain text: open or continue a paragraph
+        if (block == Block.PARAGRAPH) {
+            out.append("<br>");
+        } else {
+            closeBlock(block, out);
+            out.append("<p>");
+        }
+        appendInline(md, indent, trimEnd(md, indent, end), out);
+        return Block.PARAGRAPH;
+    }
+
+    private Block appendListItem(String md, int itemStart, int end, Block block, Block listType, StringBuilder out) {
+        if (block != listType) {
+            closeBlock(block, out);
+            out.append(listType == Block.ORDERED_LIST ? "<ol>\n" : "<ul>\n");
+        }
+        out.append("<li>");
+        appendInline(md, itemStart, trimEnd(md, itemStart, end), out);
+        out.append("</li>\n");
+        return listType;
+    }
+
+    private void closeBlock(Block block, StringBuilder out) {
+        switch (block) {
+            case PARAGRAPH -> out.append("</p>\n");
+            case UNORDERED_LIST -> out.append("</ul>\n");
+            case ORDERED_LIST -> out.append("</ol>\n");
+            case CODE -> out.append("</code></pre>\n");
+            default -> { }
+        }
+    }
+
+    /**
+     * Render inline emphasis and code spans for md[start, end)
+     */
+    private void appendInline(String md, int start, int end, StringBuilder out) {
+        // Once a marker has no closer on the line, later occurrences cannot have one either
+        boolean noBoldCloser = false;
+        boolean noItalicCloser = false;
+        boolean noCodeCloser = false;
+
+        int i = start;
+        while (i < end) {
+            char c = md.charAt(i);
+
+            if (c == '`' && !noCodeCloser) {
+                int close = md.indexOf('`', i + 1);
+                if (close > i + 1 && close < end) {
+                    out.append("<code>");
+                    appendEscaped(md, i + 1, close, out);
+                    out.append("</code>");
+                    i = close + 1;
+                    continue;
+                }
+                noCodeCloser = close < 0 || close >= end;
+            }
+
+            if (c == '*' && i + 1 < end && md.charAt(i + 1) == '*' && !noBoldCloser) {
+                int close = md.indexOf("**", i + 2);
+                if (close > i + 2 && close < end - 1) {
+                    out.append("<strong>");
+                    appendInline(md, i + 2, close, out);
+                    out.append("</strong>");
+                    i = close + 2;
+                    continue;
+                }
+                noBoldCloser = close < 0 || close >= end - 1;
+            }
+
+            if (c == '*' && !noItalicCloser && i + 1 < end && !Character.isWhitespace(md.charAt(i + 1))) {
+                int close = md.indexOf('*', i + 1);
+                if (close > i + 1 && close < end) {
+                    out.append("<em>");
+                    appendInline(md, i + 1, close, out);
+                    out.append("</em>");
+                    i = close + 1;
+                    continue;
+                }
+                noItalicCloser = close < 0 || close >= end;
+            }
+
+            out.append(c);
+            i++;
+        }
+    }
+
+    private void appendEscaped(String md, int start, int end, StringBuilder out) {
+        for (int i = start; i < end; i++) {
+            char c = md.charAt(i);
+            switch (c) {
+                case '&' -> out.append("&amp;");
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '"' -> out.append("&quot;");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    private int headingLevel(String md, int start, int end) {
+        int level = 0;
+        while (start + level < end && md.charAt(start + level) == '#' && level < 7) {
+            level++;
+        }
+        if (level == 0 || level > 6) {
+            return 0;
+        }
+        int after = start + level;
+        return after < end && (md.charAt(after) == ' ' || md.charAt(after) == '\t') ? level : 0;
+    }
+
+    private int unorderedItemStart(String md, int start, int end) {
+        if (start + 1 < end) {
+            char marker = md.charAt(start);
+            char next = md.charAt(start + 1);
+            if ((marker == '-' || marker == '*' || marker == '+') && (next == ' ' || next == '\t')) {
+                return skipSpaces(md, start + 1, end);
+            }
+        }
+        return -1;
+    }
+
+    private int orderedItemStart(String md, int start, int end) {
+        int i = start;
+        while (i < end && Character.isDigit(md.charAt(i))) {
+            i++;
+        }
+        if (i == start || i - start > 9 || i + 1 >= end) {
+            return -1;
+        }
+        char delimiter = md.charAt(i);
+        char next = md.charAt(i + 1);
+        if ((delimiter == '.' || delimiter == ')') && (next == ' ' || next == '\t')) {
+            return skipSpaces(md, i + 1, end);
+        }
+        return -1;
+    }
+
+    private int trimTrailingHashes(String md, int start, int end) {
+        int e = trimEnd(md, start, end);
+        int hashes = e;
+        while (hashes > start && md.charAt(hashes - 1) == '#') {
+            hashes--;
+        }
+        if (hashes < e && (hashes == start || Character.isWhitespace(md.charAt(hashes - 1)))) {
+            return trimEnd(md, start, hashes);
+        }
+        return e;
+    }
+
+    private int skipSpaces(String md, int start, int end) {
+        while (start < end && (md.charAt(start) == ' ' || md.charAt(start) == '\t')) {
+            start++;
+        }
+        return start;
+    }
+
+    private int trimEnd(String md, int start, int end) {
+        while (end > start && Character.isWhitespace(md.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,308 @@
+package com.knowledge.common.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SMTP transport pool shared by the topic, stock and learning mail pipelines.
+ *
+ * Connections stay connected and authenticated between sends. An idle connection is
+ * validated with NOOP before reuse, retired after {@code app.mail.pool.max-messages-per-connection}
+ * messages and closed by a periodic sweep once idle longer than the configured timeout.
+ * Messages are created with the auto-configured {@link JavaMailSenderImpl} as before; only
+ * the sending goes through the pool.
+ */
+@Service
+@Slf4j
+public class PooledMailTransport {
+
+    private final JavaMailSenderImpl mailSender;
+    private final boolean poolEnabled;
+    private final int maxIdle;
+    private final long idleTimeoutMillis;
+    private final int maxMessagesPerConnection;
+    private final long acquireTimeoutMillis;
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+
+    private final Counter connectionsOpened;
+    private final Counter connectionsReused;
+    private final Counter messagesSent;
+    private final Timer sendTimer;
+
+    private volatile boolean closed;
+
+    public PooledMailTransport(JavaMailSenderImpl mailSender,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.mail.pool.enabled:true}") boolean poolEnabled,
+                               @Value("${app.mail.pool.max-connections:4}") int maxConnections,
+                               @Value("${app.mail.pool.max-idle:2}") int maxIdle,
+                               @Value("${app.mail.pool.idle-timeout-seconds:120}") long idleTimeoutSeconds,
+                               @Value("${app.mail.pool.max-messages-per-connection:100}") int maxMessagesPerConnection,
+                               @Value("${app.mail.pool.acquire-timeout-seconds:60}") long acquireTimeoutSeconds) {
+        this.mailSender = mailSender;
+        this.poolEnabled = poolEnabled;
+        this.maxIdle = maxIdle;
+        this.idleTimeoutMillis = TimeUnit.SECONDS.toMillis(idleTimeoutSeconds);
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.acquireTimeoutMillis = TimeUnit.SECONDS.toMillis(acquireTimeoutSeconds);
+        this.permits = new Semaphore(Math.max(1, maxConnections), true);
+
+        this.connectionsOpened = Counter.builder("mail.pool.connections.opened")
+            .description("SMTP connections opened (connect, STARTTLS and AUTH)")
+            .register(meterRegistry);
+        this.connectionsReused = Counter.builder("mail.pool.connections.reused")
+            .description("Sends that reused an already authenticated SMTP connection")
+            .register(meterRegistry);
+        this.messagesSent = Counter.builder("mail.pool.messages.sent")
+            .description("Messages sent through the pooled SMTP transport")
+            .register(meterRegistry);
+        this.sendTimer = Timer.builder("mail.pool.send")
+            .description("Time to transfer one message over an open SMTP connection")
+            .publishPercentiles(0.5, 0.99)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Send one message over a pooled connection
+     */
+    public void send(MimeMessage message) {
+        send(List.of(message));
+    }
+
+    /**
+     * Send the messages in order over as few SMTP sessions as possible.
+     *
+     * A message that failed because the connection broke (the server dropped it mid-session) is
+     * retried once on a fresh connection. Rejections by the server, such as invalid recipients or
+     * other 5xx replies, are not retried here, since some recipients may already have the message;
+     * they are reported together and left to the caller's backoff.
+     */
+    public void send(List<MimeMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        if (!poolEnabled) {
+            mailSender.send(messages.toArray(new MimeMessage[0]));
+            return;
+        }
+
+        acquirePermit();
+        PooledConnection connection = null;
+        MailSendException failures = null;
+        try {
+            for (MimeMessage message : messages) {
+                try {
+                    connection = ensureConnection(connection);
+                    sendOn(connection, message);
+                } catch (MessagingException first) {
+                    discard(connection);
+                    connection = null;
+                    if (MailRateLimiter.isThrottling(first)) {
+                        // Retrying right away only prolongs the throttling
+                        MailSendException throttled = new MailSendException("Throttled by the mail server: " + first.getMessage(), first);
+                        if (failures == null) {
+                            failures = throttled;
+                        } else {
+                            failures.addSuppressed(throttled);
+                        }
+                        continue;
+                    }
+                    if (!isConnectionFailure(first)) {
+                        failures = addFailure(failures, messages.size(), first);
+                        continue;
+                    }
+                    log.warn("⚠️ SMTP connection failed ({}), retrying on a new connection", first.getMessage());
+                    try {
+                        connection = ensureConnection(null);
+                        sendOn(connection, message);
+                    } catch (MessagingException second) {
+                        discard(connection);
+                        connection = null;
+                        failures = addFailure(failures, messages.size(), second);
+                    }
+                }
+            }
+        } finally {
+            release(connection);
+            permits.release();
+        }
+
+        if (failures != null) {
+            throw failures;
+        }
+    }
+
+    /**
+     * Close idle connections that have not been used within the idle timeout
+     */
+    @Scheduled(fixedDelayString = "${app.mail.pool.sweep-interval-ms:30000}")
+    public void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> iterator = idle.iterator();
+        while (iterator.hasNext()) {
+            PooledConnection connection = iterator.next();
+            if (now - connection.lastUsed > idleTimeoutMillis && idle.remove(connection)) {
+                log.debug("🔌 Closing idle SMTP connection after {} messages", connection.messageCount);
+                close(connection);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        PooledConnection connection;
+        while ((connection = idle.poll()) != null) {
+            close(connection);
+        }
+    }
+
+    public int getIdleConnectionCount() {
+        return idle.size();
+    }
+
+    private static MailSendException addFailure(MailSendException failures, int messageCount, MessagingException error) {
+        if (failures == null) {
+            return new MailSendException("Failed to send " + messageCount + " message(s): " + error.getMessage(), error);
+        }
+        failures.addSuppressed(error);
+        return failures;
+    }
+
+    /**
+     * Whether the send failed because the connection broke, rather than the server rejecting the
+     * message or its recipients
+     */
+    private static boolean isConnectionFailure(MessagingException error) {
+        if (error instanceof SendFailedException) {
+            return false;
+        }
+        for (Throwable current = error; current != null; ) {
+            if (current instanceof IOException) {
+                return true;
+            }
+            Throwable next = current instanceof MessagingException messagingException
+                ? messagingException.getNextException() : current.getCause();
+            current = next != current ? next : null;
+        }
+        return false;
+    }
+
+    private void sendOn(PooledConnection connection, MimeMessage message) throws MessagingException {
+        if (message.getSentDate() == null) {
+            message.setSentDate(new Date());
+        }
+        message.saveChanges();
+        long start = System.nanoTime();
+        connection.transport.sendMessage(message, message.getAllRecipients());
+        sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        connection.messageCount++;
+        connection.lastUsed = System.currentTimeMillis();
+        messagesSent.increment();
+    }
+
+    /**
+     * Keep the current connection if it can take more messages, otherwise borrow or open one
+     */
+    private PooledConnection ensureConnection(PooledConnection current) throws MessagingException {
+        if (current != null) {
+            if (current.messageCount < maxMessagesPerConnection) {
+                return current;
+            }
+            close(current);
+        }
+
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            // isConnected() issues an SMTP NOOP, so this also detects server-side timeouts
+            if (System.currentTimeMillis() - pooled.lastUsed <= idleTimeoutMillis && pooled.transport.isConnected()) {
+                connectionsReused.increment();
+                return pooled;
+            }
+            close(pooled);
+        }
+        return open();
+    }
+
+    private PooledConnection open() throws MessagingException {
+        Transport transport = mailSender.getSession().getTransport(mailSender.getProtocol() != null ? mailSender.getProtocol() : "smtp");
+        try {
+            transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        } catch (AuthenticationFailedException e) {
+            throw new MailAuthenticationException(e);
+        }
+        connectionsOpened.increment();
+        log.debug("🔐 Opened SMTP connection to {}:{}", mailSender.getHost(), mailSender.getPort());
+        return new PooledConnection(transport);
+    }
+
+    private void release(PooledConnection connection) {
+        if (connection == null) {
+            return;
+        }
+        if (closed || connection.messageCount >= maxMessagesPerConnection || idle.size() >= maxIdle) {
+            close(connection);
+            return;
+        }
+        idle.offerFirst(connection);
+    }
+
+    private void discard(PooledConnection connection) {
+        if (connection != null) {
+            close(connection);
+        }
+    }
+
+    private void close(PooledConnection connection) {
+        try {
+            connection.transport.close();
+        } catch (MessagingException e) {
+            log.debug("Ignoring error while closing SMTP connection: {}", e.getMessage());
+        }
+    }
+
+    private void acquirePermit() {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new MailSendException("Timed out waiting for a pooled SMTP connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MailSendException("Interrupted while waiting for a pooled SMTP connection", e);
+        }
+    }
+
+    private static final class PooledConnection {
+        private final Transport transport;
+        private int messageCount;
+        private long lastUsed = System.currentTimeMillis();
+
+        private PooledConnection(Transport transport) {
+            this.transport = transport;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.knowledge.common.service;
+
+import com.knowledge.common.model.MailRecipient;
+import com.knowledge.common.service.EmailOutboxService.PreparedEmail;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Delivers one piece of generated content to many recipients.
+ *
+ * Callers build the shared template values once; only the per-recipient step (copying the
+ * values, adding the greeting, rendering and encoding the MIME message) runs per recipient,
+ * in parallel on a bounded pool of {@code app.mail.fan-out.threads}. The rendered messages
+ * are then queued together on the caller's thread so they join its transaction.
+ */
+@Service
+@Slf4j
+public class RecipientFanOutService {
+
+    /**
+     * Builds the message for one recipient; must not touch the database
+     */
+    @FunctionalInterface
+    public interface MessageRenderer {
+        MimeMessage render(MailRecipient recipient) throws MessagingException;
+    }
+
+    private final EmailOutboxService mailOutbox;
+    private final ExecutorService renderPool;
+
+    public RecipientFanOutService(EmailOutboxService mailOutbox,
+                                  @Value("${app.mail.fan-out.threads:4}") int threads) {
+        this.mailOutbox = mailOutbox;
+        this.renderPool = Executors.newFixedThreadPool(Math.max(1, threads), new CustomizableThreadFactory("mail-render-"));
+    }
+
+    /**
+     * Render a message per recipient and queue them all.
+     *
+     * A recipient whose message fails to render is skipped and logged; the call fails only
+     * when no message could be rendered.
+     *
+     * @return number of emails queued
+     */
+    public int deliver(String pipeline, List<MailRecipient> recipients, MessageRenderer renderer) {
+        return deliver(pipeline, recipients, renderer, null);
+    }
+
+    /**
+     * Render and queue a message per recipient, tagging the outbox entries with the content hash
+     *
+     * @return number of emails queued
+     */
+    public int deliver(String pipeline, List<MailRecipient> recipients, MessageRenderer renderer, String contentHash) {
+        if (recipients.isEmpty()) {
+            log.warn("📭 No recipients subscribed to {} - nothing to send", pipeline);
+            return 0;
+        }
+
+        long start = System.currentTimeMillis();
+        List<PreparedEmail> prepared = recipients.size() == 1
+            ? List.of(mailOutbox.prepare(renderUnchecked(renderer, recipients.get(0))))
+            : renderInParallel(pipeline, recipients, renderer);
+
+        if (prepared.isEmpty()) {
+            throw new MailPreparationException("Failed to render " + pipeline + " email for all "
+                + recipients.size() + " recipient(s)");
+        }
+
+        mailOutbox.submitAll(pipeline, prepared, contentHash);
+        log.info("📤 Delivered {} email to {}/{} recipient(s) in {} ms", pipeline, prepared.size(),
+            recipients.size(), System.currentTimeMillis() - start);
+        return prepared.size();
+    }
+
+    /**
+     * Copy of the shared template values with the recipient's {@code GREETING}
+     */
+    public static Map<String, Object> personalize(Map<String, Object> sharedValues, MailRecipient recipient) {
+        Map<String, Object> values = new HashMap<>(sharedValues);
+        values.put("GREETING", recipient.getName() == null || recipient.getName().isBlank()
+            ? ""
+            : "<p class=\"subtitle\">Hi " + HtmlUtils.htmlEscape(recipient.getName()) + " 👋</p>");
+        return values;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renderPool.shutdown();
+    }
+
+    private List<PreparedEmail> renderInParallel(String pipeline, List<MailRecipient> recipients, MessageRenderer renderer) {
+        List<CompletableFuture<PreparedEmail>> futures = new ArrayList<>(recipients.size());
+        for (MailRecipient recipient : recipients) {
+            futures.add(CompletableFuture.supplyAsync(
+                () -> mailOutbox.prepare(renderUnchecked(renderer, recipient)), renderPool));
+        }
+
+        List<PreparedEmail> prepared = new ArrayList<>(recipients.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                prepared.add(futures.get(i).join());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                log.warn("⚠️ Skipping {} email for {}: {}", pipeline, recipients.get(i).getEmail(), cause.getMessage());
+            }
+        }
+        return prepared;
+    }
+
+    private static MimeMessage renderUnchecked(MessageRenderer renderer, MailRecipient recipient) {
+        try {
+            return renderer.render(recipient);
+        } catch (MessagingException e) {
+            throw new MailPreparationException("Failed to build email for " + recipient.getEmail(), e);
+        }
+    }
+}
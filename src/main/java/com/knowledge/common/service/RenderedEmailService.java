@@ -0,0 +1,287 @@
+package com.knowledge.common.service;
+
+import com.knowledge.common.model.MailRecipient;
+import com.knowledge.common.model.RenderedEmail;
+import com.knowledge.common.model.RenderedEmailSummary;
+import com.knowledge.common.repository.RenderedEmailRepository;
+import jakarta.activation.DataHandler;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeUtility;
+import jakarta.mail.internet.PreencodedMimeBodyPart;
+import jakarta.mail.util.ByteArrayDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.ConfigurableMimeFileTypeMap;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Cache of the final rendered pipeline emails with idempotent delivery.
+ *
+ * The email services render each email once into a {@link RenderedEmail} (keyed by pipeline and
+ * day) and deliver it from there; {@link #resend} delivers a cached email again as is, without
+ * generating or parsing content. A recipient who already has the same content hash queued or
+ * sent in the outbox is skipped, so repeated processing of an unchanged day does not send
+ * duplicates. Attachments are memory-mapped and base64-encoded once per delivery, and the
+ * encoded content is shared by all recipients' messages.
+ */
+@Service
+@Slf4j
+public class RenderedEmailService {
+
+    /**
+     * Audience of emails rendered for every recipient
+     */
+    public static final String ALL_AUDIENCE = "*";
+
+    // Same attachment content types as MimeMessageHelper.addAttachment
+    private static final ConfigurableMimeFileTypeMap ATTACHMENT_TYPES = new ConfigurableMimeFileTypeMap();
+
+    private final RenderedEmailRepository renderedEmailRepository;
+    private final MailRecipientService recipientService;
+    private final RecipientFanOutService fanOut;
+    private final EmailOutboxService mailOutbox;
+    private final EmailTemplateEngine templateEngine;
+    private final JavaMailSender mailSender;
+    private final String fromEmail;
+
+    public RenderedEmailService(RenderedEmailRepository renderedEmailRepository,
+                                MailRecipientService recipientService,
+                                RecipientFanOutService fanOut,
+                                EmailOutboxService mailOutbox,
+                                EmailTemplateEngine templateEngine,
+                                JavaMailSender mailSender,
+                                @Value("${app.mail-from}") String fromEmail) {
+        this.renderedEmailRepository = renderedEmailRepository;
+        this.recipientService = recipientService;
+        this.fanOut = fanOut;
+        this.mailOutbox = mailOutbox;
+        this.templateEngine = templateEngine;
+        this.mailSender = mailSender;
+        this.fromEmail = fromEmail;
+    }
+
+    /**
+     * Outcome of a delivery: emails queued and recipients skipped because they already have the content
+     */
+    public record DeliveryResult(int queued, int skipped) {
+
+        DeliveryResult plus(DeliveryResult other) {
+            return new DeliveryResult(queued + other.queued, skipped + other.skipped);
+        }
+    }
+
+    /**
+     * Render the template once and store it as the email for the key and audience.
+     *
+     * The values must not contain {@code GREETING}; it stays open and is filled in per recipient.
+     * When the stored email has the same content hash it is kept unchanged.
+     */
+    @Transactional
+    public RenderedEmail store(String pipeline, String emailKey, String audience, String subject,
+                               String templateName, Map<String, ?> values, File attachment) {
+        String html = templateEngine.render(templateName, values);
+        // The render timestamp alone does not make the content different
+        String stableHtml = values.get("TIMESTAMP") instanceof String timestamp ? html.replace(timestamp, "") : html;
+        String contentHash = contentHash(subject, stableHtml, attachment);
+
+        RenderedEmail email = renderedEmailRepository.findByPipelineAndEmailKeyAndAudience(pipeline, emailKey, audience)
+            .orElseGet(() -> new RenderedEmail(pipeline, emailKey, audience));
+        if (contentHash.equals(email.getContentHash())) {
+            log.debug("♻️ Rendered {} email {} unchanged ({})", pipeline, emailKey, contentHash.substring(0, 12));
+            return email;
+        }
+
+        email.setSubject(subject);
+        email.setHtmlContent(html);
+        email.setAttachmentName(attachment != null ? attachment.getName() : null);
+        email.setAttachmentPath(attachment != null ? attachment.getAbsolutePath() : null);
+        email.setContentHash(contentHash);
+        email.setRenderedAt(LocalDateTime.now());
+        RenderedEmail saved = renderedEmailRepository.save(email);
+        log.info("💾 Cached rendered {} email {} for audience {} ({} characters, hash {})",
+            pipeline, emailKey, audience, html.length(), contentHash.substring(0, 12));
+        return saved;
+    }
+
+    /**
+     * Queue the cached email for the recipients that do not have it yet (all of them with {@code force})
+     */
+    @Transactional
+    public DeliveryResult deliver(RenderedEmail email, List<MailRecipient> recipients, boolean force) {
+        List<MailRecipient> pending = force ? recipients : recipients.stream()
+            .filter(recipient -> !mailOutbox.isAlreadyDelivered(email.getContentHash(), recipient.getEmail()))
+            .toList();
+        int skipped = recipients.size() - pending.size();
+        if (skipped > 0) {
+            log.info("⏭️ Skipping {} recipient(s) that already received {} email {}", skipped,
+                email.getPipeline(), email.getEmailKey());
+        }
+        if (pending.isEmpty()) {
+            return new DeliveryResult(0, skipped);
+        }
+
+        // Only the greeting is still open in the cached HTML
+        CompiledTemplate body = CompiledTemplate.compile(email.getPipeline() + "/" + email.getEmailKey(), email.getHtmlContent(), 0);
+        EncodedAttachment attachment = encodeAttachment(email);
+        int queued = fanOut.deliver(email.getPipeline(), pending,
+            recipient -> buildMessage(email, body, attachment, recipient), email.getContentHash());
+        return new DeliveryResult(queued, skipped);
+    }
+
+    /**
+     * Deliver the cached email of the key again to the pipeline's current subscribers.
+     *
+     * Each subscriber gets the variant rendered for their level filter, falling back to the
+     * variant for everyone; subscribers with neither are skipped.
+     *
+     * @return empty when nothing is cached for the key
+     */
+    @Transactional
+    public Optional<DeliveryResult> resend(String pipeline, String emailKey, boolean force) {
+        List<RenderedEmail> variants = renderedEmailRepository.findByPipelineAndEmailKey(pipeline, emailKey);
+        if (variants.isEmpty()) {
+            return Optional.empty();
+        }
+        Map<String, RenderedEmail> byAudience = variants.stream()
+            .collect(Collectors.toMap(RenderedEmail::getAudience, email -> email));
+
+        Map<String, List<MailRecipient>> recipientsByAudience = new LinkedHashMap<>();
+        int unmatched = 0;
+        for (MailRecipient recipient : recipientService.findSubscribers(pipeline)) {
+            RenderedEmail email = byAudience.getOrDefault(audienceOf(recipient), byAudience.get(ALL_AUDIENCE));
+            if (email == null) {
+                unmatched++;
+                continue;
+            }
+            recipientsByAudience.computeIfAbsent(email.getAudience(), key -> new ArrayList<>()).add(recipient);
+        }
+
+        DeliveryResult result = new DeliveryResult(0, unmatched);
+        for (Map.Entry<String, List<MailRecipient>> entry : recipientsByAudience.entrySet()) {
+            result = result.plus(deliver(byAudience.get(entry.getKey()), entry.getValue(), force));
+        }
+        log.info("🔁 Resent {} email {}: {} queued, {} skipped", pipeline, emailKey, result.queued(), result.skipped());
+        return Optional.of(result);
+    }
+
+    /**
+     * Cached emails of a pipeline, newest first, without their HTML
+     */
+    public List<RenderedEmailSummary> findByPipeline(String pipeline) {
+        return renderedEmailRepository.findSummariesByPipeline(pipeline);
+    }
+
+    /**
+     * Normalized level filter of the recipient; recipients with the same audience get the same email
+     */
+    public static String audienceOf(MailRecipient recipient) {
+        String levels = recipient.getLevels();
+        if (levels == null || levels.isBlank() || levels.trim().equals(ALL_AUDIENCE)) {
+            return ALL_AUDIENCE;
+        }
+        return Arrays.stream(levels.split(","))
+            .map(level -> level.trim().toLowerCase(Locale.ROOT))
+            .filter(level -> !level.isEmpty())
+            .sorted()
+            .distinct()
+            .collect(Collectors.joining(","));
+    }
+
+    private MimeMessage buildMessage(RenderedEmail email, CompiledTemplate body, EncodedAttachment attachment,
+                                     MailRecipient recipient) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+
+        helper.setFrom(fromEmail);
+        helper.setTo(recipient.getEmail());
+        helper.setSubject(email.getSubject());
+        Map<String, Object> values = RecipientFanOutService.personalize(Map.of(), recipient);
+        helper.getMimeMultipart().addBodyPart(templateEngine.createHtmlPart(body, values));
+
+        if (attachment != null) {
+            MimeBodyPart part = new PreencodedMimeBodyPart("base64");
+            part.setDataHandler(new DataHandler(new ByteArrayDataSource(attachment.base64(), attachment.contentType())));
+            part.setFileName(email.getAttachmentName());
+            part.setDisposition(MimeBodyPart.ATTACHMENT);
+            helper.getRootMimeMultipart().addBodyPart(part);
+        }
+        return message;
+    }
+
+    /**
+     * Attachment content in its transfer encoding, ready to be written into every recipient's message
+     */
+    private record EncodedAttachment(String contentType, byte[] base64) {
+    }
+
+    /**
+     * Map the email's attachment and encode it once; null without one or when the file no longer exists
+     */
+    private EncodedAttachment encodeAttachment(RenderedEmail email) {
+        if (!email.hasAttachment()) {
+            return null;
+        }
+        try {
+            MappedFileDataSource source = MappedFileDataSource.map(Path.of(email.getAttachmentPath()),
+                ATTACHMENT_TYPES.getContentType(email.getAttachmentName()));
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream(source.size() * 4 / 3 + source.size() / 38 + 16);
+            try (OutputStream out = MimeUtility.encode(encoded, "base64")) {
+                source.writeTo(out);
+            }
+            return new EncodedAttachment(source.getContentType(), encoded.toByteArray());
+        } catch (MessagingException e) {
+            throw new IllegalStateException("Failed to encode attachment " + email.getAttachmentPath(), e);
+        } catch (NoSuchFileException e) {
+            log.warn("⚠️ Attachment {} of {} email {} no longer exists - sending without it",
+                email.getAttachmentPath(), email.getPipeline(), email.getEmailKey());
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map attachment " + email.getAttachmentPath(), e);
+        }
+    }
+
+    private static String contentHash(String subject, String html, File attachment) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(subject).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(html.getBytes(StandardCharsets.UTF_8));
+            if (attachment != null) {
+                digest.update((byte) 0);
+                digest.update(attachment.getName().getBytes(StandardCharsets.UTF_8));
+                digest.update(MappedFileDataSource.map(attachment.toPath(), null).buffer());
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read attachment " + attachment, e);
+        }
+    }
+}
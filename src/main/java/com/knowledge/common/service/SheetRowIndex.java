@@ -0,0 +1,108 @@
+package com.knowledge.common.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Row numbers of a workbook's rows by key (day number or topic name), so an update goes straight
+ * to its row instead of scanning the sheet.
+ *
+ * The index is filled from the owner's read passes and appends; the first row with a key wins,
+ * as it did for the scans. A row found through the index is checked against its key before it is
+ * used, so an index made stale by an edit outside the service costs one scan of the sheet, after
+ * which it is exact again.
+ */
+@Slf4j
+public class SheetRowIndex {
+
+    /**
+     * Key of a workbook row, null for a row without one
+     */
+    @FunctionalInterface
+    public interface KeyReader {
+        String keyOf(Row row);
+    }
+
+    private final String name;
+    private final KeyReader keyReader;
+
+    private volatile Map<String, Integer> rows = new ConcurrentHashMap<>();
+
+    public SheetRowIndex(String name, KeyReader keyReader) {
+        this.name = name;
+        this.keyReader = keyReader;
+    }
+
+    /**
+     * Record a row seen by a read pass or appended by the owner
+     */
+    public void put(String key, int rowNum) {
+        if (key != null && !key.isEmpty()) {
+            rows.putIfAbsent(key, rowNum);
+        }
+    }
+
+    /**
+     * Replace the index with the rows of a complete read pass
+     */
+    public void reset(Map<String, Integer> complete) {
+        rows = new ConcurrentHashMap<>(complete);
+    }
+
+    public void clear() {
+        rows = new ConcurrentHashMap<>();
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * Rows of the keys in the sheet; keys with no row are left out. The sheet is scanned at most
+     * once, and only when a key is missing from the index or its row no longer has that key.
+     */
+    public Map<String, Row> find(Sheet sheet, Iterable<String> keys) {
+        Map<String, Row> found = new HashMap<>();
+        boolean rebuilt = false;
+        for (String key : keys) {
+            Row row = lookup(sheet, key);
+            if (row == null && !rebuilt) {
+                rebuild(sheet);
+                rebuilt = true;
+                row = lookup(sheet, key);
+            }
+            if (row != null) {
+                found.put(key, row);
+            }
+        }
+        return found;
+    }
+
+    private Row lookup(Sheet sheet, String key) {
+        Integer rowNum = rows.get(key);
+        if (rowNum == null) {
+            return null;
+        }
+        Row row = sheet.getRow(rowNum);
+        return row != null && key.equals(keyReader.keyOf(row)) ? row : null;
+    }
+
+    private void rebuild(Sheet sheet) {
+        Map<String, Integer> complete = new HashMap<>();
+        for (Row row : sheet) {
+            if (row.getRowNum() == 0) continue; // Skip header
+
+            String key = keyReader.keyOf(row);
+            if (key != null && !key.isEmpty()) {
+                complete.putIfAbsent(key, row.getRowNum());
+            }
+        }
+        reset(complete);
+        log.debug("🔎 Rebuilt the {} row index from the sheet ({} rows)", name, complete.size());
+    }
+}
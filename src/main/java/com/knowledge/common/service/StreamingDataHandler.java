@@ -0,0 +1,24 @@
+package com.knowledge.common.service;
+
+import jakarta.activation.DataHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * DataHandler that lets its {@link StreamingDataSource} write directly into the MIME output
+ */
+public class StreamingDataHandler extends DataHandler {
+
+    private final StreamingDataSource source;
+
+    public StreamingDataHandler(StreamingDataSource source) {
+        super(source);
+        this.source = source;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        source.writeTo(out);
+    }
+}
@@ -0,0 +1,17 @@
+package com.knowledge.common.service;
+
+import jakarta.activation.DataSource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * DataSource that can write its content directly to an output stream.
+ *
+ * Used with {@link StreamingDataHandler} so JavaMail pulls the content straight into the
+ * transfer-encoding stream instead of copying it through {@link #getInputStream()}.
+ */
+public interface StreamingDataSource extends DataSource {
+
+    void writeTo(OutputStream out) throws IOException;
+}
@@ -0,0 +1,168 @@
+package com.knowledge.common.service;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Reads the first sheet of an XLSX file row by row with the POI event model.
+ *
+ * The sheet XML is parsed with SAX straight from the zip entry, so only the current row and the
+ * shared strings are in memory instead of the whole workbook DOM; the visitor can stop the read
+ * at any row, and the rest of the sheet is never parsed. Cell values are the cached results
+ * formatted as Excel shows them (a whole number reads as "3").
+ */
+public final class StreamingXlsxReader {
+
+    private StreamingXlsxReader() {
+    }
+
+    /**
+     * Receives the rows in sheet order
+     */
+    @FunctionalInterface
+    public interface RowVisitor {
+
+        /**
+         * @return false to stop reading
+         */
+        boolean visit(SheetRow row);
+    }
+
+    /**
+     * One row's cell values by column; absent and blank cells are null
+     */
+    public record SheetRow(int rowNum, String[] cells) {
+
+        public String cell(int column) {
+            return column < cells.length ? cells[column] : null;
+        }
+
+        /**
+         * Trimmed value, "" for an absent cell
+         */
+        public String text(int column) {
+            String value = cell(column);
+            return value != null ? value.trim() : "";
+        }
+
+        /**
+         * Whole-number value, 0 when absent or not a number
+         */
+        public int number(int column) {
+            String value = text(column);
+            if (value.isEmpty()) {
+                return 0;
+            }
+            try {
+                return (int) Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Stream the rows of the first sheet to the visitor
+     *
+     * @return number of rows visited
+     */
+    public static int readFirstSheet(Path file, RowVisitor visitor) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return 0;
+            }
+
+            RowCollector collector = new RowCollector(visitor);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            StylesTable styles = reader.getStylesTable();
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings, collector, new DataFormatter(), false));
+
+            try (InputStream sheet = sheets.next()) {
+                parser.parse(new InputSource(sheet));
+            } catch (StopReading stop) {
+                // The visitor has what it needs
+            } catch (SAXException e) {
+                if (!(e.getException() instanceof StopReading)) {
+                    throw new IOException("Failed to parse " + file.getFileName(), e);
+                }
+            }
+            return collector.visited;
+
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Failed to open " + file.getFileName(), e);
+        }
+    }
+
+    /**
+     * Thrown from the SAX callbacks to end the parse early
+     */
+    private static final class StopReading extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private StopReading() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final RowVisitor visitor;
+        private String[] cells = new String[16];
+        private int width;
+        private int visited;
+
+        private RowCollector(RowVisitor visitor) {
+            this.visitor = visitor;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            Arrays.fill(cells, 0, width, null);
+            width = 0;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            visited++;
+            if (!visitor.visit(new SheetRow(rowNum, Arrays.copyOf(cells, width)))) {
+                throw new StopReading();
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (cellReference == null || formattedValue == null || formattedValue.isEmpty()) {
+                return;
+            }
+            int column = new CellReference(cellReference).getCol();
+            if (column >= cells.length) {
+                cells = Arrays.copyOf(cells, Math.max(column + 1, cells.length * 2));
+            }
+            cells[column] = formattedValue;
+            width = Math.max(width, column + 1);
+        }
+    }
+}
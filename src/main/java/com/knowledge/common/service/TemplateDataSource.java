@@ -0,0 +1,69 @@
+package com.knowledge.common.service;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * UTF-8 HTML content rendered from a compiled template at the moment it is written.
+ *
+ * {@link #writeTo(OutputStream)} renders the template segments straight into the given
+ * stream; {@link #getInputStream()} is only a fallback for consumers that insist on reading.
+ */
+public class TemplateDataSource implements StreamingDataSource {
+
+    private static final String CONTENT_TYPE = "text/html; charset=UTF-8";
+    private static final int WRITE_BUFFER_SIZE = 8192;
+
+    private final CompiledTemplate template;
+    private final Map<String, ?> values;
+
+    public TemplateDataSource(CompiledTemplate template, Map<String, ?> values) {
+        this.template = template;
+        this.values = values;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        // The caller owns the stream: flush, never close
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+        template.renderTo(values, writer);
+        writer.flush();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(template.estimateLength(values));
+        writeTo(buffer);
+        return new ByteArrayInputStream(buffer.toByteArray());
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        throw new IOException("Template content is read-only");
+    }
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public String getName() {
+        return template.getName();
+    }
+
+    /**
+     * Expected size of the rendered content in characters
+     */
+    public int estimateLength() {
+        return template.estimateLength(values);
+    }
+}
@@ -0,0 +1,695 @@
+package com.knowledge.common.service;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Comment;
+import org.jsoup.nodes.DataNode;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Entities;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.Elements;
+import org.jsoup.select.Selector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Prepares an email template for sending: inlines CSS and minifies the markup, optionally pruning rules.
+ *
+ * A style rule is copied into the {@code style} attribute of the static elements it matches when
+ * every rule matching that element can be inlined (no pseudo-classes, {@code @media} overrides or
+ * {@code !important}). Comments and insignificant whitespace are removed. The {@code <style>} block
+ * keeps every rule, so markup inserted through placeholders is styled as before. Only when a class
+ * vocabulary is given is a rule dropped once it has been inlined everywhere it applies, or when it
+ * matches nothing, unless it may also style inserted markup (classes used by other templates or
+ * generated by code).
+ *
+ * The result is checked against the source: visible text, element structure and placeholders
+ * must be identical, otherwise the source is used unchanged.
+ */
+public final class TemplateOptimizer {
+
+    private static final Pattern CLASS_ATTRIBUTE = Pattern.compile("class\\s*=\\s*(\"([^\"]*)\"|'([^']*)')",
+        Pattern.CASE_INSENSITIVE);
+    private static final Pattern CLASS_SELECTOR = Pattern.compile("\\.([A-Za-z_][\\w-]*)");
+    private static final Pattern ELEMENT_SELECTOR = Pattern.compile("^([A-Za-z][A-Za-z0-9-]*)");
+    private static final Pattern COMBINATOR = Pattern.compile("\\s*[>+~]\\s*|\\s+");
+
+    private static final Set<String> PRESERVE_WHITESPACE = Set.of("pre", "textarea", "script", "style");
+    private static final Set<String> DOCUMENT_ELEMENTS = Set.of("html", "body");
+
+    /**
+     * Class names that may appear in markup the template does not contain itself
+     */
+    public record ClassVocabulary(Set<String> classes, Set<String> prefixes) {
+
+        public static ClassVocabulary empty() {
+            return new ClassVocabulary(new HashSet<>(), new HashSet<>());
+        }
+
+        /**
+         * Class names used in the markup; {@code level-{{LEVEL_CLASS}}} contributes the prefix {@code level-}
+         */
+        public static ClassVocabulary of(String html) {
+            ClassVocabulary vocabulary = empty();
+            Matcher matcher = CLASS_ATTRIBUTE.matcher(html);
+            while (matcher.find()) {
+                String value = matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+                for (String token : value.trim().split("\\s+")) {
+                    int placeholder = token.indexOf("{{");
+                    if (placeholder > 0) {
+                        vocabulary.prefixes.add(token.substring(0, placeholder));
+                    } else if (placeholder < 0 && !token.isEmpty()) {
+                        vocabulary.classes.add(token);
+                    }
+                }
+            }
+            return vocabulary;
+        }
+
+        public ClassVocabulary merge(ClassVocabulary other) {
+            ClassVocabulary merged = empty();
+            merged.classes.addAll(classes);
+            merged.classes.addAll(other.classes);
+            merged.prefixes.addAll(prefixes);
+            merged.prefixes.addAll(other.prefixes);
+            return merged;
+        }
+
+        boolean contains(String className) {
+            if (classes.contains(className)) {
+                return true;
+            }
+            for (String prefix : prefixes) {
+                if (className.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Size and rule statistics of one optimization
+     */
+    public record Report(String template, int originalBytes, int optimizedBytes,
+                         int inlinedRules, int removedRules, boolean equivalent) {
+
+        public double reductionPercent() {
+            return originalBytes == 0 ? 0 : 100.0 * (originalBytes - optimizedBytes) / originalBytes;
+        }
+    }
+
+    public record Result(String html, Report report) {
+    }
+
+    private TemplateOptimizer() {
+    }
+
+    /**
+     * Inline and minify the template source, keeping every stylesheet rule
+     */
+    public static Result optimize(String name, String source) {
+        return optimize(name, source, null);
+    }
+
+    /**
+     * Inline and minify the template source, and drop the rules nothing is left for.
+     *
+     * @param external classes that markup inserted through placeholders may use; null keeps every rule
+     */
+    public static Result optimize(String name, String source, ClassVocabulary external) {
+        int originalBytes = source.getBytes(StandardCharsets.UTF_8).length;
+        boolean fullDocument = isDocument(source);
+
+        Document document = parse(source, fullDocument);
+        ClassVocabulary dynamic = external == null ? null : external.merge(ownPlaceholderPrefixes(source));
+
+        Stylesheet stylesheet = extractStylesheet(document);
+        InlineStats stats = stylesheet.rules.isEmpty() ? new InlineStats(0, 0) : inline(document, stylesheet, dynamic);
+        writeStylesheet(document, stylesheet);
+        minifyWhitespace(document);
+
+        String optimized = fullDocument ? document.outerHtml() : document.body().html();
+        boolean equivalent = isEquivalent(name, source, optimized, fullDocument);
+        if (!equivalent) {
+            return new Result(source, new Report(name, originalBytes, originalBytes, 0, 0, false));
+        }
+
+        int optimizedBytes = optimized.getBytes(StandardCharsets.UTF_8).length;
+        return new Result(optimized, new Report(name, originalBytes, optimizedBytes, stats.inlined, stats.removed, true));
+    }
+
+    /**
+     * Whether the template is a complete HTML page rather than a fragment rendered into one
+     */
+    public static boolean isDocument(String source) {
+        return source.toLowerCase().contains("<html");
+    }
+
+    private static Document parse(String html, boolean fullDocument) {
+        Document document = fullDocument ? Jsoup.parse(html) : Jsoup.parseBodyFragment(html);
+        document.outputSettings()
+            .prettyPrint(false)
+            .charset(StandardCharsets.UTF_8)
+            .escapeMode(Entities.EscapeMode.base);
+        return document;
+    }
+
+    private static ClassVocabulary ownPlaceholderPrefixes(String source) {
+        ClassVocabulary own = ClassVocabulary.of(source);
+        return new ClassVocabulary(new HashSet<>(), own.prefixes());
+    }
+
+    // ---- CSS inlining ----------------------------------------------------------------------
+
+    private record InlineStats(int inlined, int removed) {
+    }
+
+    private record Match(CssRule rule, int specificity) {
+    }
+
+    /**
+     * @param dynamic classes of inserted markup, or null to keep every rule in the stylesheet
+     */
+    private static InlineStats inline(Document document, Stylesheet stylesheet, ClassVocabulary dynamic) {
+        Set<String> guardedClasses = new HashSet<>();
+        Set<String> guardedElements = new HashSet<>();
+        collectGuards(stylesheet, guardedClasses, guardedElements);
+
+        Map<Element, List<Match>> matches = new IdentityHashMap<>();
+        for (CssRule rule : stylesheet.rules) {
+            rule.inlinable = rule.inlinable && !isGuarded(rule, guardedClasses, guardedElements);
+            for (String selector : rule.selectors) {
+                Elements elements;
+                try {
+                    elements = document.select(selector);
+                } catch (Selector.SelectorParseException e) {
+                    rule.inlinable = false;
+                    continue;
+                }
+                int specificity = specificity(selector);
+                for (Element element : elements) {
+                    rule.matched.add(element);
+                    matches.computeIfAbsent(element, key -> new ArrayList<>()).add(new Match(rule, specificity));
+                }
+            }
+        }
+
+        Set<Element> inlinedElements = java.util.Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Map.Entry<Element, List<Match>> entry : matches.entrySet()) {
+            Element element = entry.getKey();
+            List<Match> elementMatches = entry.getValue();
+            // Universal rules (specificity 0) stay in the stylesheet; anything inlined overrides them anyway
+            boolean eligible = !element.attr("class").contains("{{")
+                && elementMatches.stream().allMatch(match -> match.rule.inlinable || match.specificity == 0)
+                && elementMatches.stream().anyMatch(match -> match.rule.inlinable);
+            if (!eligible) {
+                continue;
+            }
+
+            // Cascade order: specificity, then source order; the element's own style attribute wins
+            Map<String, String> declarations = new LinkedHashMap<>();
+            elementMatches.stream()
+                .filter(match -> match.rule.inlinable)
+                .sorted(Comparator.comparingInt(Match::specificity).thenComparingInt(match -> match.rule.order))
+                .forEach(match -> match.rule.declarations.forEach((property, value) -> {
+                    declarations.remove(property);
+                    declarations.put(property, value);
+                }));
+            parseDeclarations(element.attr("style")).forEach((property, value) -> {
+                declarations.remove(property);
+                declarations.put(property, value);
+            });
+
+            element.attr("style", formatDeclarations(declarations));
+            inlinedElements.add(element);
+            elementMatches.stream().filter(match -> match.rule.inlinable).forEach(match -> match.rule.applied = true);
+        }
+
+        int inlined = 0;
+        int removed = 0;
+        for (CssRule rule : stylesheet.rules) {
+            if (rule.applied) {
+                inlined++;
+            }
+            boolean appliedEverywhere = rule.matched.stream().allMatch(inlinedElements::contains);
+            if (dynamic != null && rule.inlinable && appliedEverywhere && !mayMatchInsertedMarkup(rule, dynamic)) {
+                rule.keep = false;
+                removed++;
+            }
+        }
+        return new InlineStats(inlined, removed);
+    }
+
+    /**
+     * Classes and elements targeted by @media blocks or pseudo-class rules; inlining them would override those rules
+     */
+    private static void collectGuards(Stylesheet stylesheet, Set<String> guardedClasses, Set<String> guardedElements) {
+        for (Object item : stylesheet.items) {
+            if (item instanceof AtBlock block) {
+                for (Object nested : parseCss(block.body)) {
+                    if (nested instanceof CssRule rule) {
+                        rule.selectors.forEach(selector -> addSelectorTokens(selector, guardedClasses, guardedElements));
+                    }
+                }
+            } else if (item instanceof CssRule rule) {
+                for (String selector : rule.selectors) {
+                    if (selector.indexOf(':') >= 0) {
+                        addSelectorTokens(selector, guardedClasses, guardedElements);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void addSelectorTokens(String selector, Set<String> classes, Set<String> elements) {
+        Matcher matcher = CLASS_SELECTOR.matcher(selector);
+        while (matcher.find()) {
+            classes.add(matcher.group(1));
+        }
+        for (String compound : COMBINATOR.split(selector.trim())) {
+            Matcher element = ELEMENT_SELECTOR.matcher(compound);
+            if (element.find()) {
+                elements.add(element.group(1).toLowerCase());
+            }
+        }
+    }
+
+    private static boolean isGuarded(CssRule rule, Set<String> guardedClasses, Set<String> guardedElements) {
+        for (String selector : rule.selectors) {
+            Set<String> classes = new HashSet<>();
+            Set<String> elements = new HashSet<>();
+            addSelectorTokens(selector, classes, elements);
+            for (String className : classes) {
+                if (guardedClasses.contains(className)) {
+                    return true;
+                }
+            }
+            for (String element : elements) {
+                if (guardedElements.contains(element)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the rule could style markup inserted at render time (placeholder content)
+     */
+    private static boolean mayMatchInsertedMarkup(CssRule rule, ClassVocabulary dynamic) {
+        for (String selector : rule.selectors) {
+            Matcher matcher = CLASS_SELECTOR.matcher(selector);
+            while (matcher.find()) {
+                if (dynamic.contains(matcher.group(1))) {
+                    return true;
+                }
+            }
+            // A subject without a class (e.g. ".footer a") can match any inserted element
+            String[] compounds = COMBINATOR.split(selector.trim());
+            String subject = compounds[compounds.length - 1];
+            if (!subject.contains(".") && !subject.contains("#")) {
+                Matcher element = ELEMENT_SELECTOR.matcher(subject);
+                if (!element.find() || !DOCUMENT_ELEMENTS.contains(element.group(1).toLowerCase())
+                    || compounds.length == 1) {
+                    // Document-level rules (html, body) stay as well: several clients ignore their inline styles
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int specificity(String selector) {
+        int ids = 0;
+        int classes = 0;
+        int elements = 0;
+        for (String compound : COMBINATOR.split(selector.trim())) {
+            if (compound.isEmpty()) {
+                continue;
+            }
+            if (ELEMENT_SELECTOR.matcher(compound).find()) {
+                elements++;
+            }
+            for (int i = 0; i < compound.length(); i++) {
+                switch (compound.charAt(i)) {
+                    case '#' -> ids++;
+                    case '.', '[', ':' -> classes++;
+                    default -> { }
+                }
+            }
+        }
+        return ids * 10_000 + classes * 100 + elements;
+    }
+
+    // ---- Stylesheet parsing and output -----------------------------------------------------
+
+    private static final class Stylesheet {
+        private final List<Object> items = new ArrayList<>();
+        private final List<CssRule> rules = new ArrayList<>();
+        private final List<Element> styleElements = new ArrayList<>();
+    }
+
+    private static final class CssRule {
+        private final List<String> selectors;
+        private final Map<String, String> declarations;
+        private int order;
+        private boolean inlinable;
+        private boolean applied;
+        private boolean keep = true;
+        private final Set<Element> matched = java.util.Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private CssRule(List<String> selectors, Map<String, String> declarations) {
+            this.selectors = selectors;
+            this.declarations = declarations;
+            this.inlinable = !declarations.isEmpty()
+                && declarations.values().stream().noneMatch(value -> value.contains("!important"))
+                && selectors.stream().noneMatch(selector -> selector.indexOf(':') >= 0 || selector.contains("*"));
+        }
+    }
+
+    private record AtBlock(String prelude, String body) {
+    }
+
+    private record AtStatement(String text) {
+    }
+
+    private static Stylesheet extractStylesheet(Document document) {
+        Stylesheet stylesheet = new Stylesheet();
+        for (Element style : document.select("style")) {
+            stylesheet.styleElements.add(style);
+            stylesheet.items.addAll(parseCss(style.data()));
+        }
+        int order = 0;
+        for (Object item : stylesheet.items) {
+            if (item instanceof CssRule rule) {
+                rule.order = order++;
+                stylesheet.rules.add(rule);
+            }
+        }
+        return stylesheet;
+    }
+
+    private static void writeStylesheet(Document document, Stylesheet stylesheet) {
+        if (stylesheet.styleElements.isEmpty()) {
+            return;
+        }
+
+        StringBuilder css = new StringBuilder();
+        for (Object item : stylesheet.items) {
+            if (item instanceof CssRule rule) {
+                if (rule.keep) {
+                    css.append(String.join(",", rule.selectors.stream().map(TemplateOptimizer::collapseWhitespace).toList()))
+                        .append('{').append(formatDeclarations(rule.declarations)).append('}');
+                }
+            } else if (item instanceof AtBlock block) {
+                css.append(minifyCss(block.prelude)).append('{').append(minifyCss(block.body)).append('}');
+            } else if (item instanceof AtStatement statement) {
+                css.append(minifyCss(statement.text)).append(';');
+            }
+        }
+
+        Element first = stylesheet.styleElements.get(0);
+        for (int i = 1; i < stylesheet.styleElements.size(); i++) {
+            stylesheet.styleElements.get(i).remove();
+        }
+        if (css.isEmpty()) {
+            first.remove();
+        } else {
+            first.empty().appendChild(new DataNode(css.toString()));
+        }
+    }
+
+    private static List<Object> parseCss(String css) {
+        String text = stripComments(css);
+        List<Object> items = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (i >= text.length()) {
+                break;
+            }
+
+            int brace = text.indexOf('{', i);
+            int semicolon = text.indexOf(';', i);
+            if (text.charAt(i) == '@' && semicolon >= 0 && (brace < 0 || semicolon < brace)) {
+                items.add(new AtStatement(text.substring(i, semicolon).trim()));
+                i = semicolon + 1;
+                continue;
+            }
+            if (brace < 0) {
+                break;
+            }
+
+            int end = matchingBrace(text, brace);
+            String prelude = text.substring(i, brace).trim();
+            String body = text.substring(brace + 1, end);
+            if (prelude.startsWith("@")) {
+                items.add(new AtBlock(prelude, body));
+            } else if (!prelude.isEmpty()) {
+                List<String> selectors = new ArrayList<>();
+                for (String selector : prelude.split(",")) {
+                    if (!selector.isBlank()) {
+                        selectors.add(selector.trim());
+                    }
+                }
+                items.add(new CssRule(selectors, parseDeclarations(body)));
+            }
+            i = end + 1;
+        }
+        return items;
+    }
+
+    private static int matchingBrace(String text, int open) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = open; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (c == quote && text.charAt(i - 1) != '\\') {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return i;
+            }
+        }
+        return text.length() - 1;
+    }
+
+    private static Map<String, String> parseDeclarations(String body) {
+        Map<String, String> declarations = new LinkedHashMap<>();
+        int start = 0;
+        char quote = 0;
+        int parens = 0;
+        for (int i = 0; i <= body.length(); i++) {
+            char c = i < body.length() ? body.charAt(i) : ';';
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+                continue;
+            }
+            switch (c) {
+                case '"', '\'' -> quote = c;
+                case '(' -> parens++;
+                case ')' -> parens--;
+                case ';' -> {
+                    if (parens == 0) {
+                        String declaration = body.substring(start, Math.min(i, body.length()));
+                        int colon = declaration.indexOf(':');
+                        if (colon > 0) {
+                            String property = declaration.substring(0, colon).trim().toLowerCase();
+                            String value = collapseWhitespace(declaration.substring(colon + 1));
+                            if (!property.isEmpty() && !value.isEmpty()) {
+                                declarations.remove(property);
+                                declarations.put(property, value);
+                            }
+                        }
+                        start = i + 1;
+                    }
+                }
+                default -> { }
+            }
+        }
+        return declarations;
+    }
+
+    private static String formatDeclarations(Map<String, String> declarations) {
+        StringBuilder out = new StringBuilder();
+        declarations.forEach((property, value) -> {
+            if (!out.isEmpty()) {
+                out.append(';');
+            }
+            out.append(property).append(':').append(value);
+        });
+        return out.toString();
+    }
+
+    private static String stripComments(String css) {
+        StringBuilder out = new StringBuilder(css.length());
+        int i = 0;
+        while (i < css.length()) {
+            int start = css.indexOf("/*", i);
+            if (start < 0) {
+                out.append(css, i, css.length());
+                break;
+            }
+            out.append(css, i, start);
+            int end = css.indexOf("*/", start + 2);
+            i = end < 0 ? css.length() : end + 2;
+        }
+        return out.toString();
+    }
+
+    /**
+     * Whitespace-level CSS minification for blocks that are kept verbatim (e.g. @media)
+     */
+    private static String minifyCss(String css) {
+        String collapsed = collapseWhitespace(stripComments(css));
+        StringBuilder out = new StringBuilder(collapsed.length());
+        for (int i = 0; i < collapsed.length(); i++) {
+            char c = collapsed.charAt(i);
+            if (c == ' ') {
+                char previous = out.isEmpty() ? '{' : out.charAt(out.length() - 1);
+                char next = i + 1 < collapsed.length() ? collapsed.charAt(i + 1) : '}';
+                if ("{};:,".indexOf(previous) >= 0 || "{};,".indexOf(next) >= 0) {
+                    continue;
+                }
+            }
+            if (c == '}' && !out.isEmpty() && out.charAt(out.length() - 1) == ';') {
+                out.setLength(out.length() - 1);
+            }
+            out.append(c);
+        }
+        return out.toString();
+    }
+
+    private static String collapseWhitespace(String text) {
+        StringBuilder out = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f') {
+                space = true;
+            } else {
+                if (space && !out.isEmpty()) {
+                    out.append(' ');
+                }
+                space = false;
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    // ---- Markup minification ---------------------------------------------------------------
+
+    private static void minifyWhitespace(Node node) {
+        for (Node child : new ArrayList<>(node.childNodes())) {
+            if (child instanceof Comment comment) {
+                // Keep conditional comments for Outlook
+                if (!comment.getData().trim().startsWith("[if")) {
+                    comment.remove();
+                }
+            } else if (child instanceof TextNode text) {
+                minifyText(text);
+            } else if (child instanceof Element element && !PRESERVE_WHITESPACE.contains(element.normalName())) {
+                minifyWhitespace(element);
+            }
+        }
+    }
+
+    private static void minifyText(TextNode text) {
+        String whole = text.getWholeText();
+        StringBuilder collapsed = new StringBuilder(whole.length());
+        boolean space = false;
+        for (int i = 0; i < whole.length(); i++) {
+            char c = whole.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f') {
+                space = true;
+            } else {
+                if (space) {
+                    collapsed.append(' ');
+                }
+                space = false;
+                collapsed.append(c);
+            }
+        }
+        if (space) {
+            collapsed.append(' ');
+        }
+
+        if (collapsed.toString().equals(" ") && isBetweenBlocks(text)) {
+            text.remove();
+        } else if (collapsed.length() != whole.length()) {
+            text.text(collapsed.toString());
+        }
+    }
+
+    /**
+     * Whitespace next to a block boundary is not rendered
+     */
+    private static boolean isBetweenBlocks(TextNode text) {
+        Node parent = text.parent();
+        if (parent instanceof Element element && !element.isBlock() && !(parent instanceof Document)
+            && !DOCUMENT_ELEMENTS.contains(element.normalName()) && !element.normalName().equals("head")) {
+            return false;
+        }
+        Node previous = text.previousSibling();
+        Node next = text.nextSibling();
+        return previous == null || next == null || isBlockOrHead(previous) || isBlockOrHead(next);
+    }
+
+    private static boolean isBlockOrHead(Node node) {
+        if (!(node instanceof Element element)) {
+            return false;
+        }
+        String name = element.normalName();
+        return element.isBlock() || name.equals("head") || name.equals("title") || name.equals("meta")
+            || name.equals("style") || name.equals("link") || name.equals("br");
+    }
+
+    // ---- Verification ----------------------------------------------------------------------
+
+    private static boolean isEquivalent(String name, String source, String optimized, boolean fullDocument) {
+        Document original = parse(source, fullDocument);
+        Document result = parse(optimized, fullDocument);
+
+        if (!original.text().equals(result.text())) {
+            return false;
+        }
+
+        List<String> originalTags = original.getAllElements().stream().map(Element::normalName).toList();
+        List<String> resultTags = result.getAllElements().stream().map(Element::normalName).toList();
+        // Style elements may be merged or dropped when every rule was inlined
+        if (!withoutStyle(originalTags).equals(withoutStyle(resultTags))) {
+            return false;
+        }
+
+        Set<String> originalPlaceholders = new LinkedHashSet<>(CompiledTemplate.compile(name, source, 0).getPlaceholders());
+        Set<String> resultPlaceholders = new LinkedHashSet<>(CompiledTemplate.compile(name, optimized, 0).getPlaceholders());
+        return new ArrayList<>(originalPlaceholders).equals(new ArrayList<>(resultPlaceholders));
+    }
+
+    private static List<String> withoutStyle(List<String> tags) {
+        return tags.stream().filter(tag -> !tag.equals("style")).toList();
+    }
+}
@@ -0,0 +1,282 @@
+package com.knowledge.common.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Write-behind buffer for cell changes to a workbook's rows.
+ *
+ * A change is a set of cell values (column → value) for the row with a key, such as a day number
+ * or a topic name. {@link #submit} appends the changes to a journal next to the workbook
+ * ({@code <workbook>.pending}) and fsyncs it, then merges them into the pending rows, so a row
+ * changed again before the next flush is written once with its latest values. {@link #flush}
+ * hands all pending rows to the owner's {@link Writer}, which applies them in one read-modify-write
+ * of the workbook, and cuts the journal back to the changes submitted since. Changes a crash left
+ * in the journal are loaded again by {@link #open} and written by the next flush; applying a
+ * change twice gives the same cells, so replaying already written ones is harmless.
+ */
+@Slf4j
+public class WorkbookWriteBehind {
+
+    /**
+     * Applies pending rows to the workbook in one rewrite
+     */
+    @FunctionalInterface
+    public interface Writer {
+
+        /**
+         * @param changes cell values by column for each row key, in submission order
+         */
+        void write(Map<String, Map<Integer, String>> changes) throws IOException;
+    }
+
+    private final String name;
+    private final Path journalPath;
+    private final Writer writer;
+
+    private final Object flushLock = new Object();
+
+    private Map<String, Map<Integer, String>> pending = new LinkedHashMap<>();
+    // Rows handed to the writer and not yet written
+    private Map<String, Map<Integer, String>> flushing = Map.of();
+    private long journalled;
+
+    public WorkbookWriteBehind(String name, Path workbook, Writer writer) {
+        this.name = name;
+        this.journalPath = workbook.resolveSibling(workbook.getFileName() + ".pending");
+        this.writer = writer;
+    }
+
+    /**
+     * Load the changes left in the journal; the journal is rewritten with one record per row,
+     * dropping a record a crash cut short
+     *
+     * @return number of rows pending
+     */
+    public synchronized int open() throws IOException {
+        if (!Files.exists(journalPath)) {
+            return 0;
+        }
+
+        int records = 0;
+        try (Reader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+            List<String> record;
+            while ((record = CsvRecords.read(reader)) != null) {
+                Map<Integer, String> cells = parseCells(record);
+                if (cells == null) {
+                    log.warn("⚠️ Skipping unreadable {} journal record: {}", name, record);
+                    continue;
+                }
+                merge(record.get(0), cells);
+                records++;
+            }
+        }
+
+        rewriteJournal();
+        if (!pending.isEmpty()) {
+            log.info("📒 Recovered {} pending {} row update(s) from {} journal record(s)", pending.size(), name, records);
+        }
+        return pending.size();
+    }
+
+    public void submit(String key, Map<Integer, String> cells) {
+        submit(Map.of(key, cells));
+    }
+
+    /**
+     * Journal the changes (one fsync for all of them) and add them to the pending rows
+     */
+    public synchronized void submit(Map<String, Map<Integer, String>> changes) {
+        StringBuilder records = new StringBuilder();
+        changes.forEach((key, cells) -> records.append(toRecord(key, cells)));
+        try {
+            journalled += append(records.toString());
+        } catch (IOException e) {
+            log.error("❌ Could not journal {} {} row update(s), they are only kept in memory: {}",
+                changes.size(), name, e.getMessage(), e);
+        }
+        changes.forEach((key, cells) -> merge(key, new TreeMap<>(cells)));
+    }
+
+    /**
+     * Cell values submitted for the row and not yet in the workbook, null when there are none
+     */
+    public synchronized Map<Integer, String> pending(String key) {
+        Map<Integer, String> inFlight = flushing.get(key);
+        Map<Integer, String> queued = pending.get(key);
+        if (inFlight == null && queued == null) {
+            return null;
+        }
+        Map<Integer, String> cells = new TreeMap<>();
+        if (inFlight != null) {
+            cells.putAll(inFlight);
+        }
+        if (queued != null) {
+            cells.putAll(queued);
+        }
+        return cells;
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Write all pending rows in one workbook rewrite; on failure they stay pending for the next
+     * flush
+     *
+     * @return number of rows written
+     */
+    public int flush() {
+        synchronized (flushLock) {
+            Map<String, Map<Integer, String>> batch;
+            long batchJournalled;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return 0;
+                }
+                batch = pending;
+                batchJournalled = journalled;
+                flushing = batch;
+                pending = new LinkedHashMap<>();
+            }
+
+            long start = System.currentTimeMillis();
+            try {
+                writer.write(batch);
+            } catch (IOException | RuntimeException e) {
+                log.error("❌ Error writing {} pending {} row update(s), retrying on the next flush: {}",
+                    batch.size(), name, e.getMessage(), e);
+                synchronized (this) {
+                    // Changes submitted during the write are newer
+                    Map<String, Map<Integer, String>> newer = pending;
+                    pending = batch;
+                    newer.forEach(this::merge);
+                    flushing = Map.of();
+                }
+                return 0;
+            }
+
+            synchronized (this) {
+                flushing = Map.of();
+                trimJournal(batchJournalled);
+            }
+            log.info("💾 Wrote {} pending {} row update(s) in one workbook write ({} ms)",
+                batch.size(), name, System.currentTimeMillis() - start);
+            return batch.size();
+        }
+    }
+
+    private void merge(String key, Map<Integer, String> cells) {
+        pending.computeIfAbsent(key, k -> new TreeMap<>()).putAll(cells);
+    }
+
+    private long append(String records) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(records.getBytes(StandardCharsets.UTF_8));
+        try (FileChannel journal = FileChannel.open(journalPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (bytes.hasRemaining()) {
+                journal.write(bytes);
+            }
+            journal.force(false);
+        }
+        return bytes.capacity();
+    }
+
+    /**
+     * Drop the first {@code written} bytes of the journal, keeping what was submitted during the
+     * flush
+     */
+    private void trimJournal(long written) {
+        try {
+            if (journalled == written) {
+                Files.deleteIfExists(journalPath);
+                journalled = 0;
+                return;
+            }
+
+            Path partPath = journalPath.resolveSibling(journalPath.getFileName() + ".part");
+            try (FileChannel journal = FileChannel.open(journalPath, StandardOpenOption.READ);
+                 FileChannel part = FileChannel.open(partPath,
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long position = written;
+                while (position < journalled) {
+                    position += journal.transferTo(position, journalled - position, part);
+                }
+                part.force(false);
+            }
+            Files.move(partPath, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journalled -= written;
+
+        } catch (NoSuchFileException e) {
+            journalled = 0;
+        } catch (IOException e) {
+            // The written changes are replayed after a restart, which writes the same cells again
+            log.warn("⚠️ Could not trim the {} journal {}: {}", name, journalPath, e.getMessage());
+        }
+    }
+
+    private void rewriteJournal() throws IOException {
+        if (pending.isEmpty()) {
+            Files.deleteIfExists(journalPath);
+            journalled = 0;
+            return;
+        }
+
+        StringBuilder records = new StringBuilder();
+        pending.forEach((key, cells) -> records.append(toRecord(key, cells)));
+        Path partPath = journalPath.resolveSibling(journalPath.getFileName() + ".part");
+        Files.deleteIfExists(partPath);
+        try (FileChannel part = FileChannel.open(partPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer bytes = ByteBuffer.wrap(records.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                part.write(bytes);
+            }
+            part.force(false);
+            journalled = bytes.capacity();
+        }
+        Files.move(partPath, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Record: key, then column and value pairs
+     */
+    private static String toRecord(String key, Map<Integer, String> cells) {
+        String[] values = new String[1 + cells.size() * 2];
+        values[0] = key;
+        int i = 1;
+        for (Map.Entry<Integer, String> cell : cells.entrySet()) {
+            values[i++] = String.valueOf(cell.getKey());
+            values[i++] = cell.getValue();
+        }
+        return CsvRecords.toLine(values);
+    }
+
+    private static Map<Integer, String> parseCells(List<String> record) {
+        if (record.size() < 3 || record.size() % 2 == 0 || record.get(0).isEmpty()) {
+            return null;
+        }
+        Map<Integer, String> cells = new TreeMap<>();
+        for (int i = 1; i < record.size(); i += 2) {
+            if (!record.get(i).matches("\\d{1,4}")) {
+                return null;
+            }
+            cells.put(Integer.parseInt(record.get(i)), record.get(i + 1));
+        }
+        return cells;
+    }
+}
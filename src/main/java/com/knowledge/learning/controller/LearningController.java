@@ -1,16 +1,27 @@
 package com.knowledge.learning.controller;
 
+import com.knowledge.learning.model.EmlArchiveEntry;
 import com.knowledge.learning.model.LearningDay;
+import com.knowledge.learning.service.EmlArchiveService;
+import com.knowledge.learning.service.LearningEmlFileService;
 import com.knowledge.learning.service.LearningProcessingService;
 import com.knowledge.learning.service.LearningExcelService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/learning-path")
@@ -21,6 +32,8 @@ public class LearningController {
 
     private final LearningProcessingService processingService;
     private final LearningExcelService excelService;
+    private final EmlArchiveService emlArchive;
+    private final LearningEmlFileService emlFileService;
 
     /**
      * Process today's learning day
@@ -292,6 +305,101 @@ public class LearningController {
         }
     }
 
+    /**
+     * Index of the EML archive (optionally one phase) with its size before and after compression
+     */
+    @GetMapping("/archive")
+    public ResponseEntity<Map<String, Object>> getArchive(@RequestParam(required = false) String phase) {
+        List<EmlArchiveEntry> entries = emlArchive.list(phase);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("stats", emlArchive.getStats());
+        response.put("entries", entries);
+        response.put("count", entries.size());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Latest archived problem set of a day as an .eml download
+     */
+    @GetMapping("/archive/day/{dayNumber}")
+    public ResponseEntity<byte[]> getArchivedDay(@PathVariable int dayNumber) throws IOException {
+        return archivedMessage(emlArchive.findByDay(dayNumber));
+    }
+
+    /**
+     * Any archived problem set by its index id, including earlier versions of a day
+     */
+    @GetMapping("/archive/entries/{id}")
+    public ResponseEntity<byte[]> getArchivedEntry(@PathVariable long id) throws IOException {
+        return archivedMessage(emlArchive.findById(id));
+    }
+
+    /**
+     * Archived problem set by its content hash (X-Problem-Set-Hash)
+     */
+    @GetMapping("/archive/hash/{contentHash}")
+    public ResponseEntity<byte[]> getArchivedProblemSet(@PathVariable String contentHash) throws IOException {
+        return archivedMessage(emlArchive.findByContentHash(contentHash));
+    }
+
+    /**
+     * Archived problem set by Message-ID, e.g. /archive/message?id=<1714550400000.day3.core@gmail.com>
+     */
+    @GetMapping("/archive/message")
+    public ResponseEntity<byte[]> getArchivedMessage(@RequestParam("id") String messageId) throws IOException {
+        return archivedMessage(emlArchive.findByMessageId(messageId));
+    }
+
+    private ResponseEntity<byte[]> archivedMessage(Optional<EmlArchiveEntry> entry) throws IOException {
+        if (entry.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("message/rfc822"))
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(entry.get().getFileName()).build().toString())
+            .body(emlArchive.read(entry.get()));
+    }
+
+    /**
+     * Zip of the EML problem sets of Days from-to (default the whole curriculum), streamed while
+     * the sets are prepared; the X-Export-Id header identifies the export for /export/{exportId}
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportProblemSets(@RequestParam(defaultValue = "1") int from,
+                                                                   @RequestParam(required = false) Integer to) {
+        LearningEmlFileService.EmlExport export;
+        try {
+            export = emlFileService.startExport(from, to);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/zip"))
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(export.getFileName()).build().toString())
+            .header("X-Export-Id", export.getId())
+            .body(out -> emlFileService.writeExport(export, out));
+    }
+
+    /**
+     * Progress of a running or recent export
+     */
+    @GetMapping("/export/{exportId}")
+    public ResponseEntity<Map<String, Object>> getExportProgress(@PathVariable String exportId) {
+        return emlFileService.getExportProgress(exportId)
+            .map(progress -> {
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("progress", progress);
+                return ResponseEntity.ok(response);
+            })
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
     /**
      * Health check for learning path service
      */
@@ -0,0 +1,61 @@
+package com.knowledge.learning.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Index entry of one EML problem set in the compressed archive.
+ *
+ * The message is a single gzip member inside a segment file; {@code segmentOffset} and
+ * {@code compressedLength} locate it, so it is read back with one positioned read. Each problem
+ * set is stored once; {@code contentHash} links the day to it.
+ */
+@Entity
+@Table(name = "eml_archive", indexes = {
+    @Index(name = "idx_eml_archive_day", columnList = "learning_day"),
+    @Index(name = "idx_eml_archive_phase", columnList = "phase"),
+    @Index(name = "idx_eml_archive_message_id", columnList = "message_id"),
+    @Index(name = "idx_eml_archive_file_name", columnList = "file_name"),
+    @Index(name = "idx_eml_archive_content_hash", columnList = "content_hash")
+})
+@Data
+@NoArgsConstructor
+public class EmlArchiveEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "learning_day")
+    private Integer day; // DAY is reserved in H2
+
+    @Column(length = 200)
+    private String phase;
+
+    @Column(name = "message_id", length = 500)
+    private String messageId;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName; // Name of the EML file as it was written, e.g. Day03_Problems_20240501_080000.eml
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash; // Problem set hash from the X-Problem-Set-Hash header, null for older files
+
+    @Column(nullable = false, length = 100)
+    private String segment;
+
+    @Column(name = "segment_offset", nullable = false)
+    private long segmentOffset;
+
+    @Column(name = "compressed_length", nullable = false)
+    private long compressedLength;
+
+    @Column(name = "original_length", nullable = false)
+    private long originalLength;
+
+    @Column(name = "archived_at")
+    private LocalDateTime archivedAt;
+}
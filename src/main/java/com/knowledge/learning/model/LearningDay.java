@@ -1,22 +1,49 @@
 package com.knowledge.learning.model;
 
+import com.knowledge.common.model.CurriculumDay;
+import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+/**
+ * One day of the learning curriculum; a row of the workbook, and of the {@code learning_days}
+ * table when {@code app.state-store=database}
+ */
+@Entity
+@Table(name = "learning_days", indexes = {
+    @Index(name = "idx_learning_days_status", columnList = "status")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class LearningDay {
-    private int day;
+public class LearningDay implements CurriculumDay {
+
+    @Id
+    @Column(name = "learning_day")
+    private int day; // DAY is reserved in H2
+
     private String week;
     private String phase;
+
+    @Column(length = 1000)
     private String algorithmTask;
+
+    @Column(length = 1000)
     private String theoryTask;
+
+    @Column(length = 1000)
     private String codingTask;
+
+    @Column(length = 1000)
     private String reflectionTask;
+
+    @Column(length = 32)
     private String status;
+
+    @Column(length = 4000)
     private String notes;
+
     private String lastProcessed;
     private String completedDate;
     private String emailSubject;
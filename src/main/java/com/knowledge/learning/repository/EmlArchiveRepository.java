@@ -0,0 +1,26 @@
+package com.knowledge.learning.repository;
+
+import com.knowledge.learning.model.EmlArchiveEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface EmlArchiveRepository extends JpaRepository<EmlArchiveEntry, Long> {
+
+    Optional<EmlArchiveEntry> findFirstByDayOrderByArchivedAtDescIdDesc(Integer day);
+
+    Optional<EmlArchiveEntry> findFirstByMessageId(String messageId);
+
+    boolean existsByFileName(String fileName);
+
+    boolean existsByContentHash(String contentHash);
+
+    Optional<EmlArchiveEntry> findFirstByContentHash(String contentHash);
+
+    List<EmlArchiveEntry> findAllByOrderByDayAscIdAsc();
+
+    List<EmlArchiveEntry> findByPhaseIgnoreCaseOrderByDayAscIdAsc(String phase);
+}
@@ -0,0 +1,9 @@
+package com.knowledge.learning.repository;
+
+import com.knowledge.common.repository.CurriculumDayRepository;
+import com.knowledge.learning.model.LearningDay;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface LearningDayRepository extends CurriculumDayRepository<LearningDay> {
+}
@@ -0,0 +1,239 @@
+package com.knowledge.learning.service;
+
+import com.knowledge.learning.model.EmlArchiveEntry;
+import com.knowledge.learning.repository.EmlArchiveRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetHeaders;
+import jakarta.mail.internet.MimeUtility;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compressed, indexed store of all generated EML problem sets.
+ *
+ * Messages are appended to rolling segment files in {@code app.eml-archive.directory}; each
+ * message is its own gzip member, so a segment is also a valid gzip file of all its messages in
+ * order. The {@code eml_archive} table indexes every message by day, phase and Message-ID with
+ * its position in the segment, so any historical problem set is read back with one index lookup
+ * and one positioned read, however large the archive grows.
+ */
+@Service
+@Slf4j
+public class EmlArchiveService {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".eml.gz";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final EmlArchiveRepository archiveRepository;
+    private final Path archiveDirectory;
+    private final long segmentMaxBytes;
+
+    private int segmentNumber;
+
+    public EmlArchiveService(EmlArchiveRepository archiveRepository,
+                             @Value("${app.eml-archive.directory:eml_files/archive}") String archiveDirectory,
+                             @Value("${app.eml-archive.segment-max-mb:16}") long segmentMaxMegabytes) {
+        this.archiveRepository = archiveRepository;
+        this.archiveDirectory = Paths.get(archiveDirectory);
+        this.segmentMaxBytes = Math.max(1, segmentMaxMegabytes) * 1024 * 1024;
+    }
+
+    /**
+     * Size of the archive: indexed messages, segment files and bytes before and after compression
+     */
+    public record ArchiveStats(long messages, long segments, long originalBytes, long compressedBytes) {
+    }
+
+    @PostConstruct
+    void openArchive() throws IOException {
+        Files.createDirectories(archiveDirectory);
+        try (Stream<Path> segments = Files.list(archiveDirectory)) {
+            segmentNumber = segments
+                .map(path -> path.getFileName().toString())
+                .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                .mapToInt(name -> Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                .max()
+                .orElse(1);
+        }
+        log.info("🗄️ EML archive at {} (segment {}, {} message(s) indexed)",
+            archiveDirectory.toAbsolutePath(), segmentNumber, archiveRepository.count());
+    }
+
+    /**
+     * Append an EML file to the current segment and index it; files and problem sets archived
+     * before are skipped
+     */
+    public synchronized EmlArchiveEntry append(File emlFile) throws IOException {
+        if (archiveRepository.existsByFileName(emlFile.getName())) {
+            return null;
+        }
+
+        EmlArchiveEntry entry = new EmlArchiveEntry();
+        entry.setFileName(emlFile.getName());
+        readIndexHeaders(emlFile.toPath(), entry);
+        if (entry.getContentHash() != null && archiveRepository.existsByContentHash(entry.getContentHash())) {
+            log.debug("♻️ Problem set {} already archived", entry.getContentHash().substring(0, 12));
+            return null;
+        }
+
+        Path segment = currentSegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long offset = channel.size();
+            channel.position(offset);
+            // Each message is a complete gzip member, readable on its own from its offset
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), COPY_BUFFER_SIZE);
+            GZIPOutputStream gzip = new GZIPOutputStream(out, COPY_BUFFER_SIZE);
+            try {
+                entry.setOriginalLength(Files.copy(emlFile.toPath(), gzip));
+                gzip.finish();
+                out.flush();
+                channel.force(false);
+            } catch (IOException e) {
+                // Drop the partial member so the segment stays readable
+                channel.truncate(offset);
+                throw e;
+            }
+            entry.setSegment(segment.getFileName().toString());
+            entry.setSegmentOffset(offset);
+            entry.setCompressedLength(channel.size() - offset);
+            gzip.close();
+        }
+
+        entry.setArchivedAt(LocalDateTime.now());
+        EmlArchiveEntry saved = archiveRepository.save(entry);
+        log.info("🗄️ Archived {} (Day {}) in {}: {} → {} bytes", entry.getFileName(), entry.getDay(),
+            entry.getSegment(), entry.getOriginalLength(), entry.getCompressedLength());
+        return saved;
+    }
+
+    /**
+     * Latest archived problem set of the day
+     */
+    public Optional<EmlArchiveEntry> findByDay(int day) {
+        return archiveRepository.findFirstByDayOrderByArchivedAtDescIdDesc(day);
+    }
+
+    public Optional<EmlArchiveEntry> findByMessageId(String messageId) {
+        return archiveRepository.findFirstByMessageId(messageId);
+    }
+
+    public Optional<EmlArchiveEntry> findByContentHash(String contentHash) {
+        return archiveRepository.findFirstByContentHash(contentHash);
+    }
+
+    public Optional<EmlArchiveEntry> findById(long id) {
+        return archiveRepository.findById(id);
+    }
+
+    /**
+     * Index of the archive in day order, optionally limited to one phase
+     */
+    public List<EmlArchiveEntry> list(String phase) {
+        return phase == null || phase.isBlank()
+            ? archiveRepository.findAllByOrderByDayAscIdAsc()
+            : archiveRepository.findByPhaseIgnoreCaseOrderByDayAscIdAsc(phase);
+    }
+
+    /**
+     * The original EML bytes of an archived message
+     */
+    public byte[] read(EmlArchiveEntry entry) throws IOException {
+        ByteBuffer compressed = ByteBuffer.allocate(Math.toIntExact(entry.getCompressedLength()));
+        try (FileChannel channel = FileChannel.open(archiveDirectory.resolve(entry.getSegment()), StandardOpenOption.READ)) {
+            long position = entry.getSegmentOffset();
+            while (compressed.hasRemaining()) {
+                int read = channel.read(compressed, position);
+                if (read < 0) {
+                    throw new IOException("Archive segment " + entry.getSegment() + " is truncated");
+                }
+                position += read;
+            }
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.array()))) {
+            return in.readAllBytes();
+        }
+    }
+
+    public ArchiveStats getStats() {
+        List<EmlArchiveEntry> entries = archiveRepository.findAll();
+        return new ArchiveStats(entries.size(),
+            entries.stream().map(EmlArchiveEntry::getSegment).distinct().count(),
+            entries.stream().mapToLong(EmlArchiveEntry::getOriginalLength).sum(),
+            entries.stream().mapToLong(EmlArchiveEntry::getCompressedLength).sum());
+    }
+
+    private Path currentSegment() throws IOException {
+        Path segment = segmentPath(segmentNumber);
+        if (Files.exists(segment) && Files.size(segment) >= segmentMaxBytes) {
+            segmentNumber++;
+            segment = segmentPath(segmentNumber);
+            log.info("🗄️ Starting EML archive segment {}", segment.getFileName());
+        }
+        return segment;
+    }
+
+    private Path segmentPath(int number) {
+        return archiveDirectory.resolve(String.format("%s%05d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Day, phase and Message-ID from the message headers (only the header block is read)
+     */
+    private static void readIndexHeaders(Path emlFile, EmlArchiveEntry entry) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(emlFile))) {
+            InternetHeaders headers = new InternetHeaders(in);
+            entry.setMessageId(headers.getHeader("Message-ID", null));
+            entry.setContentHash(headers.getHeader(LearningEmlFileService.HASH_HEADER, null));
+            entry.setPhase(decode(headers.getHeader("X-Learning-Phase", null)));
+            String day = headers.getHeader("X-Learning-Day", null);
+            if (day != null && day.trim().matches("\\d+")) {
+                entry.setDay(Integer.parseInt(day.trim()));
+            }
+        } catch (MessagingException e) {
+            throw new IOException("Failed to read headers of " + emlFile.getFileName(), e);
+        }
+        if (entry.getDay() == null) {
+            // Older files without the header are still named after their day
+            String name = emlFile.getFileName().toString();
+            if (name.matches("Day\\d+_.*")) {
+                entry.setDay(Integer.parseInt(name.substring(3, name.indexOf('_'))));
+            }
+        }
+    }
+
+    private static String decode(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return MimeUtility.decodeText(value);
+        } catch (UnsupportedEncodingException e) {
+            return value;
+        }
+    }
+}
@@ -2,42 +2,63 @@ package com.knowledge.learning.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.knowledge.common.model.DigestEntry;
+import com.knowledge.common.model.MailRecipient;
+import com.knowledge.common.model.RenderedEmail;
+import com.knowledge.common.service.DailyDigestService;
+import com.knowledge.common.service.EmailFormattingRules;
+import com.knowledge.common.service.GuardedTextProcessor;
+import com.knowledge.common.service.GuardedTextProcessor.RegexRule;
+import com.knowledge.common.service.GuardedTextProcessor.TextBudget;
+import com.knowledge.common.service.HtmlFragmentExtractor;
+import com.knowledge.common.service.MailRecipientService;
+import com.knowledge.common.service.MappedFileDataSource;
+import com.knowledge.common.service.MarkdownRenderer;
+import com.knowledge.common.service.RenderedEmailService;
 import com.knowledge.learning.model.LearningDay;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StreamUtils;
 
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class LearningEmailService {
 
-    private final JavaMailSender mailSender;
+    private final MailRecipientService recipientService;
+    private final RenderedEmailService renderedEmails;
+    private final DailyDigestService digestService;
+    private final HtmlFragmentExtractor htmlFragmentExtractor;
+    private final MarkdownRenderer markdownRenderer;
+    private final GuardedTextProcessor textGuard;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    @Value("${app.mail-from}")
-    private String fromEmail;
-
-    @Value("${app.mail-to}")
-    private String toEmail;
-
     @Value("${app.email.enabled:true}")
     private boolean emailEnabled;
 
+    private static final String PIPELINE = "learning";
+
+    private static final String TEMPLATE_NAME = "learning-path-email-template.html";
+
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    private static final RegexRule ALGORITHM_BLOCK_RULE =
+        RegexRule.of("<strong>([^<]+)</strong>:", "<div class=\"algorithm-block\"><strong>$1</strong>:");
+    private static final RegexRule CODING_BLOCK_RULE =
+        RegexRule.of("<strong>([^<]+):</strong>", "<div class=\"coding-block\"><strong>$1:</strong>");
+    private static final RegexRule REFLECTION_BLOCK_RULE =
+        RegexRule.of("<li>([^<]+)</li>", "<div class=\"reflection-block\"><li>$1</li></div>");
+    private static final RegexRule RESOURCE_BLOCK_RULE =
+        RegexRule.of("<li>([^<]+)</li>", "<div class=\"resource-block\"><li>$1</li></div>");
+
     /**
      * Send structured learning email using HTML template
      */
@@ -52,12 +73,11 @@ public class LearningEmailService {
 
         try {
             String subject = learningDay.getEmailSubject();
-            String htmlContent = loadAndProcessTemplate(learningDay, content);
+            Map<String, Object> templateValues = buildTemplateValues(learningDay, content);
 
             log.debug("📝 Email prepared - Subject: {}", subject);
-            log.debug("📄 Email content length: {} characters", htmlContent.length());
 
-            sendEmail(subject, htmlContent);
+            sendEmail(subject, templateValues);
 
             log.info("✅ Structured learning email sent successfully for Day {} - {}",
                 learningDay.getDay(), learningDay.getPhase());
@@ -83,13 +103,12 @@ public class LearningEmailService {
 
         try {
             String subject = learningDay.getEmailSubject();
-            String htmlContent = loadAndProcessTemplate(learningDay, content);
+            Map<String, Object> templateValues = buildTemplateValues(learningDay, content);
 
             log.debug("📝 Email with attachment prepared - Subject: {}", subject);
-            log.debug("📄 Email content length: {} characters", htmlContent.length());
             log.debug("📎 Attachment: {} ({} bytes)", emlFile.getName(), emlFile.length());
 
-            sendEmailWithAttachment(subject, htmlContent, emlFile);
+            sendEmailWithAttachment(subject, templateValues, emlFile);
 
             log.info("✅ Structured learning email with EML attachment sent successfully for Day {} - {}",
                 learningDay.getDay(), learningDay.getPhase());
@@ -102,66 +121,91 @@ public class LearningEmailService {
     }
 
     /**
-     * Load HTML template and replace placeholders
+     * Placeholder values for the day's HTML template
      */
-    private String loadAndProcessTemplate(LearningDay learningDay, String content) throws IOException {
-        log.debug("🎨 Loading and processing HTML template for Day {}", learningDay.getDay());
-
-        // Load the HTML template
-        ClassPathResource resource = new ClassPathResource("learning-path-email-template.html");
-        String template = StreamUtils.copyToString(resource.getInputStream(), StandardCharsets.UTF_8);
-
-        // Replace placeholders with actual data
-        String processedHtml = template
-            .replace("{{DAY}}", String.valueOf(learningDay.getDay()))
-            .replace("{{WEEK}}", learningDay.getWeek())
-            .replace("{{PHASE}}", learningDay.getPhase())
-            .replace("{{ALGORITHM_TASK}}", learningDay.getAlgorithmTask())
-            .replace("{{THEORY_TASK}}", learningDay.getTheoryTask())
-            .replace("{{CODING_TASK}}", learningDay.getCodingTask())
-            .replace("{{REFLECTION_TASK}}", learningDay.getReflectionTask())
-            .replace("{{CONTENT}}", parseJsonToStructuredHtml(content))
-            .replace("{{TIMESTAMP}}", LocalDateTime.now().format(DATE_FORMATTER));
-
-        log.debug("✅ Template processed successfully ({} characters)", processedHtml.length());
-        return processedHtml;
+    private Map<String, Object> buildTemplateValues(LearningDay learningDay, String content) {
+        log.debug("🎨 Preparing HTML template values for Day {}", learningDay.getDay());
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("DAY", learningDay.getDay());
+        values.put("WEEK", learningDay.getWeek());
+        values.put("PHASE", learningDay.getPhase());
+        values.put("ALGORITHM_TASK", learningDay.getAlgorithmTask());
+        values.put("THEORY_TASK", learningDay.getTheoryTask());
+        values.put("CODING_TASK", learningDay.getCodingTask());
+        values.put("REFLECTION_TASK", learningDay.getReflectionTask());
+        values.put("CONTENT", parseJsonToStructuredHtml(content));
+        values.put("TIMESTAMP", LocalDateTime.now().format(DATE_FORMATTER));
+        return values;
     }
 
     /**
-     * Send actual email
+     * Send the email to every learning subscriber
      */
-    private void sendEmail(String subject, String htmlContent) throws MessagingException {
+    private void sendEmail(String subject, Map<String, Object> templateValues) {
         log.debug("📮 Sending email with subject: {}", subject);
 
-        MimeMessage message = mailSender.createMimeMessage();
-        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-        helper.setFrom(fromEmail);
-        helper.setTo(toEmail.split(","));
-        helper.setSubject(subject);
-        helper.setText(htmlContent, true);
+        if (digestService.isEnabledFor(PIPELINE)) {
+            digestService.collect(List.of(buildDigestEntry(templateValues, null)));
+            return;
+        }
 
-        mailSender.send(message);
-        log.debug("📬 Email sent successfully to: {}", toEmail);
+        List<MailRecipient> recipients = recipientService.findSubscribers(PIPELINE);
+        RenderedEmail email = renderedEmails.store(PIPELINE, emailKey(templateValues), RenderedEmailService.ALL_AUDIENCE,
+            subject, TEMPLATE_NAME, templateValues, null);
+        RenderedEmailService.DeliveryResult result = renderedEmails.deliver(email, recipients, false);
+        log.debug("📬 Email queued for {} recipient(s), {} already had it", result.queued(), result.skipped());
     }
 
     /**
-     * Send email with attachment
+     * Send email with attachment to every learning subscriber
      */
-    private void sendEmailWithAttachment(String subject, String htmlContent, java.io.File emlFile) throws MessagingException {
+    private void sendEmailWithAttachment(String subject, Map<String, Object> templateValues, java.io.File emlFile) {
         log.debug("📮 Sending email with subject: {} and attachment: {}", subject, emlFile.getName());
 
-        MimeMessage message = mailSender.createMimeMessage();
-        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        if (digestService.isEnabledFor(PIPELINE)) {
+            digestService.collect(List.of(buildDigestEntry(templateValues, emlFile)));
+            return;
+        }
 
-        helper.setFrom(fromEmail);
-        helper.setTo(toEmail.split(","));
-        helper.setSubject(subject);
-        helper.setText(htmlContent, true);
-        helper.addAttachment(emlFile.getName(), emlFile);
+        List<MailRecipient> recipients = recipientService.findSubscribers(PIPELINE);
+        RenderedEmail email = renderedEmails.store(PIPELINE, emailKey(templateValues), RenderedEmailService.ALL_AUDIENCE,
+            subject, TEMPLATE_NAME, templateValues, emlFile);
+        RenderedEmailService.DeliveryResult result = renderedEmails.deliver(email, recipients, false);
+        log.debug("📬 Email with attachment queued for {} recipient(s), {} already had it", result.queued(), result.skipped());
+    }
 
-        mailSender.send(message);
-        log.debug("📬 Email with attachment sent successfully to: {}", toEmail);
+    /**
+     * Section for the daily digest: the day's tasks followed by the generated content
+     */
+    private DigestEntry buildDigestEntry(Map<String, Object> templateValues, java.io.File attachment) {
+        String html = "<div class=\"digest-note\"><strong>📋 Today's Tasks</strong>\n<ul class=\"task-list\">\n"
+            + "<li><strong>🧮 Algorithm:</strong> " + templateValues.get("ALGORITHM_TASK") + "</li>\n"
+            + "<li><strong>📖 Theory:</strong> " + templateValues.get("THEORY_TASK") + "</li>\n"
+            + "<li><strong>💻 Coding:</strong> " + templateValues.get("CODING_TASK") + "</li>\n"
+            + "<li><strong>🤔 Reflection:</strong> " + templateValues.get("REFLECTION_TASK") + "</li>\n"
+            + "</ul></div>\n"
+            + templateValues.get("CONTENT");
+
+        DigestEntry entry = new DigestEntry(PIPELINE,
+            "Day " + templateValues.get("DAY") + " - " + templateValues.get("PHASE"), null, html);
+        if (attachment != null) {
+            try {
+                entry.setAttachmentName(attachment.getName());
+                entry.setAttachmentContentType("message/rfc822");
+                entry.setAttachmentContent(MappedFileDataSource.map(attachment.toPath(), "message/rfc822").toByteArray());
+            } catch (java.io.IOException e) {
+                throw new RuntimeException("Failed to read EML attachment " + attachment.getName(), e);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Key of the day's email in the rendered email cache
+     */
+    private static String emailKey(Map<String, Object> templateValues) {
+        return "day-" + templateValues.get("DAY");
     }
 
     /**
@@ -273,19 +317,22 @@ public class LearningEmailService {
 
         // If content already contains HTML tags, clean it up and enhance it
         if (cleanContent.contains("<") && cleanContent.contains(">")) {
-            return enhanceExistingHtml(cleanContent, sectionType);
+            return textGuard.process("learning.enhance-html", cleanContent,
+                budget -> enhanceExistingHtml(budget, cleanContent, sectionType),
+                UnaryOperator.identity());
         }
 
-        // Convert markdown-style formatting to enhanced HTML
-        String htmlContent = cleanContent
-            .replaceAll("\\*\\*([^*]+)\\*\\*", "<strong>$1</strong>")  // **bold** to <strong>
-            .replaceAll("\\*([^*]+)\\*", "<em>$1</em>")                // *italic* to <em>
-            .replaceAll("(?m)^#{3}\\s+(.+)$", "<h4>$1</h4>")          // ### to h4
-            .replaceAll("(?m)^#{2}\\s+(.+)$", "<h3>$1</h3>")          // ## to h3
-            .replaceAll("(?m)^- (.+)$", "<li>$1</li>")                 // - item to <li>
-            .replaceAll("(?m)^\\d+\\. (.+)$", "<li>$1</li>")           // 1. item to <li>
-            .replaceAll("\\n\\n", "</p>\n<p>")                         // Double newlines to paragraphs
-            .replaceAll("\\n", "<br>\n");                              // Single newlines to breaks
+        // Convert markdown-style formatting to enhanced HTML, falling back to the linear renderer
+        return textGuard.process("learning.format-section", cleanContent,
+            budget -> formatMarkdownSection(budget, cleanContent, sectionType),
+            markdownRenderer::render);
+    }
+
+    /**
+     * Convert markdown-style section text to HTML with section-specific styling
+     */
+    private String formatMarkdownSection(TextBudget budget, String content, String sectionType) {
+        String htmlContent = budget.replaceAll(content, EmailFormattingRules.MARKDOWN_RULES);
 
         // Wrap in paragraphs if not already formatted
         if (!htmlContent.startsWith("<")) {
@@ -293,69 +340,34 @@ public class LearningEmailService {
         }
 
         // Wrap consecutive <li> items in proper lists
-        htmlContent = wrapListItems(htmlContent);
+        htmlContent = budget.replaceAll(htmlContent, EmailFormattingRules.LIST_WRAP_RULES);
 
         // Add section-specific enhancements
-        htmlContent = addSectionSpecificFormatting(htmlContent, sectionType);
-
-        return htmlContent;
+        return addSectionSpecificFormatting(budget, htmlContent, sectionType);
     }
 
     /**
      * Enhance existing HTML content with section-specific formatting
      */
-    private String enhanceExistingHtml(String content, String sectionType) {
-        String enhanced = content
-            .replaceAll("<p></p>", "")
-            .replaceAll("<p>\\s*<h([1-6])>", "<h$1>")
-            .replaceAll("</h([1-6])>\\s*</p>", "</h$1>")
-            .trim();
-
-        return addSectionSpecificFormatting(enhanced, sectionType);
-    }
-
-    /**
-     * Wrap consecutive list items in proper ul/ol tags
-     */
-    private String wrapListItems(String content) {
-        // Handle unordered lists
-        String result = content.replaceAll("(<li>.*?</li>)", "<ul>$1</ul>");
-        result = result.replaceAll("</ul>\\s*<ul>", ""); // Merge consecutive ul tags
+    private String enhanceExistingHtml(TextBudget budget, String content, String sectionType) {
+        String enhanced = budget.replaceAll(content, EmailFormattingRules.HTML_CLEANUP_RULES).trim();
 
-        return result;
+        return addSectionSpecificFormatting(budget, enhanced, sectionType);
     }
 
     /**
      * Add section-specific formatting and styling
      */
-    private String addSectionSpecificFormatting(String content, String sectionType) {
-        switch (sectionType) {
-            case "algorithmGuidance":
-                // Wrap algorithm steps in special blocks
-                content = content.replaceAll("<strong>([^<]+)</strong>:",
-                    "<div class=\"algorithm-block\"><strong>$1</strong>:");
-                break;
-
-            case "codingExercises":
-                // Wrap code examples in special blocks
-                content = content.replaceAll("<strong>([^<]+):</strong>",
-                    "<div class=\"coding-block\"><strong>$1:</strong>");
-                break;
-
-            case "reflectionPrompts":
-                // Wrap reflection questions in special blocks
-                content = content.replaceAll("<li>([^<]+)</li>",
-                    "<div class=\"reflection-block\"><li>$1</li></div>");
-                break;
-
-            case "resourcesAndNext":
-                // Enhance resources with special formatting
-                content = content.replaceAll("<li>([^<]+)</li>",
-                    "<div class=\"resource-block\"><li>$1</li></div>");
-                break;
-        }
-
-        return content;
+    private String addSectionSpecificFormatting(TextBudget budget, String content, String sectionType) {
+        RegexRule rule = switch (sectionType) {
+            case "algorithmGuidance" -> ALGORITHM_BLOCK_RULE;   // Wrap algorithm steps in special blocks
+            case "codingExercises" -> CODING_BLOCK_RULE;        // Wrap code examples in special blocks
+            case "reflectionPrompts" -> REFLECTION_BLOCK_RULE;  // Wrap reflection questions in special blocks
+            case "resourcesAndNext" -> RESOURCE_BLOCK_RULE;     // Enhance resources with special formatting
+            default -> null;
+        };
+
+        return rule == null ? content : budget.replaceAll(content, rule);
     }
 
     /**
@@ -363,7 +375,8 @@ public class LearningEmailService {
      */
     private String cleanJsonContent(String content) {
         // Remove markdown code blocks if present
-        String cleaned = content.replaceAll("```json\\s*", "").replaceAll("```\\s*$", "");
+        String cleaned = textGuard.replaceAll("learning.clean-json", content,
+            EmailFormattingRules::stripJsonFences, EmailFormattingRules.JSON_FENCE_RULES);
 
         // Find the JSON object start and end
         int jsonStart = cleaned.indexOf('{');
@@ -411,90 +424,15 @@ public class LearningEmailService {
      */
     private String extractAndFormatHtmlContent(String htmlContent) {
         log.debug("🔄 Extracting and formatting HTML content for email template");
-        
+
         try {
-            // If it's a complete HTML document, extract the body content
-            if (htmlContent.contains("<body")) {
-                int bodyStart = htmlContent.indexOf("<body");
-                int bodyContentStart = htmlContent.indexOf(">", bodyStart) + 1;
-                int bodyEnd = htmlContent.lastIndexOf("</body>");
-                
-                if (bodyContentStart > 0 && bodyEnd > bodyContentStart) {
-                    String bodyContent = htmlContent.substring(bodyContentStart, bodyEnd);
-                    log.debug("📤 Extracted body content ({} characters)", bodyContent.length());
-                    return enhanceHtmlForEmailTemplate(bodyContent);
-                }
-            }
-            
-            // If it contains main content, extract that
-            if (htmlContent.contains("<main")) {
-                int mainStart = htmlContent.indexOf("<main");
-                int mainContentStart = htmlContent.indexOf(">", mainStart) + 1;
-                int mainEnd = htmlContent.lastIndexOf("</main>");
-                
-                if (mainContentStart > 0 && mainEnd > mainContentStart) {
-                    String mainContent = htmlContent.substring(mainContentStart, mainEnd);
-                    log.debug("📤 Extracted main content ({} characters)", mainContent.length());
-                    return enhanceHtmlForEmailTemplate(mainContent);
-                }
-            }
-            
-            // Otherwise, use the content as-is but enhance it
-            log.debug("📤 Using full HTML content with enhancements");
-            return enhanceHtmlForEmailTemplate(htmlContent);
-            
+            return htmlFragmentExtractor.extract(htmlContent);
         } catch (Exception e) {
             log.error("❌ Error extracting HTML content: {}", e.getMessage(), e);
-            return formatContentAsHtml(htmlContent);
+            return formatMarkdownToHtml(htmlContent);
         }
     }
 
-    /**
-     * Enhance HTML content for better email template integration
-     */
-    private String enhanceHtmlForEmailTemplate(String htmlContent) {
-        log.debug("✨ Enhancing HTML content for email template integration");
-        
-        StringBuilder enhanced = new StringBuilder();
-        enhanced.append("<div class=\"ai-generated-content\">\n");
-        
-        // Clean up the HTML content
-        String cleanHtml = htmlContent
-            .replaceAll("<!DOCTYPE[^>]*>", "")
-            .replaceAll("<html[^>]*>", "")
-            .replaceAll("</html>", "")
-            .replaceAll("<head>.*?</head>", "")
-            .replaceAll("<body[^>]*>", "")
-            .replaceAll("</body>", "")
-            .replaceAll("<header[^>]*>.*?</header>", "")
-            .replaceAll("<footer[^>]*>.*?</footer>", "")
-            .trim();
-        
-        // Add the cleaned content with email-specific enhancements
-        enhanced.append(addEmailSpecificStyles(cleanHtml));
-        enhanced.append("</div>\n");
-        
-        String result = enhanced.toString();
-        log.debug("✅ HTML content enhanced for email template ({} characters)", result.length());
-        return result;
-    }
-
-    /**
-     * Add email-specific CSS classes and styling to HTML content
-     */
-    private String addEmailSpecificStyles(String htmlContent) {
-        return htmlContent
-            .replaceAll("<section([^>]*)class=\"([^\"]*)\"([^>]*)>", 
-                       "<section$1class=\"$2 email-section\"$3>")
-            .replaceAll("<section(?![^>]*class)", "<section class=\"email-section\"")
-            .replaceAll("<div([^>]*)class=\"block\"([^>]*)>", 
-                       "<div$1class=\"block email-content-block\"$2>")
-            .replaceAll("<h1([^>]*)>", "<h1$1 class=\"email-h1\">")
-            .replaceAll("<h2([^>]*)>", "<h2$1 class=\"email-h2\">")
-            .replaceAll("<h3([^>]*)>", "<h3$1 class=\"email-h3\">")
-            .replaceAll("<pre([^>]*)>", "<pre$1 class=\"email-code-block\">");
-    }
-
     /**
      * Format content as HTML when it's not valid JSON or HTML
      */
@@ -507,7 +445,7 @@ public class LearningEmailService {
         
         // If it's already HTML, enhance it
         if (isHtmlContent(content)) {
-            return enhanceHtmlForEmailTemplate(content);
+            return extractAndFormatHtmlContent(content);
         }
         
         // Otherwise, convert markdown-style formatting to HTML
@@ -520,23 +458,7 @@ public class LearningEmailService {
     private String formatMarkdownToHtml(String content) {
         log.debug("🔄 Using fallback markdown formatting");
 
-        // Enhanced markdown-style formatting to HTML
-        String htmlContent = content
-            .replaceAll("\\*\\*([^*]+)\\*\\*", "<strong>$1</strong>")  // **bold** to <strong>
-            .replaceAll("\\*([^*]+)\\*", "<em>$1</em>")                // *italic* to <em>
-            .replaceAll("(?m)^#{3}\\s+(.+)$", "<h3>$1</h3>")          // ### heading to h3
-            .replaceAll("(?m)^#{2}\\s+(.+)$", "<h2>$1</h2>")          // ## heading to h2
-            .replaceAll("(?m)^#{1}\\s+(.+)$", "<h1>$1</h1>")          // # heading to h1
-            .replaceAll("\\n\\n", "</p><p>")                           // Double newlines to paragraphs
-            .replaceAll("\\n", "<br>")                                 // Single newlines to breaks
-            .replaceAll("^(.)", "<p>$1")                               // Start with paragraph
-            .replaceAll("(.)$", "$1</p>");                             // End with paragraph
-
-        // Fix any double paragraph tags and clean up
-        htmlContent = htmlContent
-            .replaceAll("<p></p>", "")
-            .replaceAll("<p><h([1-6])>", "<h$1>")
-            .replaceAll("</h([1-6])></p>", "</h$1>");
+        String htmlContent = markdownRenderer.render(content);
 
         log.debug("✅ Markdown content formatted successfully ({} characters)", htmlContent.length());
         return htmlContent;
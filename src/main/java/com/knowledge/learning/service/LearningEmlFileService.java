@@ -1,24 +1,62 @@
 package com.knowledge.learning.service;
 
+import com.knowledge.learning.model.EmlArchiveEntry;
 import com.knowledge.learning.model.LearningDay;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeUtility;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Base64;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class LearningEmlFileService {
 
+    private final EmlArchiveService emlArchive;
+    private final LearningExcelService excelService;
+    private final LearningProblemGenerationService problemGenerationService;
+
     @Value("${app.eml-output-directory:eml_files}")
     private String emlOutputDirectory;
 
@@ -28,38 +66,63 @@ public class LearningEmlFileService {
     @Value("${app.mail-to}")
     private String toEmail;
 
-    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-    private static final DateTimeFormatter FILE_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    @Value("${app.eml-archive.loose-file-retention-days:30}")
+    private int looseFileRetentionDays;
+
+    @Value("${app.eml-export.threads:4}")
+    private int exportThreads;
+
+    // Header with the problem set hash, also read by the archive
+    static final String HASH_HEADER = "X-Problem-Set-Hash";
+    private static final int FILE_HASH_LENGTH = 16;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int KEPT_EXPORTS = 20;
+
+    // EML files are only written and parsed, never sent, so no mail settings are needed
+    private static final Session SESSION = Session.getInstance(new Properties());
+
+    // Progress of the most recent exports by id
+    private final Map<String, EmlExport> exports = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, EmlExport> eldest) {
+            return size() > KEPT_EXPORTS;
+        }
+    });
+
+    private ExecutorService exportPool;
+
+    @PostConstruct
+    void startExportPool() {
+        exportPool = Executors.newFixedThreadPool(Math.max(1, exportThreads), new CustomizableThreadFactory("eml-export-"));
+    }
+
+    @PreDestroy
+    void stopExportPool() {
+        exportPool.shutdownNow();
+    }
 
     /**
-     * Create EML file from HTML content with proper email formatting
+     * Create EML file from HTML content with proper email formatting.
+     *
+     * Files are content-addressed: the name carries the hash of the problem set, so an unchanged
+     * set (e.g. a re-run after a cache hit) reuses the existing file instead of writing a new one.
      */
     public File createEmlFile(LearningDay learningDay, String htmlContent) {
         log.info("📧 Creating EML file for Day {}: {}", learningDay.getDay(), learningDay.getPhase());
 
         try {
-            // Create output directory if it doesn't exist
-            Path outputDir = Paths.get(emlOutputDirectory);
-            if (!Files.exists(outputDir)) {
-                Files.createDirectories(outputDir);
-                log.info("📁 Created EML output directory: {}", outputDir.toAbsolutePath());
+            String hash = problemSetHash(learningDay, htmlContent, "8bit");
+            String filename = problemSetFileName(learningDay, hash);
+            File existing = findExisting(filename, learningDay);
+            if (existing != null) {
+                return existing;
             }
 
-            // Generate filename
-            String timestamp = LocalDateTime.now().format(FILE_DATE_FORMATTER);
-            String filename = String.format("Day%02d_Problems_%s.eml", learningDay.getDay(), timestamp);
-            File emlFile = new File(outputDir.toFile(), filename);
-
-            // Create EML content
-            String emlContent = generateEmlContent(learningDay, htmlContent);
-
-            // Write to file
-            try (FileWriter writer = new FileWriter(emlFile, java.nio.charset.StandardCharsets.UTF_8)) {
-                writer.write(emlContent);
-            }
+            File emlFile = writeEml(buildProblemSetMessage(learningDay, htmlContent, hash), filename);
 
             log.info("✅ EML file created successfully: {} ({} bytes)", 
                 emlFile.getAbsolutePath(), emlFile.length());
+            archive(emlFile);
 
             return emlFile;
 
@@ -70,38 +133,92 @@ public class LearningEmlFileService {
     }
 
     /**
-     * Generate complete EML content with proper headers and HTML body
+     * The 8bit problem set message of createEmlFile
      */
-    private String generateEmlContent(LearningDay learningDay, String htmlContent) {
-        log.debug("🔧 Generating EML content for Day {}", learningDay.getDay());
+    private MimeMessage buildProblemSetMessage(LearningDay learningDay, String htmlContent, String hash)
+            throws MessagingException, UnsupportedEncodingException {
+        MimeMessage message = buildEmlMessage(learningDay, htmlContent, "8bit", hash);
+        message.setHeader("X-Priority", "1");
+        message.setHeader("Importance", "High");
+        return message;
+    }
 
-        StringBuilder eml = new StringBuilder();
+    private static String problemSetFileName(LearningDay learningDay, String hash) {
+        return String.format("Day%02d_Problems_%s.eml", learningDay.getDay(), hash.substring(0, FILE_HASH_LENGTH));
+    }
+
+    /**
+     * Build the EML as a real MIME message; the body is encoded with the given transfer encoding
+     * while the message is written
+     */
+    private MimeMessage buildEmlMessage(LearningDay learningDay, String htmlContent, String transferEncoding,
+                                        String hash) throws MessagingException, UnsupportedEncodingException {
+        log.debug("🔧 Generating EML content for Day {}", learningDay.getDay());
 
-        // EML Headers
         String subject = String.format("🎯 Day %d Programming Challenges - %s", learningDay.getDay(), learningDay.getPhase());
-        String messageId = generateMessageId(learningDay);
-        String currentDateTime = java.time.ZonedDateTime.now().format(DateTimeFormatter.RFC_1123_DATE_TIME);
-
-        eml.append("From: ").append(fromEmail).append("\r\n");
-        eml.append("To: ").append(toEmail).append("\r\n");
-        eml.append("Subject: ").append(subject).append("\r\n");
-        eml.append("Date: ").append(currentDateTime).append("\r\n");
-        eml.append("Message-ID: ").append(messageId).append("\r\n");
-        eml.append("MIME-Version: 1.0\r\n");
-        eml.append("Content-Type: text/html; charset=UTF-8\r\n");
-        eml.append("Content-Transfer-Encoding: 8bit\r\n");
-        eml.append("X-Mailer: 6-Month Learning Path Service\r\n");
-        eml.append("X-Learning-Day: ").append(learningDay.getDay()).append("\r\n");
-        eml.append("X-Learning-Phase: ").append(learningDay.getPhase()).append("\r\n");
-        eml.append("X-Priority: 1\r\n");
-        eml.append("Importance: High\r\n");
-        eml.append("\r\n"); // Empty line separating headers from body
-
-        // Add HTML body
-        eml.append(htmlContent);
-
-        log.debug("✅ EML content generated ({} characters)", eml.length());
-        return eml.toString();
+        MimeMessage message = new EmlMimeMessage(generateMessageId(learningDay));
+        message.setFrom(new InternetAddress(fromEmail));
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(toEmail));
+        message.setSubject(subject, "UTF-8");
+        message.setSentDate(new Date());
+        message.setText(htmlContent, "UTF-8", "html");
+        message.setHeader("Content-Transfer-Encoding", transferEncoding);
+        message.setHeader("X-Mailer", "6-Month Learning Path Service");
+        message.setHeader("X-Learning-Day", String.valueOf(learningDay.getDay()));
+        message.setHeader("X-Learning-Phase", MimeUtility.encodeText(learningDay.getPhase(), "UTF-8", null));
+        message.setHeader(HASH_HEADER, hash);
+        return message;
+    }
+
+    /**
+     * Hash of what makes a problem set: day, phase, body and its encoding (not Date or Message-ID)
+     */
+    private static String problemSetHash(LearningDay learningDay, String htmlContent, String transferEncoding) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((learningDay.getDay() + "\0" + learningDay.getPhase() + "\0" + transferEncoding + "\0")
+                .getBytes(StandardCharsets.UTF_8));
+            digest.update(htmlContent.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * The already written file of an unchanged problem set, null when it has to be written
+     */
+    private File findExisting(String filename, LearningDay learningDay) {
+        File existing = Paths.get(emlOutputDirectory, filename).toFile();
+        if (!existing.isFile()) {
+            return null;
+        }
+        log.info("♻️ Day {} problem set unchanged - reusing {}", learningDay.getDay(), existing.getName());
+        archive(existing);
+        return existing;
+    }
+
+    /**
+     * Write the message straight from JavaMail into the file through one buffered channel
+     */
+    private File writeEml(MimeMessage message, String filename) throws IOException, MessagingException {
+        Path outputDir = Paths.get(emlOutputDirectory);
+        if (!Files.exists(outputDir)) {
+            Files.createDirectories(outputDir);
+            log.info("📁 Created EML output directory: {}", outputDir.toAbsolutePath());
+        }
+
+        message.saveChanges();
+        Path emlPath = outputDir.resolve(filename);
+        // Write under a temporary name so a content-addressed file is never seen half-written
+        Path partPath = outputDir.resolve(filename + ".part");
+        try (FileChannel channel = FileChannel.open(partPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), WRITE_BUFFER_SIZE)) {
+            message.writeTo(out);
+        }
+        Files.move(partPath, emlPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return emlPath.toFile();
     }
 
     /**
@@ -110,7 +227,9 @@ public class LearningEmlFileService {
     private String generateMessageId(LearningDay learningDay) {
         String timestamp = String.valueOf(System.currentTimeMillis());
         String domain = fromEmail.contains("@") ? fromEmail.substring(fromEmail.indexOf("@") + 1) : "learning-path.local";
-        return String.format("<%s.day%d.%s@%s>", timestamp, learningDay.getDay(), learningDay.getPhase().toLowerCase(), domain);
+        // Phase names contain spaces and punctuation that are not allowed in a Message-ID
+        String phase = learningDay.getPhase().toLowerCase().replaceAll("[^a-z0-9]+", "-").replaceAll("^-|-$", "");
+        return String.format("<%s.day%d.%s@%s>", timestamp, learningDay.getDay(), phase, domain);
     }
 
     /**
@@ -120,22 +239,18 @@ public class LearningEmlFileService {
         log.info("📧 Creating Base64 EML file for Day {}: {}", learningDay.getDay(), learningDay.getPhase());
 
         try {
-            Path outputDir = Paths.get(emlOutputDirectory);
-            if (!Files.exists(outputDir)) {
-                Files.createDirectories(outputDir);
+            String hash = problemSetHash(learningDay, htmlContent, "base64");
+            String filename = String.format("Day%02d_Problems_B64_%s.eml", learningDay.getDay(), hash.substring(0, FILE_HASH_LENGTH));
+            File existing = findExisting(filename, learningDay);
+            if (existing != null) {
+                return existing;
             }
 
-            String timestamp = LocalDateTime.now().format(FILE_DATE_FORMATTER);
-            String filename = String.format("Day%02d_Problems_B64_%s.eml", learningDay.getDay(), timestamp);
-            File emlFile = new File(outputDir.toFile(), filename);
-
-            String emlContent = generateBase64EmlContent(learningDay, htmlContent);
-
-            try (FileWriter writer = new FileWriter(emlFile, java.nio.charset.StandardCharsets.UTF_8)) {
-                writer.write(emlContent);
-            }
+            // JavaMail encodes the body in 76-character base64 lines while writing it
+            File emlFile = writeEml(buildEmlMessage(learningDay, htmlContent, "base64", hash), filename);
 
             log.info("✅ Base64 EML file created: {} ({} bytes)", emlFile.getAbsolutePath(), emlFile.length());
+            archive(emlFile);
             return emlFile;
 
         } catch (Exception e) {
@@ -145,51 +260,192 @@ public class LearningEmlFileService {
     }
 
     /**
-     * Generate EML content with Base64 encoding
+     * Progress of one bulk export, updated by the export workers while the zip is streamed
      */
-    private String generateBase64EmlContent(LearningDay learningDay, String htmlContent) {
-        StringBuilder eml = new StringBuilder();
+    public static final class EmlExport {
+
+        private final String id = UUID.randomUUID().toString();
+        private final int fromDay;
+        private final int toDay;
+        private final List<LearningDay> days;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final AtomicInteger fromArchive = new AtomicInteger();
+        private final AtomicInteger rendered = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger written = new AtomicInteger();
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+
+        private EmlExport(int fromDay, int toDay, List<LearningDay> days) {
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.days = days;
+        }
 
-        String subject = String.format("🎯 Day %d Programming Challenges - %s", learningDay.getDay(), learningDay.getPhase());
-        String messageId = generateMessageId(learningDay);
-        String currentDateTime = LocalDateTime.now().format(DateTimeFormatter.RFC_1123_DATE_TIME);
-
-        // Encode HTML content in Base64
-        String encodedContent = Base64.getEncoder().encodeToString(htmlContent.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-        
-        // Split Base64 content into 76-character lines (RFC requirement)
-        String wrappedContent = wrapBase64Content(encodedContent);
-
-        eml.append("From: ").append(fromEmail).append("\r\n");
-        eml.append("To: ").append(toEmail).append("\r\n");
-        eml.append("Subject: ").append(subject).append("\r\n");
-        eml.append("Date: ").append(currentDateTime).append("\r\n");
-        eml.append("Message-ID: ").append(messageId).append("\r\n");
-        eml.append("MIME-Version: 1.0\r\n");
-        eml.append("Content-Type: text/html; charset=UTF-8\r\n");
-        eml.append("Content-Transfer-Encoding: base64\r\n");
-        eml.append("X-Mailer: 6-Month Learning Path Service\r\n");
-        eml.append("X-Learning-Day: ").append(learningDay.getDay()).append("\r\n");
-        eml.append("X-Learning-Phase: ").append(learningDay.getPhase()).append("\r\n");
-        eml.append("\r\n");
-        eml.append(wrappedContent);
-
-        return eml.toString();
+        public String getId() {
+            return id;
+        }
+
+        public String getFileName() {
+            return String.format("learning-path-days-%03d-%03d.zip", fromDay, toDay);
+        }
+
+        public ExportProgress progress() {
+            return new ExportProgress(id, fromDay, toDay, days.size(), fromArchive.get(), rendered.get(), failed.get(),
+                written.get(), finishedAt != null, startedAt, finishedAt, error);
+        }
     }
 
     /**
-     * Wrap Base64 content to 76-character lines as per RFC requirements
+     * Snapshot of an export: problem sets read from the archive, rendered from the curriculum,
+     * failed, and written to the zip so far
      */
-    private String wrapBase64Content(String base64Content) {
-        StringBuilder wrapped = new StringBuilder();
-        int lineLength = 76;
-        
-        for (int i = 0; i < base64Content.length(); i += lineLength) {
-            int end = Math.min(i + lineLength, base64Content.length());
-            wrapped.append(base64Content, i, end).append("\r\n");
+    public record ExportProgress(String id, int fromDay, int toDay, int totalDays, int fromArchive, int rendered,
+                                 int failed, int written, boolean finished, LocalDateTime startedAt,
+                                 LocalDateTime finishedAt, String error) {
+    }
+
+    private record ExportedEml(String fileName, byte[] content) {
+    }
+
+    /**
+     * Register an export of Days from-to (to null for the rest of the curriculum); the zip is
+     * produced by {@link #writeExport}
+     */
+    public EmlExport startExport(int fromDay, Integer toDay) {
+        int lastDay = toDay != null ? toDay : Integer.MAX_VALUE;
+        List<LearningDay> days = excelService.getAllLearningDays().stream()
+            .filter(day -> day.getDay() >= fromDay && day.getDay() <= lastDay)
+            .toList();
+        if (days.isEmpty()) {
+            throw new IllegalArgumentException("No curriculum days between " + fromDay + " and " + (toDay != null ? toDay : "the end"));
+        }
+
+        EmlExport export = new EmlExport(days.get(0).getDay(), days.get(days.size() - 1).getDay(), days);
+        exports.put(export.getId(), export);
+        return export;
+    }
+
+    public Optional<ExportProgress> getExportProgress(String exportId) {
+        return Optional.ofNullable(exports.get(exportId)).map(EmlExport::progress);
+    }
+
+    /**
+     * Stream the export as one zip of EML files in day order.
+     *
+     * Each day's problem set is taken from the archive, or rendered from the curriculum's offline
+     * problem template when the day was never processed; no AI calls are made. Days are prepared
+     * on the export pool ({@code app.eml-export.threads}) at most two per thread ahead of the
+     * writer, so memory stays bounded however long the range. A day that fails is logged, counted
+     * and left out of the zip.
+     */
+    public void writeExport(EmlExport export, OutputStream out) throws IOException {
+        log.info("📦 Exporting {} EML problem set(s) for Days {}-{} (export {})",
+            export.days.size(), export.fromDay, export.toDay, export.getId());
+        long start = System.currentTimeMillis();
+        int window = Math.max(1, exportThreads) * 2;
+        Deque<Future<ExportedEml>> pending = new ArrayDeque<>(window);
+        int next = 0;
+
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, WRITE_BUFFER_SIZE));
+        try {
+            while (next < export.days.size() || !pending.isEmpty()) {
+                while (next < export.days.size() && pending.size() < window) {
+                    LearningDay learningDay = export.days.get(next++);
+                    pending.add(exportPool.submit(() -> exportDay(learningDay, export)));
+                }
+                ExportedEml eml = await(pending.poll());
+                if (eml != null) {
+                    zip.putNextEntry(new ZipEntry(eml.fileName()));
+                    zip.write(eml.content());
+                    zip.closeEntry();
+                    export.written.incrementAndGet();
+                }
+            }
+            // The response owns the stream: finish the zip, never close it
+            zip.finish();
+            zip.flush();
+        } catch (IOException | RuntimeException e) {
+            pending.forEach(future -> future.cancel(true));
+            export.error = e.getMessage();
+            log.error("❌ EML export {} failed after {} file(s): {}", export.getId(), export.written.get(), e.getMessage());
+            throw e;
+        } finally {
+            export.finishedAt = LocalDateTime.now();
+        }
+
+        ExportProgress progress = export.progress();
+        log.info("✅ EML export {} completed in {} ms: {} file(s) ({} archived, {} rendered, {} failed)",
+            export.getId(), System.currentTimeMillis() - start, progress.written(), progress.fromArchive(),
+            progress.rendered(), progress.failed());
+    }
+
+    /**
+     * One day's problem set for the export, null when it could not be produced
+     */
+    private ExportedEml exportDay(LearningDay learningDay, EmlExport export) {
+        try {
+            Optional<EmlArchiveEntry> archived = emlArchive.findByDay(learningDay.getDay());
+            if (archived.isPresent()) {
+                ExportedEml eml = new ExportedEml(archived.get().getFileName(), emlArchive.read(archived.get()));
+                export.fromArchive.incrementAndGet();
+                return eml;
+            }
+
+            String htmlContent = problemGenerationService.generateOfflineProblemContent(learningDay);
+            String hash = problemSetHash(learningDay, htmlContent, "8bit");
+            MimeMessage message = buildProblemSetMessage(learningDay, htmlContent, hash);
+            message.saveChanges();
+            ByteArrayOutputStream content = new ByteArrayOutputStream(htmlContent.length() + 2048);
+            message.writeTo(content);
+            export.rendered.incrementAndGet();
+            return new ExportedEml(problemSetFileName(learningDay, hash), content.toByteArray());
+
+        } catch (Exception e) {
+            export.failed.incrementAndGet();
+            log.warn("⚠️ Skipping Day {} in EML export {}: {}", learningDay.getDay(), export.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static ExportedEml await(Future<ExportedEml> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("EML export interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("EML export failed", e.getCause());
+        }
+    }
+
+    /**
+     * Add the file to the archive; on failure it stays loose and the next cleanup archives it
+     */
+    private void archive(File emlFile) {
+        try {
+            emlArchive.append(emlFile);
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to archive EML file {}: {}", emlFile.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * MimeMessage that keeps the learning-day Message-ID instead of generating one on save
+     */
+    private static final class EmlMimeMessage extends MimeMessage {
+
+        private final String messageId;
+
+        private EmlMimeMessage(String messageId) {
+            super(SESSION);
+            this.messageId = messageId;
+        }
+
+        @Override
+        protected void updateMessageID() throws MessagingException {
+            setHeader("Message-ID", messageId);
         }
-        
-        return wrapped.toString();
     }
 
     /**
@@ -200,38 +456,39 @@ public class LearningEmlFileService {
     }
 
     /**
-     * Clean up old EML files (keep only last 30 days)
+     * Archive loose EML files and delete those older than the retention period.
+     *
+     * The archive keeps the full history; loose files are only kept for a while as attachments
+     * of cached emails that may be resent. Files that could not be archived are kept.
      */
     public void cleanupOldEmlFiles() {
-        log.info("🧹 Cleaning up old EML files...");
+        log.info("🧹 Archiving and cleaning up old EML files...");
 
-        try {
-            Path outputDir = Paths.get(emlOutputDirectory);
-            if (!Files.exists(outputDir)) {
-                return;
-            }
+        Path outputDir = Paths.get(emlOutputDirectory);
+        if (!Files.exists(outputDir)) {
+            return;
+        }
 
-            long cutoffTime = System.currentTimeMillis() - (30L * 24 * 60 * 60 * 1000); // 30 days ago
+        long cutoffTime = System.currentTimeMillis() - looseFileRetentionDays * 24L * 60 * 60 * 1000;
+        int archived = 0;
+        int deleted = 0;
 
-            Files.list(outputDir)
-                .filter(path -> path.toString().endsWith(".eml"))
-                .filter(path -> {
-                    try {
-                        return Files.getLastModifiedTime(path).toMillis() < cutoffTime;
-                    } catch (IOException e) {
-                        return false;
+        try (Stream<Path> files = Files.list(outputDir)) {
+            for (Path path : files.filter(file -> file.toString().endsWith(".eml")).sorted().toList()) {
+                try {
+                    if (emlArchive.append(path.toFile()) != null) {
+                        archived++;
                     }
-                })
-                .forEach(path -> {
-                    try {
+                    if (Files.getLastModifiedTime(path).toMillis() < cutoffTime) {
                         Files.delete(path);
-                        log.debug("🗑️ Deleted old EML file: {}", path.getFileName());
-                    } catch (IOException e) {
-                        log.warn("⚠️ Failed to delete old EML file: {}", path.getFileName());
+                        deleted++;
+                        log.debug("🗑️ Deleted archived EML file: {}", path.getFileName());
                     }
-                });
-
-            log.info("✅ EML cleanup completed");
+                } catch (IOException e) {
+                    log.warn("⚠️ Keeping EML file {}: {}", path.getFileName(), e.getMessage());
+                }
+            }
+            log.info("✅ EML cleanup completed: {} file(s) archived, {} loose file(s) deleted", archived, deleted);
 
         } catch (Exception e) {
             log.error("❌ Error during EML cleanup: {}", e.getMessage(), e);
@@ -246,16 +503,12 @@ public class LearningEmlFileService {
             return false;
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(emlFile))) {
-            String firstLine = reader.readLine();
-            
-            // Check if it starts with proper email headers
-            return firstLine != null && 
-                   (firstLine.startsWith("From:") || 
-                    firstLine.startsWith("Return-Path:") ||
-                    firstLine.startsWith("Received:"));
+        try (InputStream in = new BufferedInputStream(new FileInputStream(emlFile))) {
+            // Check that it parses as a message with proper email headers
+            MimeMessage message = new MimeMessage(SESSION, in);
+            return message.getFrom() != null && message.getContentType() != null;
 
-        } catch (IOException e) {
+        } catch (IOException | MessagingException e) {
             log.error("❌ Error validating EML file: {}", e.getMessage());
             return false;
         }
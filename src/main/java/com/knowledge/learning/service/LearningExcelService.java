@@ -1,28 +1,68 @@
 package com.knowledge.learning.service;
 
+import com.knowledge.common.service.CurriculumCache;
+import com.knowledge.common.service.CurriculumStateStore;
+import com.knowledge.common.service.SheetRowIndex;
+import com.knowledge.common.service.StreamingXlsxReader;
+import com.knowledge.common.service.StreamingXlsxReader.SheetRow;
+import com.knowledge.common.service.WorkbookWriteBehind;
 import com.knowledge.learning.model.LearningDay;
+import com.knowledge.learning.repository.LearningDayRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class LearningExcelService {
 
     @Value("${app.learning-excel-path:6_month_learning_path.xlsx}")
     private String learningExcelPath;
 
+    private final LearningDayRepository learningDayRepository;
+
+    // excel: the workbook is the store; database: the learning_days table is, and the workbook
+    // follows it through the write-behind buffer
+    @Value("${app.state-store:excel}")
+    private String stateStore;
+
+    // Database store: claims older than this are released again (0 = only at startup)
+    @Value("${app.state-store.claim-timeout-minutes:120}")
+    private long claimTimeoutMinutes;
+
+    // Day statuses in the workbook or the table, depending on app.state-store
+    private CurriculumStateStore<LearningDay> dayStore;
+
+    // Row number of each day in the sheet, filled by the cache's read pass
+    private SheetRowIndex rowIndex;
+
+    // Status changes not yet written to the workbook, journaled until they are
+    private WorkbookWriteBehind statusUpdates;
+
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     // Column indices for the Excel file
@@ -38,67 +78,93 @@ public class LearningExcelService {
     private static final int COL_COMPLETED_DATE = 9;
     private static final int COL_EMAIL_SUBJECT = 10;
 
+    @PostConstruct
+    void openCurriculum() throws IOException {
+        // Parsed rows of the workbook, reloaded only when the file changes
+        CurriculumCache<LearningDay> curriculum = new CurriculumCache<>("learning", Paths.get(learningExcelPath),
+            this::readLearningDays, LearningDay::getDay, LearningDay::getStatus);
+        rowIndex = new SheetRowIndex("learning", row -> dayKey(row.getCell(COL_DAY)));
+        statusUpdates = new WorkbookWriteBehind("learning", Paths.get(learningExcelPath), this::writeStatusUpdates);
+        dayStore = new CurriculumStateStore<>("learning_days", "database".equalsIgnoreCase(stateStore.trim()),
+            curriculum, statusUpdates, learningDayRepository,
+            new CurriculumStateStore.Columns(COL_STATUS, COL_NOTES, COL_LAST_PROCESSED, COL_COMPLETED_DATE),
+            LearningExcelService::copyOf, this::createLearningFileIfMissing);
+        if (statusUpdates.open() > 0) {
+            // Updates a crash left unwritten
+            flushStatusUpdates();
+        }
+        dayStore.open();
+    }
+
     /**
      * Get next learning day to process
      */
     public LearningDay getNextLearningDay() {
         log.info("🔍 Searching for next learning day to process...");
 
-        if (!new File(learningExcelPath).exists()) {
-            log.warn("📁 Learning Excel file not found, creating with sample data: {}", learningExcelPath);
-            createLearningFile();
+        if (!dayStore.isDatabase()) {
+            createLearningFileIfMissing();
         }
 
-        try (FileInputStream fis = new FileInputStream(learningExcelPath);
-             Workbook workbook = new XSSFWorkbook(fis)) {
-
-            Sheet sheet = workbook.getSheetAt(0);
-            log.info("📋 Reading Excel sheet with {} rows", sheet.getLastRowNum());
-
-            for (Row row : sheet) {
-                if (row.getRowNum() == 0) continue; // Skip header
-
-                String status = getCellStringValue(row.getCell(COL_STATUS));
-                if ("OPEN".equalsIgnoreCase(status)) {
-                    LearningDay learningDay = mapRowToLearningDay(row);
-                    log.info("✅ Found next learning day: Day {} - {} ({})",
-                        learningDay.getDay(), learningDay.getPhase(), learningDay.getWeek());
-                    return learningDay;
-                }
-            }
-
+        LearningDay learningDay = dayStore.firstWithStatus("OPEN");
+        if (learningDay == null) {
             log.info("🏁 No more OPEN learning days found");
             return null;
-
-        } catch (IOException e) {
-            log.error("❌ Error reading learning Excel file: {}", e.getMessage(), e);
-            return null;
         }
+
+        log.info("✅ Found next learning day: Day {} - {} ({})",
+            learningDay.getDay(), learningDay.getPhase(), learningDay.getWeek());
+        return learningDay;
     }
 
     /**
-     * Get all learning days for overview
+     * Get all learning days for overview (cached rows in sheet order, or the table in day order)
      */
     public List<LearningDay> getAllLearningDays() {
         log.debug("📚 Retrieving all learning days...");
-        List<LearningDay> learningDays = new ArrayList<>();
+        return dayStore.all();
+    }
 
-        try (FileInputStream fis = new FileInputStream(learningExcelPath);
-             Workbook workbook = new XSSFWorkbook(fis)) {
+    /**
+     * Learning day by number, null when the curriculum has no such day
+     */
+    public LearningDay getLearningDay(int day) {
+        return dayStore.byDay(day);
+    }
 
-            Sheet sheet = workbook.getSheetAt(0);
+    /**
+     * The next OPEN learning days in curriculum order
+     */
+    public List<LearningDay> getOpenLearningDays(int limit) {
+        return dayStore.withStatus("OPEN", limit);
+    }
 
-            for (Row row : sheet) {
-                if (row.getRowNum() == 0) continue; // Skip header
-                learningDays.add(mapRowToLearningDay(row));
-            }
+    /**
+     * Next learning day for a scheduled or "today" run, claimed with the database store so
+     * concurrent triggers never get the same day
+     */
+    public LearningDay claimNextLearningDay() {
+        return dayStore.claimNext(this::getNextLearningDay);
+    }
 
-            log.info("📊 Retrieved {} total learning days", learningDays.size());
+    /**
+     * Stream all learning days from the workbook (the curriculum cache's loader)
+     */
+    private List<LearningDay> readLearningDays(Path file) throws IOException {
+        List<LearningDay> learningDays = new ArrayList<>();
+        Map<String, Integer> rowNums = new HashMap<>();
 
-        } catch (IOException e) {
-            log.error("❌ Error reading all learning days: {}", e.getMessage(), e);
-        }
+        StreamingXlsxReader.readFirstSheet(file, row -> {
+            // Skip the header and rows without a day number
+            if (row.rowNum() > 0 && !row.text(COL_DAY).isEmpty()) {
+                rowNums.putIfAbsent(String.valueOf(row.number(COL_DAY)), row.rowNum());
+                learningDays.add(mapRowToLearningDay(row));
+            }
+            return true;
+        });
 
+        rowIndex.reset(rowNums);
+        log.info("📊 Retrieved {} total learning days", learningDays.size());
         return learningDays;
     }
 
@@ -107,7 +173,7 @@ public class LearningExcelService {
      */
     public void markLearningDayCompleted(int day, String notes) {
         log.info("✅ Marking Day {} as COMPLETED", day);
-        updateLearningDayStatusInternal(day, "COMPLETED", notes, LocalDateTime.now().format(DATE_FORMATTER));
+        dayStore.updateStatus(day, "COMPLETED", notes, LocalDateTime.now().format(DATE_FORMATTER));
     }
 
     /**
@@ -115,7 +181,7 @@ public class LearningExcelService {
      */
     public void markLearningDayError(int day, String errorMessage) {
         log.error("❌ Marking Day {} as ERROR: {}", day, errorMessage);
-        updateLearningDayStatusInternal(day, "ERROR", errorMessage, "");
+        dayStore.updateStatus(day, "ERROR", errorMessage, "");
     }
 
     /**
@@ -123,70 +189,106 @@ public class LearningExcelService {
      */
     public void updateLearningDayStatus(int day, String status, String notes, String completedDate) {
         log.debug("🔄 Public update requested for Day {} status to: {}", day, status);
-        updateLearningDayStatusInternal(day, status, notes, completedDate);
+        dayStore.updateStatus(day, status, notes, completedDate);
     }
 
     /**
-     * Update learning day status in Excel
+     * Database store: copy the workbook's rows into the learning_days table whenever the file
+     * changes outside the service
      */
-    private void updateLearningDayStatusInternal(int day, String status, String notes, String completedDate) {
-        log.debug("🔄 Updating Day {} status to: {}", day, status);
+    @Scheduled(fixedDelayString = "${app.state-store.import-check-interval-ms:30000}",
+        initialDelayString = "${app.state-store.import-check-interval-ms:30000}")
+    public void importCurriculumIfChanged() {
+        dayStore.importIfChanged();
+    }
 
-        try (FileInputStream fis = new FileInputStream(learningExcelPath);
-             Workbook workbook = new XSSFWorkbook(fis)) {
+    /**
+     * Database store: open days again whose claim is older than the claim timeout
+     */
+    @Scheduled(fixedDelayString = "${app.state-store.import-check-interval-ms:30000}",
+        initialDelayString = "${app.state-store.import-check-interval-ms:30000}")
+    public void releaseStaleClaims() {
+        dayStore.releaseStaleClaims(Duration.ofMinutes(claimTimeoutMinutes));
+    }
 
-            Sheet sheet = workbook.getSheetAt(0);
+    /**
+     * Write the pending status changes to the workbook
+     */
+    @Scheduled(fixedDelayString = "${app.excel-write-behind.flush-interval-ms:2000}")
+    public void flushStatusUpdates() {
+        statusUpdates.flush();
+    }
 
-            for (Row row : sheet) {
-                if (row.getRowNum() == 0) continue; // Skip header
+    @PreDestroy
+    void closeCurriculum() {
+        flushStatusUpdates();
+    }
 
-                Cell dayCell = row.getCell(COL_DAY);
-                int rowDay = (int) dayCell.getNumericCellValue();
+    /**
+     * Apply pending status changes in one read-modify-write of the workbook (the write-behind
+     * buffer's writer)
+     */
+    private void writeStatusUpdates(Map<String, Map<Integer, String>> changes) throws IOException {
+        Path file = Paths.get(learningExcelPath);
+        if (!Files.exists(file)) {
+            log.warn("📁 Learning Excel file not found, dropping {} status update(s): {}", changes.size(), learningExcelPath);
+            return;
+        }
 
-                if (rowDay == day) {
-                    // Update status
-                    Cell statusCell = row.getCell(COL_STATUS);
-                    if (statusCell == null) {
-                        statusCell = row.createCell(COL_STATUS);
-                    }
-                    statusCell.setCellValue(status);
+        try (FileInputStream fis = new FileInputStream(file.toFile());
+             Workbook workbook = new XSSFWorkbook(fis)) {
 
-                    // Update notes
-                    Cell notesCell = row.getCell(COL_NOTES);
-                    if (notesCell == null) {
-                        notesCell = row.createCell(COL_NOTES);
-                    }
-                    notesCell.setCellValue(notes);
+            Sheet sheet = workbook.getSheetAt(0);
 
-                    // Update last processed time
-                    Cell lastProcessedCell = row.getCell(COL_LAST_PROCESSED);
-                    if (lastProcessedCell == null) {
-                        lastProcessedCell = row.createCell(COL_LAST_PROCESSED);
-                    }
-                    lastProcessedCell.setCellValue(LocalDateTime.now().format(DATE_FORMATTER));
-
-                    // Update completed date if provided
-                    if (!completedDate.isEmpty()) {
-                        Cell completedCell = row.getCell(COL_COMPLETED_DATE);
-                        if (completedCell == null) {
-                            completedCell = row.createCell(COL_COMPLETED_DATE);
-                        }
-                        completedCell.setCellValue(completedDate);
+            // Straight to each day's row through the index
+            Map<String, Row> rows = rowIndex.find(sheet, changes.keySet());
+            changes.forEach((day, cells) -> {
+                Row row = rows.get(day);
+                if (row == null) {
+                    log.warn("⚠️ Day {} not found in the learning workbook, status update dropped", day);
+                    return;
+                }
+                cells.forEach((column, value) -> {
+                    Cell cell = row.getCell(column);
+                    if (cell == null) {
+                        cell = row.createCell(column);
                     }
+                    cell.setCellValue(value);
+                });
+            });
 
-                    break;
-                }
+            // Save next to the workbook and move it into place, so a crash never leaves half a file
+            Path partPath = file.resolveSibling(file.getFileName() + ".part");
+            try (OutputStream out = Files.newOutputStream(partPath)) {
+                workbook.write(out);
             }
+            Files.move(partPath, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
 
-            // Save the file
-            try (FileOutputStream fos = new FileOutputStream(learningExcelPath)) {
-                workbook.write(fos);
-            }
+        dayStore.written(changes);
+    }
 
-            log.info("💾 Updated Day {} status to: {} (saved to Excel)", day, status);
+    private static LearningDay copyOf(LearningDay row) {
+        return new LearningDay(row.getDay(), row.getWeek(), row.getPhase(), row.getAlgorithmTask(), row.getTheoryTask(),
+            row.getCodingTask(), row.getReflectionTask(), row.getStatus(), row.getNotes(), row.getLastProcessed(),
+            row.getCompletedDate(), row.getEmailSubject());
+    }
 
-        } catch (IOException e) {
-            log.error("❌ Error updating learning day status: {}", e.getMessage(), e);
+    private static String dayKey(Cell dayCell) {
+        if (dayCell == null) {
+            return null;
+        }
+        if (dayCell.getCellType() == CellType.NUMERIC) {
+            return String.valueOf((int) dayCell.getNumericCellValue());
+        }
+        String text = dayCell.getCellType() == CellType.STRING ? dayCell.getStringCellValue().trim() : "";
+        return text.matches("\\d+") ? text : null;
+    }
+
+    private void createLearningFileIfMissing() {
+        if (!new File(learningExcelPath).exists()) {
+            log.warn("📁 Learning Excel file not found, creating with sample data: {}", learningExcelPath);
+            createLearningFile();
         }
     }
 
@@ -335,21 +437,21 @@ public class LearningExcelService {
     /**
      * Map Excel row to LearningDay object
      */
-    private LearningDay mapRowToLearningDay(Row row) {
+    private LearningDay mapRowToLearningDay(SheetRow row) {
         LearningDay learningDay = new LearningDay();
 
-        learningDay.setDay((int) row.getCell(COL_DAY).getNumericCellValue());
-        learningDay.setWeek("Week " + (((int) row.getCell(COL_DAY).getNumericCellValue() - 1) / 7 + 1)); // Calculate week from day
-        learningDay.setPhase(getCellStringValue(row.getCell(COL_PHASE)));
-        learningDay.setAlgorithmTask(getCellStringValue(row.getCell(COL_ALGORITHM_TASK)));
-        learningDay.setTheoryTask(getCellStringValue(row.getCell(COL_THEORY_TASK)));
-        learningDay.setCodingTask(getCellStringValue(row.getCell(COL_CODING_TASK)));
-        learningDay.setReflectionTask(getCellStringValue(row.getCell(COL_REFLECTION_TASK))); 
-        learningDay.setStatus(getCellStringValue(row.getCell(COL_STATUS)));
-        learningDay.setNotes(getCellStringValue(row.getCell(COL_NOTES)));
-        learningDay.setLastProcessed(getCellStringValue(row.getCell(COL_LAST_PROCESSED)));
-        learningDay.setCompletedDate(getCellStringValue(row.getCell(COL_COMPLETED_DATE)));
-        learningDay.setEmailSubject(getCellStringValue(row.getCell(COL_EMAIL_SUBJECT)));
+        learningDay.setDay(row.number(COL_DAY));
+        learningDay.setWeek("Week " + ((row.number(COL_DAY) - 1) / 7 + 1)); // Calculate week from day
+        learningDay.setPhase(row.text(COL_PHASE));
+        learningDay.setAlgorithmTask(row.text(COL_ALGORITHM_TASK));
+        learningDay.setTheoryTask(row.text(COL_THEORY_TASK));
+        learningDay.setCodingTask(row.text(COL_CODING_TASK));
+        learningDay.setReflectionTask(row.text(COL_REFLECTION_TASK)); 
+        learningDay.setStatus(row.text(COL_STATUS));
+        learningDay.setNotes(row.text(COL_NOTES));
+        learningDay.setLastProcessed(row.text(COL_LAST_PROCESSED));
+        learningDay.setCompletedDate(row.text(COL_COMPLETED_DATE));
+        learningDay.setEmailSubject(row.text(COL_EMAIL_SUBJECT));
 
         return learningDay;
     }
@@ -360,41 +462,21 @@ public class LearningExcelService {
     public LearningProgress getLearningProgress() {
         log.debug("📊 Calculating learning progress...");
 
-        List<LearningDay> allDays = getAllLearningDays();
-        long completedDays = allDays.stream().filter(day -> "COMPLETED".equals(day.getStatus())).count();
-        long errorDays = allDays.stream().filter(day -> "ERROR".equals(day.getStatus())).count();
-        long openDays = allDays.stream().filter(day -> "OPEN".equals(day.getStatus())).count();
+        int totalDays = dayStore.size();
+        int completedDays = dayStore.count("COMPLETED");
+        int errorDays = dayStore.count("ERROR");
+        int openDays = dayStore.count("OPEN");
 
-        double completionRate = allDays.size() > 0 ? (double) completedDays / allDays.size() * 100 : 0;
+        double completionRate = totalDays > 0 ? (double) completedDays / totalDays * 100 : 0;
 
-        LearningProgress progress = new LearningProgress(
-            allDays.size(), (int) completedDays, (int) errorDays, (int) openDays, completionRate
-        );
+        LearningProgress progress = new LearningProgress(totalDays, completedDays, errorDays, openDays, completionRate);
 
         log.info("📈 Learning Progress: {}% complete ({}/{} days)",
-            String.format("%.1f", completionRate), completedDays, allDays.size());
+            String.format("%.1f", completionRate), completedDays, totalDays);
 
         return progress;
     }
 
-    /**
-     * Get string value from cell safely
-     */
-    private String getCellStringValue(Cell cell) {
-        if (cell == null) return "";
-
-        switch (cell.getCellType()) {
-            case STRING:
-                return cell.getStringCellValue().trim();
-            case NUMERIC:
-                return String.valueOf((int) cell.getNumericCellValue());
-            case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue());
-            default:
-                return "";
-        }
-    }
-
     // Inner class for learning progress
     @lombok.Data
     @lombok.AllArgsConstructor
@@ -225,7 +225,13 @@ public class LearningProblemGenerationService {
      */
     private String generateFallbackProblemContent(LearningDay learningDay) {
         log.warn("🔄 Generating fallback problem content for Day {}", learningDay.getDay());
+        return generateOfflineProblemContent(learningDay);
+    }
 
+    /**
+     * Problem content built from the curriculum alone, without calling the AI
+     */
+    String generateOfflineProblemContent(LearningDay learningDay) {
         StringBuilder fallback = new StringBuilder();
         
         fallback.append("<!DOCTYPE html>\n")
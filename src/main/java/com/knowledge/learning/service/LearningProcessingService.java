@@ -24,7 +24,7 @@ public class LearningProcessingService {
 
         try {
             // Step 1: Get next learning day
-            LearningDay todaysLesson = excelService.getNextLearningDay();
+            LearningDay todaysLesson = excelService.claimNextLearningDay();
 
             if (todaysLesson == null) {
                 log.warn("🎓 All learning days completed! No more lessons to process.");
@@ -104,11 +104,8 @@ public class LearningProcessingService {
             // Step 7: Log progress
             logProgress();
 
-            // Step 8: Cleanup old EML files periodically (every 10 days)
-            if (day % 10 == 0) {
-                log.info("🧹 Performing periodic EML cleanup (Day {})", day);
-                emlFileService.cleanupOldEmlFiles();
-            }
+            // Step 8: Archive loose EML files and drop the expired ones
+            emlFileService.cleanupOldEmlFiles();
 
         } catch (Exception e) {
             log.error("❌ Error processing Day {}: {}", day, e.getMessage(), e);
@@ -118,6 +115,9 @@ public class LearningProcessingService {
                 e.getMessage());
             excelService.markLearningDayError(day, errorMessage);
             throw e;
+        } finally {
+            // Write this run's status change now rather than on the next interval
+            excelService.flushStatusUpdates();
         }
     }
 
@@ -164,11 +164,7 @@ public class LearningProcessingService {
         log.info("🎯 Manual processing requested for Day {}", dayNumber);
 
         try {
-            java.util.List<LearningDay> allDays = excelService.getAllLearningDays();
-            LearningDay targetDay = allDays.stream()
-                .filter(day -> day.getDay() == dayNumber)
-                .findFirst()
-                .orElse(null);
+            LearningDay targetDay = excelService.getLearningDay(dayNumber);
 
             if (targetDay == null) {
                 log.error("❌ Day {} not found in curriculum", dayNumber);
@@ -208,11 +204,7 @@ public class LearningProcessingService {
     public java.util.List<LearningDay> getUpcomingDays(int count) {
         log.info("👀 Getting preview of next {} upcoming days...", count);
 
-        java.util.List<LearningDay> allDays = excelService.getAllLearningDays();
-        java.util.List<LearningDay> upcomingDays = allDays.stream()
-            .filter(day -> "OPEN".equals(day.getStatus()))
-            .limit(count)
-            .collect(java.util.stream.Collectors.toList());
+        java.util.List<LearningDay> upcomingDays = excelService.getOpenLearningDays(count);
 
         log.info("📅 Found {} upcoming days to preview", upcomingDays.size());
         upcomingDays.forEach(day ->
@@ -1,22 +1,49 @@
 package com.knowledge.stock.model;
 
+import com.knowledge.common.model.CurriculumDay;
+import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+/**
+ * One day of the stock curriculum; a row of the workbook, and of the {@code stock_learning_days}
+ * table when {@code app.state-store=database}
+ */
+@Entity
+@Table(name = "stock_learning_days", indexes = {
+    @Index(name = "idx_stock_learning_days_status", columnList = "status")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class StockLearningDay {
-    private int day;
+public class StockLearningDay implements CurriculumDay {
+
+    @Id
+    @Column(name = "learning_day")
+    private int day; // DAY is reserved in H2
+
     private String week;
     private String phase;
+
+    @Column(length = 500)
     private String topic;
+
+    @Column(length = 2000)
     private String learningGoal;
+
+    @Column(length = 500)
     private String emailSubject;
+
+    @Column(length = 2000)
     private String practiceTask;
+
+    @Column(length = 32)
     private String status;
+
+    @Column(length = 4000)
     private String notes;
+
     private String lastProcessed;
     private String completedDate;
 }
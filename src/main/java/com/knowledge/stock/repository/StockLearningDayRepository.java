@@ -0,0 +1,9 @@
+package com.knowledge.stock.repository;
+
+import com.knowledge.common.repository.CurriculumDayRepository;
+import com.knowledge.stock.model.StockLearningDay;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StockLearningDayRepository extends CurriculumDayRepository<StockLearningDay> {
+}
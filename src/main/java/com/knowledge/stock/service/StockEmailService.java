@@ -2,42 +2,61 @@ package com.knowledge.stock.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.knowledge.common.model.DigestEntry;
+import com.knowledge.common.model.MailRecipient;
+import com.knowledge.common.model.RenderedEmail;
+import com.knowledge.common.service.DailyDigestService;
+import com.knowledge.common.service.EmailFormattingRules;
+import com.knowledge.common.service.GuardedTextProcessor;
+import com.knowledge.common.service.GuardedTextProcessor.RegexRule;
+import com.knowledge.common.service.GuardedTextProcessor.TextBudget;
+import com.knowledge.common.service.MailRecipientService;
+import com.knowledge.common.service.MarkdownRenderer;
+import com.knowledge.common.service.RenderedEmailService;
 import lombok.RequiredArgsConstructor;
 import com.knowledge.stock.model.StockLearningDay;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StreamUtils;
 
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class StockEmailService {
 
-    private final JavaMailSender mailSender;
+    private final MailRecipientService recipientService;
+    private final RenderedEmailService renderedEmails;
+    private final DailyDigestService digestService;
+    private final MarkdownRenderer markdownRenderer;
+    private final GuardedTextProcessor textGuard;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
-    @Value("${app.mail-from}")
-    private String fromEmail;
-
-    @Value("${app.mail-to}")
-    private String toEmail;
 
     @Value("${app.email.enabled:true}")
     private boolean emailEnabled;
 
+    private static final String PIPELINE = "stock";
+
+    private static final String TEMPLATE_NAME = "stock-knowledge-email-template.html";
+
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    private static final RegexRule DEFINITION_BLOCK_RULE =
+        RegexRule.of("<strong>([^<]+)</strong>:", "<div class=\"definition-block\"><strong>$1</strong>:");
+    private static final RegexRule EXAMPLE_BLOCK_RULE =
+        RegexRule.of("<strong>([^<]+):</strong>", "<div class=\"example-block\"><strong>$1:</strong>");
+    private static final RegexRule WARNING_BLOCK_RULE =
+        RegexRule.of("<li>([^<]+)</li>", "<div class=\"warning-block\"><li>$1</li></div>");
+    private static final RegexRule TIP_BLOCK_RULE =
+        RegexRule.of("<li>([^<]+)</li>", "<div class=\"tip-block\"><li>$1</li></div>");
+
     /**
      * Send structured learning email using HTML template
      */
@@ -52,12 +71,11 @@ public class StockEmailService {
 
         try {
             String subject = learningDay.getEmailSubject();
-            String htmlContent = loadAndProcessTemplate(learningDay, content);
+            Map<String, Object> templateValues = buildTemplateValues(learningDay, content);
 
             log.debug("📝 Email prepared - Subject: {}", subject);
-            log.debug("📄 Email content length: {} characters", htmlContent.length());
 
-            sendEmail(subject, htmlContent);
+            sendEmail(subject, templateValues);
 
             log.info("✅ Structured learning email sent successfully for Day {} - {}",
                 learningDay.getDay(), learningDay.getTopic());
@@ -70,46 +88,50 @@ public class StockEmailService {
     }
 
     /**
-     * Load HTML template and replace placeholders
+     * Placeholder values for the day's HTML template
      */
-    private String loadAndProcessTemplate(StockLearningDay learningDay, String content) throws IOException {
-        log.debug("🎨 Loading and processing HTML template for Day {}", learningDay.getDay());
-
-        // Load the HTML template
-        ClassPathResource resource = new ClassPathResource("stock-knowledge-email-template.html");
-        String template = StreamUtils.copyToString(resource.getInputStream(), StandardCharsets.UTF_8);
-
-        // Replace placeholders with actual data
-        String processedHtml = template
-            .replace("{{DAY}}", String.valueOf(learningDay.getDay()))
-            .replace("{{WEEK}}", learningDay.getWeek())
-            .replace("{{PHASE}}", learningDay.getPhase())
-            .replace("{{TOPIC}}", learningDay.getTopic())
-            .replace("{{LEARNING_GOAL}}", learningDay.getLearningGoal())
-            .replace("{{CONTENT}}", parseJsonToStructuredHtml(content))
-            .replace("{{PRACTICE_TASK}}", learningDay.getPracticeTask())
-            .replace("{{TIMESTAMP}}", LocalDateTime.now().format(DATE_FORMATTER));
-
-        log.debug("✅ Template processed successfully ({} characters)", processedHtml.length());
-        return processedHtml;
+    private Map<String, Object> buildTemplateValues(StockLearningDay learningDay, String content) {
+        log.debug("🎨 Preparing HTML template values for Day {}", learningDay.getDay());
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("DAY", learningDay.getDay());
+        values.put("WEEK", learningDay.getWeek());
+        values.put("PHASE", learningDay.getPhase());
+        values.put("TOPIC", learningDay.getTopic());
+        values.put("LEARNING_GOAL", learningDay.getLearningGoal());
+        values.put("CONTENT", parseJsonToStructuredHtml(content));
+        values.put("PRACTICE_TASK", learningDay.getPracticeTask());
+        values.put("TIMESTAMP", LocalDateTime.now().format(DATE_FORMATTER));
+        return values;
     }
 
     /**
-     * Send actual email
+     * Send the email to every stock subscriber
      */
-    private void sendEmail(String subject, String htmlContent) throws MessagingException {
+    private void sendEmail(String subject, Map<String, Object> templateValues) {
         log.debug("📮 Sending email with subject: {}", subject);
 
-        MimeMessage message = mailSender.createMimeMessage();
-        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        if (digestService.isEnabledFor(PIPELINE)) {
+            digestService.collect(List.of(buildDigestEntry(templateValues)));
+            return;
+        }
 
-        helper.setFrom(fromEmail);
-        helper.setTo(toEmail.split(","));
-        helper.setSubject(subject);
-        helper.setText(htmlContent, true);
+        List<MailRecipient> recipients = recipientService.findSubscribers(PIPELINE);
+        RenderedEmail email = renderedEmails.store(PIPELINE, "day-" + templateValues.get("DAY"), RenderedEmailService.ALL_AUDIENCE,
+            subject, TEMPLATE_NAME, templateValues, null);
+        RenderedEmailService.DeliveryResult result = renderedEmails.deliver(email, recipients, false);
+        log.debug("📬 Email queued for {} recipient(s), {} already had it", result.queued(), result.skipped());
+    }
 
-        mailSender.send(message);
-        log.debug("📬 Email sent successfully to: {}", toEmail);
+    /**
+     * Section for the daily digest: learning goal, generated content and practice task
+     */
+    private DigestEntry buildDigestEntry(Map<String, Object> templateValues) {
+        String html = "<div class=\"digest-note\"><strong>🎯 Learning Goal:</strong> " + templateValues.get("LEARNING_GOAL") + "</div>\n"
+            + templateValues.get("CONTENT") + "\n"
+            + "<div class=\"digest-note\"><strong>💪 Practice Task:</strong> " + templateValues.get("PRACTICE_TASK") + "</div>";
+
+        return new DigestEntry(PIPELINE, "Day " + templateValues.get("DAY") + ": " + templateValues.get("TOPIC"), null, html);
     }
 
     /**
@@ -214,19 +236,22 @@ public class StockEmailService {
 
         // If content already contains HTML tags, clean it up and enhance it
         if (cleanContent.contains("<") && cleanContent.contains(">")) {
-            return enhanceExistingHtml(cleanContent, sectionType);
+            return textGuard.process("stock.enhance-html", cleanContent,
+                budget -> enhanceExistingHtml(budget, cleanContent, sectionType),
+                UnaryOperator.identity());
         }
 
-        // Convert markdown-style formatting to enhanced HTML
-        String htmlContent = cleanContent
-            .replaceAll("\\*\\*([^*]+)\\*\\*", "<strong>$1</strong>")  // **bold** to <strong>
-            .replaceAll("\\*([^*]+)\\*", "<em>$1</em>")                // *italic* to <em>
-            .replaceAll("(?m)^#{3}\\s+(.+)$", "<h4>$1</h4>")          // ### to h4
-            .replaceAll("(?m)^#{2}\\s+(.+)$", "<h3>$1</h3>")          // ## to h3
-            .replaceAll("(?m)^- (.+)$", "<li>$1</li>")                 // - item to <li>
-            .replaceAll("(?m)^\\d+\\. (.+)$", "<li>$1</li>")           // 1. item to <li>
-            .replaceAll("\\n\\n", "</p>\n<p>")                         // Double newlines to paragraphs
-            .replaceAll("\\n", "<br>\n");                              // Single newlines to breaks
+        // Convert markdown-style formatting to enhanced HTML, falling back to the linear renderer
+        return textGuard.process("stock.format-section", cleanContent,
+            budget -> formatMarkdownSection(budget, cleanContent, sectionType),
+            markdownRenderer::render);
+    }
+
+    /**
+     * Convert markdown-style section text to HTML with section-specific styling
+     */
+    private String formatMarkdownSection(TextBudget budget, String content, String sectionType) {
+        String htmlContent = budget.replaceAll(content, EmailFormattingRules.MARKDOWN_RULES);
 
         // Wrap in paragraphs if not already formatted
         if (!htmlContent.startsWith("<")) {
@@ -234,69 +259,34 @@ public class StockEmailService {
         }
 
         // Wrap consecutive <li> items in proper lists
-        htmlContent = wrapListItems(htmlContent);
+        htmlContent = budget.replaceAll(htmlContent, EmailFormattingRules.LIST_WRAP_RULES);
 
         // Add section-specific enhancements
-        htmlContent = addSectionSpecificFormatting(htmlContent, sectionType);
-
-        return htmlContent;
+        return addSectionSpecificFormatting(budget, htmlContent, sectionType);
     }
 
     /**
      * Enhance existing HTML content with section-specific formatting
      */
-    private String enhanceExistingHtml(String content, String sectionType) {
-        String enhanced = content
-            .replaceAll("<p></p>", "")
-            .replaceAll("<p>\\s*<h([1-6])>", "<h$1>")
-            .replaceAll("</h([1-6])>\\s*</p>", "</h$1>")
-            .trim();
-
-        return addSectionSpecificFormatting(enhanced, sectionType);
-    }
+    private String enhanceExistingHtml(TextBudget budget, String content, String sectionType) {
+        String enhanced = budget.replaceAll(content, EmailFormattingRules.HTML_CLEANUP_RULES).trim();
 
-    /**
-     * Wrap consecutive list items in proper ul/ol tags
-     */
-    private String wrapListItems(String content) {
-        // Handle unordered lists
-        String result = content.replaceAll("(<li>.*?</li>)", "<ul>$1</ul>");
-        result = result.replaceAll("</ul>\\s*<ul>", ""); // Merge consecutive ul tags
-
-        return result;
+        return addSectionSpecificFormatting(budget, enhanced, sectionType);
     }
 
     /**
      * Add section-specific formatting and styling
      */
-    private String addSectionSpecificFormatting(String content, String sectionType) {
-        switch (sectionType) {
-            case "coreConceptsDefinitions":
-                // Wrap definitions in special blocks
-                content = content.replaceAll("<strong>([^<]+)</strong>:",
-                    "<div class=\"definition-block\"><strong>$1</strong>:");
-                break;
-
-            case "examples":
-                // Wrap examples in special blocks
-                content = content.replaceAll("<strong>([^<]+):</strong>",
-                    "<div class=\"example-block\"><strong>$1:</strong>");
-                break;
-
-            case "commonMistakes":
-                // Wrap warnings in special blocks
-                content = content.replaceAll("<li>([^<]+)</li>",
-                    "<div class=\"warning-block\"><li>$1</li></div>");
-                break;
-
-            case "keyTakeaways":
-                // Enhance key takeaways with special formatting
-                content = content.replaceAll("<li>([^<]+)</li>",
-                    "<div class=\"tip-block\"><li>$1</li></div>");
-                break;
-        }
-
-        return content;
+    private String addSectionSpecificFormatting(TextBudget budget, String content, String sectionType) {
+        RegexRule rule = switch (sectionType) {
+            case "coreConceptsDefinitions" -> DEFINITION_BLOCK_RULE;  // Wrap definitions in special blocks
+            case "examples" -> EXAMPLE_BLOCK_RULE;                    // Wrap examples in special blocks
+            case "commonMistakes" -> WARNING_BLOCK_RULE;              // Wrap warnings in special blocks
+            case "keyTakeaways" -> TIP_BLOCK_RULE;                    // Enhance key takeaways with special formatting
+            default -> null;
+        };
+
+        return rule == null ? content : budget.replaceAll(content, rule);
     }
 
     /**
@@ -304,7 +294,8 @@ public class StockEmailService {
      */
     private String cleanJsonContent(String content) {
         // Remove markdown code blocks if present
-        String cleaned = content.replaceAll("```json\\s*", "").replaceAll("```\\s*$", "");
+        String cleaned = textGuard.replaceAll("stock.clean-json", content,
+            EmailFormattingRules::stripJsonFences, EmailFormattingRules.JSON_FENCE_RULES);
 
         // Find the JSON object start and end
         int jsonStart = cleaned.indexOf('{');
@@ -336,23 +327,7 @@ public class StockEmailService {
     private String formatMarkdownToHtml(String content) {
         log.debug("🔄 Using fallback markdown formatting");
 
-        // Enhanced markdown-style formatting to HTML
-        String htmlContent = content
-            .replaceAll("\\*\\*([^*]+)\\*\\*", "<strong>$1</strong>")  // **bold** to <strong>
-            .replaceAll("\\*([^*]+)\\*", "<em>$1</em>")                // *italic* to <em>
-            .replaceAll("(?m)^#{3}\\s+(.+)$", "<h3>$1</h3>")          // ### heading to h3
-            .replaceAll("(?m)^#{2}\\s+(.+)$", "<h2>$1</h2>")          // ## heading to h2
-            .replaceAll("(?m)^#{1}\\s+(.+)$", "<h1>$1</h1>")          // # heading to h1
-            .replaceAll("\\n\\n", "</p><p>")                           // Double newlines to paragraphs
-            .replaceAll("\\n", "<br>")                                 // Single newlines to breaks
-            .replaceAll("^(.)", "<p>$1")                               // Start with paragraph
-            .replaceAll("(.)$", "$1</p>");                             // End with paragraph
-
-        // Fix any double paragraph tags and clean up
-        htmlContent = htmlContent
-            .replaceAll("<p></p>", "")
-            .replaceAll("<p><h([1-6])>", "<h$1>")
-            .replaceAll("</h([1-6])></p>", "</h$1>");
+        String htmlContent = markdownRenderer.render(content);
 
         log.debug("✅ Markdown content formatted successfully ({} characters)", htmlContent.length());
         return htmlContent;
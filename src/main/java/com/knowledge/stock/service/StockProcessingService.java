@@ -22,7 +22,7 @@ public class StockProcessingService {
 
         try {
             // Step 1: Get next learning day
-            StockLearningDay todaysLesson = excelService.getNextLearningDay();
+            StockLearningDay todaysLesson = excelService.claimNextLearningDay();
 
             if (todaysLesson == null) {
                 log.warn("🎓 All learning days completed! No more lessons to process.");
@@ -83,6 +83,9 @@ public class StockProcessingService {
             log.error("❌ Error processing Day {}: {}", day, e.getMessage(), e);
             excelService.markLearningDayError(day, e.getMessage());
             throw e;
+        } finally {
+            // Write this run's status change now rather than on the next interval
+            excelService.flushStatusUpdates();
         }
     }
 
@@ -129,11 +132,7 @@ public class StockProcessingService {
         log.info("🎯 Manual processing requested for Day {}", dayNumber);
 
         try {
-            java.util.List<StockLearningDay> allDays = excelService.getAllLearningDays();
-            StockLearningDay targetDay = allDays.stream()
-                .filter(day -> day.getDay() == dayNumber)
-                .findFirst()
-                .orElse(null);
+            StockLearningDay targetDay = excelService.getLearningDay(dayNumber);
 
             if (targetDay == null) {
                 log.error("❌ Day {} not found in curriculum", dayNumber);
@@ -173,11 +172,7 @@ public class StockProcessingService {
     public java.util.List<StockLearningDay> getUpcomingDays(int count) {
         log.debug("👀 Getting preview of next {} upcoming days...", count);
 
-        java.util.List<StockLearningDay> allDays = excelService.getAllLearningDays();
-        java.util.List<StockLearningDay> upcomingDays = allDays.stream()
-            .filter(day -> "OPEN".equals(day.getStatus()))
-            .limit(count)
-            .collect(java.util.stream.Collectors.toList());
+        java.util.List<StockLearningDay> upcomingDays = excelService.getOpenLearningDays(count);
 
         log.info("📅 Found {} upcoming days to preview", upcomingDays.size());
         upcomingDays.forEach(day ->
@@ -2,14 +2,18 @@ package com.knowledge.topic;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
 @SpringBootApplication
 @EnableScheduling
-@ComponentScan(basePackages = {"com.knowledge.topic", "com.knowledge.stock", "com.knowledge.learning"})
+@ComponentScan(basePackages = {"com.knowledge.topic", "com.knowledge.stock", "com.knowledge.learning", "com.knowledge.common"})
+@EntityScan(basePackages = {"com.knowledge.topic", "com.knowledge.common", "com.knowledge.learning", "com.knowledge.stock"})
+@EnableJpaRepositories(basePackages = {"com.knowledge.topic", "com.knowledge.common", "com.knowledge.learning", "com.knowledge.stock"})
 public class TopicKnowledgeServiceApplication {
 
     public static void main(String[] args) {
@@ -1,7 +1,11 @@
 package com.knowledge.topic.controller;
 
+import com.knowledge.topic.dto.DetailPreviewDto;
 import com.knowledge.topic.dto.ProcessingStatsDto;
+import com.knowledge.topic.model.KnowledgeContent;
 import com.knowledge.topic.model.Topic;
+import com.knowledge.topic.service.ContentParserService;
+import com.knowledge.topic.service.KnowledgeLogJournal;
 import com.knowledge.topic.service.TopicProcessingService;
 import com.knowledge.topic.repository.TopicRepository;
 import com.knowledge.topic.repository.KnowledgeContentRepository;
@@ -13,6 +17,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/topics")
@@ -23,6 +28,8 @@ public class TopicController {
     private final TopicProcessingService processingService;
     private final TopicRepository topicRepository;
     private final KnowledgeContentRepository contentRepository;
+    private final ContentParserService contentParser;
+    private final KnowledgeLogJournal knowledgeLog;
 
     /**
      * Manual trigger for immediate processing
@@ -106,6 +113,10 @@ public class TopicController {
                     .pendingEmailContent(contentRepository.findPendingEmailContent().size())
                     .averageOverviewWords(contentRepository.getAverageOverviewWordCount())
                     .averageDetailedWords(contentRepository.getAverageDetailedWordCount())
+                    .averageOverviewReadingTimeSeconds(contentRepository.getAverageOverviewReadingTimeSeconds())
+                    .averageOverviewSections(contentRepository.getAverageOverviewSectionCount())
+                    .totalCharactersGenerated(contentRepository.getTotalCharacterCount())
+                    .totalEstimatedTokens(contentRepository.getTotalEstimatedTokens())
                     .contentGeneratedToday(contentRepository.countGeneratedContentSince(LocalDateTime.now().toLocalDate().atStartOfDay()))
                     .lastUpdated(LocalDateTime.now())
                     .build();
@@ -118,6 +129,43 @@ public class TopicController {
         }
     }
 
+    /**
+     * Preview of a topic's detailed content without decoding every section
+     */
+    @GetMapping("/preview/{topicName}")
+    public ResponseEntity<DetailPreviewDto> getDetailPreview(@PathVariable String topicName) {
+        log.debug("Retrieving detail preview for topic: {}", topicName);
+
+        try {
+            Optional<KnowledgeContent> content = topicRepository.findByName(topicName.trim())
+                    .flatMap(contentRepository::findByTopic);
+            if (content.isEmpty() || content.get().getDetailedContent() == null) {
+                return ResponseEntity.notFound().build();
+            }
+
+            KnowledgeContent knowledgeContent = content.get();
+            ContentParserService.LazyParsedDetail detail =
+                    contentParser.parseDetailedContentLazily(knowledgeContent.getDetailedContent());
+
+            DetailPreviewDto preview = DetailPreviewDto.builder()
+                    .topicName(knowledgeContent.getTopic().getName())
+                    .category(knowledgeContent.getTopic().getCategory())
+                    .executiveSummary(detail.getExecutiveSummary())
+                    .keyMetrics(detail.getKeyMetrics())
+                    .availableSections(detail.getFieldNames())
+                    .detailedWordCount(knowledgeContent.getDetailedStats().getWordCount())
+                    .readingTimeSeconds(knowledgeContent.getDetailedStats().getReadingTimeSeconds())
+                    .generatedAt(knowledgeContent.getCreatedAt())
+                    .build();
+
+            return ResponseEntity.ok(preview);
+
+        } catch (Exception e) {
+            log.error("Error retrieving detail preview: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(null);
+        }
+    }
+
     /**
      * Reset topic processing status
      */
@@ -199,4 +247,20 @@ public class TopicController {
             return ResponseEntity.internalServerError().body(null);
         }
     }
+
+    /**
+     * Regenerate knowledge_log.xlsx from the knowledge log journal now
+     */
+    @PostMapping("/knowledge-log/export")
+    public ResponseEntity<KnowledgeLogJournal.ExportResult> exportKnowledgeLog() {
+        log.info("Knowledge log export requested");
+
+        try {
+            return ResponseEntity.ok(knowledgeLog.export());
+
+        } catch (Exception e) {
+            log.error("Error exporting knowledge log: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(null);
+        }
+    }
 }
@@ -0,0 +1,29 @@
+package com.knowledge.topic.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lightweight view of a topic's detailed content: only the summary and key metrics are decoded
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DetailPreviewDto {
+
+    private String topicName;
+    private String category;
+    private String executiveSummary;
+    private List<String> keyMetrics;
+    private Set<String> availableSections;
+    private int detailedWordCount;
+    private int readingTimeSeconds;
+    private LocalDateTime generatedAt;
+}
@@ -26,6 +26,10 @@ public class ProcessingStatsDto {
 
     private Double averageOverviewWords;
     private Double averageDetailedWords;
+    private Double averageOverviewReadingTimeSeconds;
+    private Double averageOverviewSections;
+    private Long totalCharactersGenerated;
+    private Long totalEstimatedTokens;
 
     private LocalDateTime lastUpdated;
 
@@ -1,5 +1,6 @@
 package com.knowledge.topic.dto;
 
+import com.knowledge.common.model.TextStatistics;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -23,7 +24,7 @@ public class TopicOverview {
     public TopicOverview(String topicName, String category, String rawContent) {
         this.topicName = topicName;
         this.category = category;
-        this.wordCount = rawContent != null ? rawContent.split("\\s+").length : 0;
+        this.wordCount = TextStatistics.countWords(rawContent);
         parseOverviewContent(rawContent);
     }
 
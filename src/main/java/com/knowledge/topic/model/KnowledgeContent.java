@@ -1,5 +1,6 @@
 package com.knowledge.topic.model;
 
+import com.knowledge.common.model.TextStatistics;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -27,11 +28,25 @@ public class KnowledgeContent {
     @Column(columnDefinition = "TEXT")
     private String detailedContent;
 
-    @Column(name = "overview_word_count")
-    private Integer overviewWordCount;
+    @Embedded
+    @AttributeOverrides({
+        @AttributeOverride(name = "wordCount", column = @Column(name = "overview_word_count")),
+        @AttributeOverride(name = "characterCount", column = @Column(name = "overview_char_count")),
+        @AttributeOverride(name = "estimatedTokens", column = @Column(name = "overview_estimated_tokens")),
+        @AttributeOverride(name = "readingTimeSeconds", column = @Column(name = "overview_reading_time_seconds")),
+        @AttributeOverride(name = "sectionCount", column = @Column(name = "overview_section_count"))
+    })
+    private TextStatistics overviewStats = new TextStatistics();
 
-    @Column(name = "detailed_word_count")
-    private Integer detailedWordCount;
+    @Embedded
+    @AttributeOverrides({
+        @AttributeOverride(name = "wordCount", column = @Column(name = "detailed_word_count")),
+        @AttributeOverride(name = "characterCount", column = @Column(name = "detailed_char_count")),
+        @AttributeOverride(name = "estimatedTokens", column = @Column(name = "detailed_estimated_tokens")),
+        @AttributeOverride(name = "readingTimeSeconds", column = @Column(name = "detailed_reading_time_seconds")),
+        @AttributeOverride(name = "sectionCount", column = @Column(name = "detailed_section_count"))
+    })
+    private TextStatistics detailedStats = new TextStatistics();
 
     @Column(name = "generation_time_seconds")
     private Integer generationTimeSeconds;
@@ -54,8 +69,16 @@ public class KnowledgeContent {
         this.topic = topic;
         this.overviewContent = overviewContent;
         this.detailedContent = detailedContent;
-        this.overviewWordCount = overviewContent != null ? overviewContent.split("\\s+").length : 0;
-        this.detailedWordCount = detailedContent != null ? detailedContent.split("\\s+").length : 0;
+        this.overviewStats = TextStatistics.of(overviewContent);
+        this.detailedStats = TextStatistics.of(detailedContent);
         this.emailSent = false;
     }
+
+    public int getOverviewWordCount() {
+        return overviewStats != null ? overviewStats.getWordCount() : 0;
+    }
+
+    public int getDetailedWordCount() {
+        return detailedStats != null ? detailedStats.getWordCount() : 0;
+    }
 }
@@ -23,12 +23,24 @@ public interface KnowledgeContentRepository extends JpaRepository<KnowledgeConte
     @Query("SELECT kc FROM KnowledgeContent kc WHERE kc.emailSent = false ORDER BY kc.createdAt ASC")
     List<KnowledgeContent> findPendingEmailContent();
 
-    @Query("SELECT AVG(kc.overviewWordCount) FROM KnowledgeContent kc WHERE kc.overviewWordCount > 0")
+    @Query("SELECT AVG(kc.overviewStats.wordCount) FROM KnowledgeContent kc WHERE kc.overviewStats.wordCount > 0")
     Double getAverageOverviewWordCount();
 
-    @Query("SELECT AVG(kc.detailedWordCount) FROM KnowledgeContent kc WHERE kc.detailedWordCount > 0")
+    @Query("SELECT AVG(kc.detailedStats.wordCount) FROM KnowledgeContent kc WHERE kc.detailedStats.wordCount > 0")
     Double getAverageDetailedWordCount();
 
+    @Query("SELECT AVG(kc.overviewStats.readingTimeSeconds) FROM KnowledgeContent kc WHERE kc.overviewStats.wordCount > 0")
+    Double getAverageOverviewReadingTimeSeconds();
+
+    @Query("SELECT AVG(kc.overviewStats.sectionCount) FROM KnowledgeContent kc WHERE kc.overviewStats.wordCount > 0")
+    Double getAverageOverviewSectionCount();
+
+    @Query("SELECT SUM(kc.overviewStats.characterCount + kc.detailedStats.characterCount) FROM KnowledgeContent kc")
+    Long getTotalCharacterCount();
+
+    @Query("SELECT SUM(kc.overviewStats.estimatedTokens + kc.detailedStats.estimatedTokens) FROM KnowledgeContent kc")
+    Long getTotalEstimatedTokens();
+
     @Query("SELECT COUNT(kc) FROM KnowledgeContent kc WHERE kc.createdAt >= :startDate")
     long countGeneratedContentSince(@Param("startDate") LocalDateTime startDate);
 }
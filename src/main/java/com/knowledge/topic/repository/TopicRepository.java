@@ -3,9 +3,12 @@ package com.knowledge.topic.repository;
 import com.knowledge.topic.model.Topic;
 import com.knowledge.topic.model.TopicStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -37,4 +40,14 @@ public interface TopicRepository extends JpaRepository<Topic, Long> {
 
     @Query("SELECT t FROM Topic t WHERE t.lastProcessed >= :startDate")
     List<Topic> findProcessedSince(@Param("startDate") LocalDateTime startDate);
+
+    /**
+     * Move the topic from one status to another in its own transaction; returns 0 when its status
+     * is no longer {@code from} (another trigger claimed it first)
+     */
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query("UPDATE Topic t SET t.status = :to, t.updatedAt = :now WHERE t.id = :id AND t.status = :from")
+    int transition(@Param("id") Long id, @Param("from") TopicStatus from, @Param("to") TopicStatus to,
+                   @Param("now") LocalDateTime now);
 }
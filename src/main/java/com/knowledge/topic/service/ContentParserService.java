@@ -1,21 +1,57 @@
 package com.knowledge.topic.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.knowledge.common.service.GuardedTextProcessor;
+import com.knowledge.common.service.GuardedTextProcessor.RegexRule;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class ContentParserService {
 
+    private static final RegexRule[] CODE_FENCE_RULES = {
+        RegexRule.of("```json\\s*", ""),
+        RegexRule.of("```\\s*", "")
+    };
+
+    private static final RegexRule[] CONTROL_CHARACTER_RULES = {
+        // Remove or replace common control characters that break JSON parsing
+        RegexRule.of("\\r\\n", "\\\\n"),  // Replace CRLF with escaped newline
+        RegexRule.of("\\r", "\\\\n"),     // Replace CR with escaped newline
+        RegexRule.of("\\n", "\\\\n"),     // Replace LF with escaped newline
+        RegexRule.of("\\t", "\\\\t"),     // Replace tabs with escaped tabs
+        // Remove other control characters (keeping basic ones like spaces)
+        RegexRule.of("[\\x00-\\x1F&&[^\\x09\\x0A\\x0D\\x20]]", "")
+    };
+
+    private static final String DEFAULT_FUTURE_OUTLOOK =
+        "Based on current trends and industry adoption, this technology continues to evolve with enhanced features and broader applications.";
+
+    private final GuardedTextProcessor textGuard;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    // Sections are decoded without the global control-character cleanup, so tolerate raw newlines in strings
+    private final ObjectReader sectionReader = objectMapper.reader()
+        .with(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS.mappedFeature());
+
     public ParsedOverview parseOverviewContent(String jsonContent) {
         try {
             log.debug("Parsing overview content: {}", jsonContent.substring(0, Math.min(jsonContent.length(), 200)));
@@ -79,19 +115,7 @@ public class ContentParserService {
                     fieldNames.length() > 0 ? fieldNames.toString() : "no fields");
                 
                 // Parse the simplified structure with error handling
-                ParsedDetail result = ParsedDetail.builder()
-                        .executiveSummary(parseOverviewSection(jsonNode.get("overview")))
-                        .historicalEvolution(parseKeyConceptsSection(jsonNode.get("keyConcepts")))
-                        .corePrinciples(parseCodeExamples(jsonNode.get("codeExamples")))
-                        .realWorldApplications(parseCodeExamplesAsApplications(jsonNode.get("codeExamples")))
-                        .caseStudies(parseBestPracticesAsCaseStudies(jsonNode.get("bestPractices")))
-                        .interconnectedConcepts(parseRelatedTopicsSection(jsonNode.get("relatedTopics")))
-                        .currentInnovation(parseBestPracticesSection(jsonNode.get("bestPractices")))
-                        .futureOutlook("Based on current trends and industry adoption, this technology continues to evolve with enhanced features and broader applications.")
-                        .expertInsights(parseBestPracticesAsInsights(jsonNode.get("bestPractices")))
-                        .learningResources(parseLearningResources(jsonNode.get("learningResources")))
-                        .keyMetrics(getArrayValues(jsonNode, "keyMetrics"))
-                        .build();
+                ParsedDetail result = new LazyParsedDetail(this, jsonNode).toParsedDetail();
                 
                 log.info("Successfully parsed detailed content with {} sections", 
                     (result.getExecutiveSummary().isEmpty() ? 0 : 1) +
@@ -117,6 +141,150 @@ public class ContentParserService {
         }
     }
 
+    /**
+     * Index detailed content without decoding it.
+     *
+     * Only the top-level field boundaries are located; each section is decoded the first
+     * time it is accessed. Content that cannot be indexed (truncated or not JSON) goes
+     * through the full {@link #parseDetailedContent(String)} path with its repair and
+     * text fallbacks.
+     */
+    public LazyParsedDetail parseDetailedContentLazily(String jsonContent) {
+        if (jsonContent == null || jsonContent.trim().isEmpty()) {
+            return new LazyParsedDetail(parseDetailFromText(""));
+        }
+
+        String cleaned = textGuard.replaceAll("parser.strip-fences", jsonContent,
+            ContentParserService::stripCodeFences, CODE_FENCE_RULES);
+        int jsonStart = cleaned.indexOf('{');
+        if (jsonStart >= 0) {
+            try {
+                Map<String, int[]> fieldOffsets = indexTopLevelFields(cleaned, jsonStart);
+                log.debug("Indexed {} top-level fields of detailed content ({} chars)", fieldOffsets.size(), cleaned.length());
+                return new LazyParsedDetail(this, cleaned, fieldOffsets);
+            } catch (IllegalArgumentException e) {
+                log.warn("Could not index detailed content ({}), using full parse", e.getMessage());
+            }
+        }
+
+        return new LazyParsedDetail(parseDetailedContent(jsonContent));
+    }
+
+    /**
+     * Locate the value range of every top-level field of the JSON object starting at jsonStart.
+     * Values are skipped, not decoded; malformed or truncated input throws IllegalArgumentException.
+     */
+    private static Map<String, int[]> indexTopLevelFields(String json, int jsonStart) {
+        Map<String, int[]> fieldOffsets = new LinkedHashMap<>();
+        int i = skipWhitespace(json, jsonStart + 1);
+        if (i < json.length() && json.charAt(i) == '}') {
+            return fieldOffsets;
+        }
+
+        while (true) {
+            if (i >= json.length() || json.charAt(i) != '"') {
+                throw new IllegalArgumentException("expected field name at offset " + i);
+            }
+            int nameEnd = skipString(json, i);
+            String name = json.substring(i + 1, nameEnd - 1);
+
+            i = skipWhitespace(json, nameEnd);
+            if (i >= json.length() || json.charAt(i) != ':') {
+                throw new IllegalArgumentException("expected ':' after field '" + name + "'");
+            }
+
+            int valueStart = skipWhitespace(json, i + 1);
+            int valueEnd = skipValue(json, valueStart);
+            fieldOffsets.put(name, new int[]{valueStart, valueEnd});
+
+            i = skipWhitespace(json, valueEnd);
+            if (i >= json.length()) {
+                throw new IllegalArgumentException("object truncated after field '" + name + "'");
+            }
+            char c = json.charAt(i);
+            if (c == '}') {
+                return fieldOffsets;
+            }
+            if (c != ',') {
+                throw new IllegalArgumentException("unexpected '" + c + "' after field '" + name + "'");
+            }
+            i = skipWhitespace(json, i + 1);
+        }
+    }
+
+    private static int skipValue(String json, int start) {
+        if (start >= json.length()) {
+            throw new IllegalArgumentException("missing value at offset " + start);
+        }
+
+        char first = json.charAt(start);
+        if (first == '"') {
+            return skipString(json, start);
+        }
+
+        if (first == '{' || first == '[') {
+            int depth = 0;
+            int i = start;
+            while (i < json.length()) {
+                char c = json.charAt(i);
+                if (c == '"') {
+                    i = skipString(json, i);
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    if (--depth == 0) {
+                        return i + 1;
+                    }
+                }
+                i++;
+            }
+            throw new IllegalArgumentException("unterminated value at offset " + start);
+        }
+
+        // Number, boolean or null literal
+        int i = start;
+        while (i < json.length()) {
+            char c = json.charAt(i);
+            if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+                break;
+            }
+            i++;
+        }
+        if (i == start) {
+            throw new IllegalArgumentException("missing value at offset " + start);
+        }
+        return i;
+    }
+
+    /**
+     * Return the index just past the closing quote of the string starting at start
+     */
+    private static int skipString(String json, int start) {
+        int i = start + 1;
+        while (i < json.length()) {
+            char c = json.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '"') {
+                return i + 1;
+            }
+            i++;
+        }
+        throw new IllegalArgumentException("unterminated string at offset " + start);
+    }
+
+    private static int skipWhitespace(String json, int start) {
+        int i = start;
+        while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
     /**
      * Attempt to repair truncated JSON by adding missing closing braces
      */
@@ -202,7 +370,8 @@ public class ContentParserService {
         log.debug("Extracting JSON from response. Content length: {}", response.length());
         
         // Remove markdown code fences if present - improved regex
-        String cleaned = response.replaceAll("```json\\s*", "").replaceAll("```\\s*", "");
+        String cleaned = textGuard.replaceAll("parser.strip-fences", response,
+            ContentParserService::stripCodeFences, CODE_FENCE_RULES);
         
         // Also handle cases where JSON might be in plain text after certain markers
         if (cleaned.contains("\"overview\"") && cleaned.contains("\"keyConcepts\"")) {
@@ -486,8 +655,11 @@ public class ContentParserService {
     }
 
     private List<String> getArrayValues(JsonNode node, String fieldName) {
+        return getArrayValues(node.get(fieldName));
+    }
+
+    private List<String> getArrayValues(JsonNode arrayNode) {
         List<String> values = new ArrayList<>();
-        JsonNode arrayNode = node.get(fieldName);
         if (arrayNode != null && arrayNode.isArray()) {
             arrayNode.forEach(item -> values.add(item.asText()));
         }
@@ -948,6 +1120,166 @@ public class ContentParserService {
             private String relevance;
         }
     }
+
+    /**
+     * Detailed content whose sections are decoded on first access.
+     *
+     * Exposes the same sections as {@link ParsedDetail}; consumers that only read a few of
+     * them (previews, summaries) skip decoding and formatting of the rest. Decoded sections
+     * are cached, so instances are meant for a single request and are not thread-safe.
+     */
+    public static class LazyParsedDetail {
+        private final ContentParserService parser;
+        private final String json;
+        private final Map<String, int[]> fieldOffsets;
+        private final JsonNode root;
+        private final Map<String, JsonNode> nodes = new HashMap<>();
+        private final Map<String, Object> sections = new HashMap<>();
+
+        private LazyParsedDetail(ContentParserService parser, String json, Map<String, int[]> fieldOffsets) {
+            this.parser = parser;
+            this.json = json;
+            this.fieldOffsets = fieldOffsets;
+            this.root = null;
+        }
+
+        private LazyParsedDetail(ContentParserService parser, JsonNode root) {
+            this.parser = parser;
+            this.json = null;
+            this.fieldOffsets = null;
+            this.root = root;
+        }
+
+        private LazyParsedDetail(ParsedDetail parsed) {
+            this.parser = null;
+            this.json = null;
+            this.fieldOffsets = Collections.emptyMap();
+            this.root = null;
+            sections.put("executiveSummary", parsed.getExecutiveSummary());
+            sections.put("historicalEvolution", parsed.getHistoricalEvolution());
+            sections.put("corePrinciples", parsed.getCorePrinciples());
+            sections.put("realWorldApplications", parsed.getRealWorldApplications());
+            sections.put("caseStudies", parsed.getCaseStudies());
+            sections.put("interconnectedConcepts", parsed.getInterconnectedConcepts());
+            sections.put("currentInnovation", parsed.getCurrentInnovation());
+            sections.put("futureOutlook", parsed.getFutureOutlook());
+            sections.put("expertInsights", parsed.getExpertInsights());
+            sections.put("learningResources", parsed.getLearningResources());
+            sections.put("keyMetrics", parsed.getKeyMetrics());
+        }
+
+        /**
+         * Top-level field names present in the source JSON
+         */
+        public Set<String> getFieldNames() {
+            if (root != null) {
+                Set<String> names = new LinkedHashSet<>();
+                root.fieldNames().forEachRemaining(names::add);
+                return names;
+            }
+            return Collections.unmodifiableSet(fieldOffsets.keySet());
+        }
+
+        public String getExecutiveSummary() {
+            return section("executiveSummary", () -> parser.parseOverviewSection(node("overview")));
+        }
+
+        public String getHistoricalEvolution() {
+            return section("historicalEvolution", () -> parser.parseKeyConceptsSection(node("keyConcepts")));
+        }
+
+        public String getCorePrinciples() {
+            return section("corePrinciples", () -> parser.parseCodeExamples(node("codeExamples")));
+        }
+
+        public List<ParsedDetail.Application> getRealWorldApplications() {
+            return section("realWorldApplications", () -> parser.parseCodeExamplesAsApplications(node("codeExamples")));
+        }
+
+        public List<ParsedDetail.CaseStudy> getCaseStudies() {
+            return section("caseStudies", () -> parser.parseBestPracticesAsCaseStudies(node("bestPractices")));
+        }
+
+        public String getInterconnectedConcepts() {
+            return section("interconnectedConcepts", () -> parser.parseRelatedTopicsSection(node("relatedTopics")));
+        }
+
+        public String getCurrentInnovation() {
+            return section("currentInnovation", () -> parser.parseBestPracticesSection(node("bestPractices")));
+        }
+
+        public String getFutureOutlook() {
+            return section("futureOutlook", () -> DEFAULT_FUTURE_OUTLOOK);
+        }
+
+        public List<ParsedDetail.ExpertInsight> getExpertInsights() {
+            return section("expertInsights", () -> parser.parseBestPracticesAsInsights(node("bestPractices")));
+        }
+
+        public List<ParsedDetail.LearningResource> getLearningResources() {
+            return section("learningResources", () -> parser.parseLearningResources(node("learningResources")));
+        }
+
+        public List<String> getKeyMetrics() {
+            return section("keyMetrics", () -> parser.getArrayValues(node("keyMetrics")));
+        }
+
+        /**
+         * Decode every section into an eager {@link ParsedDetail}
+         */
+        public ParsedDetail toParsedDetail() {
+            return ParsedDetail.builder()
+                    .executiveSummary(getExecutiveSummary())
+                    .historicalEvolution(getHistoricalEvolution())
+                    .corePrinciples(getCorePrinciples())
+                    .realWorldApplications(getRealWorldApplications())
+                    .caseStudies(getCaseStudies())
+                    .interconnectedConcepts(getInterconnectedConcepts())
+                    .currentInnovation(getCurrentInnovation())
+                    .futureOutlook(getFutureOutlook())
+                    .expertInsights(getExpertInsights())
+                    .learningResources(getLearningResources())
+                    .keyMetrics(getKeyMetrics())
+                    .build();
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T section(String name, Supplier<T> decoder) {
+            if (!sections.containsKey(name)) {
+                sections.put(name, decoder.get());
+            }
+            return (T) sections.get(name);
+        }
+
+        /**
+         * JSON node of a top-level field, decoded from its indexed range on first use
+         */
+        private JsonNode node(String field) {
+            if (root != null) {
+                return root.get(field);
+            }
+            if (nodes.containsKey(field)) {
+                return nodes.get(field);
+            }
+
+            JsonNode node = null;
+            int[] range = fieldOffsets.get(field);
+            if (range != null) {
+                // Same entity cleanup as the full parse, except &quot; which would end the JSON string
+                String value = json.substring(range[0], range[1])
+                    .replace("&lt;", "<")
+                    .replace("&gt;", ">")
+                    .replace("&amp;", "&");
+                try {
+                    node = parser.sectionReader.readTree(value);
+                } catch (JsonProcessingException e) {
+                    log.warn("Failed to decode section '{}' of detailed content: {}", field, e.getMessage());
+                }
+            }
+            nodes.put(field, node);
+            return node;
+        }
+    }
     
     // Helper methods
     private String getNodeText(JsonNode node, String fieldName) {
@@ -966,6 +1298,50 @@ public class ContentParserService {
                    .replace("'", "&#39;");
     }
     
+    /**
+     * Linear equivalent of {@link #CONTROL_CHARACTER_RULES}, used when the guard trips
+     */
+    private static String escapeControlCharacters(String json) {
+        StringBuilder out = new StringBuilder(json.length() + 16);
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '\r') {
+                out.append("\\n");
+                if (i + 1 < json.length() && json.charAt(i + 1) == '\n') {
+                    i++;
+                }
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else if (c == '\t') {
+                out.append("\\t");
+            } else if (c >= 0x20) {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Linear equivalent of {@link #CODE_FENCE_RULES}: drops every fence, with its {@code json}
+     * tag and the whitespace after it
+     */
+    private static String stripCodeFences(String text) {
+        StringBuilder out = new StringBuilder(text.length());
+        int from = 0;
+        int fence;
+        while ((fence = text.indexOf("```", from)) >= 0) {
+            out.append(text, from, fence);
+            from = fence + 3;
+            if (text.startsWith("json", from)) {
+                from += 4;
+            }
+            while (from < text.length() && GuardedTextProcessor.isRegexWhitespace(text.charAt(from))) {
+                from++;
+            }
+        }
+        return out.append(text, from, text.length()).toString();
+    }
+
     /**
      * Clean control characters and problematic formatting from JSON content
      */
@@ -974,15 +1350,9 @@ public class ContentParserService {
         
         try {
             // Replace problematic control characters
-            String cleaned = json
-                // Remove or replace common control characters that break JSON parsing
-                .replaceAll("\\r\\n", "\\\\n")  // Replace CRLF with escaped newline
-                .replaceAll("\\r", "\\\\n")     // Replace CR with escaped newline  
-                .replaceAll("\\n", "\\\\n")     // Replace LF with escaped newline
-                .replaceAll("\\t", "\\\\t")     // Replace tabs with escaped tabs
-                // Remove other control characters (keeping basic ones like spaces)
-                .replaceAll("[\\x00-\\x1F&&[^\\x09\\x0A\\x0D\\x20]]", "");
-                
+            String cleaned = textGuard.replaceAll("parser.clean-control-characters", json,
+                ContentParserService::escapeControlCharacters, CONTROL_CHARACTER_RULES);
+
             log.debug("Cleaned {} control characters from JSON", json.length() - cleaned.length());
             return cleaned;
             
@@ -1047,7 +1417,8 @@ public class ContentParserService {
         
         try {
             // Remove markdown code blocks
-            String cleaned = response.replaceAll("```json\\s*", "").replaceAll("```\\s*", "");
+            String cleaned = textGuard.replaceAll("parser.strip-fences", response,
+                ContentParserService::stripCodeFences, CODE_FENCE_RULES);
             
             // Extract JSON object
             int jsonStart = cleaned.indexOf("{");
@@ -0,0 +1,255 @@
+package com.knowledge.topic.service;
+
+import com.knowledge.common.service.CsvRecords;
+import com.knowledge.common.service.StreamingXlsxReader;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Append-only journal of processed topics, the source of {@code knowledge_log.xlsx}.
+ *
+ * Each entry is one CSV line appended to {@code app.knowledge-log.journal-path}, so logging a
+ * topic costs the same however long the log is; appends are flushed to disk together every
+ * {@code app.knowledge-log.fsync-interval-ms} and at shutdown. The workbook at
+ * {@code app.knowledge-log-path} is regenerated from the journal with a streaming
+ * {@link SXSSFWorkbook} every {@code app.knowledge-log.export-interval-ms} when entries were
+ * added, on demand and at shutdown. An existing workbook without a journal is imported once.
+ */
+@Service
+@Slf4j
+public class KnowledgeLogJournal {
+
+    static final String[] HEADERS = {"Date", "Topic", "Category", "Overview Length", "Detail Length", "Status", "Notes"};
+
+    // Columns exported as numbers
+    private static final int COL_OVERVIEW_LENGTH = 3;
+    private static final int COL_DETAIL_LENGTH = 4;
+    private static final int EXPORT_WINDOW_ROWS = 100;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Result of a workbook export
+     */
+    public record ExportResult(String workbook, int entries, long millis) {
+    }
+
+    private final Path journalPath;
+    private final Path workbookPath;
+
+    private final Object exportLock = new Object();
+
+    private FileChannel journal;
+    private boolean unsynced;
+    private volatile long exportedSize = -1;
+
+    public KnowledgeLogJournal(@Value("${app.knowledge-log.journal-path:knowledge_log.csv}") String journalPath,
+                               @Value("${app.knowledge-log-path:knowledge_log.xlsx}") String workbookPath) {
+        this.journalPath = Paths.get(journalPath);
+        this.workbookPath = Paths.get(workbookPath);
+    }
+
+    @PostConstruct
+    void openJournal() throws IOException {
+        Path directory = journalPath.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        boolean created = !Files.exists(journalPath) || Files.size(journalPath) == 0;
+        journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (!created) {
+            dropPartialEntry();
+            return;
+        }
+
+        write(HEADERS);
+        if (Files.exists(workbookPath)) {
+            int[] imported = {0};
+            StreamingXlsxReader.readFirstSheet(workbookPath, row -> {
+                if (row.rowNum() > 0) {
+                    String[] values = new String[HEADERS.length];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = row.text(i);
+                    }
+                    writeUnchecked(values);
+                    imported[0]++;
+                }
+                return true;
+            });
+            log.info("Imported {} knowledge log entries from {} into {}", imported[0], workbookPath, journalPath);
+        }
+        journal.force(false);
+        exportedSize = journal.size();
+    }
+
+    /**
+     * Append one entry; it is on disk after the next sync
+     */
+    public synchronized void append(String date, String topic, String category, int overviewLength, int detailLength,
+                                    String status, String notes) throws IOException {
+        write(new String[]{date, topic, category, String.valueOf(overviewLength), String.valueOf(detailLength), status, notes});
+        unsynced = true;
+    }
+
+    /**
+     * Flush appended entries to disk, one fsync for all entries since the last sync
+     */
+    @Scheduled(fixedDelayString = "${app.knowledge-log.fsync-interval-ms:1000}")
+    public synchronized void sync() {
+        if (!unsynced || !journal.isOpen()) {
+            return;
+        }
+        try {
+            journal.force(false);
+            unsynced = false;
+        } catch (IOException e) {
+            log.error("Error syncing knowledge log journal: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.knowledge-log.export-interval-ms:3600000}",
+        initialDelayString = "${app.knowledge-log.export-interval-ms:3600000}")
+    public void exportIfChanged() {
+        try {
+            if (journalSize() != exportedSize) {
+                export();
+            }
+        } catch (IOException e) {
+            log.error("Error exporting knowledge log: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Regenerate the workbook from the journal, streaming rows so memory does not grow with the log
+     */
+    public ExportResult export() throws IOException {
+        synchronized (exportLock) {
+            return exportJournal();
+        }
+    }
+
+    private ExportResult exportJournal() throws IOException {
+        long start = System.currentTimeMillis();
+        sync();
+        long size = journalSize();
+
+        Path partPath = workbookPath.resolveSibling(workbookPath.getFileName() + ".part");
+        int entries = 0;
+        SXSSFWorkbook workbook = new SXSSFWorkbook(EXPORT_WINDOW_ROWS);
+        try (Reader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(journalPath), StandardCharsets.UTF_8))) {
+            Sheet sheet = workbook.createSheet("Knowledge Log");
+            Row header = sheet.createRow(0);
+            for (int i = 0; i < HEADERS.length; i++) {
+                header.createCell(i).setCellValue(HEADERS[i]);
+            }
+
+            boolean headerLine = true;
+            List<String> record;
+            while ((record = CsvRecords.read(reader)) != null) {
+                if (headerLine) {
+                    headerLine = false;
+                    continue;
+                }
+                Row row = sheet.createRow(++entries);
+                for (int i = 0; i < record.size(); i++) {
+                    setCell(row, i, record.get(i));
+                }
+            }
+
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(partPath), WRITE_BUFFER_SIZE)) {
+                workbook.write(out);
+            }
+        } finally {
+            workbook.close();
+        }
+        Files.move(partPath, workbookPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        exportedSize = size;
+        long millis = System.currentTimeMillis() - start;
+        log.info("Exported {} knowledge log entries to {} in {} ms", entries, workbookPath, millis);
+        return new ExportResult(workbookPath.toString(), entries, millis);
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        sync();
+        exportIfChanged();
+        journal.close();
+    }
+
+    /**
+     * Cut an entry left half-written by a crash, so the next append starts on its own line
+     */
+    private void dropPartialEntry() throws IOException {
+        long size = journal.size();
+        ByteBuffer block = ByteBuffer.allocate(4096);
+        long end = size;
+        while (end > 0) {
+            long start = Math.max(0, end - block.capacity());
+            block.clear().limit((int) (end - start));
+            try (FileChannel reader = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+                reader.read(block, start);
+            }
+            for (int i = block.position() - 1; i >= 0; i--) {
+                if (block.get(i) == '\n') {
+                    long complete = start + i + 1;
+                    if (complete < size) {
+                        journal.truncate(complete);
+                        log.warn("Dropped {} bytes of an incomplete knowledge log entry", size - complete);
+                    }
+                    return;
+                }
+            }
+            end = start;
+        }
+    }
+
+    private synchronized long journalSize() throws IOException {
+        return journal.size();
+    }
+
+    private void write(String[] values) throws IOException {
+        ByteBuffer line = ByteBuffer.wrap(CsvRecords.toLine(values).getBytes(StandardCharsets.UTF_8));
+        while (line.hasRemaining()) {
+            journal.write(line);
+        }
+    }
+
+    private void writeUnchecked(String[] values) {
+        try {
+            write(values);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to import knowledge log entry", e);
+        }
+    }
+
+    private static void setCell(Row row, int column, String value) {
+        if ((column == COL_OVERVIEW_LENGTH || column == COL_DETAIL_LENGTH) && value.matches("\\d{1,15}")) {
+            row.createCell(column).setCellValue(Long.parseLong(value));
+        } else {
+            row.createCell(column).setCellValue(value);
+        }
+    }
+}
@@ -1,69 +1,98 @@
 package com.knowledge.topic.service;
 
+import com.knowledge.common.model.DigestEntry;
+import com.knowledge.common.model.MailRecipient;
+import com.knowledge.common.model.RenderedEmail;
+import com.knowledge.common.service.CompiledTemplate;
+import com.knowledge.common.service.DailyDigestService;
+import com.knowledge.common.service.EmailFormattingRules;
+import com.knowledge.common.service.EmailTemplateEngine;
+import com.knowledge.common.service.GuardedTextProcessor;
+import com.knowledge.common.service.GuardedTextProcessor.RegexRule;
+import com.knowledge.common.service.GuardedTextProcessor.TextBudget;
+import com.knowledge.common.service.MailRecipientService;
+import com.knowledge.common.service.MarkdownRenderer;
+import com.knowledge.common.service.RenderedEmailService;
 import com.knowledge.topic.dto.TopicOverview;
 import com.knowledge.topic.model.EmailType;
 import com.knowledge.topic.model.Topic;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.MailException;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 
-import jakarta.mail.internet.MimeMessage;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @Service
 @Slf4j
 public class TopicEmailService {
 
-    private final JavaMailSender mailSender;
+    private final MailRecipientService recipientService;
+    private final RenderedEmailService renderedEmails;
+    private final DailyDigestService digestService;
     private final ContentParserService contentParser; // NEW: Add parser service
+    private final EmailTemplateEngine templateEngine;
+    private final MarkdownRenderer markdownRenderer;
+    private final GuardedTextProcessor textGuard;
 
     private final String fromEmail;
-    private final String toEmail;
+
+    private static final String PIPELINE = "topic";
+
+    private static final String PAGE_TEMPLATE = "topic-overview-email-template.html";
+    private static final String CARD_TEMPLATE = "topic-overview-card-template.html";
+
+    private static final RegexRule[] TEXT_RULES = {
+        RegexRule.of("\\*\\*(.*?)\\*\\*", "<strong>$1</strong>"),  // **bold** to <strong>
+        RegexRule.of("(?m)^- (.+)$", "<li>$1</li>"),                 // - item to <li>
+        RegexRule.of("(?m)^\\* (.+)$", "<li>$1</li>")               // * item to <li>
+    };
 
     private static final DateTimeFormatter EMAIL_DATE_FORMATTER = DateTimeFormatter.ofPattern("MMMM dd, yyyy");
     private static final DateTimeFormatter EMAIL_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
-    public TopicEmailService(JavaMailSender mailSender,
+    public TopicEmailService(MailRecipientService recipientService,
+                           RenderedEmailService renderedEmails,
+                           DailyDigestService digestService,
                            ContentParserService contentParser,
-                           @Value("${app.mail-from}") String fromEmail,
-                           @Value("${app.mail-to}") String toEmail) {
-        this.mailSender = mailSender;
+                           EmailTemplateEngine templateEngine,
+                           MarkdownRenderer markdownRenderer,
+                           GuardedTextProcessor textGuard,
+                           @Value("${app.mail-from}") String fromEmail) {
+        this.recipientService = recipientService;
+        this.renderedEmails = renderedEmails;
+        this.digestService = digestService;
         this.contentParser = contentParser;
+        this.templateEngine = templateEngine;
+        this.markdownRenderer = markdownRenderer;
+        this.textGuard = textGuard;
         this.fromEmail = fromEmail;
-        this.toEmail = toEmail;
     }
 
     public void sendOverviewEmail(List<TopicOverview> overviews) {
+        sendOverviewEmail(overviews, Map.of());
+    }
+
+    private void sendOverviewEmail(List<TopicOverview> overviews, Map<String, String> topicLevels) {
         if (overviews == null || overviews.isEmpty()) {
             log.warn("No overview content to send via email");
             return;
         }
 
         try {
-            // Create subject with topic names
-            String topicNames = overviews.stream()
-                    .map(overview -> overview.getTopicName())
-                    .collect(Collectors.joining(", "));
-            
-            String subject;
-            if (overviews.size() == 1) {
-                subject = "📋 Daily Overview: " + topicNames + " - " + 
-                         LocalDateTime.now().format(EMAIL_DATE_FORMATTER);
-            } else {
-                subject = "📋 Daily Overview: " + overviews.size() + " Topics - " + 
-                         LocalDateTime.now().format(EMAIL_DATE_FORMATTER);
-            }
-            
-            String htmlContent = buildOverviewEmailContent(overviews);
+            // Parse and format once; recipients only get a subset of the prepared cards
+            List<TopicCard> cards = buildTopicCards(overviews, topicLevels);
+            Map<String, Object> sharedValues = buildOverviewTemplateValues();
 
-            sendEmail(subject, htmlContent);
-            log.info("Successfully sent overview email with {} topics", overviews.size());
+            sendEmail(cards, sharedValues);
+            log.info("Successfully queued overview email with {} topics", overviews.size());
 
         } catch (Exception e) {
             log.error("Error sending overview email: {}", e.getMessage(), e);
@@ -82,7 +111,13 @@ public class TopicEmailService {
         try {
             if (overviews != null && !overviews.isEmpty()) {
                 log.info("Sending overview email for topics: {}", overviews.stream().map(TopicOverview::getTopicName).toList());
-                sendOverviewEmail(overviews);
+                Map<String, String> topicLevels = new HashMap<>();
+                for (Topic topic : topics) {
+                    if (topic.getTopicLevel() != null) {
+                        topicLevels.put(topic.getName(), topic.getTopicLevel());
+                    }
+                }
+                sendOverviewEmail(overviews, topicLevels);
                 overviewSent = true;
             } else {
                 log.info("No overview content to send via email");
@@ -99,17 +134,41 @@ public class TopicEmailService {
         }
     }
 
-    private void sendEmail(String subject, String htmlContent) throws Exception {
+    /**
+     * Send each topic subscriber the cards matching their level filter
+     */
+    private void sendEmail(List<TopicCard> cards, Map<String, Object> sharedValues) {
+        if (digestService.isEnabledFor(PIPELINE)) {
+            List<DigestEntry> entries = cards.stream()
+                    .map(card -> new DigestEntry(PIPELINE, card.topicName(), card.level(),
+                            templateEngine.render(CARD_TEMPLATE, card.values())))
+                    .toList();
+            digestService.collect(entries);
+            return;
+        }
+
         try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+            List<MailRecipient> recipients = recipientService.findSubscribers(PIPELINE).stream()
+                    .filter(recipient -> cards.stream().anyMatch(card -> recipient.acceptsLevel(card.level())))
+                    .toList();
 
-            helper.setFrom(fromEmail);
-            helper.setTo(toEmail);
-            helper.setSubject(subject);
-            helper.setText(htmlContent, true);
+            // Recipients with the same level filter get the same cards, so render once per filter
+            Map<String, List<MailRecipient>> recipientsByAudience = new LinkedHashMap<>();
+            for (MailRecipient recipient : recipients) {
+                recipientsByAudience.computeIfAbsent(RenderedEmailService.audienceOf(recipient), key -> new ArrayList<>())
+                        .add(recipient);
+            }
 
-            mailSender.send(message);
+            String emailKey = LocalDate.now().toString();
+            for (Map.Entry<String, List<MailRecipient>> audience : recipientsByAudience.entrySet()) {
+                MailRecipient representative = audience.getValue().get(0);
+                List<TopicCard> audienceCards = cards.stream()
+                        .filter(card -> representative.acceptsLevel(card.level()))
+                        .toList();
+                RenderedEmail email = renderedEmails.store(PIPELINE, emailKey, audience.getKey(),
+                        buildSubject(audienceCards), PAGE_TEMPLATE, buildPageValues(audienceCards, sharedValues), null);
+                renderedEmails.deliver(email, audience.getValue(), false);
+            }
 
         } catch (MailException e) {
             log.error("Mail sending failed: {}. Please check email configuration in application.properties", e.getMessage());
@@ -117,267 +176,75 @@ public class TopicEmailService {
         }
     }
 
-    private String buildOverviewEmailContent(List<TopicOverview> overviews) {
-        StringBuilder html = new StringBuilder();
-        String currentDate = LocalDateTime.now().format(EMAIL_DATE_FORMATTER);
-        String timestamp = LocalDateTime.now().format(EMAIL_TIME_FORMATTER);
-
-        html.append("""
-                <!DOCTYPE html>
-                <html>
-                <head>
-                    <title>📋 Daily Topic Overview - %s</title>
-                    <style>
-                        body { 
-                            font-family: 'Segoe UI', Tahoma, sans-serif; 
-                            line-height: 1.6; 
-                            color: #2c3e50; 
-                            max-width: 900px; 
-                            margin: 0 auto; 
-                            padding: 20px; 
-                            background-color: #f8f9fa;
-                        }
-                        .email-container {
-                            background: white;
-                            border-radius: 12px;
-                            box-shadow: 0 4px 6px rgba(0,0,0,0.1);
-                            overflow: hidden;
-                        }
-                        .header { 
-                            background: linear-gradient(135deg, #667eea 0%%, #764ba2 100%%); 
-                            color: white; 
-                            padding: 40px; 
-                            text-align: center; 
-                        }
-                        .header h1 { margin: 0; font-size: 2.2em; font-weight: 300; }
-                        .header p { margin: 10px 0 0 0; opacity: 0.9; }
-                        
-                        .topic-card { 
-                            background: #ffffff; 
-                            margin: 25px 30px; 
-                            border-left: 5px solid #667eea; 
-                            border-radius: 8px;
-                            box-shadow: 0 2px 8px rgba(0,0,0,0.1);
-                            overflow: hidden;
-                        }
-                        .topic-header {
-                            background: linear-gradient(135deg, #f8f9fa 0%%, #e9ecef 100%%);
-                            padding: 25px;
-                            border-bottom: 1px solid #dee2e6;
-                        }
-                        .topic-title { 
-                            color: #2c3e50; 
-                            margin: 0 0 10px 0; 
-                            font-size: 1.8em;
-                            font-weight: 600;
-                        }
-                        .topic-meta {
-                            display: flex;
-                            gap: 15px;
-                            align-items: center;
-                            flex-wrap: wrap;
-                        }
-                        .level-badge { 
-                            background: #28a745; 
-                            color: white; 
-                            padding: 6px 14px; 
-                            border-radius: 20px; 
-                            font-size: 0.85em;
-                            font-weight: 600;
-                            text-transform: uppercase;
-                        }
-                        .level-advanced { background: #dc3545; }
-                        .level-intermediate { background: #ffc107; color: #212529; }
-                        .level-beginner { background: #28a745; }
-                        
-                        .category-badge { 
-                            background: #6f42c1; 
-                            color: white; 
-                            padding: 6px 14px; 
-                            border-radius: 20px; 
-                            font-size: 0.85em;
-                            font-weight: 500;
-                        }
-                        
-                        .topic-content { padding: 30px; }
-                        .introduction { 
-                            font-size: 1.1em; 
-                            line-height: 1.7; 
-                            color: #2c3e50; 
-                            margin-bottom: 25px;
-                            text-align: justify;
-                        }
-                        
-                        .concepts-section, .takeaways-section, .stats-section {
-                            background: #f8f9fa;
-                            padding: 20px;
-                            border-radius: 8px;
-                            margin: 20px 0;
-                            border-left: 4px solid #667eea;
-                        }
-                        .concepts-section { border-left-color: #17a2b8; }
-                        .takeaways-section { border-left-color: #28a745; }
-                        .stats-section { border-left-color: #ffc107; }
-                        
-                        .section-title {
-                            font-size: 1.2em;
-                            font-weight: 600;
-                            color: #2c3e50;
-                            margin: 0 0 15px 0;
-                            display: flex;
-                            align-items: center;
-                            gap: 8px;
-                        }
-                        
-                        .concept-list, .takeaway-list, .stats-list { 
-                            list-style: none; 
-                            padding: 0; 
-                            margin: 0;
-                        }
-                        .concept-list li, .takeaway-list li, .stats-list li { 
-                            padding: 8px 0; 
-                            border-bottom: 1px solid #e9ecef;
-                            position: relative;
-                            padding-left: 20px;
-                        }
-                        .concept-list li:before {
-                            content: "💡";
-                            position: absolute;
-                            left: 0;
-                        }
-                        .takeaway-list li:before {
-                            content: "✅";
-                            position: absolute;
-                            left: 0;
-                        }
-                        .stats-list li:before {
-                            content: "📊";
-                            position: absolute;
-                            left: 0;
-                        }
-                        .concept-list li:last-child, .takeaway-list li:last-child, .stats-list li:last-child { 
-                            border-bottom: none; 
-                        }
-                        
-                        .why-matters {
-                            background: linear-gradient(135deg, #e3f2fd 0%%, #bbdefb 100%%);
-                            padding: 25px;
-                            border-radius: 8px;
-                            margin: 20px 0;
-                            border-left: 4px solid #2196f3;
-                        }
-                        .why-matters .icon { font-size: 1.5em; margin-right: 10px; }
-                        
-                        .relevance-section {
-                            margin: 20px 0;
-                            padding: 20px;
-                            background: #fff3cd;
-                            border-radius: 8px;
-                            border-left: 4px solid #ffc107;
-                        }
-                        
-                        .footer {
-                            background: linear-gradient(135deg, #2c3e50 0%%, #34495e 100%%);
-                            color: white;
-                            padding: 30px;
-                            text-align: center;
-                        }
-                        .footer a { color: #74b9ff; text-decoration: none; }
-                        .footer a:hover { text-decoration: underline; }
-                        
-                        @media (max-width: 600px) {
-                            .topic-card { margin: 15px; }
-                            .topic-content { padding: 20px; }
-                            .topic-meta { flex-direction: column; align-items: flex-start; }
-                        }
-                    </style>
-                </head>
-                <body>
-                    <div class="email-container">
-                        <div class="header">
-                            <h1>📋 Daily Topic Overview</h1>
-                            <p><strong>Date:</strong> %s | <strong>Topics:</strong> %d</p>
-                        </div>
-                """.formatted(currentDate, currentDate, overviews.size()));
+    /**
+     * Page values for a set of cards; the greeting is left open for the recipient
+     */
+    private Map<String, Object> buildPageValues(List<TopicCard> cards, Map<String, Object> sharedValues) {
+        // Topic cards are rendered straight into the page output
+        CompiledTemplate.Fragment topicCards = out -> {
+            for (TopicCard card : cards) {
+                templateEngine.render(CARD_TEMPLATE, card.values(), out);
+            }
+        };
+
+        Map<String, Object> values = new HashMap<>(sharedValues);
+        values.put("TOPIC_COUNT", cards.size());
+        values.put("TOPIC_CARDS", topicCards);
+        return values;
+    }
+
+    private String buildSubject(List<TopicCard> cards) {
+        String date = LocalDateTime.now().format(EMAIL_DATE_FORMATTER);
+        if (cards.size() == 1) {
+            return "📋 Daily Overview: " + cards.get(0).topicName() + " - " + date;
+        }
+        return "📋 Daily Overview: " + cards.size() + " Topics - " + date;
+    }
 
+    private Map<String, Object> buildOverviewTemplateValues() {
+        Map<String, Object> values = new HashMap<>();
+        values.put("DATE", LocalDateTime.now().format(EMAIL_DATE_FORMATTER));
+        values.put("TIMESTAMP", LocalDateTime.now().format(EMAIL_TIME_FORMATTER));
+        values.put("MAIL_FROM", fromEmail);
+        return values;
+    }
+
+    private List<TopicCard> buildTopicCards(List<TopicOverview> overviews, Map<String, String> topicLevels) {
+        List<TopicCard> cards = new ArrayList<>(overviews.size());
         for (TopicOverview overview : overviews) {
             // Parse the AI-generated content
             ContentParserService.ParsedOverview parsed = contentParser.parseOverviewContent(overview.getIntroduction());
+            String level = topicLevels.get(overview.getTopicName());
+            String displayLevel = level != null ? level : "Intermediate"; // Default level when the topic has none
 
-            html.append(String.format("""
-                    <div class="topic-card">
-                        <div class="topic-header">
-                            <h2 class="topic-title">%s</h2>
-                            <div class="topic-meta">
-                                <span class="level-badge level-%s">%s Level</span>
-                                <span class="category-badge">%s</span>
-                                <small>📊 %d words</small>
-                            </div>
-                        </div>
-                        
-                        <div class="topic-content">
-                            <div class="introduction">%s</div>
-                            
-                            <div class="concepts-section">
-                                <h4 class="section-title">💡 Key Concepts</h4>
-                                <ul class="concept-list">%s</ul>
-                            </div>
-                            
-                            <div class="relevance-section">
-                                <h4 class="section-title">🌟 Current Relevance</h4>
-                                <p>%s</p>
-                            </div>
-                            
-                            <div class="takeaways-section">
-                                <h4 class="section-title">🎯 Main Takeaways</h4>
-                                <ul class="takeaway-list">%s</ul>
-                            </div>
-                            
-                            <div class="stats-section">
-                                <h4 class="section-title">📊 Quick Stats</h4>
-                                <ul class="stats-list">%s</ul>
-                            </div>
-                            
-                            <div class="why-matters">
-                                <h4 class="section-title"><span class="icon">💼</span>Why It Matters</h4>
-                                <p>%s</p>
-                            </div>
-                        </div>
-                    </div>
-                    """,
-                    overview.getTopicName(),
-                    "intermediate", // Default level - could be enhanced to read from topic data
-                    "Intermediate", // Display level
-                    overview.getCategory(),
-                    overview.getWordCount(),
-                    formatTextForHtml(parsed.getIntroduction()),
-                    parsed.getKeyConcepts().stream()
-                            .map(concept -> "<li>" + formatTextForHtml(concept) + "</li>")
-                            .reduce("", String::concat),
-                    formatTextForHtml(parsed.getCurrentRelevance()),
-                    parsed.getMainTakeaways().stream()
-                            .map(takeaway -> "<li>" + formatTextForHtml(takeaway) + "</li>")
-                            .reduce("", String::concat),
-                    parsed.getQuickStats().stream()
-                            .map(stat -> "<li>" + formatTextForHtml(stat) + "</li>")
-                            .reduce("", String::concat),
-                    formatTextForHtml(parsed.getWhyItMatters())));
+            Map<String, Object> card = new HashMap<>();
+            card.put("TOPIC_NAME", overview.getTopicName());
+            card.put("LEVEL_CLASS", displayLevel.toLowerCase());
+            card.put("LEVEL", displayLevel);
+            card.put("CATEGORY", overview.getCategory());
+            card.put("WORD_COUNT", overview.getWordCount());
+            card.put("INTRODUCTION", formatTextForHtml(parsed.getIntroduction()));
+            card.put("KEY_CONCEPTS", formatListItems(parsed.getKeyConcepts()));
+            card.put("CURRENT_RELEVANCE", formatTextForHtml(parsed.getCurrentRelevance()));
+            card.put("MAIN_TAKEAWAYS", formatListItems(parsed.getMainTakeaways()));
+            card.put("QUICK_STATS", formatListItems(parsed.getQuickStats()));
+            card.put("WHY_IT_MATTERS", formatTextForHtml(parsed.getWhyItMatters()));
+            cards.add(new TopicCard(overview.getTopicName(), level, card));
         }
+        return cards;
+    }
 
-        html.append(String.format("""
-                        <div class="footer">
-                            <h3>� Knowledge Summary Complete!</h3>
-                            <p>You've received comprehensive overview content to boost your technical understanding and career development!</p>
-                            <p style="margin-top: 20px; font-size: 0.9em; opacity: 0.8;">
-                                Generated by Topic Knowledge Service • %s<br>
-                                <a href="mailto:%s">Questions or feedback?</a>
-                            </p>
-                        </div>
-                    </div>
-                </body>
-                </html>
-                """, timestamp, fromEmail));
+    /**
+     * Prepared card values of one topic, shared by all recipients
+     */
+    private record TopicCard(String topicName, String level, Map<String, Object> values) {
+    }
 
+    private String formatListItems(List<String> items) {
+        StringBuilder html = new StringBuilder();
+        for (String item : items) {
+            html.append("<li>").append(formatTextForHtml(item)).append("</li>");
+        }
         return html.toString();
     }
 
@@ -385,45 +252,46 @@ public class TopicEmailService {
         if (text == null || text.trim().isEmpty()) {
             return "";
         }
-        
-        // Clean up the text and convert to proper HTML
-        String formatted = text.trim()
-                  // First escape HTML entities
+
+        // Regex formatting within the text guard's budget, falling back to the linear renderer
+        String trimmed = text.trim();
+        return textGuard.process("topic.format-text", trimmed,
+            budget -> formatText(budget, trimmed),
+            markdownRenderer::render);
+    }
+
+    private String formatText(TextBudget budget, String text) {
+        // First escape HTML entities, then convert **bold** and markdown-style lists to HTML
+        String escaped = text
                   .replace("&", "&amp;")
                   .replace("<", "&lt;")
                   .replace(">", "&gt;")
-                  .replace("\"", "&quot;")
-                  
-                  // Convert **bold** to <strong>bold</strong>
-                  .replaceAll("\\*\\*(.*?)\\*\\*", "<strong>$1</strong>")
-                  
-                  // Convert markdown-style lists to HTML
-                  .replaceAll("(?m)^- (.+)$", "<li>$1</li>")
-                  .replaceAll("(?m)^\\* (.+)$", "<li>$1</li>")
-                  
+                  .replace("\"", "&quot;");
+        String formatted = budget.replaceAll(escaped, TEXT_RULES)
+
                   // Convert double newlines to paragraph breaks
                   .replace("\n\n", "</p><p>")
-                  
+
                   // Convert single newlines to breaks
                   .replace("\n", "<br>");
-        
+
         // Wrap in paragraph tags if not already wrapped and doesn't contain list items
         if (!formatted.contains("<li>") && !formatted.startsWith("<p>")) {
             formatted = "<p>" + formatted + "</p>";
         }
-        
+
         // Clean up empty paragraphs and formatting issues
         formatted = formatted
                   .replace("<p></p>", "")
                   .replace("<p><br>", "<p>")
                   .replace("<br></p>", "</p>")
                   .replace("<li></li>", "");
-        
+
         // Wrap consecutive list items in ul tags
         if (formatted.contains("<li>")) {
-            formatted = formatted.replaceAll("(<li>.*?</li>)+", "<ul>$0</ul>");
+            formatted = budget.replaceAll(formatted, EmailFormattingRules.LIST_WRAP_RULES);
         }
-        
+
         return formatted;
     }
 }
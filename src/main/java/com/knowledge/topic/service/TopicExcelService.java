@@ -1,34 +1,82 @@
 package com.knowledge.topic.service;
 
+import com.knowledge.common.model.TextStatistics;
+import com.knowledge.common.service.SheetRowIndex;
+import com.knowledge.common.service.StreamingXlsxReader;
+import com.knowledge.common.service.StreamingXlsxReader.SheetRow;
+import com.knowledge.common.service.WorkbookWriteBehind;
 import com.knowledge.topic.model.Topic;
 import com.knowledge.topic.model.TopicStatus;
+import com.knowledge.topic.repository.TopicRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class TopicExcelService {
 
+    private final KnowledgeLogJournal knowledgeLog;
+    private final TopicRepository topicRepository;
+
     @Value("${app.topics-excel-path}")
     private String topicsExcelPath;
 
-    @Value("${app.knowledge-log-path}")
-    private String knowledgeLogPath;
+    // excel: topics are read from the workbook first; database: the topics table is the store,
+    // and the workbook follows it through the write-behind buffer
+    @Value("${app.state-store:excel}")
+    private String stateStore;
+
+    // Database store: claims older than this are released again (0 = only at startup)
+    @Value("${app.state-store.claim-timeout-minutes:120}")
+    private long claimTimeoutMinutes;
+
+    private boolean databaseStore;
+    // Modification time and size of the workbook as last imported
+    private volatile String importedStamp;
+
+    // Status changes not yet written to the workbook, journaled until they are
+    private WorkbookWriteBehind statusUpdates;
+
+    // Row number of each topic name, filled by the read passes and appends
+    private final SheetRowIndex rowIndex = new SheetRowIndex("topic", this::topicKey);
+
+    private final Object workbookLock = new Object();
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    private static final int MAX_DESCRIPTION_LENGTH = 1000;
+
+    private static final int COL_NAME = 1;
+    private static final int COL_STATUS = 4;
+    private static final int COL_LAST_PROCESSED = 6;
+
     public List<Topic> getUnprocessedTopics(int limit) {
         List<Topic> topics = new ArrayList<>();
         File file = new File(topicsExcelPath);
@@ -39,24 +87,24 @@ public class TopicExcelService {
             return getDefaultTopics(limit);
         }
 
-        try (FileInputStream fis = new FileInputStream(file);
-             Workbook workbook = new XSSFWorkbook(fis)) {
-
-            Sheet sheet = workbook.getSheetAt(0);
-            int rowCount = 0;
+        if (limit <= 0) {
+            return topics;
+        }
 
-            for (Row row : sheet) {
-                if (row.getRowNum() == 0) continue; // Skip header
-                if (rowCount >= limit) break;
+        try {
+            // Stream the sheet and stop as soon as enough NEW topics are found
+            int rowsRead = StreamingXlsxReader.readFirstSheet(file.toPath(), row -> {
+                if (row.rowNum() == 0) return true; // Skip header
 
-                Topic topic = parseTopicFromRow(row);
+                rowIndex.put(row.text(COL_NAME), row.rowNum());
+                Topic topic = withPendingUpdate(parseTopicFromRow(row));
                 if (topic != null && topic.getStatus() == TopicStatus.NEW) {
                     topics.add(topic);
-                    rowCount++;
                 }
-            }
+                return topics.size() < limit;
+            });
 
-            log.info("Loaded {} unprocessed topics from Excel file", topics.size());
+            log.info("Loaded {} unprocessed topics from Excel file ({} rows read)", topics.size(), rowsRead);
 
         } catch (IOException e) {
             log.error("Error reading topics Excel file: {}", e.getMessage(), e);
@@ -85,20 +133,18 @@ public class TopicExcelService {
             return topics;
         }
 
-        try (FileInputStream fis = new FileInputStream(file);
-             Workbook workbook = new XSSFWorkbook(fis)) {
-
-            Sheet sheet = workbook.getSheetAt(0);
-
-            for (Row row : sheet) {
-                if (row.getRowNum() == 0) continue; // Skip header
+        try {
+            StreamingXlsxReader.readFirstSheet(file.toPath(), row -> {
+                if (row.rowNum() == 0) return true; // Skip header
 
-                Topic topic = parseTopicFromRow(row);
+                rowIndex.put(row.text(COL_NAME), row.rowNum());
+                Topic topic = withPendingUpdate(parseTopicFromRow(row));
                 if (topic != null &&
                     (topic.getLastProcessed() == null || topic.getLastProcessed().isBefore(cutoffDate))) {
                     topics.add(topic);
                 }
-            }
+                return true;
+            });
 
         } catch (IOException e) {
             log.error("Error reading topics Excel file: {}", e.getMessage(), e);
@@ -111,107 +157,220 @@ public class TopicExcelService {
         markTopicsAsProcessed(List.of(topic));
     }
 
+    /**
+     * Submit the topics' DONE status for the next workbook write
+     */
     public void markTopicsAsProcessed(List<Topic> topics) {
-        File file = new File(topicsExcelPath);
-
-        if (!file.exists()) {
-            log.warn("Topics Excel file not found for updating: {}", topicsExcelPath);
-            return;
+        String now = LocalDateTime.now().format(DATE_FORMATTER);
+        Map<String, Map<Integer, String>> changes = new LinkedHashMap<>();
+        for (Topic topic : topics) {
+            changes.put(topic.getName(), Map.of(COL_STATUS, "DONE", COL_LAST_PROCESSED, now));
         }
 
-        try (FileInputStream fis = new FileInputStream(file);
-             Workbook workbook = new XSSFWorkbook(fis)) {
+        statusUpdates.submit(changes);
+        log.info("Queued {} topics as processed for the Excel file ({} pending)", topics.size(), statusUpdates.size());
+    }
 
-            Sheet sheet = workbook.getSheetAt(0);
-            LocalDateTime now = LocalDateTime.now();
+    /**
+     * Write the pending status changes to the workbook
+     */
+    @Scheduled(fixedDelayString = "${app.excel-write-behind.flush-interval-ms:2000}")
+    public void flushStatusUpdates() {
+        statusUpdates.flush();
+    }
 
-            for (Topic topic : topics) {
-                updateTopicInSheet(sheet, topic, now);
-            }
+    @PostConstruct
+    void openStatusUpdates() throws IOException {
+        statusUpdates = new WorkbookWriteBehind("topic", Paths.get(topicsExcelPath), this::writeStatusUpdates);
+        if (statusUpdates.open() > 0) {
+            // Updates a crash left unwritten
+            flushStatusUpdates();
+        }
 
-            // Write back to file
-            try (FileOutputStream fos = new FileOutputStream(file)) {
-                workbook.write(fos);
-            }
+        databaseStore = "database".equalsIgnoreCase(stateStore.trim());
+        if (databaseStore) {
+            importTopicsIfChanged();
+            releaseInterruptedTopics();
+        }
+    }
 
-            log.info("Updated {} topics as processed in Excel file", topics.size());
+    public boolean isDatabaseStore() {
+        return databaseStore;
+    }
 
-        } catch (IOException e) {
-            log.error("Error updating topics Excel file: {}", e.getMessage(), e);
+    /**
+     * Database store: submit the topics' current status and last processed time for the next
+     * workbook write, so the workbook shows every transition
+     */
+    public void exportTopicStatuses(List<Topic> topics) {
+        Map<String, Map<Integer, String>> changes = new LinkedHashMap<>();
+        for (Topic topic : topics) {
+            Map<Integer, String> cells = new HashMap<>();
+            cells.put(COL_STATUS, mapEnumToExcelStatus(topic.getStatus()));
+            cells.put(COL_LAST_PROCESSED, topic.getLastProcessed() != null ? topic.getLastProcessed().format(DATE_FORMATTER) : "");
+            changes.put(topic.getName(), cells);
         }
+        statusUpdates.submit(changes);
     }
 
-    public void addTopics(List<Topic> topics) {
-        File file = new File(topicsExcelPath);
-        Workbook workbook;
-        Sheet sheet;
+    /**
+     * Database store: copy the workbook's topics into the topics table at startup and whenever
+     * the file changes outside the service. New names are added; known topics take the sheet's
+     * values unless they have status changes not yet written to the workbook.
+     */
+    @Scheduled(fixedDelayString = "${app.state-store.import-check-interval-ms:30000}",
+        initialDelayString = "${app.state-store.import-check-interval-ms:30000}")
+    public synchronized void importTopicsIfChanged() {
+        if (!databaseStore) {
+            return;
+        }
+        Path file = Paths.get(topicsExcelPath);
+        if (!Files.exists(file)) {
+            log.warn("Topics Excel file not found: {}", topicsExcelPath);
+            createSampleTopicsFile();
+        }
 
         try {
-            if (file.exists()) {
-                FileInputStream fis = new FileInputStream(file);
-                workbook = new XSSFWorkbook(fis);
-                sheet = workbook.getSheetAt(0);
-                fis.close();
-            } else {
-                workbook = new XSSFWorkbook();
-                sheet = workbook.createSheet("Topics");
-                createHeaderRow(sheet);
+            String stamp = fileStamp(file);
+            if (stamp.equals(importedStamp)) {
+                return;
             }
 
-            int lastRowNum = sheet.getLastRowNum();
+            Map<String, Topic> rows = new LinkedHashMap<>();
+            StreamingXlsxReader.readFirstSheet(file, row -> {
+                if (row.rowNum() == 0) return true; // Skip header
 
-            for (Topic topic : topics) {
-                Row row = sheet.createRow(++lastRowNum);
-                populateTopicRow(row, topic);
+                rowIndex.put(row.text(COL_NAME), row.rowNum());
+                Topic topic = parseTopicFromRow(row);
+                if (topic != null && statusUpdates.pending(topic.getName()) == null) {
+                    rows.putIfAbsent(topic.getName(), topic);
+                }
+                return true;
+            });
+
+            Map<String, Topic> existing = new HashMap<>();
+            topicRepository.findAll().forEach(topic -> existing.put(topic.getName(), topic));
+
+            List<Topic> imported = new ArrayList<>(rows.size());
+            for (Topic row : rows.values()) {
+                Topic topic = existing.getOrDefault(row.getName(), row);
+                if (topic != row) {
+                    topic.setCategory(row.getCategory());
+                    topic.setTopicLevel(row.getTopicLevel());
+                    topic.setPriority(row.getPriority());
+                    topic.setStatus(row.getStatus());
+                    if (row.getLastProcessed() != null) {
+                        topic.setLastProcessed(row.getLastProcessed());
+                    }
+                }
+                topic.setDescription(truncate(row.getDescription(), MAX_DESCRIPTION_LENGTH));
+                imported.add(topic);
             }
+            topicRepository.saveAll(imported);
+            importedStamp = stamp;
+            log.info("Imported {} topics from {} into the topics table", imported.size(), topicsExcelPath);
 
-            // Write to file
-            try (FileOutputStream fos = new FileOutputStream(file)) {
-                workbook.write(fos);
-            }
+        } catch (IOException e) {
+            log.error("Error importing topics Excel file: {}", e.getMessage(), e);
+        }
+    }
 
-            workbook.close();
-            log.info("Added {} topics to Excel file", topics.size());
+    /**
+     * Database store: topics left PROCESSING by a run that did not finish (no run survives a
+     * restart) are queued again
+     */
+    private void releaseInterruptedTopics() {
+        List<Topic> interrupted = topicRepository.findByStatus(TopicStatus.PROCESSING);
+        if (interrupted.isEmpty()) {
+            return;
+        }
+        interrupted.forEach(topic -> topic.setStatus(TopicStatus.NEW));
+        exportTopicStatuses(interrupted);
+        topicRepository.saveAll(interrupted);
+        log.warn("Queued {} topics left PROCESSING by an interrupted run again", interrupted.size());
+    }
 
-        } catch (IOException e) {
-            log.error("Error adding topics to Excel file: {}", e.getMessage(), e);
+    /**
+     * Database store: topics claimed longer ago than {@code app.state-store.claim-timeout-minutes}
+     * belong to a run that died without a restart and are queued again
+     */
+    @Scheduled(fixedDelayString = "${app.state-store.import-check-interval-ms:30000}",
+        initialDelayString = "${app.state-store.import-check-interval-ms:30000}")
+    public void releaseStaleClaims() {
+        if (!databaseStore || claimTimeoutMinutes <= 0) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(claimTimeoutMinutes);
+        List<Topic> released = new ArrayList<>();
+        for (Topic topic : topicRepository.findByStatus(TopicStatus.PROCESSING)) {
+            if (topic.getUpdatedAt() != null && topic.getUpdatedAt().isBefore(cutoff)
+                && topicRepository.transition(topic.getId(), TopicStatus.PROCESSING, TopicStatus.NEW, LocalDateTime.now()) == 1) {
+                topic.setStatus(TopicStatus.NEW);
+                released.add(topic);
+            }
+        }
+        if (!released.isEmpty()) {
+            exportTopicStatuses(released);
+            log.warn("Queued {} topics again that were PROCESSING for more than {} minutes", released.size(), claimTimeoutMinutes);
         }
     }
 
-    public void logProcessedContent(Topic topic, String overviewContent, String detailedContent) {
-        File file = new File(knowledgeLogPath);
+    @PreDestroy
+    void closeStatusUpdates() {
+        flushStatusUpdates();
+    }
+
+    public void addTopics(List<Topic> topics) {
+        File file = new File(topicsExcelPath);
         Workbook workbook;
         Sheet sheet;
 
-        try {
-            if (file.exists()) {
-                FileInputStream fis = new FileInputStream(file);
-                workbook = new XSSFWorkbook(fis);
-                sheet = workbook.getSheetAt(0);
-                fis.close();
-            } else {
-                workbook = new XSSFWorkbook();
-                sheet = workbook.createSheet("Knowledge Log");
-                createLogHeaderRow(sheet);
-            }
+        synchronized (workbookLock) {
+            try {
+                if (file.exists()) {
+                    FileInputStream fis = new FileInputStream(file);
+                    workbook = new XSSFWorkbook(fis);
+                    sheet = workbook.getSheetAt(0);
+                    fis.close();
+                } else {
+                    workbook = new XSSFWorkbook();
+                    sheet = workbook.createSheet("Topics");
+                    createHeaderRow(sheet);
+                    rowIndex.clear();
+                }
+
+                int lastRowNum = sheet.getLastRowNum();
 
-            int lastRowNum = sheet.getLastRowNum();
-            Row row = sheet.createRow(lastRowNum + 1);
+                for (Topic topic : topics) {
+                    Row row = sheet.createRow(++lastRowNum);
+                    populateTopicRow(row, topic);
+                    rowIndex.put(topic.getName().trim(), lastRowNum);
+                }
+
+                // Write to file
+                String before = file.exists() ? fileStamp(file.toPath()) : "";
+                try (FileOutputStream fos = new FileOutputStream(file)) {
+                    workbook.write(fos);
+                }
+                ownWrite(file.toPath(), before);
 
-            row.createCell(0).setCellValue(LocalDateTime.now().format(DATE_FORMATTER));
-            row.createCell(1).setCellValue(topic.getName());
-            row.createCell(2).setCellValue(topic.getCategory());
-            row.createCell(3).setCellValue(overviewContent != null ? overviewContent.split("\\s+").length : 0);
-            row.createCell(4).setCellValue(detailedContent != null ? detailedContent.split("\\s+").length : 0);
-            row.createCell(5).setCellValue("SUCCESS");
-            row.createCell(6).setCellValue("Generated successfully");
+                workbook.close();
+                log.info("Added {} topics to Excel file", topics.size());
 
-            // Write to file
-            try (FileOutputStream fos = new FileOutputStream(file)) {
-                workbook.write(fos);
+            } catch (IOException e) {
+                log.error("Error adding topics to Excel file: {}", e.getMessage(), e);
             }
+        }
+    }
 
-            workbook.close();
+    /**
+     * Append the topic to the knowledge log journal; knowledge_log.xlsx is regenerated from it
+     */
+    public void logProcessedContent(Topic topic, String overviewContent, String detailedContent) {
+        try {
+            knowledgeLog.append(LocalDateTime.now().format(DATE_FORMATTER), topic.getName(), topic.getCategory(),
+                TextStatistics.countWords(overviewContent), TextStatistics.countWords(detailedContent),
+                "SUCCESS", "Generated successfully");
             log.info("Logged processed content for topic: {}", topic.getName());
 
         } catch (IOException e) {
@@ -219,14 +378,15 @@ public class TopicExcelService {
         }
     }
 
-    private Topic parseTopicFromRow(Row row) {
+    private Topic parseTopicFromRow(SheetRow row) {
         try {
-            String topicLevel = getCellValueAsString(row.getCell(0)); // NEW: Topic Level
-            String name = getCellValueAsString(row.getCell(1));
-            String category = getCellValueAsString(row.getCell(2));
-            int priority = (int) getCellValueAsNumber(row.getCell(3));
-            String statusStr = getCellValueAsString(row.getCell(4));
-            String description = getCellValueAsString(row.getCell(5));
+            String topicLevel = row.cell(0); // NEW: Topic Level
+            String name = row.cell(1);
+            String category = row.cell(2);
+            int priority = row.number(3);
+            String statusStr = row.cell(4);
+            String description = row.cell(5);
+            String lastProcessed = row.cell(6);
 
             if (name == null || name.trim().isEmpty()) {
                 return null;
@@ -246,6 +406,13 @@ public class TopicExcelService {
                     topic.setStatus(TopicStatus.NEW);
                 }
             }
+            if (lastProcessed != null && !lastProcessed.isBlank()) {
+                try {
+                    topic.setLastProcessed(LocalDateTime.parse(lastProcessed.trim(), DATE_FORMATTER));
+                } catch (DateTimeParseException e) {
+                    log.debug("Unreadable last processed time '{}' for topic {}", lastProcessed, name);
+                }
+            }
 
             return topic;
 
@@ -266,6 +433,16 @@ public class TopicExcelService {
         };
     }
 
+    private String mapEnumToExcelStatus(TopicStatus status) {
+        return switch (status) {
+            case NEW -> "OPEN";
+            case PROCESSING -> "IN_PROGRESS";
+            case DONE -> "DONE";
+            case ERROR -> "ERROR";
+            case ARCHIVED -> "ARCHIVED";
+        };
+    }
+
     private void createHeaderRow(Sheet sheet) {
         Row headerRow = sheet.createRow(0);
         headerRow.createCell(0).setCellValue("Topic Level");
@@ -277,17 +454,6 @@ public class TopicExcelService {
         headerRow.createCell(6).setCellValue("Last Processed");
     }
 
-    private void createLogHeaderRow(Sheet sheet) {
-        Row headerRow = sheet.createRow(0);
-        headerRow.createCell(0).setCellValue("Date");
-        headerRow.createCell(1).setCellValue("Topic");
-        headerRow.createCell(2).setCellValue("Category");
-        headerRow.createCell(3).setCellValue("Overview Length");
-        headerRow.createCell(4).setCellValue("Detail Length");
-        headerRow.createCell(5).setCellValue("Status");
-        headerRow.createCell(6).setCellValue("Notes");
-    }
-
     private void populateTopicRow(Row row, Topic topic) {
         row.createCell(0).setCellValue(topic.getTopicLevel() != null ? topic.getTopicLevel() : "Intermediate");
         row.createCell(1).setCellValue(topic.getName());
@@ -312,21 +478,9 @@ public class TopicExcelService {
         }
     }
 
-    private double getCellValueAsNumber(Cell cell) {
-        if (cell == null) return 0;
-
-        switch (cell.getCellType()) {
-            case NUMERIC:
-                return cell.getNumericCellValue();
-            case STRING:
-                try {
-                    return Double.parseDouble(cell.getStringCellValue());
-                } catch (NumberFormatException e) {
-                    return 0;
-                }
-            default:
-                return 0;
-        }
+    private String topicKey(Row row) {
+        String name = getCellValueAsString(row.getCell(COL_NAME));
+        return name != null ? name.trim() : null;
     }
 
     private void createSampleTopicsFile() {
@@ -335,30 +489,91 @@ public class TopicExcelService {
         addTopics(sampleTopics);
     }
 
-    private void updateTopicInSheet(Sheet sheet, Topic topic, LocalDateTime processedTime) {
-        for (Row row : sheet) {
-            if (row.getRowNum() == 0) continue; // Skip header row
-            
-            String rowTopicName = getCellValueAsString(row.getCell(1)); // Topic Name is in column 1
-            if (rowTopicName != null && rowTopicName.trim().equals(topic.getName())) {
-                // Update status to DONE
-                Cell statusCell = row.getCell(4);
-                if (statusCell == null) {
-                    statusCell = row.createCell(4);
-                }
-                statusCell.setCellValue("DONE");
-                
-                // Add last processed timestamp (extend the row if needed)
-                Cell lastProcessedCell = row.getCell(6);
-                if (lastProcessedCell == null) {
-                    lastProcessedCell = row.createCell(6);
+    /**
+     * Apply pending status changes in one read-modify-write of the workbook (the write-behind
+     * buffer's writer)
+     */
+    private void writeStatusUpdates(Map<String, Map<Integer, String>> changes) throws IOException {
+        Path file = Paths.get(topicsExcelPath);
+
+        synchronized (workbookLock) {
+            if (!Files.exists(file)) {
+                log.warn("Topics Excel file not found for updating, dropping {} status updates: {}", changes.size(), topicsExcelPath);
+                return;
+            }
+
+            try (FileInputStream fis = new FileInputStream(file.toFile());
+                 Workbook workbook = new XSSFWorkbook(fis)) {
+
+                Sheet sheet = workbook.getSheetAt(0);
+
+                // Straight to each topic's row through the index
+                Map<String, Row> rows = rowIndex.find(sheet, changes.keySet());
+                changes.forEach((name, cells) -> {
+                    Row row = rows.get(name);
+                    if (row == null) {
+                        log.warn("Topic '{}' not found in Excel sheet, status update dropped", name);
+                        return;
+                    }
+                    cells.forEach((column, value) -> {
+                        Cell cell = row.getCell(column);
+                        if (cell == null) {
+                            cell = row.createCell(column);
+                        }
+                        cell.setCellValue(value);
+                    });
+                    log.debug("Updated topic '{}' status in Excel sheet", name);
+                });
+
+                // Save next to the workbook and move it into place, so a crash never leaves half a file
+                Path partPath = file.resolveSibling(file.getFileName() + ".part");
+                try (OutputStream out = Files.newOutputStream(partPath)) {
+                    workbook.write(out);
                 }
-                lastProcessedCell.setCellValue(processedTime.format(DATE_FORMATTER));
-                
-                log.debug("Updated topic '{}' status to DONE in Excel sheet", topic.getName());
-                break;
+                String before = fileStamp(file);
+                Files.move(partPath, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                ownWrite(file, before);
+            }
+        }
+    }
+
+    /**
+     * Take the file the service has just written as imported when the previous state was
+     */
+    private void ownWrite(Path file, String before) throws IOException {
+        if (before.equals(importedStamp)) {
+            importedStamp = fileStamp(file);
+        }
+    }
+
+    private static String fileStamp(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return attributes.lastModifiedTime() + "/" + attributes.size();
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+
+    /**
+     * Show status changes not yet written to the workbook on a topic read from it
+     */
+    private Topic withPendingUpdate(Topic topic) {
+        if (topic == null) {
+            return null;
+        }
+        Map<Integer, String> cells = statusUpdates.pending(topic.getName());
+        if (cells != null) {
+            String status = cells.get(COL_STATUS);
+            if (status != null) {
+                topic.setStatus(TopicStatus.valueOf(mapExcelStatusToEnum(status)));
+            }
+            String lastProcessed = cells.get(COL_LAST_PROCESSED);
+            if (lastProcessed != null) {
+                topic.setLastProcessed(LocalDateTime.parse(lastProcessed, DATE_FORMATTER));
             }
         }
+        return topic;
     }
 
     private List<Topic> getDefaultTopics(int limit) {
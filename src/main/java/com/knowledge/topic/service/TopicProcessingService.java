@@ -10,8 +10,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -126,10 +129,17 @@ public class TopicProcessingService {
             log.error("Error processing topics: {}", e.getMessage(), e);
             markTopicsAsError(topics);
             throw new RuntimeException("Topic processing failed", e);
+        } finally {
+            // Write this run's status changes now rather than on the next interval
+            excelService.flushStatusUpdates();
         }
     }
 
     private Topic getNextTopicForProcessing() {
+        if (excelService.isDatabaseStore()) {
+            return claimNextTopic();
+        }
+
         // First try to get from Excel file
         Topic excelTopic = excelService.getNextUnprocessedTopic();
         if (excelTopic != null) {
@@ -167,6 +177,27 @@ public class TopicProcessingService {
         return null;
     }
 
+    /**
+     * Database store: claim the next NEW topic, or else the oldest one due for reprocessing, by
+     * moving it to PROCESSING with a conditional update, so two runs never take the same topic
+     */
+    private Topic claimNextTopic() {
+        LocalDateTime cutoffDate = LocalDateTime.now().minusDays(reprocessAfterDays);
+        List<Topic> candidates = new ArrayList<>(topicRepository.findNextTopicsToProcess(TopicStatus.NEW));
+        candidates.addAll(topicRepository.findUnprocessedTopicsSince(TopicStatus.DONE, cutoffDate));
+
+        for (Topic topic : candidates) {
+            if (topicRepository.transition(topic.getId(), topic.getStatus(), TopicStatus.PROCESSING, LocalDateTime.now()) == 1) {
+                topic.setStatus(TopicStatus.PROCESSING);
+                excelService.exportTopicStatuses(List.of(topic));
+                log.info("Claimed topic for processing: {}", topic.getName());
+                return topic;
+            }
+            log.info("Topic {} was claimed by another run, trying the next one", topic.getName());
+        }
+        return null;
+    }
+
     private Optional<Topic> findOrCreateTopic(String topicName) {
         Optional<Topic> existing = topicRepository.findByName(topicName);
         if (existing.isPresent()) {
@@ -185,6 +216,9 @@ public class TopicProcessingService {
             topic.setStatus(TopicStatus.PROCESSING);
             topicRepository.save(topic);
         }
+        if (excelService.isDatabaseStore()) {
+            excelService.exportTopicStatuses(topics);
+        }
         log.info("Marked topics as processing: {}", topics.stream().map(Topic::getName).toList());
     }
 
@@ -207,9 +241,39 @@ public class TopicProcessingService {
             topic.setStatus(TopicStatus.ERROR);
             topicRepository.save(topic);
         }
+        if (excelService.isDatabaseStore()) {
+            excelService.exportTopicStatuses(topics);
+            keepErrorOnRollback(topics);
+        }
         log.info("Marked {} topics as error", topics.size());
     }
 
+    /**
+     * Database store: the claim committed in its own transaction, so when the run's transaction
+     * rolls back (the failure is rethrown) the save above is lost with it. ERROR is then written
+     * in a new transaction once the rollback has released the row, so the topic does not stay
+     * PROCESSING while the workbook says ERROR.
+     */
+    private void keepErrorOnRollback(List<Topic> topics) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    return;
+                }
+                for (Topic topic : topics) {
+                    if (topicRepository.transition(topic.getId(), TopicStatus.PROCESSING, TopicStatus.ERROR,
+                            LocalDateTime.now()) == 1) {
+                        log.info("Marked topic {} as error after the run was rolled back", topic.getName());
+                    }
+                }
+            }
+        });
+    }
+
     private void logProcessedTopicsToExcel(List<Topic> topics, List<KnowledgeContent> contents) {
         for (int i = 0; i < topics.size() && i < contents.size(); i++) {
             Topic topic = topics.get(i);
@@ -242,6 +306,9 @@ public class TopicProcessingService {
             topic.setStatus(TopicStatus.NEW);
             topic.setLastProcessed(null);
             topicRepository.save(topic);
+            if (excelService.isDatabaseStore()) {
+                excelService.exportTopicStatuses(List.of(topic));
+            }
             log.info("Reset status for topic: {}", topicName);
         } else {
             log.warn("Topic not found for reset: {}", topicName);
@@ -0,0 +1,209 @@
+package com.knowledge.common.service;
+
+import com.knowledge.learning.model.LearningDay;
+import com.knowledge.learning.repository.LearningDayRepository;
+import com.knowledge.learning.service.LearningExcelService;
+import com.knowledge.stock.model.StockLearningDay;
+import com.knowledge.stock.repository.StockLearningDayRepository;
+import com.knowledge.stock.service.StockExcelService;
+import com.knowledge.topic.TopicKnowledgeServiceApplication;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The learning and stock curricula with {@code app.state-store=database}: claims, status updates,
+ * progress counts, the workbook import and the release of stale claims, checked against both the
+ * table and the workbook. The scheduled flush and import are pushed out of the way, so each test
+ * decides when the workbook is written and read.
+ */
+@SpringBootTest(classes = TopicKnowledgeServiceApplication.class, properties = {
+    "spring.datasource.url=jdbc:h2:mem:curriculum-state;DB_CLOSE_DELAY=-1",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "app.schedule-enabled=false",
+    "app.stock-schedule-enabled=false",
+    "app.learning-schedule-enabled=false",
+    "app.state-store=database",
+    "app.state-store.import-check-interval-ms=3600000",
+    "app.state-store.claim-timeout-minutes=60",
+    "app.excel-write-behind.flush-interval-ms=3600000",
+    "spring.mail.host=localhost"
+})
+class CurriculumStateStoreTest {
+
+    private static final int LEARNING_COL_DAY = 0;
+    private static final int LEARNING_COL_STATUS = 6;
+
+    private static Path workDir;
+
+    @Autowired
+    private LearningExcelService learningExcelService;
+
+    @Autowired
+    private LearningDayRepository learningDayRepository;
+
+    @Autowired
+    private StockExcelService stockExcelService;
+
+    @Autowired
+    private StockLearningDayRepository stockLearningDayRepository;
+
+    @DynamicPropertySource
+    static void files(DynamicPropertyRegistry registry) throws IOException {
+        workDir = Files.createTempDirectory("curriculum-state");
+        registry.add("app.topics-excel-path", () -> workDir.resolve("topics.xlsx").toString());
+        registry.add("app.stock-excel-path", () -> workDir.resolve("stock_knowledge_topics.xlsx").toString());
+        registry.add("app.learning-excel-path", () -> workDir.resolve("6_month_learning_path.xlsx").toString());
+        registry.add("app.knowledge-log-path", () -> workDir.resolve("knowledge_log.xlsx").toString());
+        registry.add("app.knowledge-log.journal-path", () -> workDir.resolve("knowledge_log.csv").toString());
+        registry.add("app.eml-output-directory", () -> workDir.resolve("eml").toString());
+        registry.add("app.eml-archive.directory", () -> workDir.resolve("eml/archive").toString());
+    }
+
+    @Test
+    void claimsEachLearningDayOnce() {
+        LearningDay first = learningExcelService.claimNextLearningDay();
+        LearningDay second = learningExcelService.claimNextLearningDay();
+
+        assertThat(first).isNotNull();
+        assertThat(second).isNotNull();
+        assertThat(second.getDay()).isNotEqualTo(first.getDay());
+        for (LearningDay claimed : List.of(first, second)) {
+            assertThat(claimed.getStatus()).isEqualTo("IN_PROGRESS");
+            assertThat(learningDayRepository.findById(claimed.getDay()).orElseThrow().getStatus()).isEqualTo("IN_PROGRESS");
+        }
+        assertThat(learningExcelService.getOpenLearningDays(10))
+            .extracting(LearningDay::getDay)
+            .doesNotContain(first.getDay(), second.getDay());
+
+        learningExcelService.flushStatusUpdates();
+        assertThat(workbookStatus(first.getDay())).isEqualTo("IN_PROGRESS");
+    }
+
+    @Test
+    void completesDayWithTruncatedNotesAndCountsProgress() {
+        LearningExcelService.LearningProgress before = learningExcelService.getLearningProgress();
+        LearningDay day = learningExcelService.claimNextLearningDay();
+
+        learningExcelService.markLearningDayCompleted(day.getDay(), "n".repeat(5000));
+
+        LearningDay row = learningDayRepository.findById(day.getDay()).orElseThrow();
+        assertThat(row.getStatus()).isEqualTo("COMPLETED");
+        assertThat(row.getNotes()).hasSize(4000);
+        assertThat(row.getCompletedDate()).isNotEmpty();
+
+        LearningExcelService.LearningProgress after = learningExcelService.getLearningProgress();
+        assertThat(after.getTotalDays()).isEqualTo(before.getTotalDays());
+        assertThat(after.getCompletedDays()).isEqualTo(before.getCompletedDays() + 1);
+        assertThat(after.getOpenDays()).isEqualTo(before.getOpenDays() - 1);
+    }
+
+    @Test
+    void reimportKeepsDaysWithPendingUpdates() throws IOException {
+        learningExcelService.flushStatusUpdates();
+        List<LearningDay> open = learningExcelService.getOpenLearningDays(2);
+        int pendingDay = open.get(0).getDay();
+        int editedDay = open.get(1).getDay();
+
+        // Not flushed: the workbook still says OPEN for this day
+        learningExcelService.markLearningDayError(pendingDay, "failed");
+        setWorkbookStatus(editedDay, "completed");
+        setWorkbookStatus(pendingDay, "OPEN");
+
+        learningExcelService.importCurriculumIfChanged();
+
+        assertThat(learningDayRepository.findById(editedDay).orElseThrow().getStatus()).isEqualTo("COMPLETED");
+        assertThat(learningDayRepository.findById(pendingDay).orElseThrow().getStatus()).isEqualTo("ERROR");
+
+        learningExcelService.flushStatusUpdates();
+        assertThat(workbookStatus(pendingDay)).isEqualTo("ERROR");
+        assertThat(workbookStatus(editedDay)).isEqualTo("completed");
+    }
+
+    @Test
+    void opensClaimsOlderThanTheTimeout() {
+        LearningDay stale = learningExcelService.claimNextLearningDay();
+        LearningDay recent = learningExcelService.claimNextLearningDay();
+        learningDayRepository.transition(stale.getDay(), "IN_PROGRESS", "IN_PROGRESS", "2000-01-01 00:00:00");
+
+        learningExcelService.releaseStaleClaims();
+
+        assertThat(learningDayRepository.findById(stale.getDay()).orElseThrow().getStatus()).isEqualTo("OPEN");
+        assertThat(learningDayRepository.findById(recent.getDay()).orElseThrow().getStatus()).isEqualTo("IN_PROGRESS");
+        learningExcelService.flushStatusUpdates();
+        assertThat(workbookStatus(stale.getDay())).isEqualTo("OPEN");
+    }
+
+    @Test
+    void claimsAndCompletesStockDays() {
+        StockExcelService.LearningProgress before = stockExcelService.getLearningProgress();
+        StockLearningDay first = stockExcelService.claimNextLearningDay();
+        StockLearningDay second = stockExcelService.claimNextLearningDay();
+
+        assertThat(second.getDay()).isNotEqualTo(first.getDay());
+        assertThat(stockLearningDayRepository.findById(first.getDay()).orElseThrow().getStatus()).isEqualTo("IN_PROGRESS");
+
+        stockExcelService.markLearningDayCompleted(first.getDay(), "s".repeat(5000));
+        stockExcelService.markLearningDayError(second.getDay(), "failed");
+
+        assertThat(stockLearningDayRepository.findById(first.getDay()).orElseThrow().getNotes()).hasSize(4000);
+        StockExcelService.LearningProgress after = stockExcelService.getLearningProgress();
+        assertThat(after.getCompletedDays()).isEqualTo(before.getCompletedDays() + 1);
+        assertThat(after.getErrorDays()).isEqualTo(before.getErrorDays() + 1);
+        assertThat(after.getOpenDays()).isEqualTo(before.getOpenDays() - 2);
+    }
+
+    private static Path learningWorkbook() {
+        return workDir.resolve("6_month_learning_path.xlsx");
+    }
+
+    private static String workbookStatus(int day) {
+        try (InputStream in = Files.newInputStream(learningWorkbook());
+             Workbook workbook = new XSSFWorkbook(in)) {
+            Cell cell = learningRow(workbook, day).getCell(LEARNING_COL_STATUS);
+            return cell == null ? "" : cell.getStringCellValue();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Edit the workbook the way a user would, outside the service
+     */
+    private static void setWorkbookStatus(int day, String status) throws IOException {
+        Workbook workbook;
+        try (InputStream in = Files.newInputStream(learningWorkbook())) {
+            workbook = new XSSFWorkbook(in);
+        }
+        try (workbook; OutputStream out = Files.newOutputStream(learningWorkbook())) {
+            learningRow(workbook, day).createCell(LEARNING_COL_STATUS).setCellValue(status);
+            workbook.write(out);
+        }
+    }
+
+    private static Row learningRow(Workbook workbook, int day) {
+        for (Row row : workbook.getSheetAt(0)) {
+            Cell cell = row.getCell(LEARNING_COL_DAY);
+            if (cell != null && cell.getCellType() == CellType.NUMERIC && (int) cell.getNumericCellValue() == day) {
+                return row;
+            }
+        }
+        throw new IllegalStateException("Day " + day + " not in the learning workbook");
+    }
+}
@@ -0,0 +1,304 @@
+package com.knowledge.common.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded SMTP stand-in for mail tests and benchmarks.
+ *
+ * Point {@code spring.mail.host} and {@code spring.mail.port} at it to exercise the whole mail
+ * path without sending real mail. It accepts any AUTH PLAIN/LOGIN credentials, keeps the last
+ * received messages in memory and can simulate a slow or unreliable server: {@code latencyMillis}
+ * delays each DATA reply, {@code failureRate} rejects that fraction of messages with a temporary
+ * 451 error, and {@code throttleRate} answers that fraction with a Gmail-style 421 throttling reply
+ * and closes the connection.
+ */
+@Slf4j
+public class LocalSmtpServer {
+
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    /**
+     * Message accepted by the stand-in
+     */
+    public record ReceivedMessage(long id, String from, List<String> recipients, int size,
+                                  LocalDateTime receivedAt, byte[] content) {
+    }
+
+    private int port;
+    private final long latencyMillis;
+    private final double failureRate;
+    private final double throttleRate;
+    private final int maxStoredMessages;
+
+    private final ConcurrentLinkedDeque<ReceivedMessage> messages = new ConcurrentLinkedDeque<>();
+    private final AtomicLong receivedCount = new AtomicLong();
+    private final AtomicLong receivedBytes = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong throttledCount = new AtomicLong();
+
+    private ServerSocket serverSocket;
+    private ExecutorService sessions;
+    private Thread acceptThread;
+
+    /**
+     * @param port local port, 0 for any free one (see {@link #getPort()} after {@link #start()})
+     */
+    public LocalSmtpServer(int port, long latencyMillis, double failureRate, double throttleRate, int maxStoredMessages) {
+        this.port = port;
+        this.latencyMillis = latencyMillis;
+        this.failureRate = failureRate;
+        this.throttleRate = throttleRate;
+        this.maxStoredMessages = maxStoredMessages;
+    }
+
+    public void start() {
+        try {
+            serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start local SMTP server on port " + port, e);
+        }
+        port = serverSocket.getLocalPort();
+        sessions = Executors.newCachedThreadPool(daemonThreads("local-smtp-"));
+        acceptThread = daemonThreads("local-smtp-accept").newThread(this::acceptLoop);
+        acceptThread.start();
+        log.info("📮 Local SMTP stand-in listening on localhost:{} (latency {} ms, failure rate {}, throttle rate {})",
+            port, latencyMillis, failureRate, throttleRate);
+    }
+
+    public void stop() throws IOException {
+        serverSocket.close();
+        sessions.shutdownNow();
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public long getReceivedCount() {
+        return receivedCount.get();
+    }
+
+    public long getReceivedBytes() {
+        return receivedBytes.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    /**
+     * The most recently received messages, newest first
+     */
+    public List<ReceivedMessage> getMessages() {
+        return new ArrayList<>(messages);
+    }
+
+    public void clear() {
+        messages.clear();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                sessions.execute(() -> handleSession(socket));
+            } catch (SocketException e) {
+                // Closed on shutdown
+                return;
+            } catch (IOException e) {
+                log.warn("⚠️ Local SMTP accept failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void handleSession(Socket socket) {
+        try (socket;
+             InputStream in = new BufferedInputStream(socket.getInputStream());
+             OutputStream out = socket.getOutputStream()) {
+
+            reply(out, "220 localhost ESMTP knowledge-service local SMTP");
+            String from = null;
+            List<String> recipients = new ArrayList<>();
+
+            String line;
+            while ((line = readLine(in)) != null) {
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch (command) {
+                    case "EHLO" -> reply(out, "250-localhost\r\n250-AUTH PLAIN LOGIN\r\n250-8BITMIME\r\n250 SIZE 52428800");
+                    case "HELO" -> reply(out, "250 localhost");
+                    case "AUTH" -> authenticate(line, in, out);
+                    case "MAIL" -> {
+                        from = address(line);
+                        recipients.clear();
+                        reply(out, "250 2.1.0 OK");
+                    }
+                    case "RCPT" -> {
+                        recipients.add(address(line));
+                        reply(out, "250 2.1.5 OK");
+                    }
+                    case "DATA" -> {
+                        if (from == null || recipients.isEmpty()) {
+                            reply(out, "503 5.5.1 MAIL and RCPT first");
+                            continue;
+                        }
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        byte[] content = readData(in);
+                        String response = accept(from, recipients, content);
+                        reply(out, response);
+                        if (response.startsWith("421")) {
+                            return;
+                        }
+                        from = null;
+                        recipients = new ArrayList<>();
+                    }
+                    case "RSET" -> {
+                        from = null;
+                        recipients.clear();
+                        reply(out, "250 2.0.0 OK");
+                    }
+                    case "NOOP" -> reply(out, "250 2.0.0 OK");
+                    case "QUIT" -> {
+                        reply(out, "221 2.0.0 Bye");
+                        return;
+                    }
+                    case "STAR" -> reply(out, "454 4.7.0 TLS not available");
+                    default -> reply(out, "502 5.5.2 Command not recognized");
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Local SMTP session ended: {}", e.getMessage());
+        }
+    }
+
+    private String accept(String from, List<String> recipients, byte[] content) {
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (throttleRate > 0 && ThreadLocalRandom.current().nextDouble() < throttleRate) {
+            throttledCount.incrementAndGet();
+            return "421 4.7.0 Try again later, closing connection";
+        }
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            rejectedCount.incrementAndGet();
+            return "451 4.3.0 Injected failure, try again later";
+        }
+
+        long id = receivedCount.incrementAndGet();
+        receivedBytes.addAndGet(content.length);
+        messages.addFirst(new ReceivedMessage(id, from, List.copyOf(recipients), content.length, LocalDateTime.now(), content));
+        while (messages.size() > maxStoredMessages) {
+            messages.pollLast();
+        }
+        return "250 2.0.0 OK queued as " + id;
+    }
+
+    private void authenticate(String line, InputStream in, OutputStream out) throws IOException {
+        String[] parts = line.split(" ");
+        String mechanism = parts.length > 1 ? parts[1].toUpperCase() : "";
+        if (mechanism.equals("PLAIN")) {
+            if (parts.length < 3) {
+                reply(out, "334 ");
+                readLine(in);
+            }
+        } else if (mechanism.equals("LOGIN")) {
+            reply(out, "334 VXNlcm5hbWU6");
+            readLine(in);
+            reply(out, "334 UGFzc3dvcmQ6");
+            readLine(in);
+        } else {
+            reply(out, "504 5.5.4 Unrecognized authentication type");
+            return;
+        }
+        // Any credentials are accepted
+        reply(out, "235 2.7.0 Authentication successful");
+    }
+
+    /**
+     * Message content up to the terminating "." line, with dot-stuffing removed
+     */
+    private byte[] readData(InputStream in) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream(16 * 1024);
+        String line;
+        while ((line = readLine(in)) != null && !line.equals(".")) {
+            if (line.startsWith("..")) {
+                line = line.substring(1);
+            }
+            content.write(line.getBytes(StandardCharsets.ISO_8859_1));
+            content.write('\r');
+            content.write('\n');
+        }
+        return content.toByteArray();
+    }
+
+    /**
+     * One CRLF-terminated line as ISO-8859-1 (bytes preserved), null at end of stream
+     */
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder(128);
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            if (line.length() >= MAX_LINE_LENGTH) {
+                throw new IOException("SMTP line too long");
+            }
+            line.append((char) c);
+        }
+        return line.isEmpty() ? null : line.toString();
+    }
+
+    private static String address(String line) {
+        int open = line.indexOf('<');
+        int close = line.indexOf('>', open + 1);
+        if (open >= 0 && close > open) {
+            return line.substring(open + 1, close);
+        }
+        int colon = line.indexOf(':');
+        return colon >= 0 ? line.substring(colon + 1).trim() : "";
+    }
+
+    private static void reply(OutputStream out, String response) throws IOException {
+        out.write((response + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private static CustomizableThreadFactory daemonThreads(String prefix) {
+        CustomizableThreadFactory factory = new CustomizableThreadFactory(prefix);
+        factory.setDaemon(true);
+        return factory;
+    }
+}
@@ -0,0 +1,210 @@
+package com.knowledge.common.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.knowledge.learning.model.LearningDay;
+import com.knowledge.learning.service.LearningEmailService;
+import com.knowledge.stock.model.StockLearningDay;
+import com.knowledge.stock.service.StockEmailService;
+import com.knowledge.topic.TopicKnowledgeServiceApplication;
+import com.knowledge.topic.dto.TopicOverview;
+import com.knowledge.topic.service.TopicEmailService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the topic, stock and learning email services at volume against a {@link LocalSmtpServer}.
+ *
+ * Each iteration sends one email per pipeline with synthetic content of realistic size (unique per
+ * iteration, so duplicate detection does not skip it) to the subscribers. The test waits until the
+ * stand-in has received every queued message, then reports throughput, SMTP send latency and
+ * message size. The application runs against an in-memory database and a temporary working
+ * directory, so no real mail, cached email or workbook is touched.
+ *
+ * Load and server behaviour can be set with system properties, e.g.
+ * {@code mvn test -Dtest=MailBenchmarkTest -Dmail.benchmark.iterations=50 -Dmail.benchmark.latency-ms=5
+ * -Dmail.benchmark.failure-rate=0.05}.
+ */
+@SpringBootTest(classes = TopicKnowledgeServiceApplication.class, properties = {
+    "spring.datasource.url=jdbc:h2:mem:mail-benchmark;DB_CLOSE_DELAY=-1",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "app.schedule-enabled=false",
+    "app.stock-schedule-enabled=false",
+    "app.learning-schedule-enabled=false",
+    "app.mail.quota.per-minute=0",
+    "app.mail.quota.per-day=0",
+    "app.mail-to=benchmark@localhost",
+    "spring.mail.host=localhost"
+})
+@Slf4j
+class MailBenchmarkTest {
+
+    private static final int ITERATIONS = Integer.getInteger("mail.benchmark.iterations", 5);
+    private static final long TIMEOUT_SECONDS = Long.getLong("mail.benchmark.timeout-seconds", 120);
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    private static final List<String> STOCK_SECTIONS = List.of("introduction", "coreConceptsDefinitions", "examples",
+        "stepByStepGuide", "commonMistakes", "keyTakeaways", "nextSteps");
+    private static final List<String> LEARNING_SECTIONS = List.of("dailyOverview", "algorithmGuidance",
+        "theoryExplanation", "codingExercises", "reflectionPrompts", "resourcesAndNext");
+
+    private static final LocalSmtpServer smtpServer = new LocalSmtpServer(0,
+        Long.getLong("mail.benchmark.latency-ms", 0),
+        Double.parseDouble(System.getProperty("mail.benchmark.failure-rate", "0")),
+        0, 100);
+
+    @Autowired
+    private TopicEmailService topicEmailService;
+
+    @Autowired
+    private StockEmailService stockEmailService;
+
+    @Autowired
+    private LearningEmailService learningEmailService;
+
+    @Autowired
+    private EmailOutboxService mailOutbox;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @DynamicPropertySource
+    static void mailAndFiles(DynamicPropertyRegistry registry) throws IOException {
+        smtpServer.start();
+        Path workDir = Files.createTempDirectory("mail-benchmark");
+        registry.add("spring.mail.port", smtpServer::getPort);
+        registry.add("app.topics-excel-path", () -> workDir.resolve("topics.xlsx").toString());
+        registry.add("app.stock-excel-path", () -> workDir.resolve("stock_knowledge_topics.xlsx").toString());
+        registry.add("app.learning-excel-path", () -> workDir.resolve("6_month_learning_path.xlsx").toString());
+        registry.add("app.knowledge-log-path", () -> workDir.resolve("knowledge_log.xlsx").toString());
+        registry.add("app.knowledge-log.journal-path", () -> workDir.resolve("knowledge_log.csv").toString());
+        registry.add("app.eml-output-directory", () -> workDir.resolve("eml").toString());
+        registry.add("app.eml-archive.directory", () -> workDir.resolve("eml/archive").toString());
+    }
+
+    @AfterAll
+    static void stopServer() throws IOException {
+        smtpServer.stop();
+    }
+
+    @Test
+    void deliversEveryPipelineEmail() {
+        long receivedBefore = smtpServer.getReceivedCount();
+        long bytesBefore = smtpServer.getReceivedBytes();
+        double queuedBefore = queuedCounter();
+
+        long start = System.nanoTime();
+        for (int day = 1; day <= ITERATIONS; day++) {
+            topicEmailService.sendOverviewEmail(List.of(
+                new TopicOverview("Benchmark Topic " + day, "Benchmark", overviewContent(day))));
+            stockEmailService.sendStructuredLearningEmail(new StockLearningDay(day, "Week " + (day / 7),
+                "Benchmark Phase", "Benchmark Topic " + day, "Measure the mail path", "📈 Benchmark Day " + day,
+                "Compare throughput before and after", "OPEN", null, null, null), sectionContent(day, STOCK_SECTIONS));
+            learningEmailService.sendStructuredLearningEmail(new LearningDay(day, "Week " + (day / 7),
+                "Benchmark Phase", "Two pointers", "Caching strategies", "LRU cache", "What was slow?",
+                "OPEN", null, null, null, null), sectionContent(day, LEARNING_SECTIONS));
+        }
+        long prepareNanos = System.nanoTime() - start;
+
+        long queued = Math.round(queuedCounter() - queuedBefore);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (smtpServer.getReceivedCount() - receivedBefore < queued && System.nanoTime() < deadline) {
+            mailOutbox.dispatchDueMessages();
+            sleep();
+        }
+        long totalNanos = System.nanoTime() - start;
+
+        long received = smtpServer.getReceivedCount() - receivedBefore;
+        long bytes = smtpServer.getReceivedBytes() - bytesBefore;
+        HistogramSnapshot latency = sendLatency();
+        log.info("📊 Mail benchmark: {}/{} messages in {} ms (prepared in {} ms, {} msg/s), send p50 {} ms, p99 {} ms, "
+                + "{} bytes/message, {} rejected",
+            received, queued, TimeUnit.NANOSECONDS.toMillis(totalNanos), TimeUnit.NANOSECONDS.toMillis(prepareNanos),
+            String.format("%.1f", received * 1_000_000_000.0 / Math.max(1, totalNanos)),
+            String.format("%.1f", percentile(latency, 0.5)), String.format("%.1f", percentile(latency, 0.99)),
+            received == 0 ? 0 : bytes / received, smtpServer.getRejectedCount());
+
+        assertThat(queued).isEqualTo(3L * ITERATIONS);
+        assertThat(received).isEqualTo(queued);
+    }
+
+    /**
+     * JSON content shaped like the AI output, about 1.5 KB per section
+     */
+    private String sectionContent(int day, List<String> sections) {
+        ObjectNode root = objectMapper.createObjectNode();
+        for (String section : sections) {
+            ObjectNode node = root.putObject(section);
+            node.put("title", "Benchmark " + section + " (day " + day + ")");
+            node.put("content", paragraphs(day, 4));
+        }
+        return root.toString();
+    }
+
+    private static String overviewContent(int day) {
+        return "**Introduction**\n" + paragraphs(day, 2)
+            + "\n\n**Key Concepts**\n- Throughput\n- Latency percentiles\n- Message size\n\n"
+            + "**Why It Matters**\n" + paragraphs(day, 1);
+    }
+
+    private static String paragraphs(int day, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append("Paragraph ").append(i + 1).append(" of benchmark day ").append(day).append(": ")
+                .append("**Measuring** the mail path end to end covers rendering, MIME encoding, the outbox and the ")
+                .append("SMTP transfer. Each stage adds latency and bytes, and only a repeatable load shows which ")
+                .append("stage dominates once the number of recipients grows.\n\n");
+        }
+        return text.toString();
+    }
+
+    private double queuedCounter() {
+        Counter counter = meterRegistry.find("mail.outbox.queued").counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private HistogramSnapshot sendLatency() {
+        Timer timer = meterRegistry.find("mail.pool.send").timer();
+        return timer != null ? timer.takeSnapshot() : null;
+    }
+
+    private static double percentile(HistogramSnapshot snapshot, double percentile) {
+        if (snapshot == null) {
+            return 0;
+        }
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            if (value.percentile() == percentile) {
+                return value.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return 0;
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.knowledge.common.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Quota slots of {@link MailRateLimiter}: granted within the daily quota, and free again once a
+ * slot without a send is released.
+ */
+class MailRateLimiterTest {
+
+    @Test
+    void releasedSlotsCanBeReservedAgain() {
+        MailRateLimiter limiter = new MailRateLimiter(0, 2, 60, 3600);
+
+        List<Instant> slots = limiter.reserve(3, Duration.ofMinutes(1));
+        assertThat(slots).hasSize(2);
+        assertThat(limiter.reserve(1, Duration.ofMinutes(1))).isEmpty();
+
+        limiter.release(slots.get(1));
+
+        assertThat(limiter.reserve(2, Duration.ofMinutes(1))).hasSize(1);
+    }
+}
@@ -0,0 +1,104 @@
+package com.knowledge.common.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares {@link MarkdownRenderer} with the regex chain the learning and stock email services
+ * used before it, on a 50 KB mixed Markdown document.
+ *
+ * Both are warmed up, then timed over the same number of iterations and reported in ms/op.
+ * The iteration count can be set with system properties, e.g.
+ * {@code mvn test -Dtest=MarkdownRendererBenchmarkTest -Dmarkdown.benchmark.iterations=500}.
+ */
+@Slf4j
+class MarkdownRendererBenchmarkTest {
+
+    private static final int TARGET_SIZE = 50 * 1024;
+    private static final int WARMUP_ITERATIONS = Integer.getInteger("markdown.benchmark.warmup", 50);
+    private static final int ITERATIONS = Integer.getInteger("markdown.benchmark.iterations", 100);
+
+    private final MarkdownRenderer markdownRenderer = new MarkdownRenderer();
+
+    @Test
+    void rendersFiftyKilobyteDocument() {
+        String markdown = document();
+        assertThat(markdown.length()).isGreaterThanOrEqualTo(TARGET_SIZE);
+
+        double regexMillis = measure(MarkdownRendererBenchmarkTest::regexChain, markdown);
+        double rendererMillis = measure(markdownRenderer::render, markdown);
+        log.info("📊 Markdown benchmark on {} chars ({} iterations): regex chain {} ms/op, renderer {} ms/op",
+            markdown.length(), ITERATIONS, String.format("%.2f", regexMillis), String.format("%.2f", rendererMillis));
+
+        String html = markdownRenderer.render(markdown);
+        assertThat(html)
+            .contains("<h2>Section 1</h2>", "<strong>bold</strong>", "<em>italic</em>", "<li>",
+                "<pre><code class=\"language-java\">")
+            .doesNotContain("<p><h2>", "**");
+    }
+
+    private static double measure(UnaryOperator<String> formatter, String markdown) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += formatter.apply(markdown).length();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += formatter.apply(markdown).length();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertThat(sink).isPositive();
+        return (double) elapsed / ITERATIONS / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * The fallback formatting used by the email services before {@link MarkdownRenderer}
+     */
+    private static String regexChain(String content) {
+        String htmlContent = content
+            .replaceAll("\\*\\*([^*]+)\\*\\*", "<strong>$1</strong>")  // **bold** to <strong>
+            .replaceAll("\\*([^*]+)\\*", "<em>$1</em>")                // *italic* to <em>
+            .replaceAll("(?m)^#{3}\\s+(.+)$", "<h3>$1</h3>")          // ### heading to h3
+            .replaceAll("(?m)^#{2}\\s+(.+)$", "<h2>$1</h2>")          // ## heading to h2
+            .replaceAll("(?m)^#{1}\\s+(.+)$", "<h1>$1</h1>")          // # heading to h1
+            .replaceAll("\\n\\n", "</p><p>")                           // Double newlines to paragraphs
+            .replaceAll("\\n", "<br>")                                 // Single newlines to breaks
+            .replaceAll("^(.)", "<p>$1")                               // Start with paragraph
+            .replaceAll("(.)$", "$1</p>");                             // End with paragraph
+
+        return htmlContent
+            .replaceAll("<p></p>", "")
+            .replaceAll("<p><h([1-6])>", "<h$1>")
+            .replaceAll("</h([1-6])></p>", "</h$1>");
+    }
+
+    /**
+     * Mixed Markdown shaped like the AI section content: headings, emphasis, lists, code and paragraphs
+     */
+    private static String document() {
+        StringBuilder text = new StringBuilder(TARGET_SIZE + 2048);
+        for (int section = 1; text.length() < TARGET_SIZE; section++) {
+            text.append("## Section ").append(section).append("\n\n")
+                .append("This paragraph explains **bold** ideas with *italic* asides and `inline code`, ")
+                .append("followed by enough prose to make the line realistic for a generated lesson.\n")
+                .append("A second line continues the same paragraph.\n\n")
+                .append("### Key points\n\n")
+                .append("- First point with **emphasis**\n")
+                .append("- Second point with *nuance*\n")
+                .append("- Third point\n\n")
+                .append("1. Step one\n")
+                .append("2. Step two\n")
+                .append("3. Step three\n\n")
+                .append("```java\n")
+                .append("Map<String, Integer> counts = new HashMap<>();\n")
+                .append("counts.merge(key, 1, Integer::sum);\n")
+                .append("```\n\n");
+        }
+        return text.toString();
+    }
+}
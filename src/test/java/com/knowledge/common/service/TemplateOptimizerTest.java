@@ -0,0 +1,145 @@
+package com.knowledge.common.service;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs {@link TemplateOptimizer} over the templates listed in {@code app.email.templates} and
+ * checks that the optimized output keeps the inline styles the source defines or the stylesheet
+ * applies, and that the stylesheet keeps every rule unless pruning is asked for.
+ */
+class TemplateOptimizerTest {
+
+    private static final Pattern RULE_PRELUDE = Pattern.compile("([^{};]+)\\{");
+
+    static List<String> shippedTemplates() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = new ClassPathResource("application.properties").getInputStream()) {
+            properties.load(in);
+        }
+        return Arrays.stream(properties.getProperty("app.email.templates").split(","))
+            .map(String::trim)
+            .filter(name -> !name.isEmpty())
+            .toList();
+    }
+
+    @ParameterizedTest
+    @MethodSource("shippedTemplates")
+    void keepsSourceStylesAndEveryRule(String name) throws IOException {
+        String source = template(name);
+        TemplateOptimizer.Result result = TemplateOptimizer.optimize(name, source);
+
+        assertThat(result.report().equivalent()).as("%s optimized equivalently", name).isTrue();
+        assertThat(result.report().removedRules()).isZero();
+        assertThat(rulePreludes(result.html())).isEqualTo(rulePreludes(source));
+
+        // Same structure, so the elements pair up in document order
+        Elements sourceElements = parse(source).getAllElements();
+        Elements optimizedElements = parse(result.html()).getAllElements();
+        assertThat(optimizedElements).hasSameSizeAs(sourceElements);
+        for (int i = 0; i < sourceElements.size(); i++) {
+            Element original = sourceElements.get(i);
+            Element optimized = optimizedElements.get(i);
+            assertThat(optimized.tagName()).isEqualTo(original.tagName());
+            if (optimized.hasAttr("style")) {
+                assertThat(optimized.attr("style")).as("%s <%s> style", name, optimized.tagName()).isNotBlank();
+            }
+            for (String declaration : declarations(original.attr("style"))) {
+                assertThat(declarations(optimized.attr("style")))
+                    .as("%s <%s class=\"%s\"> keeps its own style", name, original.tagName(), original.className())
+                    .contains(declaration);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+        "learning-path-email-template.html   | div.day-badge     | border-radius:25px",
+        "learning-path-email-template.html   | div.info-label    | text-transform:uppercase",
+        "learning-path-email-template.html   | p.subtitle        | font-size:1.2em",
+        "stock-knowledge-email-template.html | div.day-badge     | border-radius:50px",
+        "stock-knowledge-email-template.html | div.learning-info | padding:25px30px",
+        "topic-overview-email-template.html  | body              | max-width:900px",
+        "topic-overview-email-template.html  | div.header        | background:linear-gradient(135deg,#667eea0%,#764ba2100%)",
+        "daily-digest-email-template.html    | div.header        | padding:36px",
+        "daily-digest-email-template.html    | div.footer        | text-align:center"
+    })
+    void inlinesStylesheetRules(String name, String selector, String declaration) throws IOException {
+        TemplateOptimizer.Result result = TemplateOptimizer.optimize(name, template(name));
+
+        Element element = parse(result.html()).selectFirst(selector);
+        assertThat(element).as("%s %s", name, selector).isNotNull();
+        assertThat(declarations(element.attr("style"))).contains(declaration);
+    }
+
+    @Test
+    void prunesRulesOnlyWhenAskedAndKeepsInsertedMarkupRules() throws IOException {
+        String name = "learning-path-email-template.html";
+        String source = template(name);
+        TemplateOptimizer.ClassVocabulary inserted = new TemplateOptimizer.ClassVocabulary(
+            new LinkedHashSet<>(Set.of("algorithm-block")), new LinkedHashSet<>());
+
+        TemplateOptimizer.Result kept = TemplateOptimizer.optimize(name, source);
+        TemplateOptimizer.Result pruned = TemplateOptimizer.optimize(name, source, inserted);
+
+        assertThat(pruned.report().equivalent()).isTrue();
+        assertThat(pruned.report().removedRules()).isPositive();
+        assertThat(pruned.report().optimizedBytes()).isLessThan(kept.report().optimizedBytes());
+        assertThat(rulePreludes(pruned.html())).contains(".algorithm-block");
+    }
+
+    private static String template(String name) throws IOException {
+        try (InputStream in = new ClassPathResource(name).getInputStream()) {
+            return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Document parse(String html) {
+        return TemplateOptimizer.isDocument(html) ? Jsoup.parse(html) : Jsoup.parseBodyFragment(html);
+    }
+
+    /**
+     * Selectors and at-rule preludes of the template's stylesheets, without whitespace
+     */
+    private static Set<String> rulePreludes(String html) {
+        Set<String> preludes = new LinkedHashSet<>();
+        for (Element style : Jsoup.parse(html).select("style")) {
+            Matcher matcher = RULE_PRELUDE.matcher(style.data().replaceAll("(?s)/\\*.*?\\*/", ""));
+            while (matcher.find()) {
+                preludes.add(matcher.group(1).replaceAll("\\s+", ""));
+            }
+        }
+        return preludes;
+    }
+
+    /**
+     * {@code property:value} pairs of a style attribute, without whitespace
+     */
+    private static List<String> declarations(String style) {
+        return Arrays.stream(style.split(";"))
+            .map(declaration -> declaration.replaceAll("\\s+", ""))
+            .filter(declaration -> !declaration.isEmpty())
+            .toList();
+    }
+}
@@ -0,0 +1,92 @@
+package com.knowledge.topic.service;
+
+import com.knowledge.topic.TopicKnowledgeServiceApplication;
+import com.knowledge.topic.model.Topic;
+import com.knowledge.topic.model.TopicStatus;
+import com.knowledge.topic.repository.TopicRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+/**
+ * Topic claims with {@code app.state-store=database}: a failed run leaves its topic in ERROR
+ * although the run's transaction rolls back, and claims older than the timeout are released.
+ */
+@SpringBootTest(classes = TopicKnowledgeServiceApplication.class, properties = {
+    "spring.datasource.url=jdbc:h2:mem:topic-claims;DB_CLOSE_DELAY=-1",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "app.schedule-enabled=false",
+    "app.stock-schedule-enabled=false",
+    "app.learning-schedule-enabled=false",
+    "app.state-store=database",
+    "app.state-store.claim-timeout-minutes=60",
+    "spring.mail.host=localhost"
+})
+class TopicClaimTest {
+
+    @MockBean
+    private ContentGenerationService contentService;
+
+    @Autowired
+    private TopicProcessingService processingService;
+
+    @Autowired
+    private TopicExcelService excelService;
+
+    @Autowired
+    private TopicRepository topicRepository;
+
+    @DynamicPropertySource
+    static void files(DynamicPropertyRegistry registry) throws IOException {
+        Path workDir = Files.createTempDirectory("topic-claims");
+        registry.add("app.topics-excel-path", () -> workDir.resolve("topics.xlsx").toString());
+        registry.add("app.stock-excel-path", () -> workDir.resolve("stock_knowledge_topics.xlsx").toString());
+        registry.add("app.learning-excel-path", () -> workDir.resolve("6_month_learning_path.xlsx").toString());
+        registry.add("app.knowledge-log-path", () -> workDir.resolve("knowledge_log.xlsx").toString());
+        registry.add("app.knowledge-log.journal-path", () -> workDir.resolve("knowledge_log.csv").toString());
+        registry.add("app.eml-output-directory", () -> workDir.resolve("eml").toString());
+        registry.add("app.eml-archive.directory", () -> workDir.resolve("eml/archive").toString());
+    }
+
+    @BeforeEach
+    void resetTopics() {
+        topicRepository.findAll().forEach(topic -> processingService.resetTopicStatus(topic.getName()));
+    }
+
+    @Test
+    void failedRunLeavesTopicInError() {
+        when(contentService.generateContentForTopics(anyList())).thenThrow(new IllegalStateException("generation failed"));
+
+        assertThatThrownBy(processingService::triggerImmediateProcessing).isInstanceOf(RuntimeException.class);
+
+        assertThat(topicRepository.findByStatus(TopicStatus.PROCESSING)).isEmpty();
+        assertThat(topicRepository.findByStatus(TopicStatus.ERROR)).hasSize(1);
+    }
+
+    @Test
+    void releasesClaimsOlderThanTheTimeout() {
+        Topic topic = topicRepository.findByStatus(TopicStatus.NEW).get(0);
+
+        topicRepository.transition(topic.getId(), TopicStatus.NEW, TopicStatus.PROCESSING, LocalDateTime.now());
+        excelService.releaseStaleClaims();
+        assertThat(topicRepository.findById(topic.getId()).orElseThrow().getStatus()).isEqualTo(TopicStatus.PROCESSING);
+
+        topicRepository.transition(topic.getId(), TopicStatus.PROCESSING, TopicStatus.PROCESSING, LocalDateTime.now().minusHours(2));
+        excelService.releaseStaleClaims();
+        assertThat(topicRepository.findById(topic.getId()).orElseThrow().getStatus()).isEqualTo(TopicStatus.NEW);
+    }
+}